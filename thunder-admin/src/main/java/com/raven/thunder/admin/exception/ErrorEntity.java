@@ -29,7 +29,14 @@ public enum ErrorEntity {
   DUPLICATE_NAME_NOT_PERMITTED(
       "CTA name cannot be duplicated", "DUPLICATE_NAME_NOT_PERMITTED", 403),
   TENANT_NOT_ALLOWED(
-      "Tenant not authorised to access/create resource", "TENANT_NOT_AUTHORISED", 403);
+      "Tenant not authorised to access/create resource", "TENANT_NOT_AUTHORISED", 403),
+  INVALID_ROLLOUT(
+      "Rollout percentage must be between 0 and 100 in steps of 0.01", "INVALID_ROLLOUT", 400),
+  INVALID_COHORT_UPLOAD("Cohort upload is invalid: %s", "INVALID_COHORT_UPLOAD", 400),
+  COHORT_UPLOAD_CONFLICT(
+      "Another upload of this cohort completed first, retry the upload",
+      "COHORT_UPLOAD_CONFLICT",
+      409);
 
   private final String cause;
   private final String errorCode;
@@ -4,9 +4,11 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Singleton;
 import com.raven.thunder.admin.service.AdminService;
 import com.raven.thunder.admin.service.BehaviourTagService;
+import com.raven.thunder.admin.service.CohortService;
 import com.raven.thunder.admin.service.EventService;
 import com.raven.thunder.admin.service.admin.AdminServiceImpl;
 import com.raven.thunder.admin.service.behaviourTag.BehaviourTagServiceImpl;
+import com.raven.thunder.admin.service.cohort.CohortServiceImpl;
 import com.raven.thunder.admin.service.event.EventServiceImpl;
 import com.raven.thunder.core.client.AerospikeClient;
 import com.raven.thunder.core.client.AerospikeClientHolder;
@@ -15,9 +17,13 @@ import com.raven.thunder.core.config.Config;
 import com.raven.thunder.core.config.ServerConfig;
 import com.raven.thunder.core.dao.BehaviourTagsRepository;
 import com.raven.thunder.core.dao.CTARepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import com.raven.thunder.core.dao.CohortRepository;
 import com.raven.thunder.core.dao.EventRepository;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
 import com.raven.thunder.core.dao.behaviourTag.BehaviourTagRepositoryImpl;
+import com.raven.thunder.core.dao.catalog.CatalogVersionRepositoryImpl;
+import com.raven.thunder.core.dao.cohort.CohortRepositoryImpl;
 import com.raven.thunder.core.dao.cta.CTARepositoryImpl;
 import com.raven.thunder.core.dao.event.EventRepositoryImpl;
 import com.raven.thunder.core.dao.nudge.preview.NudgePreviewRepositoryImpl;
@@ -93,13 +99,16 @@ public class MainModule extends AbstractModule {
     // Bind Repositories
     bind(CTARepository.class).to(CTARepositoryImpl.class).in(Singleton.class);
     bind(BehaviourTagsRepository.class).to(BehaviourTagRepositoryImpl.class).in(Singleton.class);
+    bind(CatalogVersionRepository.class).to(CatalogVersionRepositoryImpl.class).in(Singleton.class);
     bind(NudgePreviewRepository.class).to(NudgePreviewRepositoryImpl.class).in(Singleton.class);
     bind(EventRepository.class).to(EventRepositoryImpl.class).in(Singleton.class);
+    bind(CohortRepository.class).to(CohortRepositoryImpl.class).in(Singleton.class);
 
     // Bind Services
     bind(AdminService.class).to(AdminServiceImpl.class).in(Singleton.class);
     bind(BehaviourTagService.class).to(BehaviourTagServiceImpl.class).in(Singleton.class);
     bind(EventService.class).to(EventServiceImpl.class).in(Singleton.class);
+    bind(CohortService.class).to(CohortServiceImpl.class).in(Singleton.class);
 
     log.info("MainModule configuration complete - all services and repositories bound");
   }
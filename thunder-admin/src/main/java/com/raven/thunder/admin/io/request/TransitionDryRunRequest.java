@@ -0,0 +1,16 @@
+package com.raven.thunder.admin.io.request;
+
+import java.util.Map;
+import javax.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransitionDryRunRequest {
+  @NotNull private String eventName;
+  private Map<String, Object> properties;
+  private Map<String, Object> context;
+}
@@ -0,0 +1,16 @@
+package com.raven.thunder.admin.io.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CohortUploadResponse {
+  private String cohort;
+  private Long version;
+  private Long users;
+}
@@ -0,0 +1,18 @@
+package com.raven.thunder.admin.io.response;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransitionDryRunResponse {
+  private String eventName;
+  private Map<String, String> transitions;
+  private List<String> unmatchedStates;
+}
@@ -5,7 +5,9 @@ import static com.raven.thunder.admin.constant.Constants.USER_ID_NULL_ERROR_MESS
 import com.google.inject.Inject;
 import com.raven.thunder.admin.io.request.CTARequest;
 import com.raven.thunder.admin.io.request.CTAUpdateRequest;
+import com.raven.thunder.admin.io.request.TransitionDryRunRequest;
 import com.raven.thunder.admin.io.response.CTAListResponse;
+import com.raven.thunder.admin.io.response.TransitionDryRunResponse;
 import com.raven.thunder.admin.model.FilterProps;
 import com.raven.thunder.admin.service.AdminService;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
@@ -170,8 +172,8 @@ public class AdminController {
           "Creates a new Call-to-Action (CTA) with the provided details. "
               + "The CTA will be created in DRAFT status and can be activated later using status update endpoints. "
               + "Includes rule configuration, state machine setup, actions, and frequency controls. "
-              + "IMPORTANT: rule.cohortEligibility must use includes: [\"all\"] and excludes: [] "
-              + "since user-cohorts system is not currently supported.",
+              + "rule.cohortEligibility targets uploaded cohorts through includes and excludes, "
+              + "and may narrow them to a percentage rollout of 0 to 100 in steps of 0.01.",
       operationId = "createCTA")
   @APIResponse(
       responseCode = "200",
@@ -211,7 +213,7 @@ public class AdminController {
               description =
                   "CTA creation request containing name, description, tags, team, rule configuration, "
                       + "state machine setup, actions, and frequency controls. "
-                      + "Note: rule.cohortEligibility must use includes: [\"all\"] and excludes: [].",
+                      + "Use includes: [\"all\"] in rule.cohortEligibility to target every user.",
               required = true,
               content =
                   @Content(
@@ -239,8 +241,8 @@ public class AdminController {
       description =
           "Updates an existing CTA. Only the fields provided in the request will be updated. "
               + "Can update rule configuration, state machine setup, actions, and frequency controls. "
-              + "IMPORTANT: If updating rule.cohortEligibility, must use includes: [\"all\"] and excludes: [] "
-              + "since user-cohorts system is not currently supported.",
+              + "rule.cohortEligibility targets uploaded cohorts through includes and excludes, "
+              + "and may narrow them to a percentage rollout of 0 to 100 in steps of 0.01.",
       operationId = "updateCTA")
   @APIResponse(
       responseCode = "200",
@@ -277,7 +279,7 @@ public class AdminController {
       @RequestBody(
               description =
                   "CTA update request containing fields to update. "
-                      + "If updating rule.cohortEligibility, must use includes: [\"all\"] and excludes: [].",
+                      + "Use includes: [\"all\"] in rule.cohortEligibility to target every user.",
               required = true,
               content =
                   @Content(
@@ -373,6 +375,85 @@ public class AdminController {
     return ResponseWrapper.fromSingle(service.fetchCTA(tenantId, ctaId), 200);
   }
 
+  @Tag(name = "CTAs")
+  @Operation(
+      summary = "Dry Run CTA Transitions",
+      description =
+          "Evaluates a sample event against the state transitions of a CTA without touching any "
+              + "user state. Filters are compiled exactly as the API compiles them for a catalog. "
+              + "Returns, for every state the event leaves, the state the first matching "
+              + "condition moves to, and lists the states where no condition matches. The optional "
+              + "context stands in for a state machine's stored context; event properties win.",
+      operationId = "dryRunCTATransitions")
+  @APIResponse(
+      responseCode = "200",
+      description = "Transitions evaluated",
+      content =
+          @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(implementation = TransitionDryRunResponse.class),
+              examples = {
+                @ExampleObject(
+                    name = "Dry Run Response",
+                    summary = "Event matches from the initial state only",
+                    value =
+                        "{\n"
+                            + "  \"success\": true,\n"
+                            + "  \"data\": {\n"
+                            + "    \"eventName\": \"ContestJoinedClient\",\n"
+                            + "    \"transitions\": {\"0\": \"1\"},\n"
+                            + "    \"unmatchedStates\": [\"1\"]\n"
+                            + "  },\n"
+                            + "  \"statusCode\": 200\n"
+                            + "}")
+              }))
+  @APIResponse(responseCode = "400", description = "Missing eventName")
+  @APIResponse(responseCode = "404", description = "CTA not found")
+  @POST
+  @Path("/ctas/{ctaId}/dry-run")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public CompletionStage<Response<TransitionDryRunResponse>> dryRunTransitions(
+      @Parameter(
+              name = "x-tenant-id",
+              description = "Tenant identifier",
+              required = false,
+              example = "tenant1")
+          @DefaultValue("default")
+          @HeaderParam("x-tenant-id")
+          String tenantId,
+      @Parameter(
+              name = "ctaId",
+              description = "Unique identifier of the CTA",
+              required = true,
+              example = "12345",
+              schema = @Schema(type = SchemaType.INTEGER, format = "int64"))
+          @NotNull
+          @PathParam("ctaId")
+          Long ctaId,
+      @RequestBody(
+              description = "The sample event",
+              required = true,
+              content =
+                  @Content(
+                      mediaType = MediaType.APPLICATION_JSON,
+                      schema = @Schema(implementation = TransitionDryRunRequest.class),
+                      examples = {
+                        @ExampleObject(
+                            name = "Sample Event",
+                            summary = "Contest joined in normal mode",
+                            value =
+                                "{\n"
+                                    + "  \"eventName\": \"ContestJoinedClient\",\n"
+                                    + "  \"properties\": {\"mode\": \"normal\", \"roundId\": 5}\n"
+                                    + "}")
+                      }))
+          @NotNull
+          @Valid
+          TransitionDryRunRequest request) {
+    return ResponseWrapper.fromSingle(service.dryRunTransitions(tenantId, ctaId, request), 200);
+  }
+
   @Tag(name = "CTAs")
   @Operation(
       summary = "List CTAs",
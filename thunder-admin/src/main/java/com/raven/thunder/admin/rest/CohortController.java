@@ -0,0 +1,104 @@
+package com.raven.thunder.admin.rest;
+
+import com.google.inject.Inject;
+import com.raven.thunder.admin.io.response.CohortUploadResponse;
+import com.raven.thunder.admin.service.CohortService;
+import com.raven.thunder.core.io.Response;
+import com.raven.thunder.core.util.ResponseWrapper;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import java.io.InputStream;
+import java.util.concurrent.CompletionStage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.ExampleObject;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+/** REST controller for uploading cohort membership. */
+@Slf4j
+@Tag(
+    name = "Cohorts",
+    description =
+        "APIs for managing user cohorts. Cohorts are sets of user IDs that CTAs target through "
+            + "the includes and excludes of their cohort eligibility.")
+@Path("/thunder")
+public class CohortController {
+
+  static final String TEXT_CSV = "text/csv";
+  static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  private final CohortService service;
+
+  @Inject
+  public CohortController(CohortService service) {
+    this.service = service;
+  }
+
+  @Tag(name = "Cohorts")
+  @Operation(
+      summary = "Upload cohort users",
+      description =
+          "Replaces the members of a cohort with the user IDs in the request body. CSV bodies take "
+              + "the user ID from the first column and may start with a header line. NDJSON "
+              + "bodies hold a user ID or an object with a userId field on each line. The body "
+              + "is read line by line into a compressed bitmap. API nodes pick up the new "
+              + "membership on their next cohort refresh.",
+      operationId = "uploadCohortUsers")
+  @APIResponse(
+      responseCode = "200",
+      description = "Cohort users uploaded successfully",
+      content =
+          @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(implementation = CohortUploadResponse.class),
+              examples = {
+                @ExampleObject(
+                    name = "Success Response",
+                    summary = "Cohort uploaded",
+                    value =
+                        "{\n"
+                            + "  \"success\": true,\n"
+                            + "  \"data\": {\n"
+                            + "    \"cohort\": \"high_value\",\n"
+                            + "    \"version\": 3,\n"
+                            + "    \"users\": 125000\n"
+                            + "  },\n"
+                            + "  \"statusCode\": 200\n"
+                            + "}")
+              }))
+  @APIResponse(responseCode = "400", description = "Invalid cohort name or user ID")
+  @APIResponse(responseCode = "409", description = "A concurrent upload of the cohort won")
+  @PUT
+  @Path("/cohorts/{cohort}/users")
+  @Consumes({TEXT_CSV, APPLICATION_NDJSON, MediaType.TEXT_PLAIN})
+  @Produces(MediaType.APPLICATION_JSON)
+  public CompletionStage<Response<CohortUploadResponse>> uploadCohortUsers(
+      @Parameter(
+              name = "x-tenant-id",
+              description = "Tenant ID for multi-tenancy support",
+              required = false,
+              schema = @Schema(defaultValue = "default"))
+          @DefaultValue("default")
+          @HeaderParam("x-tenant-id")
+          String tenantId,
+      @Parameter(name = "cohort", description = "Cohort name", required = true, example = "vip")
+          @PathParam("cohort")
+          String cohort,
+      @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+      @RequestBody(
+              description = "User IDs, one per line",
+              required = true,
+              content = {
+                @Content(mediaType = TEXT_CSV, example = "userId\n1001\n1002"),
+                @Content(mediaType = APPLICATION_NDJSON, example = "{\"userId\": 1001}\n1002")
+              })
+          InputStream body) {
+    return ResponseWrapper.fromSingle(service.upload(tenantId, cohort, contentType, body), 200);
+  }
+}
@@ -2,7 +2,9 @@ package com.raven.thunder.admin.service;
 
 import com.raven.thunder.admin.io.request.CTARequest;
 import com.raven.thunder.admin.io.request.CTAUpdateRequest;
+import com.raven.thunder.admin.io.request.TransitionDryRunRequest;
 import com.raven.thunder.admin.io.response.CTAListResponse;
+import com.raven.thunder.admin.io.response.TransitionDryRunResponse;
 import com.raven.thunder.admin.model.FilterProps;
 import com.raven.thunder.core.io.response.FilterResponse;
 import com.raven.thunder.core.model.CTA;
@@ -45,6 +47,17 @@ public interface AdminService {
    */
   Single<CTA> fetchCTA(String tenantId, Long ctaId);
 
+  /**
+   * Evaluates a sample event against a CTA's state transitions without changing any user state.
+   *
+   * @param tenantId tenant identifier
+   * @param ctaId CTA identifier
+   * @param request event name, properties and optional state machine context
+   * @return per state, the state the event would move to
+   */
+  Single<TransitionDryRunResponse> dryRunTransitions(
+      String tenantId, Long ctaId, @NotNull @Valid TransitionDryRunRequest request);
+
   /**
    * Retrieves CTA filter metadata (tags, teams, names) for a tenant.
    *
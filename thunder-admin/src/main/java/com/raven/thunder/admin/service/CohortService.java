@@ -0,0 +1,12 @@
+package com.raven.thunder.admin.service;
+
+import com.raven.thunder.admin.io.response.CohortUploadResponse;
+import io.reactivex.rxjava3.core.Single;
+import java.io.InputStream;
+
+public interface CohortService {
+
+  /** Replaces the members of a cohort with the user ids of a CSV or NDJSON upload. */
+  Single<CohortUploadResponse> upload(
+      String tenantId, String cohort, String contentType, InputStream body);
+}
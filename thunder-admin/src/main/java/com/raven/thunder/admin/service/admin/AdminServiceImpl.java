@@ -5,12 +5,16 @@ import com.raven.thunder.admin.exception.DefinedException;
 import com.raven.thunder.admin.exception.ErrorEntity;
 import com.raven.thunder.admin.io.request.CTARequest;
 import com.raven.thunder.admin.io.request.CTAUpdateRequest;
+import com.raven.thunder.admin.io.request.TransitionDryRunRequest;
 import com.raven.thunder.admin.io.response.CTAListResponse;
+import com.raven.thunder.admin.io.response.StatusWiseCount;
+import com.raven.thunder.admin.io.response.TransitionDryRunResponse;
 import com.raven.thunder.admin.model.FilterProps;
 import com.raven.thunder.admin.service.AdminService;
 import com.raven.thunder.admin.service.filters.CTAFilters;
 import com.raven.thunder.admin.util.CTAPaginationHelper;
 import com.raven.thunder.admin.util.CTAStatusValidator;
+import com.raven.thunder.admin.util.CTAValidationHelper;
 import com.raven.thunder.admin.util.Constants;
 import com.raven.thunder.core.dao.CTARepository;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
@@ -20,15 +24,19 @@ import com.raven.thunder.core.error.ServiceError;
 import com.raven.thunder.core.exception.ThunderException;
 import com.raven.thunder.core.io.response.FilterResponse;
 import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CTAListFilter;
 import com.raven.thunder.core.model.CTAStatus;
 import com.raven.thunder.core.model.NudgePreview;
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import com.raven.thunder.core.util.FilterCompiler;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
@@ -54,6 +62,7 @@ public class AdminServiceImpl implements AdminService {
     return fetchFilters(tenantId)
         .flatMap(
             filterResponse -> {
+              CTAValidationHelper.validateRollout(cta.getRule());
               if (filterResponse.getNames() != null
                   && filterResponse.getNames().contains(cta.getName())) {
                 return Single.error(new DefinedException(ErrorEntity.DUPLICATE_NAME_NOT_PERMITTED));
@@ -86,6 +95,7 @@ public class AdminServiceImpl implements AdminService {
             Single.defer(() -> Single.error(new DefinedException(ErrorEntity.NO_SUCH_CTA))))
         .flatMapCompletable(
             ctaDetails -> {
+              CTAValidationHelper.validateRollout(ctaRequest.getRule());
               CTA cta = ctaUpdateValidator.apply(ctaRequest, ctaDetails, user, ctaId);
               return ctaRepository
                   .update(cta, ctaDetails.getGenerationId())
@@ -114,6 +124,60 @@ public class AdminServiceImpl implements AdminService {
             Single.defer(() -> Single.error(new DefinedException(ErrorEntity.NO_SUCH_CTA))));
   }
 
+  @Override
+  public Single<TransitionDryRunResponse> dryRunTransitions(
+      String tenantId, Long ctaId, TransitionDryRunRequest request) {
+    return fetchCTA(tenantId, ctaId).map(cta -> dryRun(cta, request));
+  }
+
+  /**
+   * Compiles the CTA's conditions for the event as the API does when it builds its catalog, and
+   * reports the first matching transition of every state.
+   */
+  private static TransitionDryRunResponse dryRun(CTA cta, TransitionDryRunRequest request) {
+    Map<String, List<StateTransitionCondition>> conditionsByState =
+        cta.getRule() == null || cta.getRule().getStateTransition() == null
+            ? null
+            : cta.getRule().getStateTransition().get(request.getEventName());
+    Map<String, Object> scope = new HashMap<>();
+    if (request.getContext() != null) {
+      scope.putAll(request.getContext());
+    }
+    if (request.getProperties() != null) {
+      scope.putAll(request.getProperties());
+    }
+
+    Map<String, String> transitions = new TreeMap<>();
+    List<String> unmatchedStates = new ArrayList<>();
+    if (conditionsByState != null) {
+      for (Map.Entry<String, List<StateTransitionCondition>> state :
+          new TreeMap<>(conditionsByState).entrySet()) {
+        String transitionTo = firstMatch(state.getValue(), scope);
+        if (transitionTo == null) {
+          unmatchedStates.add(state.getKey());
+        } else {
+          transitions.put(state.getKey(), transitionTo);
+        }
+      }
+    }
+    return new TransitionDryRunResponse(request.getEventName(), transitions, unmatchedStates);
+  }
+
+  private static String firstMatch(
+      List<StateTransitionCondition> conditions, Map<String, Object> scope) {
+    if (conditions == null) {
+      return null;
+    }
+    for (StateTransitionCondition condition : conditions) {
+      if (condition != null
+          && condition.getTransitionTo() != null
+          && FilterCompiler.compile(condition.getFilters()).test(scope)) {
+        return condition.getTransitionTo();
+      }
+    }
+    return null;
+  }
+
   @Override
   public Single<FilterResponse> fetchFilters(String tenantId) {
     return ctaRepository.findFilters(tenantId).switchIfEmpty(Single.just(new FilterResponse()));
@@ -140,27 +204,34 @@ public class AdminServiceImpl implements AdminService {
   @Override
   public Single<CTAListResponse> fetchCTAs(
       String tenantId, FilterProps filterProps, int pageNumber, int pageSize) {
-    return ctaRepository
-        .findAll(tenantId)
-        .map(
-            it -> {
-              List<CTA> ctas =
-                  it.values().stream()
-                      .filter(CTAFilters.filter(filterProps))
-                      .collect(Collectors.toList());
-              CTAListResponse ctaListResponse = new CTAListResponse();
-              ctaListResponse.setStatusWiseCount(CTAPaginationHelper.countByStatus(ctas));
-              ctas = CTAPaginationHelper.filterByStatus(ctas, filterProps.getStatus());
-              int totalEntries = ctas.size();
-              ctas = CTAPaginationHelper.paginate(ctas, pageNumber, pageSize);
-              ctaListResponse.setCtas(ctas);
-              ctaListResponse.setPageNumber(pageNumber);
-              ctaListResponse.setPageSize(pageSize);
-              ctaListResponse.setTotalPages(
-                  CTAPaginationHelper.calculateTotalPages(totalEntries, pageSize));
-              ctaListResponse.setTotalEntries(totalEntries);
-              return ctaListResponse;
-            });
+    CTAListFilter filter = CTAFilters.filter(filterProps);
+    if (filter.getStatus() == null) {
+      return ctaRepository
+          .findAllForList(tenantId, filter)
+          .map(
+              ctas ->
+                  listResponse(
+                      ctas, CTAPaginationHelper.countByStatus(ctas), pageNumber, pageSize));
+    }
+    // Only the CTAs in the status are read in full; the counts need just the status of the rest
+    return Single.zip(
+        ctaRepository.findAllForList(tenantId, filter),
+        ctaRepository.countByStatus(tenantId, filter),
+        (ctas, counts) ->
+            listResponse(ctas, CTAPaginationHelper.statusWiseCount(counts), pageNumber, pageSize));
+  }
+
+  private static CTAListResponse listResponse(
+      List<CTA> ctas, StatusWiseCount statusWiseCount, int pageNumber, int pageSize) {
+    CTAListResponse ctaListResponse = new CTAListResponse();
+    ctaListResponse.setStatusWiseCount(statusWiseCount);
+    int totalEntries = ctas.size();
+    ctaListResponse.setCtas(CTAPaginationHelper.paginate(ctas, pageNumber, pageSize));
+    ctaListResponse.setPageNumber(pageNumber);
+    ctaListResponse.setPageSize(pageSize);
+    ctaListResponse.setTotalPages(CTAPaginationHelper.calculateTotalPages(totalEntries, pageSize));
+    ctaListResponse.setTotalEntries(totalEntries);
+    return ctaListResponse;
   }
 
   @Override
@@ -0,0 +1,74 @@
+package com.raven.thunder.admin.service.cohort;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+import com.google.inject.Inject;
+import com.raven.thunder.admin.exception.DefinedException;
+import com.raven.thunder.admin.exception.ErrorEntity;
+import com.raven.thunder.admin.io.response.CohortUploadResponse;
+import com.raven.thunder.admin.service.CohortService;
+import com.raven.thunder.core.dao.CohortRepository;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.io.InputStream;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class CohortServiceImpl implements CohortService {
+
+  /** Cohort names are part of record keys, so the key delimiter is not allowed. */
+  private static final Pattern COHORT_NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+  private final CohortRepository cohortRepository;
+
+  @Inject
+  public CohortServiceImpl(CohortRepository cohortRepository) {
+    this.cohortRepository = cohortRepository;
+  }
+
+  @Override
+  public Single<CohortUploadResponse> upload(
+      String tenantId, String cohort, String contentType, InputStream body) {
+    if (cohort == null || !COHORT_NAME.matcher(cohort).matches()) {
+      return Single.error(
+          new DefinedException(
+              ErrorEntity.INVALID_COHORT_UPLOAD,
+              (Object) "cohort name must be 1-64 letters, digits, '_', '.' or '-'"));
+    }
+    CohortUploadParser.Format format = CohortUploadParser.Format.of(contentType);
+    return Single.fromCallable(() -> CohortUploadParser.parse(body, format))
+        .subscribeOn(Schedulers.io())
+        .flatMap(users -> cohortRepository.save(tenantId, cohort, users))
+        .onErrorResumeNext(
+            error ->
+                Single.error(
+                    isConcurrentUpload(error)
+                        ? new DefinedException(ErrorEntity.COHORT_UPLOAD_CONFLICT)
+                        : error))
+        .map(
+            manifest ->
+                CohortUploadResponse.builder()
+                    .cohort(manifest.getCohort())
+                    .version(manifest.getVersion())
+                    .users(manifest.getUsers())
+                    .build())
+        .doOnSuccess(
+            response ->
+                log.info(
+                    "Uploaded {} users to cohort: {} for tenant: {} as version {}",
+                    response.getUsers(),
+                    cohort,
+                    tenantId,
+                    response.getVersion()))
+        .doOnError(
+            error ->
+                log.error("Error uploading cohort: {} for tenant: {}", cohort, tenantId, error));
+  }
+
+  private static boolean isConcurrentUpload(Throwable e) {
+    return e instanceof AerospikeException
+        && (((AerospikeException) e).getResultCode() == ResultCode.GENERATION_ERROR
+            || ((AerospikeException) e).getResultCode() == ResultCode.KEY_EXISTS_ERROR);
+  }
+}
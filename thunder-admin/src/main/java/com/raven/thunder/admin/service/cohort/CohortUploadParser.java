@@ -0,0 +1,115 @@
+package com.raven.thunder.admin.service.cohort;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.raven.thunder.admin.exception.DefinedException;
+import com.raven.thunder.admin.exception.ErrorEntity;
+import com.raven.thunder.core.util.ParseUtil;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Reads user ids from an upload one line at a time straight into a bitmap, so memory grows with
+ * the compressed cohort rather than with the file.
+ *
+ * <p>CSV uploads take the user id from the first column and may start with a header line. NDJSON
+ * uploads hold either a bare user id or an object with a {@code userId} field on each line.
+ */
+final class CohortUploadParser {
+
+  static final String USER_ID_FIELD = "userId";
+
+  enum Format {
+    CSV,
+    NDJSON;
+
+    static Format of(String contentType) {
+      if (contentType != null && contentType.toLowerCase().contains("json")) {
+        return NDJSON;
+      }
+      return CSV;
+    }
+  }
+
+  private CohortUploadParser() {}
+
+  static Roaring64NavigableMap parse(InputStream body, Format format) throws IOException {
+    Roaring64NavigableMap users = new Roaring64NavigableMap();
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (format == Format.NDJSON) {
+          users.addLong(ndjsonUserId(line, lineNumber));
+        } else {
+          String column = firstColumn(line);
+          if (lineNumber == 1 && !isNumeric(column)) {
+            continue;
+          }
+          users.addLong(userId(column, lineNumber));
+        }
+      }
+    }
+    return users;
+  }
+
+  private static long ndjsonUserId(String line, int lineNumber) {
+    JsonNode node;
+    try {
+      node = ParseUtil.parse(line);
+    } catch (JsonProcessingException e) {
+      throw invalid(lineNumber, "not valid JSON");
+    }
+    if (node.isObject()) {
+      node = node.get(USER_ID_FIELD);
+    }
+    if (node == null || !(node.isIntegralNumber() || node.isTextual())) {
+      throw invalid(lineNumber, "no " + USER_ID_FIELD);
+    }
+    return node.isIntegralNumber() ? node.asLong() : userId(node.asText(), lineNumber);
+  }
+
+  private static String firstColumn(String line) {
+    int comma = line.indexOf(',');
+    String column = comma < 0 ? line : line.substring(0, comma);
+    return column.trim().replace("\"", "");
+  }
+
+  private static long userId(String value, int lineNumber) {
+    if (!isNumeric(value)) {
+      throw invalid(lineNumber, "user id '" + value + "' is not a non-negative integer");
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw invalid(lineNumber, "user id '" + value + "' is out of range");
+    }
+  }
+
+  private static boolean isNumeric(String value) {
+    if (value.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (!Character.isDigit(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static DefinedException invalid(int lineNumber, String reason) {
+    return new DefinedException(
+        ErrorEntity.INVALID_COHORT_UPLOAD, (Object) ("line " + lineNumber + ": " + reason));
+  }
+}
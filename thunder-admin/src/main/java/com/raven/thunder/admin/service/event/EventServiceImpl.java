@@ -13,7 +13,6 @@ import com.raven.thunder.core.dao.EventRepository;
 import com.raven.thunder.core.model.EventData;
 import com.raven.thunder.core.model.EventProperty;
 import io.reactivex.rxjava3.core.Completable;
-import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -54,8 +53,13 @@ public class EventServiceImpl implements EventService {
   @Override
   public Single<Integer> upsertEvents(String tenantId, String source, EventsUpsertRequest request) {
     int eventCount = request.getEvents().size();
-    return Observable.fromIterable(request.getEvents())
-        .flatMapCompletable(eventInput -> upsertEvent(tenantId, source, eventInput))
+    List<EventData> events =
+        request.getEvents().stream()
+            .map(eventInput -> convertToEventData(tenantId, source, eventInput))
+            .collect(Collectors.toList());
+    // One batch write instead of a round trip per event
+    return eventRepository
+        .upsertAll(tenantId, events)
         .doOnSubscribe(
             ignored ->
                 log.info(
@@ -1,80 +1,34 @@
 package com.raven.thunder.admin.service.filters;
 
 import com.raven.thunder.admin.model.FilterProps;
-import com.raven.thunder.core.model.CTA;
-import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import com.raven.thunder.core.model.CTAListFilter;
+import com.raven.thunder.core.model.CTAStatus;
 
 public class CTAFilters {
 
-  public static Predicate<CTA> filter(FilterProps filterProps) {
-    return Stream.of(
-            filterName(filterProps.getName()),
-            filterSearchName(filterProps.getSearchName()),
-            filterCreatedBy(filterProps.getCreatedBy()),
-            filterTeams(filterProps.getTeams()),
-            filterTags(filterProps.getTags()),
-            filterBehaviourTag(filterProps.getBehaviourTag()))
-        .reduce(x -> true, Predicate::and);
+  /**
+   * Maps listing filter props to the repository filter, which is evaluated on the server. The
+   * status is looked up in the tenant_status index; an unknown status lists every status.
+   */
+  public static CTAListFilter filter(FilterProps filterProps) {
+    return new CTAListFilter(
+        filterProps.getName(),
+        filterProps.getSearchName(),
+        filterProps.getCreatedBy(),
+        filterProps.getTeams(),
+        filterProps.getTags(),
+        filterProps.getBehaviourTag(),
+        status(filterProps.getStatus()));
   }
 
-  private static Predicate<CTA> filterName(String name) {
-    return cta -> {
-      if (name == null) {
-        return true;
-      }
-      return cta.getName().equals(name);
-    };
-  }
-
-  private static Predicate<CTA> filterSearchName(String searchName) {
-    return cta -> {
-      if (searchName == null || searchName.isEmpty()) {
-        return true;
-      }
-      return cta.getName().contains(searchName);
-    };
-  }
-
-  private static Predicate<CTA> filterCreatedBy(String createdBy) {
-    return cta -> {
-      if (createdBy == null) {
-        return true;
-      }
-      return cta.getCreatedBy().equals(createdBy);
-    };
-  }
-
-  private static Predicate<CTA> filterTeams(List<String> teams) {
-    return cta -> {
-      if (teams == null || teams.isEmpty()) {
-        return true;
-      }
-      return teams.contains(cta.getTeam());
-    };
-  }
-
-  private static Predicate<CTA> filterTags(List<String> tags) {
-    return cta -> {
-      if (tags == null || tags.isEmpty()) {
-        return true;
-      }
-      for (String tag : cta.getTags()) {
-        if (tags.contains(tag)) {
-          return true;
-        }
-      }
-      return false;
-    };
-  }
-
-  private static Predicate<CTA> filterBehaviourTag(String behaviourTag) {
-    return cta -> {
-      if (behaviourTag == null) {
-        return true;
-      }
-      return cta.getBehaviourTags() != null && cta.getBehaviourTags().contains(behaviourTag);
-    };
+  private static CTAStatus status(String status) {
+    if (status == null || status.isEmpty()) {
+      return null;
+    }
+    try {
+      return CTAStatus.valueOf(status.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
   }
 }
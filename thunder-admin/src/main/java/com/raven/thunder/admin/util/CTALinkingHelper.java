@@ -5,7 +5,6 @@ import com.raven.thunder.core.model.CTA;
 import io.reactivex.rxjava3.core.Completable;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
@@ -35,24 +34,17 @@ public final class CTALinkingHelper {
     }
 
     return ctaRepository
-        .findAll(tenantId)
+        .findMany(tenantId, ctaIds)
         .map(
             ctaMap ->
-                ctaMap.entrySet().stream()
-                    .filter(entry -> ctaIds.contains(entry.getValue().getId()))
+                ctaMap.values().stream()
                     .filter(
-                        entry ->
-                            CTAStatusValidator.isValidForBehaviourTagLink(
-                                entry.getValue().getCtaStatus()))
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                        cta -> CTAStatusValidator.isValidForBehaviourTagLink(cta.getCtaStatus()))
+                    .map(CTA::getId)
+                    .collect(Collectors.toList()))
         .flatMapCompletable(
-            filteredCtaMap -> {
-              for (CTA cta : filteredCtaMap.values()) {
-                updateCTABehaviourTag(
-                    ctaRepository, cta.getId(), List.of(behaviourTagName), cta.getId());
-              }
-              return Completable.complete();
-            });
+            linkableIds ->
+                updateCTABehaviourTags(ctaRepository, linkableIds, List.of(behaviourTagName)));
   }
 
   /**
@@ -68,38 +60,33 @@ public final class CTALinkingHelper {
       return Completable.complete();
     }
 
-    Completable[] unlinkOperations =
-        ctaIds.stream()
-            .map(
-                ctaId ->
-                    updateCTABehaviourTag(
-                        ctaRepository, Long.parseLong(ctaId), Collections.emptyList(), ctaId))
-            .toArray(Completable[]::new);
-
-    return Completable.mergeArray(unlinkOperations);
+    List<Long> ids = ctaIds.stream().map(Long::parseLong).collect(Collectors.toList());
+    return updateCTABehaviourTags(ctaRepository, ids, Collections.emptyList());
   }
 
   /**
-   * Updates a single CTA's behaviour tag list.
+   * Sets the behaviour tag list of several CTAs in one batch write.
    *
    * @param ctaRepository the CTA repository
-   * @param ctaId the CTA ID
+   * @param ctaIds the CTA IDs
    * @param behaviourTags the list of behaviour tags to set
-   * @param logIdentifier identifier for logging purposes
-   * @return Completable that completes when the update is done
+   * @return Completable that completes when every CTA is updated
    */
-  private static Completable updateCTABehaviourTag(
-      CTARepository ctaRepository, Long ctaId, List<String> behaviourTags, Object logIdentifier) {
+  private static Completable updateCTABehaviourTags(
+      CTARepository ctaRepository, List<Long> ctaIds, List<String> behaviourTags) {
+    if (ctaIds.isEmpty()) {
+      return Completable.complete();
+    }
     return ctaRepository
-        .update(ctaId, behaviourTags)
+        .update(ctaIds, behaviourTags)
         .doOnComplete(
             () ->
                 log.info(
-                    "Behaviour tag {} updated for CTA id {}",
+                    "Behaviour tag {} updated for CTA ids {}",
                     behaviourTags.isEmpty() ? "unlinked" : "linked",
-                    logIdentifier))
+                    ctaIds))
         .doOnError(
-            error -> log.error("Error updating behaviour tag for CTA id {}", logIdentifier, error));
+            error -> log.error("Error updating behaviour tag for CTA ids {}", ctaIds, error));
   }
 
   /**
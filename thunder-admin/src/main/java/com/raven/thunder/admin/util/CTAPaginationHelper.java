@@ -7,7 +7,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 /** Utility class for pagination and filtering operations on CTA lists. */
 public final class CTAPaginationHelper {
@@ -60,15 +59,17 @@ public final class CTAPaginationHelper {
    */
   public static StatusWiseCount countByStatus(List<CTA> ctas) {
     Map<CTAStatus, Integer> statusCounts = new HashMap<>();
-
-    // Initialize all statuses to 0
-    for (CTAStatus status : CTAStatus.values()) {
-      statusCounts.put(status, 0);
-    }
-
-    // Count CTAs by status
     ctas.forEach(cta -> statusCounts.merge(cta.getCtaStatus(), 1, Integer::sum));
+    return statusWiseCount(statusCounts);
+  }
 
+  /**
+   * Converts counts per status to a StatusWiseCount object.
+   *
+   * @param statusCounts the count of each status; missing statuses count 0
+   * @return StatusWiseCount containing counts for each status
+   */
+  public static StatusWiseCount statusWiseCount(Map<CTAStatus, Integer> statusCounts) {
     // Convert to AtomicInteger for StatusWiseCount (maintains compatibility)
     return new StatusWiseCount(
         new AtomicInteger(statusCounts.getOrDefault(CTAStatus.DRAFT, 0)),
@@ -78,26 +79,4 @@ public final class CTAPaginationHelper {
         new AtomicInteger(statusCounts.getOrDefault(CTAStatus.CONCLUDED, 0)),
         new AtomicInteger(statusCounts.getOrDefault(CTAStatus.TERMINATED, 0)));
   }
-
-  /**
-   * Filters CTAs by status.
-   *
-   * @param ctas the list of CTAs to filter
-   * @param ctaStatus the status string to filter by (case-insensitive)
-   * @return the filtered list of CTAs, or the original list if status is invalid
-   */
-  public static List<CTA> filterByStatus(List<CTA> ctas, String ctaStatus) {
-    if (ctaStatus == null || ctaStatus.isEmpty()) {
-      return ctas;
-    }
-
-    try {
-      CTAStatus status = CTAStatus.valueOf(ctaStatus.toUpperCase());
-      return ctas.stream()
-          .filter(cta -> cta.getCtaStatus().equals(status))
-          .collect(Collectors.toList());
-    } catch (IllegalArgumentException e) {
-      return ctas;
-    }
-  }
 }
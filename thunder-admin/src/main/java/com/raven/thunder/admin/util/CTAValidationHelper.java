@@ -2,8 +2,10 @@ package com.raven.thunder.admin.util;
 
 import com.raven.thunder.admin.exception.DefinedException;
 import com.raven.thunder.admin.exception.ErrorEntity;
+import com.raven.thunder.admin.io.request.RuleRequest;
 import com.raven.thunder.core.model.CTA;
 import com.raven.thunder.core.model.CTAStatus;
+import com.raven.thunder.core.util.RolloutUtil;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -11,7 +13,7 @@ import java.util.Set;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 
-/** Utility class for validating CTA operations related to behaviour tags. */
+/** Utility class for validating CTA rules and CTA operations related to behaviour tags. */
 @Slf4j
 public final class CTAValidationHelper {
 
@@ -69,6 +71,24 @@ public final class CTAValidationHelper {
     }
   }
 
+  /**
+   * Validates the percentage rollout of a CTA rule, if it has one. SDK nodes bucket users into
+   * 0.01% steps, so finer percentages cannot be honoured.
+   *
+   * @param rule the rule of the CTA being created or updated, may be null
+   * @throws DefinedException if the rollout percentage is missing or out of range
+   */
+  public static void validateRollout(RuleRequest rule) {
+    if (rule == null
+        || rule.getCohortEligibility() == null
+        || rule.getCohortEligibility().getRollout() == null) {
+      return;
+    }
+    if (!RolloutUtil.isValid(rule.getCohortEligibility().getRollout())) {
+      throw new DefinedException(ErrorEntity.INVALID_ROLLOUT);
+    }
+  }
+
   /**
    * Finds CTAs with invalid statuses for creating a new behaviour tag.
    *
@@ -1,11 +1,13 @@
 package com.raven.thunder.admin.verticle;
 
+import com.raven.thunder.admin.injection.GuiceInjector;
 import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.client.AerospikeClientFactory;
 import com.raven.thunder.core.client.AerospikeClientHolder;
-import com.raven.thunder.core.client.AerospikeClientImpl;
 import com.raven.thunder.core.config.AerospikeConfig;
 import com.raven.thunder.core.config.Config;
 import com.raven.thunder.core.config.ServerConfig;
+import com.raven.thunder.core.dao.CTARepository;
 import com.raven.thunder.core.util.ConfigUtil;
 import com.raven.thunder.core.util.SharedDataUtils;
 import io.reactivex.rxjava3.core.Completable;
@@ -31,7 +33,11 @@ public class MainVerticle extends AbstractVerticle {
               log.info("Configuration loaded successfully");
               return config;
             })
-        .flatMapCompletable(config -> initializeClients(config).andThen(deployRestVerticle(config)))
+        .flatMapCompletable(
+            config ->
+                initializeClients(config)
+                    .andThen(deployRestVerticle(config))
+                    .andThen(backfillTenantStatus()))
         .doOnComplete(() -> log.info("MainVerticle started successfully"));
   }
 
@@ -56,7 +62,7 @@ public class MainVerticle extends AbstractVerticle {
       return Completable.complete();
     }
     try {
-      this.aerospikeClient = new AerospikeClientImpl(aerospikeConfig);
+      this.aerospikeClient = AerospikeClientFactory.create(aerospikeConfig, vertx.getDelegate());
       return aerospikeClient
           .rxConnect()
           .doOnComplete(
@@ -105,6 +111,24 @@ public class MainVerticle extends AbstractVerticle {
         .ignoreElement();
   }
 
+  /**
+   * Backfills the tenant_status bin of existing CTAs in the background. CTAs written since the bin
+   * was introduced already carry it, and reruns only touch records that are still missing it.
+   */
+  private Completable backfillTenantStatus() {
+    if (aerospikeClient == null) {
+      return Completable.complete();
+    }
+    CTARepository ctaRepository = GuiceInjector.getGuiceInjector().getInstance(CTARepository.class);
+    return Completable.fromAction(
+        () ->
+            ctaRepository
+                .backfillTenantStatus()
+                .subscribe(
+                    count -> log.info("Backfilled tenant_status of {} CTAs", count),
+                    error -> log.error("Failed to backfill tenant_status of CTAs", error)));
+  }
+
   private Integer getNumOfCores() {
     return CpuCoreSensor.availableProcessors();
   }
@@ -6,6 +6,7 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.raven.thunder.admin.exception.DefinedException;
+import com.raven.thunder.admin.exception.ErrorEntity;
 import com.raven.thunder.admin.io.request.CTARequest;
 import com.raven.thunder.admin.io.request.RuleRequest;
 import com.raven.thunder.admin.service.AdminService;
@@ -14,6 +15,7 @@ import com.raven.thunder.core.dao.NudgePreviewRepository;
 import com.raven.thunder.core.io.response.FilterResponse;
 import com.raven.thunder.core.model.CohortEligibility;
 import com.raven.thunder.core.model.Frequency;
+import com.raven.thunder.core.model.Rollout;
 import com.raven.thunder.core.model.rule.LifespanFrequency;
 import com.raven.thunder.core.model.rule.SessionFrequency;
 import com.raven.thunder.core.model.rule.StateTransitionCondition;
@@ -139,4 +141,23 @@ class AdminServiceImplCreateCTATest {
     verify(ctaRepository, never()).generatedIncrementId(anyString());
     verify(ctaRepository, never()).create(anyString(), any());
   }
+
+  @Test
+  void createCTA_failsOnInvalidRollout() {
+    String tenantId = "tenant-1";
+    String user = "user@x";
+    CTARequest req = buildValidCTARequest("Rollout");
+    req.getRule().getCohortEligibility().setRollout(new Rollout(12.345, null));
+
+    when(ctaRepository.findFilters(tenantId))
+        .thenReturn(Maybe.just(new FilterResponse(List.of(), List.of(), List.of(), List.of())));
+
+    AdminService service = new AdminServiceImpl(ctaRepository, nudgePreviewRepository);
+
+    DefinedException error =
+        assertThrows(
+            DefinedException.class, () -> service.createCTA(tenantId, req, user).blockingGet());
+    assertThat(error.getErrorCode()).isEqualTo(ErrorEntity.INVALID_ROLLOUT.getErrorCode());
+    verify(ctaRepository, never()).create(anyString(), any());
+  }
 }
@@ -0,0 +1,91 @@
+package com.raven.thunder.admin.service.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+import com.raven.thunder.admin.io.request.TransitionDryRunRequest;
+import com.raven.thunder.admin.io.response.TransitionDryRunResponse;
+import com.raven.thunder.core.dao.CTARepository;
+import com.raven.thunder.core.dao.NudgePreviewRepository;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.rule.Rule;
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import io.reactivex.rxjava3.core.Maybe;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AdminServiceImplDryRunTest {
+
+  @Mock private CTARepository ctaRepository;
+  @Mock private NudgePreviewRepository nudgePreviewRepository;
+
+  @Test
+  void dryRunTransitions_reportsFirstMatchPerState() {
+    String tenantId = "tenant-1";
+    Long id = 100L;
+    when(ctaRepository.find(tenantId, id)).thenReturn(Maybe.just(cta(id)));
+
+    AdminServiceImpl svc = new AdminServiceImpl(ctaRepository, nudgePreviewRepository);
+    TransitionDryRunResponse response =
+        svc.dryRunTransitions(
+                tenantId,
+                id,
+                new TransitionDryRunRequest("OrderPaid", Map.of("amount", 150), Map.of()))
+            .blockingGet();
+
+    assertEquals("OrderPaid", response.getEventName());
+    assertEquals(Map.of("0", "1"), response.getTransitions());
+    assertEquals(List.of("1"), response.getUnmatchedStates());
+  }
+
+  @Test
+  void dryRunTransitions_usesContextUnderEventProperties() {
+    String tenantId = "tenant-1";
+    Long id = 100L;
+    when(ctaRepository.find(tenantId, id)).thenReturn(Maybe.just(cta(id)));
+
+    AdminServiceImpl svc = new AdminServiceImpl(ctaRepository, nudgePreviewRepository);
+    TransitionDryRunResponse response =
+        svc.dryRunTransitions(
+                tenantId,
+                id,
+                new TransitionDryRunRequest("OrderPaid", Map.of(), Map.of("amount", 500)))
+            .blockingGet();
+
+    assertEquals(Map.of("0", "1", "1", "2"), response.getTransitions());
+    assertEquals(List.of(), response.getUnmatchedStates());
+  }
+
+  private static CTA cta(Long id) {
+    Rule rule = new Rule();
+    rule.setStateTransition(
+        Map.of(
+            "OrderPaid",
+            Map.of(
+                "0", List.of(condition("1", ">=", 100)),
+                "1", List.of(condition("9", "<", 0), condition("2", ">=", 500)))));
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setRule(rule);
+    return cta;
+  }
+
+  private static StateTransitionCondition condition(
+      String transitionTo, String comparisonType, Object comparisonValue) {
+    StateTransitionCondition.Filters filters = new StateTransitionCondition.Filters();
+    filters.setOperator("AND");
+    filters.setFilter(
+        List.of(
+            Map.of(
+                "propertyName", "amount",
+                "propertyType", "number",
+                "comparisonType", comparisonType,
+                "comparisonValue", comparisonValue)));
+    return new StateTransitionCondition(transitionTo, filters);
+  }
+}
@@ -6,6 +6,8 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.raven.thunder.admin.exception.DefinedException;
+import com.raven.thunder.admin.io.response.CTAListResponse;
+import com.raven.thunder.admin.model.FilterProps;
 import com.raven.thunder.admin.service.AdminService;
 import com.raven.thunder.core.dao.CTARepository;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
@@ -14,6 +16,9 @@ import com.raven.thunder.core.model.CTA;
 import com.raven.thunder.core.model.CTAStatus;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -127,4 +132,45 @@ class AdminServiceImplStatusTest {
 
     verify(ctaRepository, times(1)).update(id, CTAStatus.PAUSED);
   }
+
+  @Test
+  void fetchCTAs_readsTheStatusOffTheIndexAndCountsEveryStatus() {
+    String tenantId = "tenant-1";
+    CTA live = new CTA();
+    live.setId(7L);
+    live.setCtaStatus(CTAStatus.LIVE);
+    FilterProps filterProps = new FilterProps();
+    filterProps.setStatus("live");
+
+    when(ctaRepository.findAllForList(
+            eq(tenantId), argThat(filter -> filter.getStatus() == CTAStatus.LIVE)))
+        .thenReturn(Single.just(List.of(live)));
+    when(ctaRepository.countByStatus(eq(tenantId), any()))
+        .thenReturn(Single.just(Map.of(CTAStatus.LIVE, 1, CTAStatus.DRAFT, 2)));
+
+    AdminService svc = new AdminServiceImpl(ctaRepository, nudgePreviewRepository);
+    CTAListResponse response = svc.fetchCTAs(tenantId, filterProps, 0, 10).blockingGet();
+
+    assertEquals(List.of(live), response.getCtas());
+    assertEquals(1, response.getTotalEntries());
+    assertEquals(1, response.getStatusWiseCount().getLive().get());
+    assertEquals(2, response.getStatusWiseCount().getDraft().get());
+  }
+
+  @Test
+  void fetchCTAs_countsTheListedCTAsWhenNoStatusIsRequested() {
+    String tenantId = "tenant-1";
+    CTA draft = new CTA();
+    draft.setId(3L);
+    draft.setCtaStatus(CTAStatus.DRAFT);
+
+    when(ctaRepository.findAllForList(eq(tenantId), argThat(filter -> filter.getStatus() == null)))
+        .thenReturn(Single.just(List.of(draft)));
+
+    AdminService svc = new AdminServiceImpl(ctaRepository, nudgePreviewRepository);
+    CTAListResponse response = svc.fetchCTAs(tenantId, new FilterProps(), 0, 10).blockingGet();
+
+    assertEquals(1, response.getStatusWiseCount().getDraft().get());
+    verify(ctaRepository, never()).countByStatus(any(), any());
+  }
 }
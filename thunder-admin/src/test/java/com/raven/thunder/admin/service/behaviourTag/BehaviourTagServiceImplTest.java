@@ -95,17 +95,18 @@ class BehaviourTagServiceImplTest {
         .thenReturn(Completable.complete());
 
     // For unlink/link calls
-    when(ctaRepository.update(eq(1L), eq(List.of()))).thenReturn(Completable.complete());
-    when(ctaRepository.update(eq(3L), eq(List.of(name)))).thenReturn(Completable.complete());
+    when(ctaRepository.findMany(tenantId, List.of(3L))).thenReturn(Single.just(Map.of(3L, c3)));
+    when(ctaRepository.update(List.of(1L), List.<String>of())).thenReturn(Completable.complete());
+    when(ctaRepository.update(List.of(3L), List.of(name))).thenReturn(Completable.complete());
 
     BehaviourTagService btService =
         new BehaviourTagServiceImpl(behaviourTagsRepository, ctaRepository);
     btService.updateBehaviourTag(tenantId, name, put, user).test().assertComplete();
 
     // unlink 1
-    verify(ctaRepository, atLeastOnce()).update(1L, List.of());
+    verify(ctaRepository, atLeastOnce()).update(List.of(1L), List.<String>of());
     // link only newly added CTA (3). CTA 2 remains linked and is not re-updated.
-    verify(ctaRepository, atLeastOnce()).update(3L, List.of(name));
+    verify(ctaRepository, atLeastOnce()).update(List.of(3L), List.of(name));
     // BT updated
     verify(behaviourTagsRepository, times(1)).update(eq(tenantId), eq(name), any());
   }
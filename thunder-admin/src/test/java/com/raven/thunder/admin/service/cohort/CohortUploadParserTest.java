@@ -0,0 +1,52 @@
+package com.raven.thunder.admin.service.cohort;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.raven.thunder.admin.exception.DefinedException;
+import com.raven.thunder.admin.service.cohort.CohortUploadParser.Format;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+class CohortUploadParserTest {
+
+  @Test
+  void parse_csvSkipsHeaderAndBlankLines() throws IOException {
+    Roaring64NavigableMap users = parse("userId,name\n1001,a\n\n\"1002\",b\n1001,c\n", Format.CSV);
+
+    assertThat(users.toArray()).containsExactly(1001L, 1002L);
+  }
+
+  @Test
+  void parse_ndjsonAcceptsObjectsAndBareIds() throws IOException {
+    Roaring64NavigableMap users =
+        parse("{\"userId\": 1001}\n5000000000\n{\"userId\": \"1003\"}\n", Format.NDJSON);
+
+    assertThat(users.toArray()).containsExactly(1001L, 1003L, 5_000_000_000L);
+  }
+
+  @Test
+  void parse_rejectsInvalidUserIdWithLineNumber() {
+    assertThatThrownBy(() -> parse("1001\nabc\n", Format.CSV))
+        .isInstanceOf(DefinedException.class)
+        .hasMessageContaining("line 2");
+    assertThatThrownBy(() -> parse("{\"id\": 1}\n", Format.NDJSON))
+        .isInstanceOf(DefinedException.class)
+        .hasMessageContaining("line 1");
+  }
+
+  @Test
+  void format_followsContentType() {
+    assertThat(Format.of("application/x-ndjson")).isEqualTo(Format.NDJSON);
+    assertThat(Format.of("text/csv; charset=utf-8")).isEqualTo(Format.CSV);
+    assertThat(Format.of(null)).isEqualTo(Format.CSV);
+  }
+
+  private static Roaring64NavigableMap parse(String body, Format format) throws IOException {
+    return CohortUploadParser.parse(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format);
+  }
+}
@@ -0,0 +1,11 @@
+package com.raven.thunder.api.dao;
+
+/** Expiry of user snapshot records, so users who stop coming back age out of storage. */
+public interface SnapshotExpiry {
+
+  /** TTL in seconds of the tenant's snapshot records, 0 to keep the namespace default. */
+  int ttlSeconds(String tenantId);
+
+  /** Minimum seconds between reads that refresh a record's TTL. */
+  int touchIntervalSeconds();
+}
@@ -0,0 +1,16 @@
+package com.raven.thunder.api.dao;
+
+import com.raven.thunder.api.model.UserDataSnapshot;
+
+/** Limits the stored state of a user is held to, so it stays bounded however active the user. */
+public interface SnapshotLimits {
+
+  /** The most state machine groups kept for a CTA of the tenant, 0 for no cap. */
+  int maxGroups(String tenantId, Long ctaId);
+
+  /**
+   * Caps the groups and trims the timestamp lists of each CTA in the snapshot to what the
+   * tenant's rules need; returns true if anything was dropped.
+   */
+  boolean enforce(String tenantId, UserDataSnapshot snapshot);
+}
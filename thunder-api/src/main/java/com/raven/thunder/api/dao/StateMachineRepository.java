@@ -1,8 +1,14 @@
 package com.raven.thunder.api.dao;
 
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
 import com.raven.thunder.api.model.UserDataSnapshot;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 
 /** Repository for user state machine snapshots. */
 public interface StateMachineRepository {
@@ -10,6 +16,47 @@ public interface StateMachineRepository {
   /** Finds the user snapshot for a tenant. */
   Maybe<UserDataSnapshot> find(String tenantId, Long userId);
 
-  /** Upserts the user snapshot for a tenant. */
+  /**
+   * Finds the snapshots of several users of a tenant in one batch read, keyed by user id. Users
+   * without a snapshot are left out. Unlike {@link #find}, it neither uses the near cache nor
+   * refreshes TTLs.
+   */
+  Single<Map<Long, UserDataSnapshot>> findMany(String tenantId, List<Long> userIds);
+
+  /**
+   * Writes the user snapshot for a tenant if the record is still at the snapshot's generation.
+   * Emits false, without writing, when another writer got there first.
+   */
   Single<Boolean> upsert(String tenantId, Long userId, UserDataSnapshot snapshot);
+
+  /**
+   * Reads the snapshot (empty if absent), applies the mutation and writes it back when the
+   * mutation returns true. Concurrent writes are retried by re-reading and re-applying the
+   * mutation, so it must be safe to run more than once. Emits the snapshot that was stored.
+   */
+  Single<UserDataSnapshot> update(
+      String tenantId, Long userId, Predicate<UserDataSnapshot> mutation);
+
+  /**
+   * Applies a client delta in place, keeping the newer state machine per group, without reading
+   * the whole snapshot.
+   */
+  Single<Boolean> merge(String tenantId, Long userId, CTASnapshotRequest deltaSnapshot);
+
+  /**
+   * Scans the snapshots of a range of partitions, throttled to the given rate, and passes each with
+   * its tenant to the archiver. Snapshots it changed are rewritten if their record is still at the
+   * generation that was read, or deleted when nothing is left in them. Records stored without their
+   * user key cannot be attributed to a tenant and are skipped.
+   *
+   * @param partitionBegin first partition to scan
+   * @param partitionCount number of partitions to scan
+   * @param recordsPerSecond scan throttle, 0 for none
+   * @param archiver archives a tenant's snapshot in place and returns true if it changed
+   */
+  Completable sweep(
+      int partitionBegin,
+      int partitionCount,
+      int recordsPerSecond,
+      BiPredicate<String, UserDataSnapshot> archiver);
 }
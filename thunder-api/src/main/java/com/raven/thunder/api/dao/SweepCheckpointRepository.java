@@ -0,0 +1,22 @@
+package com.raven.thunder.api.dao;
+
+import com.raven.thunder.api.model.SweepCheckpoint;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+
+/** Repository for the progress of the archival sweep over user snapshots. */
+public interface SweepCheckpointRepository {
+
+  /** Finds the checkpoint of the current or last sweep, empty before the first one. */
+  Maybe<SweepCheckpoint> find();
+
+  /** Replaces the stored checkpoint. */
+  Completable save(SweepCheckpoint checkpoint);
+
+  /**
+   * Takes or renews the sweep lease for the owner until the given epoch millis; true if the owner
+   * holds it. The lease is only taken over from another owner once it expired.
+   */
+  Single<Boolean> acquireLease(String owner, long expiresAt);
+}
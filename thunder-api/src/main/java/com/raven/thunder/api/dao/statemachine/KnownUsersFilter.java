@@ -0,0 +1,234 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.policy.ScanPolicy;
+import com.aerospike.client.query.PartitionFilter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.KnownUsersConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bloom filter of the state machine records that exist, so reads for users that were never written
+ * can be skipped.
+ *
+ * <p>Entries are record digests: scans return them without the user key, and they are already
+ * uniformly distributed. The filter is rebuilt from a throttled partition scan and kept current
+ * with this node's writes in between. Until the first scan completes every user is reported as
+ * possibly known. A user first written by another node reads as unknown here until the next
+ * rebuild, so the rebuild period bounds how stale that view can be; writes read such users anyway
+ * and report them through {@link #missed}.
+ */
+@Slf4j
+@Singleton
+public class KnownUsersFilter {
+
+  static final String CHECKS = "knownusers.checks";
+  static final String SKIPS = "knownusers.skips";
+  static final String FALSE_POSITIVES = "knownusers.false.positives";
+  static final String MISSES = "knownusers.misses";
+  static final String REBUILDS = "knownusers.rebuilds";
+  static final String REBUILD_FAILURES = "knownusers.rebuild.failures";
+  static final String INSERTIONS = "knownusers.insertions";
+  static final String ESTIMATED_FALSE_POSITIVE_RATE = "knownusers.false.positive.rate.estimated";
+  static final String OBSERVED_FALSE_POSITIVE_RATE = "knownusers.false.positive.rate.observed";
+
+  private final AerospikeClient client;
+  private final String namespace;
+  private final boolean enabled;
+  private final long expectedUsers;
+  private final double falsePositiveRate;
+  private final ScanPolicy scanPolicy = new ScanPolicy();
+  private final MetricsRegistry metricsRegistry;
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+  private volatile BloomFilter current;
+  private volatile BloomFilter next;
+
+  @Inject
+  public KnownUsersFilter(
+      AerospikeConfig aerospikeConfig,
+      AerospikeClient client,
+      KnownUsersConfig config,
+      MetricsRegistry metricsRegistry) {
+    this.client = client;
+    this.namespace = aerospikeConfig.getUserDataNamespace();
+    this.enabled = config.isEnabledOrDefault();
+    this.expectedUsers = config.getExpectedUsersOrDefault();
+    this.falsePositiveRate = config.getFalsePositiveRateOrDefault();
+    this.metricsRegistry = metricsRegistry;
+
+    scanPolicy.includeBinData = false;
+    scanPolicy.recordsPerSecond = config.getScanRecordsPerSecondOrDefault();
+    scanPolicy.socketTimeout =
+        Math.toIntExact(aerospikeConfig.getBulkReadSocketTimeoutInterval().getMs());
+
+    if (enabled) {
+      metricsRegistry.gauge(INSERTIONS, () -> current != null ? current.added() : 0L);
+      metricsRegistry.gauge(
+          ESTIMATED_FALSE_POSITIVE_RATE,
+          () -> current != null ? current.estimatedFalsePositiveRate() : 0d);
+      metricsRegistry.gauge(OBSERVED_FALSE_POSITIVE_RATE, this::observedFalsePositiveRate);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** False only when the user's record definitely does not exist. */
+  boolean mightContain(Key key) {
+    BloomFilter filter = current;
+    if (filter == null) {
+      return true;
+    }
+    metricsRegistry.increment(CHECKS);
+    if (filter.mightContain(key.digest)) {
+      return true;
+    }
+    metricsRegistry.increment(SKIPS);
+    return false;
+  }
+
+  /** Records a read that the filter let through but found no record. */
+  void falsePositive() {
+    if (current != null) {
+      metricsRegistry.increment(FALSE_POSITIVES);
+    }
+  }
+
+  /** Records a user the filter reported unknown but whose record exists, and adds it. */
+  void missed(Key key) {
+    metricsRegistry.increment(MISSES);
+    add(key);
+  }
+
+  /** Records that the user's record exists, in the live filter and in one being rebuilt. */
+  void add(Key key) {
+    BloomFilter filter = current;
+    if (filter != null) {
+      filter.add(key.digest);
+    }
+    BloomFilter building = next;
+    if (building != null) {
+      building.add(key.digest);
+    }
+  }
+
+  /** Replaces the filter with one built from a scan of all state machine records. */
+  public Completable rebuild() {
+    if (!enabled) {
+      return Completable.complete();
+    }
+    return Completable.defer(
+            () -> {
+              if (!rebuilding.compareAndSet(false, true)) {
+                return Completable.complete();
+              }
+              return Completable.fromAction(this::scan)
+                  .subscribeOn(Schedulers.io())
+                  .doFinally(() -> rebuilding.set(false));
+            })
+        .doOnError(
+            error -> {
+              metricsRegistry.increment(REBUILD_FAILURES);
+              log.error("Failed to rebuild known users filter", error);
+            });
+  }
+
+  private void scan() {
+    long start = System.currentTimeMillis();
+    BloomFilter building = new BloomFilter(expectedUsers, falsePositiveRate);
+    // Writes made while the scan runs are added to both filters, see add()
+    next = building;
+    try {
+      client
+          .getClient()
+          .scanPartitions(
+              scanPolicy,
+              PartitionFilter.all(),
+              namespace,
+              Schema.SET,
+              (key, record) -> building.add(key.digest));
+      current = building;
+      metricsRegistry.increment(REBUILDS);
+      log.info(
+          "Rebuilt known users filter with {} users in {} ms",
+          building.added(),
+          System.currentTimeMillis() - start);
+    } finally {
+      next = null;
+    }
+  }
+
+  private double observedFalsePositiveRate() {
+    long passed = metricsRegistry.count(CHECKS) - metricsRegistry.count(SKIPS);
+    return passed <= 0 ? 0d : (double) metricsRegistry.count(FALSE_POSITIVES) / passed;
+  }
+
+  /** Lock-free Bloom filter over record digests using double hashing. */
+  static final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final LongAdder added = new LongAdder();
+
+    BloomFilter(long expectedEntries, double falsePositiveRate) {
+      long n = Math.max(1L, expectedEntries);
+      double ln2 = Math.log(2);
+      this.bits = Math.max(64L, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2)));
+      this.hashes = Math.max(1, (int) Math.round((double) bits / n * ln2));
+      this.words = new AtomicLongArray(Math.toIntExact((bits + 63) / 64));
+    }
+
+    void add(byte[] digest) {
+      ByteBuffer buffer = ByteBuffer.wrap(digest);
+      long h1 = buffer.getLong(0);
+      long h2 = buffer.getLong(8);
+      for (int i = 0; i < hashes; i++) {
+        long bit = Math.floorMod(h1 + i * h2, bits);
+        long mask = 1L << bit;
+        int word = (int) (bit >>> 6);
+        long value;
+        do {
+          value = words.get(word);
+          if ((value & mask) != 0) {
+            break;
+          }
+        } while (!words.compareAndSet(word, value, value | mask));
+      }
+      added.increment();
+    }
+
+    boolean mightContain(byte[] digest) {
+      ByteBuffer buffer = ByteBuffer.wrap(digest);
+      long h1 = buffer.getLong(0);
+      long h2 = buffer.getLong(8);
+      for (int i = 0; i < hashes; i++) {
+        long bit = Math.floorMod(h1 + i * h2, bits);
+        if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    long added() {
+      return added.sum();
+    }
+
+    /** Chance that an absent digest passes every probe, given the insertions so far. */
+    double estimatedFalsePositiveRate() {
+      return Math.pow(1 - Math.exp(-(double) hashes * added() / bits), hashes);
+    }
+  }
+}
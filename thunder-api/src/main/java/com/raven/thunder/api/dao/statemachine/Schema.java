@@ -1,11 +1,51 @@
 package com.raven.thunder.api.dao.statemachine;
 
-import com.raven.thunder.api.model.StateMachineSnapshot;
-
 interface Schema {
 
   String SET = "state-machine";
 
-  /** {@link java.util.Map<String, StateMachineSnapshot >} */
+  /** Legacy layout: the whole {@code UserDataSnapshot} serialized as one JSON string. */
   String SNAPSHOT_BIN = "snapshot";
+
+  /** Map of ctaId -> {activeStateMachines: {groupId -> state machine}, resetAt, actionDoneAt}. */
+  String STATE_MACHINES_BIN = "state_machines";
+
+  /** Map of behaviour tag name -> JSON encoded {@code BehaviourTagSnapshot}. */
+  String BEHAVIOUR_TAGS_BIN = "behaviour_tags";
+
+  /** Map of exposure counter key -> JSON encoded {@code ExposureCounter}. */
+  String EXPOSURES_BIN = "exposures";
+
+  /** Binary layout: the whole snapshot encoded with {@link SnapshotCodec}. */
+  String BLOB_BIN = "snapshot_blob";
+
+  /** Set of the archival sweep checkpoint, kept apart so sweeps do not scan it. */
+  String SWEEP_SET = "state-machine-sweep";
+
+  String SWEEP_CHECKPOINT_KEY = "archival";
+
+  String SWEEP_STARTED_AT_BIN = "started_at";
+
+  String SWEEP_COMPLETED_AT_BIN = "completed_at";
+
+  /** List of the partition blocks already swept. */
+  String SWEEP_COMPLETED_BLOCKS_BIN = "completed_blocks";
+
+  /** Lease of the instance running the sweep, kept apart from the checkpoint it writes. */
+  String SWEEP_LEASE_KEY = "archival-lease";
+
+  String SWEEP_LEASE_OWNER_BIN = "owner";
+
+  String SWEEP_LEASE_EXPIRES_AT_BIN = "expires_at";
+
+  // Keys inside a CTA entry of the state machines map
+  String ACTIVE_STATE_MACHINES = "activeStateMachines";
+  String RESET_AT = "resetAt";
+  String ACTION_DONE_AT = "actionDoneAt";
+
+  // Keys inside a state machine entry
+  String CURRENT_STATE = "currentState";
+  String LAST_TRANSITION_AT = "lastTransitionAt";
+  String CONTEXT = "context";
+  String CREATED_AT = "createdAt";
 }
@@ -0,0 +1,615 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.raven.thunder.api.model.BehaviourExposureRule;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.CTARelationSnapshot;
+import com.raven.thunder.api.model.CTAReset;
+import com.raven.thunder.api.model.ExposureCounter;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.model.CtaRelationRule;
+import com.raven.thunder.core.model.CtaRelationRuleTypes;
+import com.raven.thunder.core.model.rule.LifespanFrequency;
+import com.raven.thunder.core.model.rule.SessionFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequencyUnit;
+import com.raven.thunder.core.util.ParseUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Versioned binary encoding of {@link UserDataSnapshot}.
+ *
+ * <p>Layout: a magic byte and a schema version, followed by the state machines and behaviour tags
+ * and, since version 2, the exposure counters. Snapshots without counters are still written as
+ * version 1, so nodes that predate version 2 keep reading them during a rolling deploy.
+ * Integers are unsigned LEB128 varints, signed values are zigzag encoded, timestamps are written
+ * as deltas from a neighbouring timestamp, and strings (state ids, group ids, tag names) are
+ * interned on first use and referenced by index afterwards. Nullable values reserve 0 for null.
+ * Free-form state machine context is kept as embedded JSON.
+ */
+final class SnapshotCodec {
+
+  static final byte MAGIC = (byte) 0xB5;
+  static final byte VERSION = 2;
+
+  /** Oldest schema version still decoded; it has no exposure counters. */
+  static final byte MIN_VERSION = 1;
+
+  private static final TypeReference<Map<String, Object>> CONTEXT_TYPE = new TypeReference<>() {};
+
+  // CTA flags
+  private static final int CTA_ID_MATCHES_KEY = 1;
+  private static final int HAS_STATE_MACHINES = 1 << 1;
+  private static final int HAS_RESET_AT = 1 << 2;
+  private static final int HAS_ACTION_DONE_AT = 1 << 3;
+
+  // State machine flags
+  private static final int HAS_CURRENT_STATE = 1;
+  private static final int HAS_CREATED_AT = 1 << 1;
+  private static final int HAS_LAST_TRANSITION_AT = 1 << 2;
+  private static final int HAS_CONTEXT = 1 << 3;
+  private static final int HAS_RESET = 1 << 4;
+  private static final int RESET = 1 << 5;
+
+  // Behaviour tag flags
+  private static final int NAME_MATCHES_KEY = 1;
+  private static final int HAS_EXPOSURE_RULE = 1 << 1;
+  private static final int HAS_CTA_RELATION = 1 << 2;
+
+  // Exposure rule flags
+  private static final int HAS_SESSION = 1;
+  private static final int HAS_LIFESPAN = 1 << 1;
+  private static final int HAS_WINDOW = 1 << 2;
+  private static final int HAS_CTAS_RESET_AT = 1 << 3;
+
+  private SnapshotCodec() {}
+
+  /** Returns true if the bytes start with this codec's header. */
+  static boolean isEncoded(byte[] bytes) {
+    return bytes != null && bytes.length >= 2 && bytes[0] == MAGIC;
+  }
+
+  static byte[] encode(UserDataSnapshot snapshot) throws JsonProcessingException {
+    Writer out = new Writer();
+    Map<String, ExposureCounter> exposures = snapshot.getExposures();
+    out.writeByte(MAGIC);
+    out.writeByte(exposures != null ? VERSION : MIN_VERSION);
+
+    Map<Long, StateMachineSnapshot> stateMachines = snapshot.getStateMachines();
+    out.writeCount(stateMachines);
+    if (stateMachines != null) {
+      for (Map.Entry<Long, StateMachineSnapshot> entry : stateMachines.entrySet()) {
+        out.writeSigned(entry.getKey());
+        writeCTA(out, entry.getKey(), entry.getValue());
+      }
+    }
+
+    Map<String, BehaviourTagSnapshot> behaviourTags = snapshot.getBehaviourTags();
+    out.writeCount(behaviourTags);
+    if (behaviourTags != null) {
+      for (Map.Entry<String, BehaviourTagSnapshot> entry : behaviourTags.entrySet()) {
+        out.writeString(entry.getKey());
+        writeBehaviourTag(out, entry.getKey(), entry.getValue());
+      }
+    }
+
+    if (exposures != null) {
+      out.writeCount(exposures);
+      for (Map.Entry<String, ExposureCounter> entry : exposures.entrySet()) {
+        out.writeString(entry.getKey());
+        writeExposureCounter(out, entry.getValue());
+      }
+    }
+
+    return out.toByteArray();
+  }
+
+  static UserDataSnapshot decode(byte[] bytes) throws JsonProcessingException {
+    if (!isEncoded(bytes)) {
+      throw new IllegalArgumentException("Not an encoded user data snapshot");
+    }
+    byte version = bytes[1];
+    if (version < MIN_VERSION || version > VERSION) {
+      throw new IllegalArgumentException("Unsupported snapshot schema version " + version);
+    }
+    Reader in = new Reader(bytes, 2);
+
+    Map<Long, StateMachineSnapshot> stateMachines = null;
+    int ctaCount = in.readCount();
+    if (ctaCount >= 0) {
+      stateMachines = new HashMap<>(capacity(ctaCount));
+      for (int i = 0; i < ctaCount; i++) {
+        Long ctaId = in.readSigned();
+        stateMachines.put(ctaId, readCTA(in, ctaId));
+      }
+    }
+
+    Map<String, BehaviourTagSnapshot> behaviourTags = null;
+    int tagCount = in.readCount();
+    if (tagCount >= 0) {
+      behaviourTags = new HashMap<>(capacity(tagCount));
+      for (int i = 0; i < tagCount; i++) {
+        String name = in.readString();
+        behaviourTags.put(name, readBehaviourTag(in, name));
+      }
+    }
+
+    UserDataSnapshot snapshot = new UserDataSnapshot(stateMachines, behaviourTags);
+    if (version >= 2) {
+      int counterCount = in.readCount();
+      if (counterCount >= 0) {
+        Map<String, ExposureCounter> exposures = new HashMap<>(capacity(counterCount));
+        for (int i = 0; i < counterCount; i++) {
+          String key = in.readString();
+          exposures.put(key, readExposureCounter(in));
+        }
+        snapshot.setExposures(exposures);
+      }
+    }
+    return snapshot;
+  }
+
+  private static void writeCTA(Writer out, Long key, StateMachineSnapshot cta)
+      throws JsonProcessingException {
+    boolean idMatches = String.valueOf(key).equals(cta.getCtaId());
+    int flags =
+        (idMatches ? CTA_ID_MATCHES_KEY : 0)
+            | (cta.getActiveStateMachines() != null ? HAS_STATE_MACHINES : 0)
+            | (cta.getResetAt() != null ? HAS_RESET_AT : 0)
+            | (cta.getActionDoneAt() != null ? HAS_ACTION_DONE_AT : 0);
+    out.writeUnsigned(flags);
+    if (!idMatches) {
+      out.writeString(cta.getCtaId());
+    }
+    if (cta.getActiveStateMachines() != null) {
+      out.writeUnsigned(cta.getActiveStateMachines().size());
+      for (Map.Entry<String, StateMachine> entry : cta.getActiveStateMachines().entrySet()) {
+        out.writeString(entry.getKey());
+        writeStateMachine(out, entry.getValue());
+      }
+    }
+    if (cta.getResetAt() != null) {
+      out.writeTimestamps(cta.getResetAt());
+    }
+    if (cta.getActionDoneAt() != null) {
+      out.writeTimestamps(cta.getActionDoneAt());
+    }
+  }
+
+  private static StateMachineSnapshot readCTA(Reader in, Long key) throws JsonProcessingException {
+    int flags = (int) in.readUnsigned();
+    StateMachineSnapshot cta = new StateMachineSnapshot();
+    cta.setCtaId((flags & CTA_ID_MATCHES_KEY) != 0 ? String.valueOf(key) : in.readString());
+    if ((flags & HAS_STATE_MACHINES) != 0) {
+      int count = (int) in.readUnsigned();
+      Map<String, StateMachine> stateMachines = new HashMap<>(capacity(count));
+      for (int i = 0; i < count; i++) {
+        String groupId = in.readString();
+        stateMachines.put(groupId, readStateMachine(in));
+      }
+      cta.setActiveStateMachines(stateMachines);
+    }
+    if ((flags & HAS_RESET_AT) != 0) {
+      cta.setResetAt(in.readTimestamps());
+    }
+    if ((flags & HAS_ACTION_DONE_AT) != 0) {
+      cta.setActionDoneAt(in.readTimestamps());
+    }
+    return cta;
+  }
+
+  private static void writeStateMachine(Writer out, StateMachine stateMachine)
+      throws JsonProcessingException {
+    int flags =
+        (stateMachine.getCurrentState() != null ? HAS_CURRENT_STATE : 0)
+            | (stateMachine.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+            | (stateMachine.getLastTransitionAt() != null ? HAS_LAST_TRANSITION_AT : 0)
+            | (stateMachine.getContext() != null ? HAS_CONTEXT : 0)
+            | (stateMachine.getReset() != null ? HAS_RESET : 0)
+            | (Boolean.TRUE.equals(stateMachine.getReset()) ? RESET : 0);
+    out.writeUnsigned(flags);
+    if (stateMachine.getCurrentState() != null) {
+      out.writeString(stateMachine.getCurrentState());
+    }
+    long createdAt = stateMachine.getCreatedAt() != null ? stateMachine.getCreatedAt() : 0L;
+    if (stateMachine.getCreatedAt() != null) {
+      out.writeSigned(createdAt);
+    }
+    if (stateMachine.getLastTransitionAt() != null) {
+      out.writeSigned(stateMachine.getLastTransitionAt() - createdAt);
+    }
+    if (stateMachine.getContext() != null) {
+      out.writeBytes(
+          ParseUtil.writeValueAsString(stateMachine.getContext()).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static StateMachine readStateMachine(Reader in) throws JsonProcessingException {
+    int flags = (int) in.readUnsigned();
+    StateMachine stateMachine = new StateMachine();
+    if ((flags & HAS_CURRENT_STATE) != 0) {
+      stateMachine.setCurrentState(in.readString());
+    }
+    long createdAt = 0L;
+    if ((flags & HAS_CREATED_AT) != 0) {
+      createdAt = in.readSigned();
+      stateMachine.setCreatedAt(createdAt);
+    }
+    if ((flags & HAS_LAST_TRANSITION_AT) != 0) {
+      stateMachine.setLastTransitionAt(createdAt + in.readSigned());
+    }
+    if ((flags & HAS_CONTEXT) != 0) {
+      stateMachine.setContext(
+          ParseUtil.parse(new String(in.readBytes(), StandardCharsets.UTF_8), CONTEXT_TYPE));
+    }
+    if ((flags & HAS_RESET) != 0) {
+      stateMachine.setReset((flags & RESET) != 0);
+    }
+    return stateMachine;
+  }
+
+  private static void writeBehaviourTag(Writer out, String key, BehaviourTagSnapshot tag) {
+    boolean nameMatches = key.equals(tag.getBehaviourTagName());
+    int flags =
+        (nameMatches ? NAME_MATCHES_KEY : 0)
+            | (tag.getExposureRule() != null ? HAS_EXPOSURE_RULE : 0)
+            | (tag.getCtaRelation() != null ? HAS_CTA_RELATION : 0);
+    out.writeUnsigned(flags);
+    if (!nameMatches) {
+      out.writeString(tag.getBehaviourTagName());
+    }
+    if (tag.getExposureRule() != null) {
+      writeExposureRule(out, tag.getExposureRule());
+    }
+    if (tag.getCtaRelation() != null) {
+      writeCTARelation(out, tag.getCtaRelation());
+    }
+  }
+
+  private static BehaviourTagSnapshot readBehaviourTag(Reader in, String key) {
+    int flags = (int) in.readUnsigned();
+    BehaviourTagSnapshot tag = new BehaviourTagSnapshot();
+    tag.setBehaviourTagName((flags & NAME_MATCHES_KEY) != 0 ? key : in.readString());
+    if ((flags & HAS_EXPOSURE_RULE) != 0) {
+      tag.setExposureRule(readExposureRule(in));
+    }
+    if ((flags & HAS_CTA_RELATION) != 0) {
+      tag.setCtaRelation(readCTARelation(in));
+    }
+    return tag;
+  }
+
+  private static void writeExposureRule(Writer out, BehaviourExposureRule rule) {
+    int flags =
+        (rule.getSession() != null ? HAS_SESSION : 0)
+            | (rule.getLifespan() != null ? HAS_LIFESPAN : 0)
+            | (rule.getWindow() != null ? HAS_WINDOW : 0)
+            | (rule.getCtasResetAt() != null ? HAS_CTAS_RESET_AT : 0);
+    out.writeUnsigned(flags);
+    if (rule.getSession() != null) {
+      out.writeNullable(rule.getSession().getLimit());
+    }
+    if (rule.getLifespan() != null) {
+      out.writeNullable(rule.getLifespan().getLimit());
+    }
+    if (rule.getWindow() != null) {
+      WindowFrequency window = rule.getWindow();
+      out.writeNullable(window.getLimit());
+      out.writeString(window.getUnit() != null ? window.getUnit().name() : null);
+      out.writeNullable(window.getValue());
+    }
+    if (rule.getCtasResetAt() != null) {
+      out.writeUnsigned(rule.getCtasResetAt().size());
+      for (CTAReset reset : rule.getCtasResetAt()) {
+        out.writeString(reset.getCtaId());
+        out.writeNullable(reset.getResetAt());
+      }
+    }
+  }
+
+  private static BehaviourExposureRule readExposureRule(Reader in) {
+    int flags = (int) in.readUnsigned();
+    BehaviourExposureRule rule = new BehaviourExposureRule();
+    if ((flags & HAS_SESSION) != 0) {
+      rule.setSession(new SessionFrequency(toInteger(in.readNullable())));
+    }
+    if ((flags & HAS_LIFESPAN) != 0) {
+      rule.setLifespan(new LifespanFrequency(toInteger(in.readNullable())));
+    }
+    if ((flags & HAS_WINDOW) != 0) {
+      Integer limit = toInteger(in.readNullable());
+      String unit = in.readString();
+      Integer value = toInteger(in.readNullable());
+      rule.setWindow(
+          new WindowFrequency(
+              limit, unit != null ? WindowFrequencyUnit.valueOf(unit) : null, value));
+    }
+    if ((flags & HAS_CTAS_RESET_AT) != 0) {
+      int count = (int) in.readUnsigned();
+      List<CTAReset> resets = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        resets.add(new CTAReset(in.readString(), in.readNullable()));
+      }
+      rule.setCtasResetAt(resets);
+    }
+    return rule;
+  }
+
+  /** Buckets are written in time order, each start as a delta from the previous one. */
+  private static void writeExposureCounter(Writer out, ExposureCounter counter) {
+    out.writeNullable(counter.getCountedUntil());
+    out.writeNullable(counter.getTotal());
+    out.writeNullable(counter.getBucketMillis());
+    out.writeCount(counter.getBuckets());
+    if (counter.getBuckets() != null) {
+      long previous = 0L;
+      for (Map.Entry<Long, Integer> bucket : new TreeMap<>(counter.getBuckets()).entrySet()) {
+        out.writeSigned(bucket.getKey() - previous);
+        out.writeNullable(bucket.getValue());
+        previous = bucket.getKey();
+      }
+    }
+  }
+
+  private static ExposureCounter readExposureCounter(Reader in) {
+    ExposureCounter counter = new ExposureCounter();
+    counter.setCountedUntil(in.readNullable());
+    counter.setTotal(in.readNullable());
+    counter.setBucketMillis(in.readNullable());
+    int count = in.readCount();
+    if (count >= 0) {
+      Map<Long, Integer> buckets = new HashMap<>(capacity(count));
+      long previous = 0L;
+      for (int i = 0; i < count; i++) {
+        previous += in.readSigned();
+        buckets.put(previous, toInteger(in.readNullable()));
+      }
+      counter.setBuckets(buckets);
+    }
+    return counter;
+  }
+
+  private static void writeCTARelation(Writer out, CTARelationSnapshot relation) {
+    writeRelationRule(out, relation.getShownCta());
+    writeRelationRule(out, relation.getHideCta());
+    out.writeStrings(relation.getActiveCtas());
+  }
+
+  private static CTARelationSnapshot readCTARelation(Reader in) {
+    CtaRelationRule shownCta = readRelationRule(in);
+    CtaRelationRule hideCta = readRelationRule(in);
+    List<String> activeCtas = in.readStrings();
+    return new CTARelationSnapshot(shownCta, hideCta, activeCtas);
+  }
+
+  private static void writeRelationRule(Writer out, CtaRelationRule rule) {
+    out.writeUnsigned(rule != null ? 1 : 0);
+    if (rule != null) {
+      out.writeString(rule.getRule() != null ? rule.getRule().name() : null);
+      out.writeStrings(rule.getCtaList());
+    }
+  }
+
+  private static CtaRelationRule readRelationRule(Reader in) {
+    if (in.readUnsigned() == 0) {
+      return null;
+    }
+    String type = in.readString();
+    List<String> ctaList = in.readStrings();
+    return new CtaRelationRule(
+        type != null ? CtaRelationRuleTypes.valueOf(type) : null,
+        ctaList != null ? new HashSet<>(ctaList) : null);
+  }
+
+  private static Integer toInteger(Long value) {
+    return value != null ? Math.toIntExact(value) : null;
+  }
+
+  private static int capacity(int size) {
+    return (int) (size / 0.75f) + 1;
+  }
+
+  /** Growable byte buffer with varint and string interning helpers. */
+  private static final class Writer {
+    private byte[] buffer = new byte[256];
+    private int position;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    void writeUnsigned(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    void writeSigned(long value) {
+      writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    /** Writes null as 0 and any other value as its zigzag encoding plus one. */
+    void writeNullable(Number value) {
+      if (value == null) {
+        writeUnsigned(0);
+      } else {
+        long v = value.longValue();
+        writeUnsigned(((v << 1) ^ (v >> 63)) + 1);
+      }
+    }
+
+    /** Writes the size of a map or collection plus one, or 0 when it is null. */
+    void writeCount(Map<?, ?> map) {
+      writeUnsigned(map == null ? 0 : map.size() + 1L);
+    }
+
+    void writeBytes(byte[] bytes) {
+      writeUnsigned(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    /** 0 is null, 1 is a new literal that joins the table, n >= 2 references entry n - 2. */
+    void writeString(String value) {
+      if (value == null) {
+        writeUnsigned(0);
+        return;
+      }
+      Integer index = strings.get(value);
+      if (index != null) {
+        writeUnsigned(index + 2L);
+        return;
+      }
+      strings.put(value, strings.size());
+      writeUnsigned(1);
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void writeStrings(Collection<String> values) {
+      writeUnsigned(values == null ? 0 : values.size() + 1L);
+      if (values != null) {
+        for (String value : values) {
+          writeString(value);
+        }
+      }
+    }
+
+    /**
+     * Sorted or not, neighbouring timestamps are close, so each one is a delta from the last. Null
+     * entries carry no time, so they are skipped as the timestamp trimming does.
+     */
+    void writeTimestamps(List<Long> timestamps) {
+      int count = 0;
+      for (Long timestamp : timestamps) {
+        if (timestamp != null) {
+          count++;
+        }
+      }
+      writeUnsigned(count);
+      long previous = 0L;
+      for (Long timestamp : timestamps) {
+        if (timestamp != null) {
+          writeSigned(timestamp - previous);
+          previous = timestamp;
+        }
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+      if (position + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+      }
+    }
+  }
+
+  private static final class Reader {
+    private final byte[] buffer;
+    private int position;
+    private final List<String> strings = new ArrayList<>();
+
+    Reader(byte[] buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+    }
+
+    long readUnsigned() {
+      long value = 0;
+      int shift = 0;
+      while (true) {
+        byte b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+        shift += 7;
+        if (shift > 63) {
+          throw new IllegalArgumentException("Malformed varint at " + position);
+        }
+      }
+    }
+
+    long readSigned() {
+      long value = readUnsigned();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    Long readNullable() {
+      long value = readUnsigned();
+      if (value == 0) {
+        return null;
+      }
+      value -= 1;
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readCount() {
+      return (int) readUnsigned() - 1;
+    }
+
+    byte[] readBytes() {
+      int length = (int) readUnsigned();
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    String readString() {
+      long ref = readUnsigned();
+      if (ref == 0) {
+        return null;
+      }
+      if (ref == 1) {
+        int length = (int) readUnsigned();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        strings.add(value);
+        return value;
+      }
+      return strings.get((int) (ref - 2));
+    }
+
+    List<String> readStrings() {
+      int count = readCount();
+      if (count < 0) {
+        return null;
+      }
+      List<String> values = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        values.add(readString());
+      }
+      return values;
+    }
+
+    List<Long> readTimestamps() {
+      int count = (int) readUnsigned();
+      List<Long> timestamps = new ArrayList<>(count);
+      long previous = 0L;
+      for (int i = 0; i < count; i++) {
+        previous += readSigned();
+        timestamps.add(previous);
+      }
+      return timestamps;
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import com.aerospike.client.Record;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.config.NearCacheConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded LRU cache of user snapshots keyed by tenant and user, holding the record generation each
+ * snapshot was read or written at.
+ *
+ * <p>Every lookup revalidates the cached copy with a header-only read, so a snapshot written by
+ * another node is never served. Snapshots are kept {@link SnapshotCodec encoded}, which bounds
+ * memory by their real size and hands each caller its own mutable copy.
+ */
+@Slf4j
+final class SnapshotNearCache {
+
+  static final String LOOKUPS = "nearcache.lookups";
+  static final String HITS = "nearcache.hits";
+  static final String MISSES = "nearcache.misses";
+  static final String REVALIDATIONS = "nearcache.revalidations";
+  static final String STALE = "nearcache.stale";
+  static final String EVICTIONS = "nearcache.evictions";
+  static final String ENTRIES = "nearcache.entries";
+  static final String BYTES = "nearcache.bytes";
+  static final String HIT_RATIO = "nearcache.hit.ratio";
+  static final String REVALIDATION_RATIO = "nearcache.revalidation.ratio";
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long maxAgeMs;
+  private final boolean offHeap;
+  private final MetricsRegistry metricsRegistry;
+
+  /** Access ordered, so iteration starts at the least recently used entry. */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long bytes;
+
+  SnapshotNearCache(NearCacheConfig config, MetricsRegistry metricsRegistry) {
+    this.enabled = config.isEnabledOrDefault();
+    this.maxEntries = config.getMaxEntriesOrDefault();
+    this.maxBytes = config.getMaxBytesOrDefault();
+    this.maxAgeMs = config.getMaxAgeInterval().getMs();
+    this.offHeap = config.isOffHeapOrDefault();
+    this.metricsRegistry = metricsRegistry;
+
+    if (enabled) {
+      metricsRegistry.gauge(ENTRIES, this::size);
+      metricsRegistry.gauge(BYTES, this::bytes);
+      metricsRegistry.gauge(HIT_RATIO, () -> ratio(HITS, LOOKUPS));
+      metricsRegistry.gauge(REVALIDATION_RATIO, () -> ratio(REVALIDATIONS, LOOKUPS));
+    }
+  }
+
+  /**
+   * Serves the user's snapshot from the cache when {@code header} shows the record still has the
+   * cached generation, and otherwise falls back to {@code load} and caches its result.
+   */
+  Maybe<UserDataSnapshot> find(String key, Maybe<Record> header, Maybe<UserDataSnapshot> load) {
+    if (!enabled) {
+      return load;
+    }
+    return Maybe.defer(
+        () -> {
+          metricsRegistry.increment(LOOKUPS);
+          Entry cached = get(key);
+          if (cached == null) {
+            metricsRegistry.increment(MISSES);
+            return load(key, load);
+          }
+
+          metricsRegistry.increment(REVALIDATIONS);
+          return header
+              .flatMap(
+                  record -> {
+                    if (record.generation != cached.generation) {
+                      metricsRegistry.increment(STALE);
+                      return load(key, load);
+                    }
+                    UserDataSnapshot snapshot = decode(key, cached);
+                    if (snapshot == null) {
+                      return load(key, load);
+                    }
+                    metricsRegistry.increment(HITS);
+                    snapshot.setTimeToLive(record.getTimeToLive());
+                    return Maybe.just(snapshot);
+                  })
+              .doOnComplete(() -> invalidate(key));
+        });
+  }
+
+  /** Caches a snapshot the record holds at {@code generation}. */
+  void put(String key, int generation, UserDataSnapshot snapshot) {
+    if (!enabled) {
+      return;
+    }
+    byte[] encoded;
+    try {
+      encoded = SnapshotCodec.encode(snapshot);
+    } catch (Exception e) {
+      log.debug("Not caching snapshot of {}", key, e);
+      invalidate(key);
+      return;
+    }
+    if (encoded.length > maxBytes) {
+      invalidate(key);
+      return;
+    }
+
+    Entry entry = new Entry(generation, System.currentTimeMillis(), store(encoded), encoded.length);
+    synchronized (this) {
+      Entry previous = entries.put(key, entry);
+      bytes += entry.size - (previous != null ? previous.size : 0);
+      evictOverflow();
+    }
+  }
+
+  /**
+   * Applies a delta merged on the server to the cached copy, when the write moved the record
+   * exactly one generation past it. Otherwise the cached copy is dropped.
+   */
+  void merged(String key, int generation, CTASnapshotRequest deltaSnapshot) {
+    if (!enabled) {
+      return;
+    }
+    Entry cached = get(key);
+    UserDataSnapshot snapshot =
+        cached != null && cached.generation + 1 == generation ? decode(key, cached) : null;
+    if (snapshot == null) {
+      invalidate(key);
+      return;
+    }
+    StateMachineUtil.mergeDeltaSnapshot(snapshot, deltaSnapshot);
+    put(key, generation, snapshot);
+  }
+
+  /**
+   * Moves the cached copy to the generation a touch left the record at, when the touch moved it
+   * exactly one generation past it. Otherwise the cached copy is dropped.
+   */
+  void touched(String key, int generation) {
+    if (!enabled) {
+      return;
+    }
+    synchronized (this) {
+      Entry cached = entries.get(key);
+      if (cached == null) {
+        return;
+      }
+      if (cached.generation + 1 != generation) {
+        entries.remove(key);
+        bytes -= cached.size;
+        return;
+      }
+      entries.put(key, new Entry(generation, cached.cachedAt, cached.payload, cached.size));
+    }
+  }
+
+  void invalidate(String key) {
+    if (!enabled) {
+      return;
+    }
+    synchronized (this) {
+      Entry removed = entries.remove(key);
+      if (removed != null) {
+        bytes -= removed.size;
+      }
+    }
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  synchronized long bytes() {
+    return bytes;
+  }
+
+  private Maybe<UserDataSnapshot> load(String key, Maybe<UserDataSnapshot> load) {
+    return load
+        .doOnSuccess(snapshot -> put(key, snapshot.getGeneration(), snapshot))
+        .doOnComplete(() -> invalidate(key));
+  }
+
+  /** Returns the live entry for the key, dropping it once it is older than the max age. */
+  private synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && System.currentTimeMillis() - entry.cachedAt > maxAgeMs) {
+      entries.remove(key);
+      bytes -= entry.size;
+      metricsRegistry.increment(EVICTIONS);
+      return null;
+    }
+    return entry;
+  }
+
+  private void evictOverflow() {
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+      bytes -= eldest.next().getValue().size;
+      eldest.remove();
+      metricsRegistry.increment(EVICTIONS);
+    }
+  }
+
+  private UserDataSnapshot decode(String key, Entry entry) {
+    try {
+      UserDataSnapshot snapshot = SnapshotCodec.decode(bytesOf(entry));
+      snapshot.setGeneration(entry.generation);
+      return snapshot;
+    } catch (Exception e) {
+      log.warn("Dropping undecodable cached snapshot of {}", key, e);
+      invalidate(key);
+      return null;
+    }
+  }
+
+  private Object store(byte[] encoded) {
+    if (!offHeap) {
+      return encoded;
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+    buffer.put(encoded).flip();
+    return buffer;
+  }
+
+  private static byte[] bytesOf(Entry entry) {
+    if (entry.payload instanceof byte[]) {
+      return (byte[]) entry.payload;
+    }
+    ByteBuffer buffer = ((ByteBuffer) entry.payload).duplicate();
+    byte[] encoded = new byte[buffer.remaining()];
+    buffer.get(encoded);
+    return encoded;
+  }
+
+  private double ratio(String numerator, String denominator) {
+    long total = metricsRegistry.count(denominator);
+    return total == 0 ? 0d : (double) metricsRegistry.count(numerator) / total;
+  }
+
+  /** An encoded snapshot, either a heap array or a direct buffer, and its generation. */
+  private static final class Entry {
+    private final int generation;
+    private final long cachedAt;
+    private final Object payload;
+    private final int size;
+
+    private Entry(int generation, long cachedAt, Object payload, int size) {
+      this.generation = generation;
+      this.cachedAt = cachedAt;
+      this.payload = payload;
+      this.size = size;
+    }
+  }
+}
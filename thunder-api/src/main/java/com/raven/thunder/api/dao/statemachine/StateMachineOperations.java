@@ -0,0 +1,270 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Value;
+import com.aerospike.client.cdt.CTX;
+import com.aerospike.client.cdt.MapOperation;
+import com.aerospike.client.cdt.MapOrder;
+import com.aerospike.client.cdt.MapPolicy;
+import com.aerospike.client.cdt.MapReturnType;
+import com.aerospike.client.cdt.MapWriteFlags;
+import com.aerospike.client.exp.Exp;
+import com.aerospike.client.exp.ExpOperation;
+import com.aerospike.client.exp.ExpWriteFlags;
+import com.aerospike.client.exp.MapExp;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.ExposureCounter;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.util.ParseUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Builds the bins and operations for the map based state machine layout.
+ *
+ * <p>{@link #merge} mirrors {@code StateMachineUtil.mergeDeltaSnapshot} on the server: a delta
+ * state machine replaces the stored one only when its {@code lastTransitionAt} is not older, and a
+ * delta flagged with {@code reset} removes it under the same condition.
+ */
+final class StateMachineOperations {
+
+  /** Inserts a map entry only when the key is absent, without failing the whole operate call. */
+  private static final MapPolicy CREATE_ONLY =
+      new MapPolicy(MapOrder.UNORDERED, MapWriteFlags.CREATE_ONLY | MapWriteFlags.NO_FAIL);
+
+  private static final MapPolicy UPSERT = new MapPolicy(MapOrder.UNORDERED, MapWriteFlags.DEFAULT);
+
+  private StateMachineOperations() {}
+
+  /** Bins that fully replace a record in the map layout and drop the other layouts' bins. */
+  static Bin[] mapLayoutBins(UserDataSnapshot snapshot) throws JsonProcessingException {
+    Map<Long, Map<String, Object>> stateMachines = new HashMap<>();
+    if (snapshot.getStateMachines() != null) {
+      for (Map.Entry<Long, StateMachineSnapshot> entry : snapshot.getStateMachines().entrySet()) {
+        stateMachines.put(entry.getKey(), toCTAEntry(entry.getValue()));
+      }
+    }
+
+    Map<String, String> behaviourTags = new HashMap<>();
+    if (snapshot.getBehaviourTags() != null) {
+      for (Map.Entry<String, BehaviourTagSnapshot> entry : snapshot.getBehaviourTags().entrySet()) {
+        behaviourTags.put(entry.getKey(), ParseUtil.writeValueAsString(entry.getValue()));
+      }
+    }
+
+    Bin exposures = Bin.asNull(Schema.EXPOSURES_BIN);
+    if (snapshot.getExposures() != null) {
+      Map<String, String> counters = new HashMap<>();
+      for (Map.Entry<String, ExposureCounter> entry : snapshot.getExposures().entrySet()) {
+        counters.put(entry.getKey(), ParseUtil.writeValueAsString(entry.getValue()));
+      }
+      exposures = new Bin(Schema.EXPOSURES_BIN, Value.get(counters));
+    }
+
+    return new Bin[] {
+      new Bin(Schema.STATE_MACHINES_BIN, Value.get(stateMachines)),
+      new Bin(Schema.BEHAVIOUR_TAGS_BIN, Value.get(behaviourTags)),
+      exposures,
+      Bin.asNull(Schema.SNAPSHOT_BIN),
+      Bin.asNull(Schema.BLOB_BIN)
+    };
+  }
+
+  /** Bins that fully replace a record in the binary layout and drop the other layouts' bins. */
+  static Bin[] binaryLayoutBins(UserDataSnapshot snapshot) throws JsonProcessingException {
+    return new Bin[] {
+      new Bin(Schema.BLOB_BIN, SnapshotCodec.encode(snapshot)),
+      Bin.asNull(Schema.STATE_MACHINES_BIN),
+      Bin.asNull(Schema.BEHAVIOUR_TAGS_BIN),
+      Bin.asNull(Schema.EXPOSURES_BIN),
+      Bin.asNull(Schema.SNAPSHOT_BIN)
+    };
+  }
+
+  /** Operations applying a client delta in place; empty when the delta carries nothing. */
+  static List<Operation> merge(CTASnapshotRequest delta) throws JsonProcessingException {
+    List<Operation> operations = new ArrayList<>();
+
+    if (delta.getCtas() != null) {
+      for (StateMachineSnapshot ctaDelta : delta.getCtas()) {
+        operations.addAll(mergeCTA(ctaDelta));
+      }
+    }
+
+    if (delta.getBehaviourTags() != null && !delta.getBehaviourTags().isEmpty()) {
+      Map<Value, Value> tags = new HashMap<>();
+      for (BehaviourTagSnapshot tag : delta.getBehaviourTags()) {
+        tags.put(
+            Value.get(tag.getBehaviourTagName()), Value.get(ParseUtil.writeValueAsString(tag)));
+      }
+      operations.add(MapOperation.putItems(UPSERT, Schema.BEHAVIOUR_TAGS_BIN, tags));
+    }
+
+    return operations;
+  }
+
+  /**
+   * An expression, to evaluate after {@link #merge}, that is true when the merge left a CTA of the
+   * delta with more groups than its cap or the record over the byte budget; null when there is
+   * nothing to check. The record size is the stored one from before the call, so a merge that
+   * grows the record past the budget is caught by the next one; it is 0 in namespaces that do not
+   * persist records, which leaves the budget there to whole-snapshot writes.
+   *
+   * @param delta the delta that was merged
+   * @param maxGroups the group cap of a CTA, 0 for none
+   * @param maxRecordBytes the byte budget, 0 for none
+   */
+  static Exp overLimits(
+      CTASnapshotRequest delta, ToIntFunction<Long> maxGroups, int maxRecordBytes) {
+    List<Exp> conditions = new ArrayList<>();
+    if (delta.getCtas() != null) {
+      for (StateMachineSnapshot ctaDelta : delta.getCtas()) {
+        Long ctaId = Long.parseLong(ctaDelta.getCtaId());
+        int cap = maxGroups.applyAsInt(ctaId);
+        if (cap > 0) {
+          conditions.add(
+              Exp.gt(
+                  MapExp.size(
+                      Exp.mapBin(Schema.STATE_MACHINES_BIN),
+                      CTX.mapKey(Value.get(ctaId)),
+                      CTX.mapKey(Value.get(Schema.ACTIVE_STATE_MACHINES))),
+                  Exp.val(cap)));
+        }
+      }
+    }
+    if (maxRecordBytes > 0) {
+      conditions.add(Exp.gt(Exp.deviceSize(), Exp.val(maxRecordBytes)));
+    }
+    if (conditions.isEmpty()) {
+      return null;
+    }
+    return conditions.size() == 1 ? conditions.get(0) : Exp.or(conditions.toArray(new Exp[0]));
+  }
+
+  private static List<Operation> mergeCTA(StateMachineSnapshot ctaDelta) {
+    List<Operation> operations = new ArrayList<>();
+    Value ctaId = Value.get(Long.parseLong(ctaDelta.getCtaId()));
+    CTX ctaCtx = CTX.mapKey(ctaId);
+    CTX groupsCtx = CTX.mapKey(Value.get(Schema.ACTIVE_STATE_MACHINES));
+
+    operations.add(
+        MapOperation.put(
+            CREATE_ONLY,
+            Schema.STATE_MACHINES_BIN,
+            ctaId,
+            Value.get(Map.of(Schema.ACTIVE_STATE_MACHINES, Map.of()))));
+
+    if (ctaDelta.getActiveStateMachines() != null) {
+      for (Map.Entry<String, StateMachine> entry : ctaDelta.getActiveStateMachines().entrySet()) {
+        operations.addAll(mergeStateMachine(entry.getKey(), entry.getValue(), ctaCtx, groupsCtx));
+      }
+    }
+
+    // CTA metadata always follows the latest delta, as in the in-memory merge
+    operations.add(putOrRemove(Schema.RESET_AT, ctaDelta.getResetAt(), ctaCtx));
+    operations.add(putOrRemove(Schema.ACTION_DONE_AT, ctaDelta.getActionDoneAt(), ctaCtx));
+    return operations;
+  }
+
+  private static List<Operation> mergeStateMachine(
+      String groupId, StateMachine delta, CTX ctaCtx, CTX groupsCtx) {
+    Map<String, Object> deltaEntry = toStateMachineEntry(delta);
+
+    // Seeding the group first guarantees the comparison below always sees an integer
+    Operation seed =
+        MapOperation.put(
+            CREATE_ONLY,
+            Schema.STATE_MACHINES_BIN,
+            Value.get(groupId),
+            Value.get(deltaEntry),
+            ctaCtx,
+            groupsCtx);
+
+    Exp storedTransitionAt =
+        MapExp.getByKey(
+            MapReturnType.VALUE,
+            Exp.Type.INT,
+            Exp.val(Schema.LAST_TRANSITION_AT),
+            Exp.mapBin(Schema.STATE_MACHINES_BIN),
+            ctaCtx,
+            groupsCtx,
+            CTX.mapKey(Value.get(groupId)));
+
+    Exp apply =
+        Boolean.TRUE.equals(delta.getReset())
+            ? MapExp.removeByKey(
+                Exp.val(groupId), Exp.mapBin(Schema.STATE_MACHINES_BIN), ctaCtx, groupsCtx)
+            : MapExp.put(
+                UPSERT,
+                Exp.val(groupId),
+                Exp.val(deltaEntry),
+                Exp.mapBin(Schema.STATE_MACHINES_BIN),
+                ctaCtx,
+                groupsCtx);
+
+    // An unknown result leaves the bin untouched when the stored state machine is newer
+    Operation conditionalWrite =
+        ExpOperation.write(
+            Schema.STATE_MACHINES_BIN,
+            Exp.build(
+                Exp.cond(
+                    Exp.le(storedTransitionAt, Exp.val(delta.getLastTransitionAt())),
+                    apply,
+                    Exp.unknown())),
+            ExpWriteFlags.EVAL_NO_FAIL);
+
+    return List.of(seed, conditionalWrite);
+  }
+
+  private static Operation putOrRemove(String key, List<Long> value, CTX ctaCtx) {
+    if (value == null) {
+      return MapOperation.removeByKey(
+          Schema.STATE_MACHINES_BIN, Value.get(key), MapReturnType.NONE, ctaCtx);
+    }
+    return MapOperation.put(
+        UPSERT, Schema.STATE_MACHINES_BIN, Value.get(key), Value.get(value), ctaCtx);
+  }
+
+  private static Map<String, Object> toCTAEntry(StateMachineSnapshot snapshot) {
+    Map<String, Object> groups = new HashMap<>();
+    if (snapshot.getActiveStateMachines() != null) {
+      for (Map.Entry<String, StateMachine> entry : snapshot.getActiveStateMachines().entrySet()) {
+        groups.put(entry.getKey(), toStateMachineEntry(entry.getValue()));
+      }
+    }
+
+    Map<String, Object> entry = new HashMap<>();
+    entry.put(Schema.ACTIVE_STATE_MACHINES, groups);
+    if (snapshot.getResetAt() != null) {
+      entry.put(Schema.RESET_AT, snapshot.getResetAt());
+    }
+    if (snapshot.getActionDoneAt() != null) {
+      entry.put(Schema.ACTION_DONE_AT, snapshot.getActionDoneAt());
+    }
+    return entry;
+  }
+
+  /** The {@code reset} flag is a request-only instruction and is never stored. */
+  private static Map<String, Object> toStateMachineEntry(StateMachine stateMachine) {
+    Map<String, Object> entry = new HashMap<>();
+    putIfNotNull(entry, Schema.CURRENT_STATE, stateMachine.getCurrentState());
+    putIfNotNull(entry, Schema.LAST_TRANSITION_AT, stateMachine.getLastTransitionAt());
+    putIfNotNull(entry, Schema.CONTEXT, stateMachine.getContext());
+    putIfNotNull(entry, Schema.CREATED_AT, stateMachine.getCreatedAt());
+    return entry;
+  }
+
+  private static void putIfNotNull(Map<String, Object> entry, String key, Object value) {
+    if (value != null) {
+      entry.put(key, value);
+    }
+  }
+}
@@ -1,17 +1,78 @@
 package com.raven.thunder.api.dao.statemachine;
 
 import com.aerospike.client.Record;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.ExposureCounter;
+import com.raven.thunder.api.model.StateMachineSnapshot;
 import com.raven.thunder.api.model.UserDataSnapshot;
 import com.raven.thunder.core.util.ParseUtil;
 import io.reactivex.rxjava3.functions.Function;
+import java.util.HashMap;
+import java.util.Map;
 
+/** Reads the binary, map bin and legacy JSON layouts, whichever the record holds. */
 class StateMachineRecordMapper implements Function<Record, UserDataSnapshot> {
   @Override
   public UserDataSnapshot apply(Record record) throws Exception {
-    if (record.bins.get(Schema.SNAPSHOT_BIN) == null) {
+    UserDataSnapshot snapshot = read(record);
+    if (snapshot != null) {
+      snapshot.setGeneration(record.generation);
+      snapshot.setTimeToLive(record.getTimeToLive());
+    }
+    return snapshot;
+  }
+
+  private UserDataSnapshot read(Record record) throws Exception {
+    Object blob = record.bins.get(Schema.BLOB_BIN);
+    if (blob instanceof byte[]) {
+      return SnapshotCodec.decode((byte[]) blob);
+    }
+
+    if (record.bins.get(Schema.SNAPSHOT_BIN) != null) {
+      return ParseUtil.parse((String) record.bins.get(Schema.SNAPSHOT_BIN), UserDataSnapshot.class);
+    }
+
+    Map<?, ?> stateMachinesBin = record.getMap(Schema.STATE_MACHINES_BIN);
+    Map<?, ?> behaviourTagsBin = record.getMap(Schema.BEHAVIOUR_TAGS_BIN);
+    if (stateMachinesBin == null && behaviourTagsBin == null) {
       return null;
     }
 
-    return ParseUtil.parse((String) record.bins.get(Schema.SNAPSHOT_BIN), UserDataSnapshot.class);
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    if (stateMachinesBin != null) {
+      for (Map.Entry<?, ?> entry : stateMachinesBin.entrySet()) {
+        Long ctaId = ((Number) entry.getKey()).longValue();
+        @SuppressWarnings("unchecked")
+        StateMachineSnapshot snapshot =
+            ParseUtil.parse((Map<String, Object>) entry.getValue(), StateMachineSnapshot.class);
+        snapshot.setCtaId(String.valueOf(ctaId));
+        if (snapshot.getActiveStateMachines() == null) {
+          snapshot.setActiveStateMachines(new HashMap<>());
+        }
+        stateMachines.put(ctaId, snapshot);
+      }
+    }
+
+    Map<String, BehaviourTagSnapshot> behaviourTags = new HashMap<>();
+    if (behaviourTagsBin != null) {
+      for (Map.Entry<?, ?> entry : behaviourTagsBin.entrySet()) {
+        behaviourTags.put(
+            (String) entry.getKey(),
+            ParseUtil.parse((String) entry.getValue(), BehaviourTagSnapshot.class));
+      }
+    }
+
+    UserDataSnapshot snapshot = new UserDataSnapshot(stateMachines, behaviourTags);
+    Map<?, ?> exposuresBin = record.getMap(Schema.EXPOSURES_BIN);
+    if (exposuresBin != null) {
+      Map<String, ExposureCounter> exposures = new HashMap<>();
+      for (Map.Entry<?, ?> entry : exposuresBin.entrySet()) {
+        exposures.put(
+            (String) entry.getKey(),
+            ParseUtil.parse((String) entry.getValue(), ExposureCounter.class));
+      }
+      snapshot.setExposures(exposures);
+    }
+    return snapshot;
   }
 }
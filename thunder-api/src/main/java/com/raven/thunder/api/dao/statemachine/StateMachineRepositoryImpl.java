@@ -1,19 +1,51 @@
 package com.raven.thunder.api.dao.statemachine;
 
+import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
-import com.aerospike.client.Value;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.exp.Exp;
+import com.aerospike.client.exp.ExpOperation;
+import com.aerospike.client.exp.ExpReadFlags;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.ScanPolicy;
 import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.client.query.PartitionFilter;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.inject.Inject;
+import com.raven.thunder.api.dao.SnapshotExpiry;
+import com.raven.thunder.api.dao.SnapshotLimits;
 import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.error.ServiceError;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
 import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.util.StateMachineUtil;
 import com.raven.thunder.core.client.AerospikeClient;
 import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.NearCacheConfig;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.config.StateMachineFormat;
 import com.raven.thunder.core.dao.AerospikeRepository;
-import com.raven.thunder.core.util.ParseUtil;
+import com.raven.thunder.core.exception.ThunderException;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,40 +53,544 @@ import lombok.extern.slf4j.Slf4j;
 public class StateMachineRepositoryImpl extends AerospikeRepository
     implements StateMachineRepository {
 
+  /** Write expiration that leaves a record's TTL as it is. */
+  private static final int KEEP_TTL = -2;
+
+  /** Result bin of the limit check appended to in-place merges. */
+  private static final String OVER_LIMITS = "overLimits";
+
+  static final String WRITES = "statemachine.writes";
+  static final String WRITE_CONFLICTS = "statemachine.write.conflicts";
+  static final String WRITE_RETRIES = "statemachine.write.retries";
+  static final String WRITE_RETRIES_EXHAUSTED = "statemachine.write.retries.exhausted";
+  static final String TOUCHES = "statemachine.touches";
+  static final String TOUCH_FAILURES = "statemachine.touch.failures";
+  static final String SWEEP_SCANNED = "statemachine.sweep.scanned";
+  static final String SWEEP_REWRITTEN = "statemachine.sweep.rewritten";
+  static final String SWEEP_DELETED = "statemachine.sweep.deleted";
+  static final String SWEEP_CONFLICTS = "statemachine.sweep.conflicts";
+  static final String SWEEP_UNKEYED = "statemachine.sweep.unkeyed";
+  static final String SWEEP_FAILURES = "statemachine.sweep.failures";
+  static final String BUDGET_EXCEEDED = "statemachine.budget.exceeded";
+  static final String BUDGET_EVICTIONS = "statemachine.budget.evictions";
+  static final String BUDGET_REJECTED = "statemachine.budget.rejected";
+  static final String MERGE_OVER_LIMITS = "statemachine.merge.overlimits";
+
   private final String namespace;
+  private final StateMachineFormat format;
+  private final int maxRetries;
+  private final long backoffMs;
+  private final int maxRecordBytes;
+  private final MetricsRegistry metricsRegistry;
 
   private final StateMachineRecordMapper stateMachineRecordMapper = new StateMachineRecordMapper();
+  private final SnapshotNearCache nearCache;
+  private final KnownUsersFilter knownUsers;
+  private final SnapshotExpiry expiry;
+  private final SnapshotLimits limits;
 
   /**
+   * Replaces bins of a record still at the generation it was read at.
+   *
    * @see <a
    *     href="https://discuss.aerospike.com/t/faq-what-is-difference-between-update-and-replace/5512">Upsert
    *     Performance</a>
    */
   private final WritePolicy upsertWritePolicy = new WritePolicy();
 
+  /** Creates a record that did not exist when it was read. */
+  private final WritePolicy createWritePolicy = new WritePolicy();
+
+  /** Rejects in-place merges on records that are not in the map layout. */
+  private final WritePolicy mergeWritePolicy = new WritePolicy();
+
+  /** Refreshes the TTL of a record that is read but not written. */
+  private final WritePolicy touchWritePolicy = new WritePolicy();
+
+  /** Reads whole records for the archival sweep; the throttle is set per sweep. */
+  private final ScanPolicy sweepScanPolicy = new ScanPolicy();
+
   @Inject
-  public StateMachineRepositoryImpl(AerospikeConfig config, AerospikeClient client) {
+  public StateMachineRepositoryImpl(
+      AerospikeConfig config,
+      AerospikeClient client,
+      NearCacheConfig nearCacheConfig,
+      KnownUsersFilter knownUsers,
+      SnapshotExpiry expiry,
+      SnapshotLimits limits,
+      SnapshotLimitsConfig limitsConfig,
+      MetricsRegistry metricsRegistry) {
     super(config, client);
     this.namespace = config.getUserDataNamespace();
+    this.format = config.getStateMachineFormatOrDefault();
+    this.maxRetries = config.getWriteConflictMaxRetriesOrDefault();
+    this.backoffMs = config.getWriteConflictBackoffInterval().getMs();
+    this.maxRecordBytes = limitsConfig.getMaxRecordBytesOrDefault();
+    this.metricsRegistry = metricsRegistry;
+    this.nearCache = new SnapshotNearCache(nearCacheConfig, metricsRegistry);
+    this.knownUsers = knownUsers;
+    this.expiry = expiry;
+    this.limits = limits;
 
+    // Records carry their user key so the archival sweep can tell which tenant they belong to
     setDefaultWritePolicyParams(upsertWritePolicy, config);
+    upsertWritePolicy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+    upsertWritePolicy.sendKey = true;
+
+    setDefaultWritePolicyParams(createWritePolicy, config);
+    createWritePolicy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+    createWritePolicy.sendKey = true;
+
+    setDefaultWritePolicyParams(mergeWritePolicy, config);
+    mergeWritePolicy.sendKey = true;
+    mergeWritePolicy.filterExp =
+        Exp.build(
+            Exp.not(Exp.or(Exp.binExists(Schema.SNAPSHOT_BIN), Exp.binExists(Schema.BLOB_BIN))));
+    mergeWritePolicy.failOnFilteredOut = true;
+
+    setDefaultWritePolicyParams(touchWritePolicy, config);
+    touchWritePolicy.recordExistsAction = RecordExistsAction.UPDATE_ONLY;
+    touchWritePolicy.sendKey = true;
+
+    sweepScanPolicy.socketTimeout =
+        Math.toIntExact(config.getBulkReadSocketTimeoutInterval().getMs());
   }
 
   @Override
   public Maybe<UserDataSnapshot> find(String tenantId, Long userId) {
+    return read(tenantId, userId, true)
+        .doOnSuccess(snapshot -> touchIfDue(tenantId, userId, snapshot));
+  }
+
+  /**
+   * Reads the user's snapshot. Plain reads trust a filter miss and return nothing; writes pass
+   * {@code skipUnknown} false and read anyway, since the user may have been written on another node
+   * since the last rebuild and a create over that record would only conflict and retry.
+   */
+  private Maybe<UserDataSnapshot> read(String tenantId, Long userId, boolean skipUnknown) {
+    Key key = key(tenantId, userId);
+    boolean known = knownUsers.mightContain(key);
+    if (!known && skipUnknown) {
+      return Maybe.empty();
+    }
+    Maybe<UserDataSnapshot> snapshot =
+        nearCache.find(
+            userKey(tenantId, userId),
+            Maybe.defer(() -> findHeader(key)),
+            Maybe.defer(() -> findRecord(key)));
+    return known
+        ? snapshot.doOnComplete(knownUsers::falsePositive)
+        : snapshot.doOnSuccess(ignored -> knownUsers.missed(key));
+  }
+
+  @Override
+  public Single<Map<Long, UserDataSnapshot>> findMany(String tenantId, List<Long> userIds) {
+    List<Long> candidates = new ArrayList<>(userIds.size());
+    List<Key> keys = new ArrayList<>(userIds.size());
+    for (Long userId : userIds) {
+      Key key = key(tenantId, userId);
+      if (knownUsers.mightContain(key)) {
+        candidates.add(userId);
+        keys.add(key);
+      }
+    }
+    return findMany(
+            keys,
+            stateMachineRecordMapper,
+            Schema.BLOB_BIN,
+            Schema.STATE_MACHINES_BIN,
+            Schema.BEHAVIOUR_TAGS_BIN,
+            Schema.EXPOSURES_BIN,
+            Schema.SNAPSHOT_BIN)
+        .flatMap(
+            results ->
+                requireSuccess(results, true)
+                    .toSingle(
+                        () -> {
+                          // Results follow the order of the keys
+                          Map<Long, UserDataSnapshot> snapshots = new HashMap<>();
+                          for (int i = 0; i < results.size(); i++) {
+                            UserDataSnapshot snapshot = results.get(i).getValue();
+                            if (snapshot != null) {
+                              snapshots.put(candidates.get(i), snapshot);
+                            }
+                          }
+                          return snapshots;
+                        }));
+  }
+
+  private Maybe<UserDataSnapshot> findRecord(Key key) {
     return find(
-        new Key(namespace, Schema.SET, tenantId + ":" + userId),
+        key,
         stateMachineRecordMapper,
+        Schema.BLOB_BIN,
+        Schema.STATE_MACHINES_BIN,
+        Schema.BEHAVIOUR_TAGS_BIN,
+        Schema.EXPOSURES_BIN,
         Schema.SNAPSHOT_BIN);
   }
 
   @Override
   @SneakyThrows(JsonProcessingException.class)
   public Single<Boolean> upsert(String tenantId, Long userId, UserDataSnapshot snapshot) {
-    Bin snapshotBin =
-        new Bin(Schema.SNAPSHOT_BIN, new Value.StringValue(ParseUtil.writeValueAsString(snapshot)));
-    return upsert(
-            upsertWritePolicy, new Key(namespace, Schema.SET, tenantId + ":" + userId), snapshotBin)
+    Bin[] bins = withinBudget(tenantId, userId, snapshot);
+    if (bins == null) {
+      return Single.error(
+          new ThunderException(
+              ServiceError.SNAPSHOT_TOO_LARGE.getErrorMessage(),
+              ServiceError.SNAPSHOT_TOO_LARGE.getErrorCode(),
+              ServiceError.SNAPSHOT_TOO_LARGE.getHttpStatusCode()));
+    }
+    Key key = key(tenantId, userId);
+    return upsert(writePolicyFor(tenantId, snapshot), key, bins)
+        .map(ignored -> true)
+        .onErrorResumeNext(e -> isConflict(e) ? Single.just(false) : Single.error(e))
+        .doOnSuccess(
+            written -> {
+              metricsRegistry.increment(written ? WRITES : WRITE_CONFLICTS);
+              // Either way the record exists now, even if the filter missed another node's write
+              knownUsers.add(key);
+              if (written) {
+                // A generation-checked write moves the record exactly one generation forward
+                nearCache.put(userKey(tenantId, userId), snapshot.getGeneration() + 1, snapshot);
+              } else {
+                nearCache.invalidate(userKey(tenantId, userId));
+              }
+            });
+  }
+
+  @Override
+  public Single<UserDataSnapshot> update(
+      String tenantId, Long userId, Predicate<UserDataSnapshot> mutation) {
+    return update(tenantId, userId, mutation, 0);
+  }
+
+  private Single<UserDataSnapshot> update(
+      String tenantId, Long userId, Predicate<UserDataSnapshot> mutation, int attempt) {
+    // Reads without touching: a touch moves the generation and would fail the write below
+    return read(tenantId, userId, false)
+        .defaultIfEmpty(new UserDataSnapshot(new HashMap<>(), new HashMap<>()))
+        .flatMap(
+            snapshot -> {
+              if (!mutation.test(snapshot)) {
+                touchIfDue(tenantId, userId, snapshot);
+                return Single.just(snapshot);
+              }
+              return upsert(tenantId, userId, snapshot)
+                  .flatMap(
+                      written ->
+                          written
+                              ? Single.just(snapshot)
+                              : retry(tenantId, userId, mutation, attempt));
+            });
+  }
+
+  private Single<UserDataSnapshot> retry(
+      String tenantId, Long userId, Predicate<UserDataSnapshot> mutation, int attempt) {
+    if (attempt >= maxRetries) {
+      metricsRegistry.increment(WRITE_RETRIES_EXHAUSTED);
+      log.warn(
+          "Gave up writing state machines for {}:{} after {} conflicts",
+          tenantId,
+          userId,
+          attempt + 1);
+      return Single.error(
+          new ThunderException(
+              ServiceError.SNAPSHOT_WRITE_CONFLICT.getErrorMessage(),
+              ServiceError.SNAPSHOT_WRITE_CONFLICT.getErrorCode(),
+              ServiceError.SNAPSHOT_WRITE_CONFLICT.getHttpStatusCode()));
+    }
+    metricsRegistry.increment(WRITE_RETRIES);
+    return Single.timer(backoffWithJitter(attempt), TimeUnit.MILLISECONDS)
+        .flatMap(ignored -> update(tenantId, userId, mutation, attempt + 1));
+  }
+
+  /** Full jitter over an exponentially growing window, so racing writers spread out. */
+  private long backoffWithJitter(int attempt) {
+    long window = backoffMs << Math.min(attempt, 10);
+    return ThreadLocalRandom.current().nextLong(window + 1);
+  }
+
+  @Override
+  @SneakyThrows(JsonProcessingException.class)
+  public Single<Boolean> merge(String tenantId, Long userId, CTASnapshotRequest deltaSnapshot) {
+    if (format == StateMachineFormat.BINARY) {
+      return mergeInMemory(tenantId, userId, deltaSnapshot);
+    }
+
+    List<Operation> operations = StateMachineOperations.merge(deltaSnapshot);
+    if (operations.isEmpty()) {
+      return Single.just(true);
+    }
+    Exp overLimits =
+        StateMachineOperations.overLimits(
+            deltaSnapshot, ctaId -> limits.maxGroups(tenantId, ctaId), maxRecordBytes);
+    if (overLimits != null) {
+      operations.add(ExpOperation.read(OVER_LIMITS, Exp.build(overLimits), ExpReadFlags.DEFAULT));
+    }
+    operations.add(Operation.getHeader());
+
+    // A single operate() is atomic on the server, so this path needs no generation check
+    Key key = key(tenantId, userId);
+    WritePolicy writePolicy = new WritePolicy(mergeWritePolicy);
+    writePolicy.expiration = expiry.ttlSeconds(tenantId);
+    return operate(writePolicy, key, operations.toArray(new Operation[0]))
+        .flatMap(
+            record -> {
+              knownUsers.add(key);
+              nearCache.merged(userKey(tenantId, userId), record.generation, deltaSnapshot);
+              if (!record.getBoolean(OVER_LIMITS)) {
+                return Single.just(true);
+              }
+              // Rare enough to afford the whole-snapshot rewrite, which enforces every limit
+              metricsRegistry.increment(MERGE_OVER_LIMITS);
+              return update(
+                      tenantId,
+                      userId,
+                      snapshot -> {
+                        limits.enforce(tenantId, snapshot);
+                        return true;
+                      })
+                  .map(ignored -> true);
+            })
+        .onErrorResumeNext(
+            e ->
+                isOtherLayout(e)
+                    ? mergeInMemory(tenantId, userId, deltaSnapshot)
+                    : Single.error(e));
+  }
+
+  /**
+   * Reads, merges and rewrites the whole snapshot in the configured format. Records in another
+   * layout are migrated lazily this way.
+   */
+  private Single<Boolean> mergeInMemory(
+      String tenantId, Long userId, CTASnapshotRequest deltaSnapshot) {
+    return update(
+            tenantId,
+            userId,
+            snapshot -> {
+              StateMachineUtil.mergeDeltaSnapshot(snapshot, deltaSnapshot);
+              limits.enforce(tenantId, snapshot);
+              return true;
+            })
         .map(ignored -> true);
   }
+
+  @Override
+  public Completable sweep(
+      int partitionBegin,
+      int partitionCount,
+      int recordsPerSecond,
+      BiPredicate<String, UserDataSnapshot> archiver) {
+    return Completable.fromAction(
+            () -> {
+              ScanPolicy scanPolicy = new ScanPolicy(sweepScanPolicy);
+              scanPolicy.recordsPerSecond = recordsPerSecond;
+              client
+                  .getClient()
+                  .scanPartitions(
+                      scanPolicy,
+                      PartitionFilter.range(partitionBegin, partitionCount),
+                      namespace,
+                      Schema.SET,
+                      (key, record) -> sweep(key, record, archiver));
+            })
+        .subscribeOn(Schedulers.io());
+  }
+
+  /** Archives one scanned record; a record that fails is counted and left for the next sweep. */
+  private void sweep(Key key, Record record, BiPredicate<String, UserDataSnapshot> archiver) {
+    metricsRegistry.increment(SWEEP_SCANNED);
+    if (key.userKey == null) {
+      metricsRegistry.increment(SWEEP_UNKEYED);
+      return;
+    }
+    String userKey = key.userKey.toString();
+    String tenantId = userKey.substring(0, Math.max(0, userKey.lastIndexOf(':')));
+    try {
+      UserDataSnapshot snapshot = stateMachineRecordMapper.apply(record);
+      if (snapshot == null || !archiver.test(tenantId, snapshot)) {
+        return;
+      }
+      if (isEmpty(snapshot)) {
+        WritePolicy deletePolicy = new WritePolicy(upsertWritePolicy);
+        deletePolicy.generation = snapshot.getGeneration();
+        client.getClient().delete(deletePolicy, key);
+        metricsRegistry.increment(SWEEP_DELETED);
+      } else {
+        client.getClient().put(rewritePolicyFor(snapshot), key, bins(snapshot));
+        metricsRegistry.increment(SWEEP_REWRITTEN);
+      }
+      nearCache.invalidate(userKey);
+    } catch (AerospikeException e) {
+      if (!isConflict(e)) {
+        throw e;
+      }
+      // The user was active meanwhile, and that write archived the snapshot anyway
+      metricsRegistry.increment(SWEEP_CONFLICTS);
+    } catch (Exception e) {
+      metricsRegistry.increment(SWEEP_FAILURES);
+      log.warn("Failed to archive state machines of {}", userKey, e);
+    }
+  }
+
+  private Bin[] bins(UserDataSnapshot snapshot) throws JsonProcessingException {
+    return format == StateMachineFormat.BINARY
+        ? StateMachineOperations.binaryLayoutBins(snapshot)
+        : StateMachineOperations.mapLayoutBins(snapshot);
+  }
+
+  /**
+   * Encodes the snapshot, evicting its least recently advanced state machines across CTAs until
+   * the record fits the byte budget. Returns null for a snapshot that still does not fit, which is
+   * rejected rather than written, as the server would refuse it once it outgrows the write block.
+   */
+  private Bin[] withinBudget(String tenantId, Long userId, UserDataSnapshot snapshot)
+      throws JsonProcessingException {
+    Bin[] bins = bins(snapshot);
+    if (maxRecordBytes <= 0 || sizeOf(bins) <= maxRecordBytes) {
+      return bins;
+    }
+    metricsRegistry.increment(BUDGET_EXCEEDED);
+
+    List<Evictable> evictables = new ArrayList<>();
+    if (snapshot.getStateMachines() != null) {
+      for (StateMachineSnapshot ctaSnapshot : snapshot.getStateMachines().values()) {
+        Map<String, StateMachine> active = ctaSnapshot.getActiveStateMachines();
+        if (active != null) {
+          for (Map.Entry<String, StateMachine> entry : active.entrySet()) {
+            Long lastTransitionAt = entry.getValue().getLastTransitionAt();
+            evictables.add(
+                new Evictable(
+                    active,
+                    entry.getKey(),
+                    lastTransitionAt == null ? Long.MIN_VALUE : lastTransitionAt));
+          }
+        }
+      }
+    }
+    evictables.sort(Comparator.comparingLong(Evictable::lastTransitionAt));
+
+    // Evict an eighth of what is left per round, so a large overshoot needs few re-encodes
+    int evicted = 0;
+    while (sizeOf(bins) > maxRecordBytes && evicted < evictables.size()) {
+      int round = Math.max(1, (evictables.size() - evicted) / 8);
+      for (int i = 0; i < round && evicted < evictables.size(); i++, evicted++) {
+        Evictable evictable = evictables.get(evicted);
+        evictable.active().remove(evictable.groupId());
+      }
+      bins = bins(snapshot);
+    }
+    metricsRegistry.increment(BUDGET_EVICTIONS, evicted);
+
+    if (sizeOf(bins) > maxRecordBytes) {
+      metricsRegistry.increment(BUDGET_REJECTED);
+      log.warn(
+          "State of {}:{} exceeds its {} byte budget without state machines",
+          tenantId,
+          userId,
+          maxRecordBytes);
+      return null;
+    }
+    log.warn(
+        "Evicted {} state machines of {}:{} to fit its {} byte budget",
+        evicted,
+        tenantId,
+        userId,
+        maxRecordBytes);
+    return bins;
+  }
+
+  private static int sizeOf(Bin[] bins) {
+    int size = 0;
+    for (Bin bin : bins) {
+      size += bin.name.length() + bin.value.estimateSize();
+    }
+    return size;
+  }
+
+  /** A state machine the byte budget may evict, with the map holding it. */
+  private record Evictable(
+      Map<String, StateMachine> active, String groupId, long lastTransitionAt) {}
+
+  private static boolean isEmpty(UserDataSnapshot snapshot) {
+    return (snapshot.getStateMachines() == null || snapshot.getStateMachines().isEmpty())
+        && (snapshot.getBehaviourTags() == null || snapshot.getBehaviourTags().isEmpty())
+        && (snapshot.getExposures() == null || snapshot.getExposures().isEmpty());
+  }
+
+  private WritePolicy writePolicyFor(String tenantId, UserDataSnapshot snapshot) {
+    WritePolicy writePolicy;
+    if (snapshot.getGeneration() == 0) {
+      writePolicy = new WritePolicy(createWritePolicy);
+    } else {
+      writePolicy = new WritePolicy(upsertWritePolicy);
+      writePolicy.generation = snapshot.getGeneration();
+    }
+    writePolicy.expiration = expiry.ttlSeconds(tenantId);
+    return writePolicy;
+  }
+
+  /**
+   * Rewrites a swept record at its read generation and keeps its TTL, so archiving an inactive
+   * user's state never renews it; only the user's own activity does.
+   */
+  private WritePolicy rewritePolicyFor(UserDataSnapshot snapshot) {
+    WritePolicy writePolicy = new WritePolicy(upsertWritePolicy);
+    writePolicy.generation = snapshot.getGeneration();
+    writePolicy.expiration = KEEP_TTL;
+    return writePolicy;
+  }
+
+  /**
+   * Refreshes the TTL of a record that was read but not written, once at least the touch interval
+   * of it has passed, so reads add at most one write per user and interval across all nodes.
+   * Records that never expire are touched to give them a TTL.
+   */
+  private void touchIfDue(String tenantId, Long userId, UserDataSnapshot snapshot) {
+    int ttlSeconds = expiry.ttlSeconds(tenantId);
+    if (ttlSeconds <= 0 || snapshot.getGeneration() == 0) {
+      return;
+    }
+    int timeToLive = snapshot.getTimeToLive();
+    if (timeToLive >= 0 && ttlSeconds - timeToLive < expiry.touchIntervalSeconds()) {
+      return;
+    }
+    WritePolicy writePolicy = new WritePolicy(touchWritePolicy);
+    writePolicy.expiration = ttlSeconds;
+    String userKey = userKey(tenantId, userId);
+    operate(
+            writePolicy,
+            key(tenantId, userId),
+            new Operation[] {Operation.touch(), Operation.getHeader()})
+        .subscribe(
+            record -> {
+              metricsRegistry.increment(TOUCHES);
+              nearCache.touched(userKey, record.generation);
+            },
+            error -> {
+              metricsRegistry.increment(TOUCH_FAILURES);
+              log.debug("Failed to refresh TTL of {}", userKey, error);
+            });
+  }
+
+  private static boolean isConflict(Throwable e) {
+    return e instanceof AerospikeException
+        && (((AerospikeException) e).getResultCode() == ResultCode.GENERATION_ERROR
+            || ((AerospikeException) e).getResultCode() == ResultCode.KEY_EXISTS_ERROR);
+  }
+
+  private static boolean isOtherLayout(Throwable e) {
+    return e instanceof AerospikeException
+        && ((AerospikeException) e).getResultCode() == ResultCode.FILTERED_OUT;
+  }
+
+  private Key key(String tenantId, Long userId) {
+    return new Key(namespace, Schema.SET, userKey(tenantId, userId));
+  }
+
+  private static String userKey(String tenantId, Long userId) {
+    return tenantId + ":" + userId;
+  }
 }
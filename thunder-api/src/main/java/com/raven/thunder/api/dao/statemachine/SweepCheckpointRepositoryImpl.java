@@ -0,0 +1,136 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.Value;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+import com.google.inject.Inject;
+import com.raven.thunder.api.dao.SweepCheckpointRepository;
+import com.raven.thunder.api.model.SweepCheckpoint;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.dao.AerospikeRepository;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SweepCheckpointRepositoryImpl extends AerospikeRepository
+    implements SweepCheckpointRepository {
+
+  private final Key key;
+  private final Key leaseKey;
+  private final WritePolicy replaceWritePolicy = new WritePolicy();
+  private final WritePolicy createLeasePolicy = new WritePolicy();
+  private final WritePolicy renewLeasePolicy = new WritePolicy();
+
+  @Inject
+  public SweepCheckpointRepositoryImpl(AerospikeConfig config, AerospikeClient client) {
+    super(config, client);
+    this.key =
+        new Key(config.getUserDataNamespace(), Schema.SWEEP_SET, Schema.SWEEP_CHECKPOINT_KEY);
+
+    setDefaultWritePolicyParams(replaceWritePolicy, config);
+    replaceWritePolicy.sendKey = true;
+    replaceWritePolicy.recordExistsAction = RecordExistsAction.REPLACE;
+
+    this.leaseKey =
+        new Key(config.getUserDataNamespace(), Schema.SWEEP_SET, Schema.SWEEP_LEASE_KEY);
+
+    setDefaultWritePolicyParams(createLeasePolicy, config);
+    createLeasePolicy.sendKey = true;
+    createLeasePolicy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+
+    setDefaultWritePolicyParams(renewLeasePolicy, config);
+    renewLeasePolicy.sendKey = true;
+    renewLeasePolicy.recordExistsAction = RecordExistsAction.REPLACE_ONLY;
+    renewLeasePolicy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+  }
+
+  @Override
+  public Maybe<SweepCheckpoint> find() {
+    return find(key, SweepCheckpointRepositoryImpl::toCheckpoint);
+  }
+
+  @Override
+  public Completable save(SweepCheckpoint checkpoint) {
+    List<Integer> completedBlocks =
+        checkpoint.getCompletedBlocks() == null
+            ? new ArrayList<>()
+            : new ArrayList<>(checkpoint.getCompletedBlocks());
+    return upsert(
+            replaceWritePolicy,
+            key,
+            new Bin(Schema.SWEEP_STARTED_AT_BIN, Value.get(checkpoint.getStartedAt())),
+            new Bin(Schema.SWEEP_COMPLETED_AT_BIN, Value.get(checkpoint.getCompletedAt())),
+            new Bin(Schema.SWEEP_COMPLETED_BLOCKS_BIN, Value.get(completedBlocks)))
+        .ignoreElement();
+  }
+
+  @Override
+  public Single<Boolean> acquireLease(String owner, long expiresAt) {
+    Bin[] bins = {
+      new Bin(Schema.SWEEP_LEASE_OWNER_BIN, Value.get(owner)),
+      new Bin(Schema.SWEEP_LEASE_EXPIRES_AT_BIN, Value.get(expiresAt))
+    };
+    return find(leaseKey)
+        .flatMapSingle(
+            lease -> {
+              if (!isHeldBy(lease, owner) && !isExpired(lease)) {
+                return Single.just(false);
+              }
+              // Compare-and-set on the generation read, so only one contender takes it over
+              WritePolicy writePolicy = new WritePolicy(renewLeasePolicy);
+              writePolicy.generation = lease.generation;
+              return upsert(writePolicy, leaseKey, bins).map(ignored -> true);
+            })
+        .switchIfEmpty(
+            Single.defer(() -> upsert(createLeasePolicy, leaseKey, bins).map(ignored -> true)))
+        .onErrorResumeNext(
+            e ->
+                isConflict(e)
+                    // Lost a race; the owner may still hold it, renewed by a parallel block
+                    ? find(leaseKey)
+                        .map(lease -> isHeldBy(lease, owner) && !isExpired(lease))
+                        .defaultIfEmpty(false)
+                    : Single.error(e));
+  }
+
+  private static boolean isHeldBy(Record lease, String owner) {
+    return owner.equals(lease.getString(Schema.SWEEP_LEASE_OWNER_BIN));
+  }
+
+  private static boolean isExpired(Record lease) {
+    return lease.getLong(Schema.SWEEP_LEASE_EXPIRES_AT_BIN) <= System.currentTimeMillis();
+  }
+
+  private static boolean isConflict(Throwable e) {
+    return e instanceof AerospikeException
+        && (((AerospikeException) e).getResultCode() == ResultCode.GENERATION_ERROR
+            || ((AerospikeException) e).getResultCode() == ResultCode.KEY_EXISTS_ERROR
+            || ((AerospikeException) e).getResultCode() == ResultCode.KEY_NOT_FOUND_ERROR);
+  }
+
+  private static SweepCheckpoint toCheckpoint(Record record) {
+    Set<Integer> completedBlocks = new HashSet<>();
+    List<?> blocks = record.getList(Schema.SWEEP_COMPLETED_BLOCKS_BIN);
+    if (blocks != null) {
+      for (Object block : blocks) {
+        completedBlocks.add(((Number) block).intValue());
+      }
+    }
+    Object completedAt = record.getValue(Schema.SWEEP_COMPLETED_AT_BIN);
+    return new SweepCheckpoint(
+        record.getLong(Schema.SWEEP_STARTED_AT_BIN),
+        completedAt == null ? null : ((Number) completedAt).longValue(),
+        completedBlocks);
+  }
+}
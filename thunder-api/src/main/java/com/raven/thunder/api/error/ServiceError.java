@@ -9,7 +9,10 @@ import lombok.ToString;
 @ToString
 @RequiredArgsConstructor
 public enum ServiceError implements RestError {
-  SERVICE_UNKNOWN_EXCEPTION("thunder-api-UNKNOWN-EXCEPTION", "Something went wrong", 500);
+  SERVICE_UNKNOWN_EXCEPTION("thunder-api-UNKNOWN-EXCEPTION", "Something went wrong", 500),
+  SNAPSHOT_WRITE_CONFLICT(
+      "thunder-api-SNAPSHOT-WRITE-CONFLICT", "User state was modified concurrently, retry", 409),
+  SNAPSHOT_TOO_LARGE("thunder-api-SNAPSHOT-TOO-LARGE", "User state exceeds its size budget", 422);
 
   final String errorCode;
   final String errorMessage;
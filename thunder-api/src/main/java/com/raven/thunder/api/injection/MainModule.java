@@ -1,26 +1,50 @@
 package com.raven.thunder.api.injection;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import com.raven.thunder.api.dao.SnapshotExpiry;
+import com.raven.thunder.api.dao.SnapshotLimits;
 import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.dao.SweepCheckpointRepository;
 import com.raven.thunder.api.dao.statemachine.StateMachineRepositoryImpl;
+import com.raven.thunder.api.dao.statemachine.SweepCheckpointRepositoryImpl;
+import com.raven.thunder.api.service.EventService;
 import com.raven.thunder.api.service.SdkService;
 import com.raven.thunder.api.service.StaticDataCache;
 import com.raven.thunder.api.service.UserCohortsClient;
+import com.raven.thunder.api.service.cache.CatalogSnapshotExpiry;
+import com.raven.thunder.api.service.cache.CatalogSnapshotLimits;
 import com.raven.thunder.api.service.cache.StaticDataCacheImpl;
+import com.raven.thunder.api.service.cohort.BitmapUserCohortsClient;
 import com.raven.thunder.api.service.cohort.UserCohortsClientImpl;
+import com.raven.thunder.api.service.event.EventServiceImpl;
 import com.raven.thunder.api.service.sdk.SdkServiceImpl;
 import com.raven.thunder.core.client.AerospikeClient;
 import com.raven.thunder.core.client.AerospikeClientHolder;
 import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.ArchivalSweepConfig;
+import com.raven.thunder.core.config.CacheConfig;
+import com.raven.thunder.core.config.CohortsConfig;
 import com.raven.thunder.core.config.Config;
+import com.raven.thunder.core.config.KnownUsersConfig;
+import com.raven.thunder.core.config.NearCacheConfig;
+import com.raven.thunder.core.config.ResponseMemoConfig;
 import com.raven.thunder.core.config.ServerConfig;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.config.SnapshotTtlConfig;
+import com.raven.thunder.core.config.WriteCoalescingConfig;
 import com.raven.thunder.core.dao.BehaviourTagsRepository;
 import com.raven.thunder.core.dao.CTARepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import com.raven.thunder.core.dao.CohortRepository;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
 import com.raven.thunder.core.dao.behaviourTag.BehaviourTagRepositoryImpl;
+import com.raven.thunder.core.dao.catalog.CatalogVersionRepositoryImpl;
+import com.raven.thunder.core.dao.cohort.CohortRepositoryImpl;
 import com.raven.thunder.core.dao.cta.CTARepositoryImpl;
 import com.raven.thunder.core.dao.nudge.preview.NudgePreviewRepositoryImpl;
+import com.raven.thunder.core.metrics.MetricsRegistry;
 import com.raven.thunder.core.util.SharedDataUtils;
 import io.vertx.core.Vertx;
 import lombok.RequiredArgsConstructor;
@@ -77,6 +101,105 @@ public class MainModule extends AbstractModule {
               return config.getAerospike();
             });
 
+    // Bind CacheConfig from Config, falling back to defaults when the section is absent
+    bind(CacheConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getCache() == null) {
+                return new CacheConfig();
+              }
+              return config.getCache();
+            });
+
+    // Bind WriteCoalescingConfig from Config; coalescing stays disabled when the section is absent
+    bind(WriteCoalescingConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getWriteCoalescing() == null) {
+                return new WriteCoalescingConfig();
+              }
+              return config.getWriteCoalescing();
+            });
+
+    // Bind NearCacheConfig from Config; the near cache stays disabled when the section is absent
+    bind(NearCacheConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getNearCache() == null) {
+                return new NearCacheConfig();
+              }
+              return config.getNearCache();
+            });
+
+    // Bind KnownUsersConfig from Config; the filter stays disabled when the section is absent
+    bind(KnownUsersConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getKnownUsers() == null) {
+                return new KnownUsersConfig();
+              }
+              return config.getKnownUsers();
+            });
+
+    // Bind ResponseMemoConfig from Config; the memo stays disabled when the section is absent
+    bind(ResponseMemoConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getResponseMemo() == null) {
+                return new ResponseMemoConfig();
+              }
+              return config.getResponseMemo();
+            });
+
+    // Bind CohortsConfig from Config; cohort bitmaps are not loaded when the section is absent
+    bind(CohortsConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getCohorts() == null) {
+                return new CohortsConfig();
+              }
+              return config.getCohorts();
+            });
+
+    // Bind ArchivalSweepConfig from Config; the sweep stays disabled when the section is absent
+    bind(ArchivalSweepConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getArchivalSweep() == null) {
+                return new ArchivalSweepConfig();
+              }
+              return config.getArchivalSweep();
+            });
+
+    // Bind SnapshotTtlConfig from Config; snapshots keep the namespace TTL when it is absent
+    bind(SnapshotTtlConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getSnapshotTtl() == null) {
+                return new SnapshotTtlConfig();
+              }
+              return config.getSnapshotTtl();
+            });
+
+    // Bind SnapshotLimitsConfig from Config; the defaults apply when it is absent
+    bind(SnapshotLimitsConfig.class)
+        .toProvider(
+            () -> {
+              Config config = SharedDataUtils.get(vertx, Config.class);
+              if (config == null || config.getSnapshotLimits() == null) {
+                return new SnapshotLimitsConfig();
+              }
+              return config.getSnapshotLimits();
+            });
+
     // Bind Aerospike Client from AerospikeClientHolder (initialized in MainVerticle)
     bind(AerospikeClient.class)
         .toProvider(
@@ -93,13 +216,32 @@ public class MainModule extends AbstractModule {
     // Bind Repositories
     bind(CTARepository.class).to(CTARepositoryImpl.class).in(Singleton.class);
     bind(BehaviourTagsRepository.class).to(BehaviourTagRepositoryImpl.class).in(Singleton.class);
+    bind(CatalogVersionRepository.class).to(CatalogVersionRepositoryImpl.class).in(Singleton.class);
     bind(NudgePreviewRepository.class).to(NudgePreviewRepositoryImpl.class).in(Singleton.class);
     bind(StateMachineRepository.class).to(StateMachineRepositoryImpl.class).in(Singleton.class);
+    bind(SweepCheckpointRepository.class)
+        .to(SweepCheckpointRepositoryImpl.class)
+        .in(Singleton.class);
+    bind(CohortRepository.class).to(CohortRepositoryImpl.class).in(Singleton.class);
 
     // Bind Services
     bind(SdkService.class).to(SdkServiceImpl.class).in(Singleton.class);
-    bind(UserCohortsClient.class).to(UserCohortsClientImpl.class).in(Singleton.class);
+    bind(EventService.class).to(EventServiceImpl.class).in(Singleton.class);
+    // Every user is only in the "all" cohort unless cohort bitmaps are enabled
+    Provider<CohortsConfig> cohortsConfig = getProvider(CohortsConfig.class);
+    Provider<BitmapUserCohortsClient> bitmapCohortsClient =
+        getProvider(BitmapUserCohortsClient.class);
+    bind(UserCohortsClient.class)
+        .toProvider(
+            () ->
+                cohortsConfig.get().isEnabledOrDefault()
+                    ? bitmapCohortsClient.get()
+                    : new UserCohortsClientImpl())
+        .in(Singleton.class);
     bind(StaticDataCache.class).to(StaticDataCacheImpl.class).in(Singleton.class);
+    bind(SnapshotExpiry.class).to(CatalogSnapshotExpiry.class).in(Singleton.class);
+    bind(SnapshotLimits.class).to(CatalogSnapshotLimits.class).in(Singleton.class);
+    bind(MetricsRegistry.class).in(Singleton.class);
 
     log.info("MainModule configuration complete - all services and repositories bound");
   }
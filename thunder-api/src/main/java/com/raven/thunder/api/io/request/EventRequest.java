@@ -0,0 +1,41 @@
+package com.raven.thunder.api.io.request;
+
+import java.util.Map;
+import javax.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(
+    description =
+        "Event raised outside the client app, such as a payment or an order completion, that "
+            + "advances the user's state machines on the server.")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventRequest {
+
+  @Schema(description = "User the event belongs to", required = true, example = "12345")
+  @NotNull(message = "userId cannot be null")
+  private Long userId;
+
+  @Schema(
+      description = "Event name, matched against the events of the CTAs' state transitions",
+      required = true,
+      example = "ContestJoinedClient")
+  @NotNull(message = "eventName cannot be null")
+  private String eventName;
+
+  @Schema(
+      description = "Event properties the transition filters and group-by keys are evaluated on",
+      example = "{\"mode\": \"normal\", \"roundId\": 5}")
+  private Map<String, Object> properties;
+
+  @Schema(
+      description =
+          "Event time in milliseconds, for reference only: state machines advance at the time "
+              + "the event is received",
+      example = "1720166608502")
+  private Long timestamp;
+}
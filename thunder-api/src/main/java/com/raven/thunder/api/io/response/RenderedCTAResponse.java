@@ -0,0 +1,25 @@
+package com.raven.thunder.api.io.response;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A {@link CTAResponse} serialized once and written verbatim whenever it is returned again. The
+ * fields stay populated for in-process callers and must not be modified.
+ */
+@EqualsAndHashCode(callSuper = true)
+public final class RenderedCTAResponse extends CTAResponse {
+
+  @EqualsAndHashCode.Exclude private final RawValue json;
+
+  public RenderedCTAResponse(CTAResponse response, String json) {
+    super(response.getCtas(), response.getBehaviourTags());
+    this.json = new RawValue(json);
+  }
+
+  @JsonValue
+  public RawValue json() {
+    return json;
+  }
+}
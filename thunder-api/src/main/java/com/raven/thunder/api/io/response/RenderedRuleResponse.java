@@ -0,0 +1,36 @@
+package com.raven.thunder.api.io.response;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A {@link RuleResponse} serialized once when the catalog is loaded and embedded verbatim in every
+ * response. The fields stay populated for in-process callers and must not be modified.
+ */
+@EqualsAndHashCode(callSuper = true)
+public final class RenderedRuleResponse extends RuleResponse {
+
+  @EqualsAndHashCode.Exclude private final RawValue json;
+
+  public RenderedRuleResponse(RuleResponse rule, String json) {
+    super(
+        rule.getStateToAction(),
+        rule.getResetStates(),
+        rule.getResetCTAonFirstLaunch(),
+        rule.getContextParams(),
+        rule.getStateTransition(),
+        rule.getGroupByConfig(),
+        rule.getPriority(),
+        rule.getStateMachineTTL(),
+        rule.getCtaValidTill(),
+        rule.getActions(),
+        rule.getFrequency());
+    this.json = new RawValue(json);
+  }
+
+  @JsonValue
+  public RawValue json() {
+    return json;
+  }
+}
@@ -0,0 +1,30 @@
+package com.raven.thunder.api.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Server-side exposure count of a CTA or behaviour tag for one user: a lifetime total and counts
+ * per time bucket, with buckets sized from the window frequency they are checked against.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExposureCounter {
+
+  /** Newest {@code actionDoneAt} timestamp already counted; only used on CTA counters. */
+  private Long countedUntil;
+
+  /** Exposures counted over the lifetime of the counter. */
+  private Long total;
+
+  /** Width of each bucket in milliseconds, 0 or null when no window is tracked. */
+  private Long bucketMillis;
+
+  /** Exposures per bucket, keyed by the bucket's start time in milliseconds. */
+  private Map<Long, Integer> buckets;
+}
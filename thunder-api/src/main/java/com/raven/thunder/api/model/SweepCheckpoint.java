@@ -0,0 +1,22 @@
+package com.raven.thunder.api.model;
+
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Progress of the archival sweep, saved after each partition block so a sweep can resume. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SweepCheckpoint {
+
+  /** When the sweep started, in epoch millis. */
+  private Long startedAt;
+
+  /** When the sweep finished, in epoch millis, or null while it is in progress. */
+  private Long completedAt;
+
+  /** Partition blocks already swept. */
+  private Set<Integer> completedBlocks;
+}
@@ -1,15 +1,37 @@
 package com.raven.thunder.api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.Map;
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class UserDataSnapshot {
 
   private Map<Long, StateMachineSnapshot> stateMachines;
   private Map<String, BehaviourTagSnapshot> behaviourTags;
+
+  /** Server-side exposure counters keyed by {@code FrequencyCapUtil} counter keys. */
+  private Map<String, ExposureCounter> exposures;
+
+  /**
+   * Aerospike generation of the record this snapshot was read from, or 0 if no record existed.
+   * Writes expect it unchanged so concurrent updates are detected instead of overwritten.
+   */
+  @JsonIgnore @EqualsAndHashCode.Exclude private int generation;
+
+  /**
+   * Seconds the record had left to live when this snapshot was read, -1 if it never expires. Reads
+   * use it to refresh the TTL of records only when enough of it has passed.
+   */
+  @JsonIgnore @EqualsAndHashCode.Exclude private int timeToLive;
+
+  public UserDataSnapshot(
+      Map<Long, StateMachineSnapshot> stateMachines,
+      Map<String, BehaviourTagSnapshot> behaviourTags) {
+    this.stateMachines = stateMachines;
+    this.behaviourTags = behaviourTags;
+  }
 }
@@ -0,0 +1,107 @@
+package com.raven.thunder.api.rest;
+
+import com.google.inject.Inject;
+import com.raven.thunder.api.io.request.EventRequest;
+import com.raven.thunder.api.service.EventService;
+import com.raven.thunder.core.io.Response;
+import com.raven.thunder.core.util.ResponseWrapper;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import java.util.concurrent.CompletionStage;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.ExampleObject;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+/** Event ingestion controller for events raised outside the client app. Base path: /events */
+@Slf4j
+@Tag(
+    name = "Events",
+    description =
+        "APIs for backend services to send user events, such as payments or order completions, "
+            + "that advance CTA state machines without a client round trip.")
+@Path("/events")
+public class EventController {
+
+  private final EventService service;
+
+  @Inject
+  public EventController(EventService service) {
+    this.service = service;
+  }
+
+  @Tag(name = "Events")
+  @Operation(
+      summary = "Ingest Event",
+      description =
+          "Evaluates the event against the state transitions of the tenant's live CTAs the user "
+              + "is eligible for and applies matching transitions to the stored user snapshot. "
+              + "State machines are grouped by the rule's groupByConfig and restart once older "
+              + "than its stateMachineTTL. The client picks up the new states on its next app "
+              + "launch.",
+      operationId = "ingestEvent")
+  @APIResponse(
+      responseCode = "200",
+      description = "Event applied; data is true if any state machine advanced",
+      content =
+          @Content(
+              mediaType = MediaType.APPLICATION_JSON,
+              schema = @Schema(type = SchemaType.BOOLEAN),
+              examples = {
+                @ExampleObject(
+                    name = "Success Response",
+                    summary = "State machine advanced",
+                    value =
+                        "{\n"
+                            + "  \"success\": true,\n"
+                            + "  \"data\": true,\n"
+                            + "  \"statusCode\": 200\n"
+                            + "}")
+              }))
+  @APIResponse(responseCode = "400", description = "Missing userId or eventName")
+  @APIResponse(responseCode = "409", description = "User state was modified concurrently, retry")
+  @POST
+  @Path("/")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public CompletionStage<Response<Boolean>> ingest(
+      @Parameter(
+              name = "x-tenant-id",
+              description = "Tenant identifier",
+              required = false,
+              example = "tenant1")
+          @DefaultValue("default")
+          @HeaderParam("x-tenant-id")
+          String tenantId,
+      @RequestBody(
+              description = "The event with its user and properties",
+              required = true,
+              content =
+                  @Content(
+                      mediaType = MediaType.APPLICATION_JSON,
+                      schema = @Schema(implementation = EventRequest.class),
+                      examples = {
+                        @ExampleObject(
+                            name = "Event",
+                            summary = "Contest joined on the web",
+                            value =
+                                "{\n"
+                                    + "  \"userId\": 12345,\n"
+                                    + "  \"eventName\": \"ContestJoinedClient\",\n"
+                                    + "  \"properties\": {\"mode\": \"normal\", \"roundId\": 5}\n"
+                                    + "}")
+                      }))
+          @NotNull
+          @Valid
+          EventRequest event) {
+    return ResponseWrapper.fromSingle(service.ingest(tenantId, event), 200);
+  }
+}
@@ -0,0 +1,30 @@
+package com.raven.thunder.api.rest;
+
+import com.google.inject.Inject;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.vertx.core.json.JsonObject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import lombok.RequiredArgsConstructor;
+
+/** Metrics endpoint for thunder-api service. - GET /metrics: returns counters and gauges */
+@RequiredArgsConstructor(onConstructor = @__({@Inject}))
+@Path("/metrics")
+public class MetricsController {
+
+  private final MetricsRegistry metricsRegistry;
+
+  @GET
+  @Consumes(MediaType.WILDCARD)
+  @Produces(MediaType.APPLICATION_JSON)
+  public CompletionStage<JsonObject> metrics() {
+    JsonObject response = new JsonObject();
+    metricsRegistry.snapshot().forEach(response::put);
+    return CompletableFuture.completedFuture(response);
+  }
+}
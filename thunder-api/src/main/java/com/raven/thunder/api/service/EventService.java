@@ -0,0 +1,17 @@
+package com.raven.thunder.api.service;
+
+import com.raven.thunder.api.io.request.EventRequest;
+import io.reactivex.rxjava3.core.Single;
+
+public interface EventService {
+
+  /**
+   * Applies an event to the user's state machines of the tenant's active CTAs, in one
+   * read-modify-write of the user snapshot.
+   *
+   * @param tenantId tenant identifier
+   * @param event the event with its user and properties
+   * @return true if any state machine advanced
+   */
+  Single<Boolean> ingest(String tenantId, EventRequest event);
+}
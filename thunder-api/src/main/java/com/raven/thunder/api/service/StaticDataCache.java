@@ -1,8 +1,7 @@
 package com.raven.thunder.api.service;
 
-import com.raven.thunder.core.model.BehaviourTag;
-import com.raven.thunder.core.model.CTA;
-import java.util.Map;
+import com.raven.thunder.api.service.cache.CatalogSnapshot;
+import com.raven.thunder.api.service.cache.TenantCatalog;
 import java.util.concurrent.CompletableFuture;
 
 /** Simple in-memory cache for active/paused CTAs and behaviour tags used by SDK flows. */
@@ -15,12 +14,19 @@ public interface StaticDataCache {
    */
   CompletableFuture<?> initiateCache();
 
-  /** Returns a snapshot of active CTAs keyed by CTA id. */
-  Map<Long, CTA> findAllActiveCTA();
+  /**
+   * Brings the cache up to date with catalog changes made since the last load. Concurrent calls
+   * are skipped while a refresh is in flight.
+   *
+   * @return future completing when the refresh attempt finishes
+   */
+  CompletableFuture<?> refresh();
 
-  /** Returns a snapshot of paused CTAs keyed by CTA id. */
-  Map<Long, CTA> findAllPausedCTA();
+  /** Returns the currently published catalog snapshot. */
+  CatalogSnapshot getSnapshot();
 
-  /** Returns a snapshot of behaviour tags keyed by tag name. */
-  Map<String, BehaviourTag> findAllBehaviourTags();
+  /** Returns the read-only catalog for a tenant, empty when the tenant has no data. */
+  default TenantCatalog findTenantCatalog(String tenantId) {
+    return getSnapshot().forTenant(tenantId);
+  }
 }
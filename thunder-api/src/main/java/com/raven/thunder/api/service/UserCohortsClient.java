@@ -6,6 +6,6 @@ import java.util.Set;
 /** Client to resolve cohorts for a user used in CTA eligibility checks. */
 public interface UserCohortsClient {
 
-  /** Returns all cohorts for the given user. */
-  Single<Set<String>> findAllCohorts(Long userId);
+  /** Returns all cohorts of the tenant that the given user belongs to. */
+  Single<Set<String>> findAllCohorts(String tenantId, Long userId);
 }
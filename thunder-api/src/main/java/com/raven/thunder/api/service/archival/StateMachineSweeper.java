@@ -0,0 +1,210 @@
+package com.raven.thunder.api.service.archival;
+
+import com.aerospike.client.cluster.Node;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.dao.SweepCheckpointRepository;
+import com.raven.thunder.api.model.SweepCheckpoint;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.service.cache.TenantCatalog;
+import com.raven.thunder.api.util.FrequencyCapUtil;
+import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.config.ArchivalSweepConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Archives stale state machines of users who no longer launch the app, which {@code appLaunch}
+ * would otherwise only do on their next visit.
+ *
+ * <p>A sweep scans the user snapshots in blocks of partitions, a few blocks in parallel, and
+ * applies the {@code appLaunch} archival rules against the tenant's current catalog. Only changed
+ * records are written back. Every finished block is checkpointed, so a sweep interrupted by a
+ * restart or an error resumes where it stopped. Tenants missing from the loaded catalog are left
+ * alone, so an unloaded catalog never reads as "every CTA concluded".
+ *
+ * <p>Replicas coordinate through a lease: only the holder sweeps, renewing it before each block,
+ * and another replica takes over once it expires.
+ */
+@Slf4j
+@Singleton
+public class StateMachineSweeper {
+
+  static final int PARTITIONS_PER_BLOCK = 64;
+  static final int BLOCKS = Node.PARTITIONS / PARTITIONS_PER_BLOCK;
+
+  static final String SWEEPS = "sweep.completed";
+  static final String SWEEP_FAILURES = "sweep.failures";
+  static final String BLOCKS_COMPLETED = "sweep.blocks.completed";
+  static final String BLOCKS_TOTAL = "sweep.blocks.total";
+
+  private final StateMachineRepository stateMachineRepository;
+  private final SweepCheckpointRepository checkpointRepository;
+  private final StaticDataCache cache;
+  private final MetricsRegistry metricsRegistry;
+  private final boolean enabled;
+  private final long sweepPeriodMs;
+  private final int concurrency;
+  private final int recordsPerSecondPerScan;
+  private final long leaseDurationMs;
+  private final String owner = UUID.randomUUID().toString();
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+  private final AtomicInteger blocksCompleted = new AtomicInteger();
+
+  @Inject
+  public StateMachineSweeper(
+      StateMachineRepository stateMachineRepository,
+      SweepCheckpointRepository checkpointRepository,
+      StaticDataCache cache,
+      ArchivalSweepConfig config,
+      MetricsRegistry metricsRegistry) {
+    this.stateMachineRepository = stateMachineRepository;
+    this.checkpointRepository = checkpointRepository;
+    this.cache = cache;
+    this.metricsRegistry = metricsRegistry;
+    this.enabled = config.isEnabledOrDefault();
+    this.sweepPeriodMs = config.getSweepPeriodInterval().getMs();
+    this.concurrency = config.getConcurrencyOrDefault();
+    this.leaseDurationMs = config.getLeaseDurationInterval().getMs();
+    // Parallel scans each get a share of the throttle; 0 stays unthrottled
+    int recordsPerSecond = config.getScanRecordsPerSecondOrDefault();
+    this.recordsPerSecondPerScan =
+        recordsPerSecond <= 0 ? 0 : Math.max(1, recordsPerSecond / concurrency);
+
+    if (enabled) {
+      metricsRegistry.gauge(BLOCKS_COMPLETED, blocksCompleted::get);
+      metricsRegistry.gauge(BLOCKS_TOTAL, () -> BLOCKS);
+    }
+  }
+
+  /**
+   * Resumes an unfinished sweep, or starts one when the last finished a sweep period ago. Calls
+   * made while a sweep is running, or while another replica holds the lease, complete immediately.
+   */
+  public Completable sweep() {
+    if (!enabled) {
+      return Completable.complete();
+    }
+    return Completable.defer(
+            () -> {
+              if (!sweeping.compareAndSet(false, true)) {
+                return Completable.complete();
+              }
+              long now = System.currentTimeMillis();
+              return checkpointRepository
+                  .acquireLease(owner, now + leaseDurationMs)
+                  .flatMapCompletable(
+                      leased ->
+                          leased
+                              ? checkpointRepository
+                                  .find()
+                                  .defaultIfEmpty(new SweepCheckpoint(now, null, new HashSet<>()))
+                                  .flatMapCompletable(checkpoint -> sweep(checkpoint, now))
+                              : Completable.complete())
+                  .doFinally(() -> sweeping.set(false));
+            })
+        .doOnError(
+            error -> {
+              metricsRegistry.increment(SWEEP_FAILURES);
+              log.error("Archival sweep failed, it resumes from its checkpoint", error);
+            });
+  }
+
+  private Completable sweep(SweepCheckpoint checkpoint, long now) {
+    if (checkpoint.getCompletedAt() != null) {
+      if (now - checkpoint.getCompletedAt() < sweepPeriodMs) {
+        return Completable.complete();
+      }
+      checkpoint = new SweepCheckpoint(now, null, new HashSet<>());
+    }
+    SweepCheckpoint progress = checkpoint;
+    List<Integer> pending = new ArrayList<>();
+    for (int block = 0; block < BLOCKS; block++) {
+      if (!progress.getCompletedBlocks().contains(block)) {
+        pending.add(block);
+      }
+    }
+    blocksCompleted.set(BLOCKS - pending.size());
+    log.info("Archival sweep started with {} of {} partition blocks left", pending.size(), BLOCKS);
+
+    return Flowable.fromIterable(pending)
+        .flatMapCompletable(block -> sweepBlock(progress, block), false, concurrency)
+        .andThen(
+            Completable.defer(
+                () -> {
+                  progress.setCompletedAt(System.currentTimeMillis());
+                  return checkpointRepository.save(progress);
+                }))
+        .doOnComplete(
+            () -> {
+              metricsRegistry.increment(SWEEPS);
+              log.info(
+                  "Archival sweep finished in {} ms",
+                  progress.getCompletedAt() - progress.getStartedAt());
+            });
+  }
+
+  private Completable sweepBlock(SweepCheckpoint progress, int block) {
+    int partitionBegin = block * PARTITIONS_PER_BLOCK;
+    return renewLease()
+        .andThen(
+            Completable.defer(
+                () ->
+                    stateMachineRepository.sweep(
+                        partitionBegin,
+                        PARTITIONS_PER_BLOCK,
+                        recordsPerSecondPerScan,
+                        this::archive)))
+        .andThen(
+            Completable.defer(
+                () -> {
+                  // Saves of parallel blocks may land out of order; a lost block is swept again
+                  SweepCheckpoint saved;
+                  synchronized (progress) {
+                    progress.getCompletedBlocks().add(block);
+                    Set<Integer> completedBlocks = new HashSet<>(progress.getCompletedBlocks());
+                    saved = new SweepCheckpoint(progress.getStartedAt(), null, completedBlocks);
+                  }
+                  blocksCompleted.incrementAndGet();
+                  return checkpointRepository.save(saved);
+                }));
+  }
+
+  /** Fails the sweep once another replica took the lease over, so two never sweep together. */
+  private Completable renewLease() {
+    return checkpointRepository
+        .acquireLease(owner, System.currentTimeMillis() + leaseDurationMs)
+        .flatMapCompletable(
+            leased ->
+                leased
+                    ? Completable.complete()
+                    : Completable.error(
+                        new IllegalStateException("Archival sweep lease taken by another node")));
+  }
+
+  /** Applies the archival rules of {@code appLaunch} to a snapshot; true if it changed. */
+  boolean archive(String tenantId, UserDataSnapshot snapshot) {
+    TenantCatalog catalog = cache.getSnapshot().getTenants().get(tenantId);
+    if (catalog == null) {
+      return false;
+    }
+    boolean updated =
+        StateMachineUtil.archiveStaleData(
+            catalog.getActiveCTAs(), catalog.getPausedCTAs(), snapshot);
+    updated |=
+        FrequencyCapUtil.archiveStaleExposures(
+            snapshot, catalog.getActiveCTAs(), catalog.getPausedCTAs());
+    return updated;
+  }
+}
@@ -0,0 +1,192 @@
+package com.raven.thunder.api.service.cache;
+
+import com.raven.thunder.core.model.BehaviourTag;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CTAStatus;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+
+/**
+ * Immutable, versioned catalog of active/paused CTAs and behaviour tags grouped by tenant. A new
+ * instance is built on every load and published as a whole, so readers always see a consistent
+ * view.
+ */
+public final class CatalogSnapshot {
+
+  public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0L, 0L, Collections.emptyMap());
+
+  /** Local sequence number, incremented on every published snapshot. */
+  @Getter private final long version;
+
+  /** Epoch millis from which the next incremental refresh must re-fetch changes. */
+  @Getter private final long watermark;
+
+  private final Map<String, TenantCatalog> tenants;
+
+  private CatalogSnapshot(long version, long watermark, Map<String, TenantCatalog> tenants) {
+    this.version = version;
+    this.watermark = watermark;
+    this.tenants = Collections.unmodifiableMap(tenants);
+  }
+
+  /** Returns the catalog for a tenant, or {@link TenantCatalog#EMPTY} when it has no data. */
+  public TenantCatalog forTenant(String tenantId) {
+    return tenants.getOrDefault(tenantId, TenantCatalog.EMPTY);
+  }
+
+  /** Returns all tenant catalogs keyed by tenant id. */
+  public Map<String, TenantCatalog> getTenants() {
+    return tenants;
+  }
+
+  /** Returns true when any tenant version differs from the locally known one. */
+  public boolean isBehind(Map<String, Long> tenantVersions) {
+    for (Map.Entry<String, Long> entry : tenantVersions.entrySet()) {
+      if (forTenant(entry.getKey()).getVersion() != entry.getValue()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Groups cross-tenant datasets by tenant id. Entries without a tenant id are dropped since they
+   * can never be served.
+   */
+  public static CatalogSnapshot build(
+      long version,
+      long watermark,
+      Map<String, Long> tenantVersions,
+      Map<Long, CTA> activeCTAs,
+      Map<Long, CTA> pausedCTAs,
+      Map<String, BehaviourTag> behaviourTags) {
+    Map<String, Map<Long, CTA>> active = groupCTAsByTenant(activeCTAs);
+    Map<String, Map<Long, CTA>> paused = groupCTAsByTenant(pausedCTAs);
+    Map<String, Map<String, BehaviourTag>> tags = groupTagsByTenant(behaviourTags);
+
+    Set<String> tenantIds = new HashSet<>(tenantVersions.keySet());
+    tenantIds.addAll(active.keySet());
+    tenantIds.addAll(paused.keySet());
+    tenantIds.addAll(tags.keySet());
+
+    Map<String, TenantCatalog> tenants = new HashMap<>();
+    for (String tenantId : tenantIds) {
+      tenants.put(
+          tenantId,
+          new TenantCatalog(
+              tenantVersions.getOrDefault(tenantId, 0L),
+              active.getOrDefault(tenantId, Collections.emptyMap()),
+              paused.getOrDefault(tenantId, Collections.emptyMap()),
+              tags.getOrDefault(tenantId, Collections.emptyMap())));
+    }
+    return new CatalogSnapshot(version, watermark, tenants);
+  }
+
+  /** Returns the tenants whose version differs from the locally known one. */
+  public Set<String> tenantsBehind(Map<String, Long> tenantVersions) {
+    Set<String> behind = new HashSet<>();
+    tenantVersions.forEach(
+        (tenantId, tenantVersion) -> {
+          if (forTenant(tenantId).getVersion() != tenantVersion) {
+            behind.add(tenantId);
+          }
+        });
+    return behind;
+  }
+
+  /**
+   * Returns a new snapshot with changed CTAs (of any status) and behaviour tags applied. CTAs
+   * changed to a status other than live or paused are dropped, as are the cached CTAs and tags of
+   * a tenant in {@code existingCTAIds} or {@code existingTagNames} that are missing from its set
+   * there. Only tenants touched by a change, a removal or a version bump are rebuilt; all others
+   * are shared with this snapshot.
+   *
+   * @param existingCTAIds per tenant, the ids of its cached CTAs that still exist
+   * @param existingTagNames per tenant, the names of all its behaviour tags
+   */
+  public CatalogSnapshot applyChanges(
+      long version,
+      long watermark,
+      Map<String, Long> tenantVersions,
+      Map<Long, CTA> changedCTAs,
+      Map<String, BehaviourTag> changedTags,
+      Map<String, Set<Long>> existingCTAIds,
+      Map<String, Set<String>> existingTagNames) {
+    Map<String, Map<Long, CTA>> ctas = groupCTAsByTenant(changedCTAs);
+    Map<String, Map<String, BehaviourTag>> tags = groupTagsByTenant(changedTags);
+
+    Set<String> touched = tenantsBehind(tenantVersions);
+    touched.addAll(ctas.keySet());
+    touched.addAll(tags.keySet());
+    touched.addAll(existingCTAIds.keySet());
+    touched.addAll(existingTagNames.keySet());
+
+    Map<String, TenantCatalog> next = new HashMap<>(tenants);
+    for (String tenantId : touched) {
+      TenantCatalog current = forTenant(tenantId);
+      Map<Long, CTA> active = new HashMap<>(current.getActiveCTAs());
+      Map<Long, CTA> paused = new HashMap<>(current.getPausedCTAs());
+      Set<Long> ctaIds = existingCTAIds.get(tenantId);
+      if (ctaIds != null) {
+        active.keySet().retainAll(ctaIds);
+        paused.keySet().retainAll(ctaIds);
+      }
+      ctas.getOrDefault(tenantId, Collections.emptyMap())
+          .forEach(
+              (id, cta) -> {
+                active.remove(id);
+                paused.remove(id);
+                if (cta.getCtaStatus() == CTAStatus.LIVE) {
+                  active.put(id, cta);
+                } else if (cta.getCtaStatus() == CTAStatus.PAUSED) {
+                  paused.put(id, cta);
+                }
+              });
+      Map<String, BehaviourTag> behaviourTags = new HashMap<>(current.getBehaviourTags());
+      Set<String> tagNames = existingTagNames.get(tenantId);
+      if (tagNames != null) {
+        behaviourTags.keySet().retainAll(tagNames);
+      }
+      behaviourTags.putAll(tags.getOrDefault(tenantId, Collections.emptyMap()));
+      next.put(
+          tenantId,
+          new TenantCatalog(
+              tenantVersions.getOrDefault(tenantId, current.getVersion()),
+              active,
+              paused,
+              behaviourTags));
+    }
+    return new CatalogSnapshot(version, watermark, next);
+  }
+
+  private static Map<String, Map<Long, CTA>> groupCTAsByTenant(Map<Long, CTA> ctas) {
+    Map<String, Map<Long, CTA>> grouped = new HashMap<>();
+    ctas.forEach(
+        (id, cta) -> {
+          if (cta.getTenantId() != null) {
+            grouped.computeIfAbsent(cta.getTenantId(), k -> new HashMap<>()).put(id, cta);
+          }
+        });
+    return grouped;
+  }
+
+  private static Map<String, Map<String, BehaviourTag>> groupTagsByTenant(
+      Map<String, BehaviourTag> behaviourTags) {
+    Map<String, Map<String, BehaviourTag>> grouped = new HashMap<>();
+    behaviourTags
+        .values()
+        .forEach(
+            tag -> {
+              if (tag.getTenantId() != null && tag.getName() != null) {
+                grouped
+                    .computeIfAbsent(tag.getTenantId(), k -> new HashMap<>())
+                    .put(tag.getName(), tag);
+              }
+            });
+    return grouped;
+  }
+}
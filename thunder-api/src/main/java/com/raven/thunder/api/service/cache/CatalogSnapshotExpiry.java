@@ -0,0 +1,54 @@
+package com.raven.thunder.api.service.cache;
+
+import com.google.inject.Inject;
+import com.raven.thunder.api.dao.SnapshotExpiry;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.core.config.SnapshotTtlConfig;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires a tenant's snapshots after its inactivity TTL, raised to the {@link
+ * TenantCatalog#getStateRetentionMillis() state retention} of its live CTAs. It follows the
+ * catalog, so a new CTA with a longer window lengthens the TTL from the next write or touch on.
+ * The TTL is capped at the configured max TTL, since the namespace rejects writes beyond its own.
+ */
+public class CatalogSnapshotExpiry implements SnapshotExpiry {
+
+  private final StaticDataCache cache;
+  private final SnapshotTtlConfig config;
+  private final boolean enabled;
+  private final int touchIntervalSeconds;
+  private final int maxTtlSeconds;
+
+  @Inject
+  public CatalogSnapshotExpiry(StaticDataCache cache, SnapshotTtlConfig config) {
+    this.cache = cache;
+    this.config = config;
+    this.enabled = config.isEnabledOrDefault();
+    this.touchIntervalSeconds = toSeconds(config.getTouchIntervalInterval().getMs());
+    // Rounded down, so the cap never exceeds the namespace limit it mirrors
+    this.maxTtlSeconds =
+        (int) Math.min(Integer.MAX_VALUE, config.getMaxTtlInterval().getMs() / 1000);
+  }
+
+  @Override
+  public int ttlSeconds(String tenantId) {
+    if (!enabled) {
+      return 0;
+    }
+    long ttlMs =
+        Math.max(
+            config.getInactivityTtlInterval(tenantId).getMs(),
+            cache.findTenantCatalog(tenantId).getStateRetentionMillis());
+    return Math.max(1, Math.min(toSeconds(ttlMs), maxTtlSeconds));
+  }
+
+  @Override
+  public int touchIntervalSeconds() {
+    return touchIntervalSeconds;
+  }
+
+  private static int toSeconds(long millis) {
+    return (int) Math.min(Integer.MAX_VALUE, TimeUnit.MILLISECONDS.toSeconds(millis + 999));
+  }
+}
@@ -0,0 +1,58 @@
+package com.raven.thunder.api.service.cache;
+
+import com.google.inject.Inject;
+import com.raven.thunder.api.dao.SnapshotLimits;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.model.CTA;
+import java.util.Map;
+
+/**
+ * Holds snapshots to the group caps and timestamp retention of the tenant's live CTAs. Like
+ * {@link CatalogSnapshotExpiry} it follows the catalog, so a changed cap applies from the next
+ * write on.
+ */
+public class CatalogSnapshotLimits implements SnapshotLimits {
+
+  private final StaticDataCache cache;
+  private final int maxTimestamps;
+
+  @Inject
+  public CatalogSnapshotLimits(StaticDataCache cache, SnapshotLimitsConfig config) {
+    this.cache = cache;
+    this.maxTimestamps = config.getMaxTimestampsOrDefault();
+  }
+
+  @Override
+  public int maxGroups(String tenantId, Long ctaId) {
+    return StateMachineUtil.groupCap(find(cache.findTenantCatalog(tenantId), ctaId));
+  }
+
+  @Override
+  public boolean enforce(String tenantId, UserDataSnapshot snapshot) {
+    if (snapshot.getStateMachines() == null) {
+      return false;
+    }
+    TenantCatalog catalog = cache.findTenantCatalog(tenantId);
+    long now = System.currentTimeMillis();
+    boolean updated = false;
+    for (Map.Entry<Long, StateMachineSnapshot> entry : snapshot.getStateMachines().entrySet()) {
+      updated |=
+          StateMachineUtil.enforceLimits(
+              entry.getValue(),
+              find(catalog, entry.getKey()),
+              catalog.getBehaviourTags(),
+              maxTimestamps,
+              now);
+    }
+    return updated;
+  }
+
+  private static CTA find(TenantCatalog catalog, Long ctaId) {
+    CTA cta = catalog.getActiveCTAs().get(ctaId);
+    return cta != null ? cta : catalog.getPausedCTAs().get(ctaId);
+  }
+}
@@ -3,106 +3,260 @@ package com.raven.thunder.api.service.cache;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.core.config.CacheConfig;
 import com.raven.thunder.core.dao.BehaviourTagsRepository;
 import com.raven.thunder.core.dao.CTARepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import com.raven.thunder.core.metrics.MetricsRegistry;
 import com.raven.thunder.core.model.BehaviourTag;
 import com.raven.thunder.core.model.CTA;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Simple cache implementation for static data (CTAs and BehaviourTags). Loads data from
- * repositories on initialization.
+ * Simple cache implementation for static data (CTAs and BehaviourTags). Loads all datasets from
+ * repositories, groups them by tenant and publishes the result as a single immutable {@link
+ * CatalogSnapshot}.
+ *
+ * <p>Refreshes poll the per-tenant catalog version records and, only when a tenant is behind,
+ * re-fetch CTAs and tags updated since the snapshot's lastUpdatedAt watermark, along with the
+ * cached CTAs and the tag listing of the tenants that are behind, so removals apply too. A full
+ * reload is still forced every {@code full-refresh-period} as a safety net, and until the first
+ * full load succeeds.
  */
 @Slf4j
 @Singleton
 public class StaticDataCacheImpl implements StaticDataCache {
 
+  static final String REFRESH_FULL = "catalog.refresh.full";
+  static final String REFRESH_INCREMENTAL = "catalog.refresh.incremental";
+  static final String REFRESH_UNCHANGED = "catalog.refresh.unchanged";
+  static final String REFRESH_FAILURES = "catalog.refresh.failures";
+  static final String REFRESH_DURATION_MS = "catalog.refresh.duration.ms";
+  static final String STALENESS_MS = "catalog.staleness.ms";
+  static final String VERSION = "catalog.version";
+
   private final CTARepository ctaRepository;
   private final BehaviourTagsRepository behaviourTagsRepository;
+  private final CatalogVersionRepository catalogVersionRepository;
+  private final MetricsRegistry metricsRegistry;
+  private final long fullRefreshPeriodMs;
+  private final long watermarkOverlapMs;
 
-  private final Map<Long, CTA> activeCTACache = new ConcurrentHashMap<>();
-  private final Map<Long, CTA> pausedCTACache = new ConcurrentHashMap<>();
-  private final Map<String, BehaviourTag> behaviourTagCache = new ConcurrentHashMap<>();
+  private final AtomicLong versionSequence = new AtomicLong();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private final AtomicLong lastFullLoadAt = new AtomicLong();
+  private final AtomicLong lastSyncedAt = new AtomicLong();
+  private final AtomicLong lastRefreshDurationMs = new AtomicLong();
+  private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
 
   @Inject
   public StaticDataCacheImpl(
-      CTARepository ctaRepository, BehaviourTagsRepository behaviourTagsRepository) {
+      CTARepository ctaRepository,
+      BehaviourTagsRepository behaviourTagsRepository,
+      CatalogVersionRepository catalogVersionRepository,
+      CacheConfig cacheConfig,
+      MetricsRegistry metricsRegistry) {
     this.ctaRepository = ctaRepository;
     this.behaviourTagsRepository = behaviourTagsRepository;
+    this.catalogVersionRepository = catalogVersionRepository;
+    this.metricsRegistry = metricsRegistry;
+    this.fullRefreshPeriodMs = cacheConfig.getFullRefreshPeriodInterval().getMs();
+    this.watermarkOverlapMs = cacheConfig.getWatermarkOverlapInterval().getMs();
+
+    metricsRegistry.gauge(STALENESS_MS, this::getStalenessMs);
+    metricsRegistry.gauge(REFRESH_DURATION_MS, lastRefreshDurationMs::get);
+    metricsRegistry.gauge(VERSION, () -> snapshot.getVersion());
   }
 
   @Override
   public CompletableFuture<?> initiateCache() {
     log.info("Initializing static data cache...");
+    long startedAt = System.currentTimeMillis();
+    Completable load =
+        catalogVersionRepository
+            .findAll()
+            .flatMap(versions -> loadFull(versions, startedAt))
+            .doOnSuccess(ignored -> onRefreshed(startedAt, REFRESH_FULL))
+            .ignoreElement();
+    return toFuture(load).thenRun(() -> log.info("Static data cache initialized successfully"));
+  }
 
-    CompletableFuture<Void> activeCTAFuture = loadActiveCTAs();
-    CompletableFuture<Void> pausedCTAFuture = loadPausedCTAs();
-    CompletableFuture<Void> behaviourTagsFuture = loadBehaviourTags();
+  @Override
+  public CompletableFuture<?> refresh() {
+    if (!refreshing.compareAndSet(false, true)) {
+      log.debug("Catalog refresh already in progress, skipping");
+      return CompletableFuture.completedFuture(null);
+    }
+    long startedAt = System.currentTimeMillis();
+    Completable refresh =
+        catalogVersionRepository
+            .findAll()
+            .flatMap(
+                versions -> {
+                  CatalogSnapshot current = snapshot;
+                  if (isFullRefreshDue(startedAt)) {
+                    return loadFull(versions, startedAt).map(ignored -> REFRESH_FULL);
+                  }
+                  if (!current.isBehind(versions)) {
+                    return Single.just(REFRESH_UNCHANGED);
+                  }
+                  return loadChanges(current, versions, startedAt)
+                      .map(ignored -> REFRESH_INCREMENTAL);
+                })
+            .doOnSuccess(outcome -> onRefreshed(startedAt, outcome))
+            .doOnError(
+                error -> {
+                  metricsRegistry.increment(REFRESH_FAILURES);
+                  log.warn(
+                      "Catalog refresh failed, serving version {}", snapshot.getVersion(), error);
+                })
+            .ignoreElement()
+            .doFinally(() -> refreshing.set(false));
+    return toFuture(refresh);
+  }
 
-    return CompletableFuture.allOf(activeCTAFuture, pausedCTAFuture, behaviourTagsFuture)
-        .thenRun(() -> log.info("Static data cache initialized successfully"));
+  @Override
+  public CatalogSnapshot getSnapshot() {
+    return snapshot;
   }
 
-  private CompletableFuture<Void> loadActiveCTAs() {
-    CompletableFuture<Void> future = new CompletableFuture<>();
-    ctaRepository
-        .findAllWithStatusActive()
-        .doOnSuccess(
-            ctas -> {
-              activeCTACache.clear();
-              activeCTACache.putAll(ctas);
-              log.info("Loaded {} active CTAs into cache", ctas.size());
-            })
-        .ignoreElement()
-        .subscribe(() -> future.complete(null), future::completeExceptionally);
-    return future;
+  /** Milliseconds since the cache was last confirmed in sync with the catalog, -1 before that. */
+  public long getStalenessMs() {
+    long syncedAt = lastSyncedAt.get();
+    return syncedAt == 0L ? -1L : System.currentTimeMillis() - syncedAt;
   }
 
-  private CompletableFuture<Void> loadPausedCTAs() {
-    CompletableFuture<Void> future = new CompletableFuture<>();
-    ctaRepository
-        .findAllWithStatusPaused()
+  private boolean isFullRefreshDue(long now) {
+    long fullLoadAt = lastFullLoadAt.get();
+    return fullLoadAt == 0L || (fullRefreshPeriodMs > 0 && now - fullLoadAt >= fullRefreshPeriodMs);
+  }
+
+  private Single<CatalogSnapshot> loadFull(Map<String, Long> versions, long startedAt) {
+    return Single.zip(
+            ctaRepository.findAllWithStatusActive(),
+            ctaRepository.findAllWithStatusPaused(),
+            behaviourTagsRepository.findAll(),
+            (active, paused, tags) ->
+                CatalogSnapshot.build(
+                    versionSequence.incrementAndGet(),
+                    startedAt - watermarkOverlapMs,
+                    versions,
+                    active,
+                    paused,
+                    tags))
         .doOnSuccess(
-            ctas -> {
-              pausedCTACache.clear();
-              pausedCTACache.putAll(ctas);
-              log.info("Loaded {} paused CTAs into cache", ctas.size());
+            catalog -> {
+              publish(catalog);
+              lastFullLoadAt.set(startedAt);
+            });
+  }
+
+  private Single<CatalogSnapshot> loadChanges(
+      CatalogSnapshot current, Map<String, Long> versions, long startedAt) {
+    long since = current.getWatermark();
+    Set<String> behind = current.tenantsBehind(versions);
+    return Single.zip(
+            ctaRepository.findAllUpdatedSince(since),
+            behaviourTagsRepository.findAllUpdatedSince(since),
+            findCachedCTAs(current, behind),
+            findTags(behind),
+            (ctas, tags, cachedCTAs, tenantTags) -> {
+              log.info(
+                  "Applying {} CTA and {} behaviour tag change(s) since {}",
+                  ctas.size(),
+                  tags.size(),
+                  since);
+              // Re-read entries go first so the watermark query wins on overlap
+              Map<Long, CTA> changedCTAs = new HashMap<>();
+              Map<String, Set<Long>> existingCTAIds = new HashMap<>();
+              cachedCTAs.forEach(
+                  (tenantId, found) -> {
+                    changedCTAs.putAll(found);
+                    existingCTAIds.put(tenantId, found.keySet());
+                  });
+              changedCTAs.putAll(ctas);
+              Map<String, BehaviourTag> changedTags = new HashMap<>();
+              Map<String, Set<String>> existingTagNames = new HashMap<>();
+              tenantTags.forEach(
+                  (tenantId, found) -> {
+                    changedTags.putAll(found);
+                    Set<String> names = new HashSet<>();
+                    found.values().forEach(tag -> names.add(tag.getName()));
+                    existingTagNames.put(tenantId, names);
+                  });
+              changedTags.putAll(tags);
+              return current.applyChanges(
+                  versionSequence.incrementAndGet(),
+                  Math.max(since, startedAt - watermarkOverlapMs),
+                  versions,
+                  changedCTAs,
+                  changedTags,
+                  existingCTAIds,
+                  existingTagNames);
             })
-        .ignoreElement()
-        .subscribe(() -> future.complete(null), future::completeExceptionally);
-    return future;
+        .doOnSuccess(this::publish);
   }
 
-  private CompletableFuture<Void> loadBehaviourTags() {
-    CompletableFuture<Void> future = new CompletableFuture<>();
-    behaviourTagsRepository
-        .findAll()
-        .doOnSuccess(
-            tags -> {
-              behaviourTagCache.clear();
-              behaviourTagCache.putAll(tags);
-              log.info("Loaded {} behaviour tags into cache", tags.size());
+  /**
+   * Re-reads the cached CTAs of each tenant by key, so ones deleted or moved out of live and
+   * paused without a lastUpdatedAt change are not served until the next full reload.
+   */
+  private Single<Map<String, Map<Long, CTA>>> findCachedCTAs(
+      CatalogSnapshot current, Set<String> tenantIds) {
+    return Observable.fromIterable(tenantIds)
+        .flatMapSingle(
+            tenantId -> {
+              TenantCatalog catalog = current.forTenant(tenantId);
+              List<Long> ids = new ArrayList<>(catalog.getActiveCTAs().keySet());
+              ids.addAll(catalog.getPausedCTAs().keySet());
+              Single<Map<Long, CTA>> found =
+                  ids.isEmpty()
+                      ? Single.just(Collections.emptyMap())
+                      : ctaRepository.findMany(tenantId, ids);
+              return found.map(ctas -> Map.entry(tenantId, ctas));
             })
-        .ignoreElement()
-        .subscribe(() -> future.complete(null), future::completeExceptionally);
-    return future;
+        .toMap(Map.Entry::getKey, Map.Entry::getValue);
   }
 
-  @Override
-  public Map<Long, CTA> findAllActiveCTA() {
-    return new ConcurrentHashMap<>(activeCTACache);
+  /** Lists all behaviour tags of each tenant, so removed ones can be dropped. */
+  private Single<Map<String, Map<String, BehaviourTag>>> findTags(Set<String> tenantIds) {
+    return Observable.fromIterable(tenantIds)
+        .flatMapSingle(
+            tenantId ->
+                behaviourTagsRepository.findAll(tenantId).map(tags -> Map.entry(tenantId, tags)))
+        .toMap(Map.Entry::getKey, Map.Entry::getValue);
   }
 
-  @Override
-  public Map<Long, CTA> findAllPausedCTA() {
-    return new ConcurrentHashMap<>(pausedCTACache);
+  private void publish(CatalogSnapshot catalog) {
+    this.snapshot = catalog;
+    log.info(
+        "Published catalog version {} for {} tenant(s)",
+        catalog.getVersion(),
+        catalog.getTenants().size());
   }
 
-  @Override
-  public Map<String, BehaviourTag> findAllBehaviourTags() {
-    return new ConcurrentHashMap<>(behaviourTagCache);
+  private void onRefreshed(long startedAt, String outcome) {
+    lastSyncedAt.set(startedAt);
+    lastRefreshDurationMs.set(System.currentTimeMillis() - startedAt);
+    metricsRegistry.increment(outcome);
+  }
+
+  private static CompletableFuture<Void> toFuture(Completable completable) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    completable.subscribe(() -> future.complete(null), future::completeExceptionally);
+    return future;
   }
 }
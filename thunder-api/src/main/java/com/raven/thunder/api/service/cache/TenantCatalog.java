@@ -0,0 +1,104 @@
+package com.raven.thunder.api.service.cache;
+
+import com.raven.thunder.api.io.response.RenderedRuleResponse;
+import com.raven.thunder.api.io.response.RuleResponse;
+import com.raven.thunder.api.service.sdk.RuleMapper;
+import com.raven.thunder.api.util.CohortEligibilityIndex;
+import com.raven.thunder.api.util.EventRoutingIndex;
+import com.raven.thunder.api.util.FrequencyCapUtil;
+import com.raven.thunder.core.model.BehaviourTag;
+import com.raven.thunder.core.model.CTA;
+import io.vertx.core.json.Json;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Immutable view of the catalog for a single tenant. Maps are wrapped read-only at build time so
+ * callers on the SDK path can use them directly without copying or re-filtering by tenant.
+ */
+@Slf4j
+@Getter
+public final class TenantCatalog {
+
+  private static final RuleMapper RULE_MAPPER = new RuleMapper();
+
+  public static final TenantCatalog EMPTY =
+      new TenantCatalog(0L, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+  /** Catalog version of the tenant as last seen in its version record, 0 when never bumped. */
+  private final long version;
+
+  /** Active CTAs keyed by CTA id. */
+  private final Map<Long, CTA> activeCTAs;
+
+  /** Paused CTAs keyed by CTA id. */
+  private final Map<Long, CTA> pausedCTAs;
+
+  /** Behaviour tags keyed by tag name. */
+  private final Map<String, BehaviourTag> behaviourTags;
+
+  /** SDK-facing rules of the active CTAs keyed by CTA id, serialized once per catalog build. */
+  private final Map<Long, RuleResponse> renderedRules;
+
+  /** Cohort eligibility of the active CTAs. */
+  private final CohortEligibilityIndex eligibility;
+
+  /** State transitions of the active CTAs keyed by event name. */
+  private final EventRoutingIndex eventRoutes;
+
+  /**
+   * Longest time the live CTAs look back into a user's state: their state machine TTLs and
+   * frequency windows, 0 when none has one.
+   */
+  private final long stateRetentionMillis;
+
+  TenantCatalog(
+      long version,
+      Map<Long, CTA> activeCTAs,
+      Map<Long, CTA> pausedCTAs,
+      Map<String, BehaviourTag> behaviourTags) {
+    this.version = version;
+    this.activeCTAs = Collections.unmodifiableMap(activeCTAs);
+    this.pausedCTAs = Collections.unmodifiableMap(pausedCTAs);
+    this.behaviourTags = Collections.unmodifiableMap(behaviourTags);
+    this.renderedRules = Collections.unmodifiableMap(renderRules(activeCTAs));
+    this.eligibility = new CohortEligibilityIndex(activeCTAs);
+    this.eventRoutes = new EventRoutingIndex(activeCTAs);
+    this.stateRetentionMillis =
+        Math.max(
+            stateRetentionMillis(activeCTAs, behaviourTags),
+            stateRetentionMillis(pausedCTAs, behaviourTags));
+  }
+
+  private static long stateRetentionMillis(
+      Map<Long, CTA> ctas, Map<String, BehaviourTag> behaviourTags) {
+    long retention = 0L;
+    for (CTA cta : ctas.values()) {
+      if (cta.getRule() != null && cta.getRule().getStateMachineTTL() != null) {
+        retention = Math.max(retention, cta.getRule().getStateMachineTTL());
+      }
+      retention = Math.max(retention, FrequencyCapUtil.longestWindowMillis(cta, behaviourTags));
+    }
+    return retention;
+  }
+
+  /** Skips CTAs whose rule cannot be rendered; those are mapped per request as before. */
+  private static Map<Long, RuleResponse> renderRules(Map<Long, CTA> activeCTAs) {
+    Map<Long, RuleResponse> rules = new HashMap<>();
+    for (CTA cta : activeCTAs.values()) {
+      if (cta.getRule() == null) {
+        continue;
+      }
+      try {
+        RuleResponse rule = RULE_MAPPER.apply(cta.getRule());
+        rules.put(cta.getId(), new RenderedRuleResponse(rule, Json.encode(rule)));
+      } catch (RuntimeException e) {
+        log.warn("Could not pre-render rule of CTA {}", cta.getId(), e);
+      }
+    }
+    return rules;
+  }
+}
@@ -0,0 +1,146 @@
+package com.raven.thunder.api.service.cohort;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.raven.thunder.api.service.UserCohortsClient;
+import com.raven.thunder.core.dao.CohortRepository;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CohortManifest;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Resolves a user's cohorts from in-memory membership bitmaps, so lookups never leave the process.
+ *
+ * <p>Bitmaps are loaded from the cohort repository and refreshed incrementally: a refresh lists
+ * the cohort manifests and only reloads cohorts whose version changed, keeping the previous bitmap
+ * when a reload fails. Every user is also in the {@code all} cohort, which CTAs created while
+ * cohorts were unsupported target.
+ */
+@Slf4j
+@Singleton
+public class BitmapUserCohortsClient implements UserCohortsClient {
+
+  static final String ALL_COHORT = "all";
+
+  static final String REFRESHES = "cohorts.refreshes";
+  static final String REFRESH_FAILURES = "cohorts.refresh.failures";
+  static final String RELOADS = "cohorts.reloads";
+  static final String RELOAD_FAILURES = "cohorts.reload.failures";
+  static final String LOADED = "cohorts.loaded";
+
+  private final CohortRepository cohortRepository;
+  private final MetricsRegistry metricsRegistry;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  /** Loaded cohorts keyed by tenant id, then cohort name; replaced as a whole on refresh. */
+  private volatile Map<String, Map<String, LoadedCohort>> tenants = Collections.emptyMap();
+
+  @Inject
+  public BitmapUserCohortsClient(
+      CohortRepository cohortRepository, MetricsRegistry metricsRegistry) {
+    this.cohortRepository = cohortRepository;
+    this.metricsRegistry = metricsRegistry;
+
+    metricsRegistry.gauge(LOADED, () -> tenants.values().stream().mapToInt(Map::size).sum());
+  }
+
+  @Override
+  public Single<Set<String>> findAllCohorts(String tenantId, Long userId) {
+    Map<String, LoadedCohort> cohorts = tenants.get(tenantId);
+    if (cohorts == null || userId == null) {
+      return Single.just(Set.of(ALL_COHORT));
+    }
+    Set<String> result = new HashSet<>();
+    result.add(ALL_COHORT);
+    for (LoadedCohort cohort : cohorts.values()) {
+      if (cohort.users.contains(userId)) {
+        result.add(cohort.name);
+      }
+    }
+    return Single.just(result);
+  }
+
+  /** Reloads the cohorts that changed since the last refresh and drops deleted ones. */
+  public Completable refresh() {
+    return Completable.defer(
+            () -> {
+              if (!refreshing.compareAndSet(false, true)) {
+                return Completable.complete();
+              }
+              return cohortRepository
+                  .findManifests()
+                  .flatMapObservable(Observable::fromIterable)
+                  .concatMapMaybe(this::loadIfChanged)
+                  .toList()
+                  .doOnSuccess(this::replace)
+                  .ignoreElement()
+                  .doFinally(() -> refreshing.set(false));
+            })
+        .doOnComplete(() -> metricsRegistry.increment(REFRESHES))
+        .doOnError(
+            error -> {
+              metricsRegistry.increment(REFRESH_FAILURES);
+              log.error("Failed to refresh cohorts", error);
+            });
+  }
+
+  private Maybe<LoadedCohort> loadIfChanged(CohortManifest manifest) {
+    LoadedCohort previous =
+        tenants.getOrDefault(manifest.getTenantId(), Collections.emptyMap())
+            .get(manifest.getCohort());
+    if (previous != null && previous.version == manifest.getVersion()) {
+      return Maybe.just(previous);
+    }
+    return cohortRepository
+        .load(manifest)
+        .map(users -> new LoadedCohort(manifest, users))
+        .doOnSuccess(ignored -> metricsRegistry.increment(RELOADS))
+        .toMaybe()
+        .onErrorResumeNext(
+            error -> {
+              metricsRegistry.increment(RELOAD_FAILURES);
+              log.error(
+                  "Failed to load cohort: {} for tenant: {} version {}",
+                  manifest.getCohort(),
+                  manifest.getTenantId(),
+                  manifest.getVersion(),
+                  error);
+              return previous != null ? Maybe.just(previous) : Maybe.empty();
+            });
+  }
+
+  private void replace(List<LoadedCohort> loaded) {
+    Map<String, Map<String, LoadedCohort>> next = new HashMap<>();
+    for (LoadedCohort cohort : loaded) {
+      next.computeIfAbsent(cohort.tenantId, ignored -> new HashMap<>()).put(cohort.name, cohort);
+    }
+    tenants = next;
+  }
+
+  /** A cohort bitmap, never modified after it is loaded. */
+  private static final class LoadedCohort {
+    private final String tenantId;
+    private final String name;
+    private final long version;
+    private final Roaring64NavigableMap users;
+
+    private LoadedCohort(CohortManifest manifest, Roaring64NavigableMap users) {
+      this.tenantId = manifest.getTenantId();
+      this.name = manifest.getCohort();
+      this.version = manifest.getVersion();
+      this.users = users;
+    }
+  }
+}
@@ -8,7 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Deprecated implementation of UserCohortsClient. Always returns Set.of("all") as cohorts are
- * deprecated.
+ * deprecated. Used when cohorts are disabled; see {@link BitmapUserCohortsClient}.
  */
 @Slf4j
 @Singleton
@@ -16,7 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 public class UserCohortsClientImpl implements UserCohortsClient {
 
   @Override
-  public Single<Set<String>> findAllCohorts(Long userId) {
+  public Single<Set<String>> findAllCohorts(String tenantId, Long userId) {
     log.warn("User cohorts are deprecated. Returning default cohort 'all' for userId: {}", userId);
     return Single.just(Set.of("all"));
   }
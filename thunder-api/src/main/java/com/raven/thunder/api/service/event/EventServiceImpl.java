@@ -0,0 +1,134 @@
+package com.raven.thunder.api.service.event;
+
+import com.google.inject.Inject;
+import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.io.request.EventRequest;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.EventService;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.service.UserCohortsClient;
+import com.raven.thunder.api.service.cache.TenantCatalog;
+import com.raven.thunder.api.service.sdk.SnapshotWriteCoalescer;
+import com.raven.thunder.api.util.EventRoutingIndex;
+import com.raven.thunder.api.util.StateMachineEngine;
+import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Single;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Advances user state machines from events ingested on the server. The catalog's routing index
+ * narrows an event to the CTAs that react to it, so events no live CTA uses never touch the user
+ * snapshot, and the rest are applied by {@link StateMachineEngine} in one snapshot update.
+ *
+ * <p>Events are applied at the time they are received. The event timestamp is only reported,
+ * clamped to that time.
+ */
+@Slf4j
+public class EventServiceImpl implements EventService {
+
+  static final String INGESTED = "events.ingested";
+  static final String UNROUTED = "events.unrouted";
+  static final String ADVANCED = "events.advanced";
+
+  private final UserCohortsClient userCohortsClient;
+  private final StateMachineRepository stateMachineRepository;
+  private final StaticDataCache cache;
+  private final SnapshotWriteCoalescer writeCoalescer;
+  private final MetricsRegistry metricsRegistry;
+  private final int maxTimestamps;
+
+  @Inject
+  public EventServiceImpl(
+      UserCohortsClient userCohortsClient,
+      StateMachineRepository stateMachineRepository,
+      StaticDataCache staticDataCache,
+      SnapshotWriteCoalescer writeCoalescer,
+      MetricsRegistry metricsRegistry,
+      SnapshotLimitsConfig limitsConfig) {
+    this.userCohortsClient = userCohortsClient;
+    this.stateMachineRepository = stateMachineRepository;
+    this.cache = staticDataCache;
+    this.writeCoalescer = writeCoalescer;
+    this.metricsRegistry = metricsRegistry;
+    this.maxTimestamps = limitsConfig.getMaxTimestampsOrDefault();
+  }
+
+  @Override
+  public Single<Boolean> ingest(String tenantId, EventRequest event) {
+    metricsRegistry.increment(INGESTED);
+    TenantCatalog catalog = cache.findTenantCatalog(tenantId);
+    List<EventRoutingIndex.Route> routes = catalog.getEventRoutes().routes(event.getEventName());
+    if (routes.isEmpty()) {
+      metricsRegistry.increment(UNROUTED);
+      return Single.just(false);
+    }
+
+    Long userId = event.getUserId();
+    Map<String, Object> properties =
+        event.getProperties() == null ? Collections.emptyMap() : event.getProperties();
+    // Server time, as transitions and trimming must not follow a skewed or forged client clock
+    long now = System.currentTimeMillis();
+    long raisedAt = event.getTimestamp() == null ? now : Math.min(event.getTimestamp(), now);
+    log.debug(
+        "Applying {} of {}:{} raised at {} at {}",
+        event.getEventName(),
+        tenantId,
+        userId,
+        raisedAt,
+        now);
+    AtomicBoolean advanced = new AtomicBoolean();
+    return userCohortsClient
+        .findAllCohorts(tenantId, userId)
+        .map(cohorts -> catalog.getEligibility().eligibleCTAs(userId, cohorts))
+        .filter(eligibleCTAs -> !eligibleCTAs.isEmpty())
+        .flatMapSingle(
+            eligibleCTAs ->
+                writeCoalescer
+                    .flush(tenantId, userId)
+                    .andThen(
+                        stateMachineRepository.update(
+                            tenantId,
+                            userId,
+                            snapshot -> {
+                              // Runs again on write conflicts, so only the last run counts
+                              boolean updated =
+                                  StateMachineEngine.advance(
+                                      snapshot, routes, eligibleCTAs, properties, now);
+                              if (updated) {
+                                enforceLimits(catalog, snapshot, routes, now);
+                              }
+                              advanced.set(updated);
+                              return updated;
+                            })))
+        .map(ignored -> advanced.get())
+        .defaultIfEmpty(false)
+        .doOnSuccess(
+            updated -> {
+              if (updated) {
+                metricsRegistry.increment(ADVANCED);
+              }
+            });
+  }
+
+  /** Trims what the transitions grew, as the SDK path does for client deltas. */
+  private void enforceLimits(
+      TenantCatalog catalog,
+      UserDataSnapshot snapshot,
+      List<EventRoutingIndex.Route> routes,
+      long now) {
+    for (EventRoutingIndex.Route route : routes) {
+      StateMachineSnapshot ctaSnapshot = snapshot.getStateMachines().get(route.getCta().getId());
+      if (ctaSnapshot != null) {
+        StateMachineUtil.enforceLimits(
+            ctaSnapshot, route.getCta(), catalog.getBehaviourTags(), maxTimestamps, now);
+      }
+    }
+  }
+}
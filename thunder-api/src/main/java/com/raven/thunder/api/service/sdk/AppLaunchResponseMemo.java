@@ -0,0 +1,190 @@
+package com.raven.thunder.api.service.sdk;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.raven.thunder.api.io.response.CTAResponse;
+import com.raven.thunder.api.io.response.RenderedCTAResponse;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.cache.TenantCatalog;
+import com.raven.thunder.core.config.ResponseMemoConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CTA;
+import io.vertx.core.json.Json;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU memo of serialized appLaunch responses. Users whose eligible CTAs and relevant state
+ * match, most notably every user without state, share one response rendered once.
+ *
+ * <p>Entries are keyed by tenant, catalog version, the eligible CTA ids and the parts of the
+ * snapshot the response is built from. The key hash is cheap to compute, but equality compares
+ * the full state, so a hash collision never serves another user's response. A tenant's entries
+ * are dropped as soon as a request sees a newer catalog for it.
+ */
+@Singleton
+public class AppLaunchResponseMemo {
+
+  static final String HITS = "appLaunch.memo.hits";
+  static final String MISSES = "appLaunch.memo.misses";
+  static final String ENTRIES = "appLaunch.memo.entries";
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final MetricsRegistry metricsRegistry;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, TenantCatalog> catalogs = new HashMap<>();
+
+  @Inject
+  public AppLaunchResponseMemo(ResponseMemoConfig config, MetricsRegistry metricsRegistry) {
+    this.enabled = config.isEnabledOrDefault();
+    this.maxEntries = config.getMaxEntriesOrDefault();
+    this.metricsRegistry = metricsRegistry;
+
+    if (enabled) {
+      metricsRegistry.gauge(ENTRIES, this::size);
+    }
+  }
+
+  /**
+   * Returns the memoized response for these inputs, or builds, renders and memoizes it. The
+   * snapshot must not be modified afterwards.
+   */
+  public CTAResponse render(
+      String tenantId,
+      TenantCatalog catalog,
+      Map<Long, CTA> activeCTAs,
+      UserDataSnapshot snapshot,
+      Supplier<CTAResponse> build) {
+    if (!enabled) {
+      return build.get();
+    }
+
+    Key key = Key.of(tenantId, catalog.getVersion(), activeCTAs, snapshot);
+    synchronized (this) {
+      invalidateIfCatalogChanged(tenantId, catalog);
+      Entry entry = entries.get(key);
+      if (entry != null && entry.catalog == catalog) {
+        metricsRegistry.increment(HITS);
+        return entry.response;
+      }
+    }
+
+    metricsRegistry.increment(MISSES);
+    CTAResponse response = build.get();
+    RenderedCTAResponse rendered = new RenderedCTAResponse(response, Json.encode(response));
+    synchronized (this) {
+      if (catalogs.get(tenantId) == catalog) {
+        entries.put(key, new Entry(catalog, rendered));
+        if (entries.size() > maxEntries) {
+          entries.remove(entries.keySet().iterator().next());
+        }
+      }
+    }
+    return rendered;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /** Drops a tenant's entries when its catalog was replaced since the last request. */
+  private void invalidateIfCatalogChanged(String tenantId, TenantCatalog catalog) {
+    TenantCatalog previous = catalogs.put(tenantId, catalog);
+    if (previous != null && previous != catalog) {
+      entries.keySet().removeIf(key -> key.tenantId.equals(tenantId));
+    }
+  }
+
+  private static final class Entry {
+    private final TenantCatalog catalog;
+    private final RenderedCTAResponse response;
+
+    private Entry(TenantCatalog catalog, RenderedCTAResponse response) {
+      this.catalog = catalog;
+      this.response = response;
+    }
+  }
+
+  /** The inputs of {@code CTASnapshotMerger.mergeCTAWithSnapshot} that vary between users. */
+  private static final class Key {
+    private final String tenantId;
+    private final long catalogVersion;
+    private final List<Long> ctaIds;
+    private final Map<Long, StateMachineSnapshot> stateMachines;
+    private final Map<String, BehaviourTagSnapshot> behaviourTags;
+
+    private final int hash;
+
+    private Key(
+        String tenantId,
+        long catalogVersion,
+        List<Long> ctaIds,
+        Map<Long, StateMachineSnapshot> stateMachines,
+        Map<String, BehaviourTagSnapshot> behaviourTags) {
+      this.tenantId = tenantId;
+      this.catalogVersion = catalogVersion;
+      this.ctaIds = ctaIds;
+      this.stateMachines = stateMachines;
+      this.behaviourTags = behaviourTags;
+      this.hash = Objects.hash(tenantId, catalogVersion, ctaIds, stateMachines, behaviourTags);
+    }
+
+    /** Projects the snapshot onto the eligible CTAs and the behaviour tags they reference. */
+    private static Key of(
+        String tenantId,
+        long catalogVersion,
+        Map<Long, CTA> activeCTAs,
+        UserDataSnapshot snapshot) {
+      List<Long> ctaIds = new ArrayList<>(activeCTAs.size());
+      Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+      Map<String, BehaviourTagSnapshot> behaviourTags = new HashMap<>();
+      for (CTA cta : activeCTAs.values()) {
+        ctaIds.add(cta.getId());
+        if (snapshot.getStateMachines() != null
+            && snapshot.getStateMachines().containsKey(cta.getId())) {
+          stateMachines.put(cta.getId(), snapshot.getStateMachines().get(cta.getId()));
+        }
+        if (cta.getBehaviourTags() == null || snapshot.getBehaviourTags() == null) {
+          continue;
+        }
+        for (String tagName : cta.getBehaviourTags()) {
+          if (snapshot.getBehaviourTags().containsKey(tagName)) {
+            behaviourTags.put(tagName, snapshot.getBehaviourTags().get(tagName));
+          }
+        }
+      }
+      return new Key(tenantId, catalogVersion, ctaIds, stateMachines, behaviourTags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hash == other.hash
+          && catalogVersion == other.catalogVersion
+          && tenantId.equals(other.tenantId)
+          && ctaIds.equals(other.ctaIds)
+          && stateMachines.equals(other.stateMachines)
+          && behaviourTags.equals(other.behaviourTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -4,21 +4,21 @@ import com.google.inject.Inject;
 import com.raven.thunder.api.dao.StateMachineRepository;
 import com.raven.thunder.api.io.request.CTASnapshotRequest;
 import com.raven.thunder.api.io.response.CTAResponse;
+import com.raven.thunder.api.model.StateMachineSnapshot;
 import com.raven.thunder.api.service.SdkService;
 import com.raven.thunder.api.service.StaticDataCache;
 import com.raven.thunder.api.service.UserCohortsClient;
-import com.raven.thunder.api.util.CTAFilterUtil;
+import com.raven.thunder.api.service.cache.TenantCatalog;
 import com.raven.thunder.api.util.CTASnapshotMerger;
+import com.raven.thunder.api.util.FrequencyCapUtil;
 import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
-import com.raven.thunder.core.model.BehaviourTag;
 import com.raven.thunder.core.model.CTA;
 import com.raven.thunder.core.model.NudgePreview;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -27,7 +27,13 @@ import lombok.extern.slf4j.Slf4j;
  *
  * <p>It relies on: - UserCohortsClient to fetch user cohorts - StaticDataCache for active/paused
  * CTAs and behaviour tags - StateMachineRepository for reading/upserting user snapshots - Utilities
- * (CTAFilterUtil, StateMachineUtil, CTASnapshotMerger) for clean logic separation
+ * (CohortEligibilityIndex, StateMachineUtil, CTASnapshotMerger) for clean logic separation
+ *
+ * <p>CTAs the user reached a lifespan or window cap on are left out of the appLaunch response;
+ * see {@link FrequencyCapUtil}.
+ *
+ * <p>Deltas are held to the group caps and timestamp retention of their CTAs before they are
+ * merged, so the state kept per user stays bounded however long the user stays active.
  */
 @Slf4j
 public class SdkServiceImpl implements SdkService {
@@ -36,6 +42,9 @@ public class SdkServiceImpl implements SdkService {
   private final StateMachineRepository stateMachineRepository;
   private final StaticDataCache cache;
   private final NudgePreviewRepository nudgePreviewRepository;
+  private final SnapshotWriteCoalescer writeCoalescer;
+  private final AppLaunchResponseMemo responseMemo;
+  private final int maxTimestamps;
 
   private final RuleMapper ruleMapper = new RuleMapper();
   private final BehaviourExposureRuleMapper behaviourExposureRuleMapper =
@@ -49,53 +58,57 @@ public class SdkServiceImpl implements SdkService {
       UserCohortsClient userCohortsClient,
       StateMachineRepository stateMachineRepository,
       StaticDataCache staticDataCache,
-      NudgePreviewRepository nudgePreviewRepository) {
+      NudgePreviewRepository nudgePreviewRepository,
+      SnapshotWriteCoalescer writeCoalescer,
+      AppLaunchResponseMemo responseMemo,
+      SnapshotLimitsConfig limitsConfig) {
     this.userCohortsClient = userCohortsClient;
     this.stateMachineRepository = stateMachineRepository;
     this.cache = staticDataCache;
     this.nudgePreviewRepository = nudgePreviewRepository;
+    this.writeCoalescer = writeCoalescer;
+    this.responseMemo = responseMemo;
+    this.maxTimestamps = limitsConfig.getMaxTimestampsOrDefault();
   }
 
   @Override
   public Maybe<CTAResponse> appLaunch(
       String tenantId, Long userId, CTASnapshotRequest deltaSnapshot) {
+    TenantCatalog catalog = cache.findTenantCatalog(tenantId);
     return userCohortsClient
-        .findAllCohorts(userId)
-        .map(
-            cohorts ->
-                CTAFilterUtil.filterEligibleCTAs(
-                    tenantId,
-                    cohorts,
-                    CTAFilterUtil.filterByTenant(cache.findAllActiveCTA(), tenantId)))
+        .findAllCohorts(tenantId, userId)
+        .map(cohorts -> catalog.getEligibility().eligibleCTAs(userId, cohorts))
         .filter(activeCTAs -> !activeCTAs.isEmpty())
         .flatMapSingle(
             activeCTAs ->
-                loadOrCreateSnapshot(tenantId, userId)
-                    .flatMap(
-                        snapshot -> {
-                          boolean updated =
-                              updateSnapshotWithStaleData(tenantId, activeCTAs, snapshot);
-                          updated |= mergeDeltaSnapshotIfPresent(snapshot, deltaSnapshot);
-
-                          if (updated) {
-                            return stateMachineRepository
-                                .upsert(tenantId, userId, snapshot)
-                                .map(ignored -> snapshot);
-                          }
-                          return Single.just(snapshot);
-                        })
-                    .map(snapshot -> buildCTAResponse(tenantId, activeCTAs, snapshot)));
+                writeCoalescer
+                    .flush(tenantId, userId)
+                    .andThen(
+                        stateMachineRepository.update(
+                            tenantId,
+                            userId,
+                            snapshot ->
+                                updateSnapshot(snapshot, activeCTAs, catalog, deltaSnapshot)))
+                    .map(snapshot -> render(tenantId, catalog, activeCTAs, snapshot)));
   }
 
   @Override
   public Single<Boolean> merge(String tenantId, Long userId, CTASnapshotRequest deltaSnapshot) {
-    return loadOrCreateSnapshot(tenantId, userId)
-        .map(
-            snapshot -> {
-              StateMachineUtil.mergeDeltaSnapshot(snapshot, deltaSnapshot);
-              return snapshot;
-            })
-        .flatMap(snapshot -> stateMachineRepository.upsert(tenantId, userId, snapshot));
+    // Deferred, so a malformed delta fails the returned Single rather than the caller
+    return Single.defer(
+        () -> {
+          if (deltaSnapshot.getCtas() != null) {
+            TenantCatalog catalog = cache.findTenantCatalog(tenantId);
+            long now = System.currentTimeMillis();
+            for (StateMachineSnapshot ctaDelta : deltaSnapshot.getCtas()) {
+              enforceLimits(catalog, Long.parseLong(ctaDelta.getCtaId()), ctaDelta, now);
+            }
+          }
+          if (writeCoalescer.isEnabled()) {
+            return writeCoalescer.submit(tenantId, userId, deltaSnapshot);
+          }
+          return stateMachineRepository.merge(tenantId, userId, deltaSnapshot);
+        });
   }
 
   @Override
@@ -103,24 +116,64 @@ public class SdkServiceImpl implements SdkService {
     return nudgePreviewRepository.find(tenantId, id);
   }
 
-  private Single<com.raven.thunder.api.model.UserDataSnapshot> loadOrCreateSnapshot(
-      String tenantId, Long userId) {
-    return stateMachineRepository
-        .find(tenantId, userId)
-        .switchIfEmpty(
-            Single.defer(
-                () ->
-                    Single.just(
-                        new com.raven.thunder.api.model.UserDataSnapshot(
-                            new HashMap<>(), new HashMap<>()))));
-  }
-
-  private boolean updateSnapshotWithStaleData(
+  /** Builds the response from the CTAs the user has not reached a frequency cap on. */
+  private CTAResponse render(
       String tenantId,
+      TenantCatalog catalog,
       Map<Long, CTA> activeCTAs,
       com.raven.thunder.api.model.UserDataSnapshot snapshot) {
-    Map<Long, CTA> pausedCTAs = CTAFilterUtil.filterByTenant(cache.findAllPausedCTA(), tenantId);
-    return StateMachineUtil.archiveStaleData(activeCTAs, pausedCTAs, snapshot);
+    Map<Long, CTA> uncappedCTAs =
+        FrequencyCapUtil.withoutCapped(
+            activeCTAs, catalog.getBehaviourTags(), snapshot, System.currentTimeMillis());
+    return responseMemo.render(
+        tenantId,
+        catalog,
+        uncappedCTAs,
+        snapshot,
+        () ->
+            ctaSnapshotMerger.mergeCTAWithSnapshot(
+                catalog.getBehaviourTags(), uncappedCTAs, catalog.getRenderedRules(), snapshot));
+  }
+
+  /**
+   * Archives stale data, applies the client delta, counts the exposures it reports and holds the
+   * snapshot to its limits; returns true if the snapshot changed.
+   */
+  private boolean updateSnapshot(
+      com.raven.thunder.api.model.UserDataSnapshot snapshot,
+      Map<Long, CTA> activeCTAs,
+      TenantCatalog catalog,
+      CTASnapshotRequest deltaSnapshot) {
+    boolean updated =
+        StateMachineUtil.archiveStaleData(activeCTAs, catalog.getPausedCTAs(), snapshot);
+    updated |=
+        FrequencyCapUtil.archiveStaleExposures(
+            snapshot, catalog.getActiveCTAs(), catalog.getPausedCTAs());
+    updated |= mergeDeltaSnapshotIfPresent(snapshot, deltaSnapshot);
+    updated |=
+        FrequencyCapUtil.recordExposures(
+            snapshot, activeCTAs, catalog.getBehaviourTags(), System.currentTimeMillis());
+    if (snapshot.getStateMachines() != null) {
+      long now = System.currentTimeMillis();
+      for (Map.Entry<Long, StateMachineSnapshot> entry : snapshot.getStateMachines().entrySet()) {
+        updated |= enforceLimits(catalog, entry.getKey(), entry.getValue(), now);
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Caps the groups and trims the timestamp lists of a CTA to what its rules need; returns true if
+   * anything was dropped.
+   */
+  private boolean enforceLimits(
+      TenantCatalog catalog, Long ctaId, StateMachineSnapshot ctaSnapshot, long now) {
+    CTA cta = catalog.getActiveCTAs().get(ctaId);
+    if (cta == null) {
+      cta = catalog.getPausedCTAs().get(ctaId);
+    }
+    return StateMachineUtil.enforceLimits(
+        ctaSnapshot, cta, catalog.getBehaviourTags(), maxTimestamps, now);
   }
 
   private boolean mergeDeltaSnapshotIfPresent(
@@ -133,16 +186,4 @@ public class SdkServiceImpl implements SdkService {
     }
     return false;
   }
-
-  private CTAResponse buildCTAResponse(
-      String tenantId,
-      Map<Long, CTA> activeCTAs,
-      com.raven.thunder.api.model.UserDataSnapshot snapshot) {
-    Map<String, BehaviourTag> tenantBehaviourTags =
-        cache.findAllBehaviourTags().entrySet().stream()
-            .filter(e -> tenantId.equals(e.getValue().getTenantId()))
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-    return ctaSnapshotMerger.mergeCTAWithSnapshot(tenantBehaviourTags, activeCTAs, snapshot);
-  }
 }
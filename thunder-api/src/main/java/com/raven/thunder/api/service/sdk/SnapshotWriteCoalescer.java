@@ -0,0 +1,226 @@
+package com.raven.thunder.api.service.sdk;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.config.WriteCoalescingConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.SingleEmitter;
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces snapshot merges for the same user that arrive within a short window into one
+ * repository write.
+ *
+ * <p>Users are striped over the Vert.x event loops by key hash, and all pending state of a stripe
+ * is only touched from its event loop, so no locking is needed. Callers complete once the write
+ * that carries their delta completes. A user's writes are chained and land in order, each after
+ * the one before. {@link #flush(String, Long)} writes a user's pending deltas immediately, which
+ * gives a following read on this node read-your-writes.
+ */
+@Slf4j
+@Singleton
+public class SnapshotWriteCoalescer {
+
+  static final String DELTAS = "coalescing.deltas";
+  static final String WRITES = "coalescing.writes";
+  static final String PENDING_USERS = "coalescing.pending.users";
+
+  private final StateMachineRepository stateMachineRepository;
+  private final MetricsRegistry metricsRegistry;
+  private final boolean enabled;
+  private final long windowMs;
+  private final int maxDeltas;
+  private final List<Stripe> stripes = new ArrayList<>();
+
+  @Inject
+  public SnapshotWriteCoalescer(
+      Vertx vertx,
+      StateMachineRepository stateMachineRepository,
+      WriteCoalescingConfig config,
+      MetricsRegistry metricsRegistry) {
+    this.stateMachineRepository = stateMachineRepository;
+    this.metricsRegistry = metricsRegistry;
+    this.enabled = config.isEnabledOrDefault();
+    this.windowMs = config.getWindowInterval().getMs();
+    this.maxDeltas = config.getMaxDeltasOrDefault();
+
+    for (EventExecutor executor : vertx.nettyEventLoopGroup()) {
+      stripes.add(new Stripe((EventLoop) executor));
+    }
+    metricsRegistry.gauge(
+        PENDING_USERS, () -> stripes.stream().mapToInt(stripe -> stripe.size).sum());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Queues a delta for the user and emits the result of the write that carries it. */
+  public Single<Boolean> submit(String tenantId, Long userId, CTASnapshotRequest deltaSnapshot) {
+    String key = key(tenantId, userId);
+    Stripe stripe = stripeFor(key);
+    return Single.create(
+        emitter ->
+            stripe.loop.execute(() -> stripe.add(key, tenantId, userId, deltaSnapshot, emitter)));
+  }
+
+  /**
+   * Writes the user's pending deltas now and completes once they, and any write of this user still
+   * in flight, are stored, so the read that follows sees them. Completes immediately when there is
+   * nothing to wait for or coalescing is disabled.
+   */
+  public Completable flush(String tenantId, Long userId) {
+    if (!enabled) {
+      return Completable.complete();
+    }
+    String key = key(tenantId, userId);
+    Stripe stripe = stripeFor(key);
+    return Completable.create(
+        emitter ->
+            stripe.loop.execute(
+                () -> stripe.flush(key).subscribe(emitter::onComplete, emitter::tryOnError)));
+  }
+
+  /** Writes every pending delta, for shutdown. */
+  public Completable flushAll() {
+    List<Completable> flushes = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      flushes.add(
+          Completable.create(
+              emitter ->
+                  stripe.loop.execute(
+                      () ->
+                          stripe.flushAll().subscribe(emitter::onComplete, emitter::tryOnError))));
+    }
+    return Completable.merge(flushes);
+  }
+
+  private Stripe stripeFor(String key) {
+    return stripes.get(Math.floorMod(key.hashCode(), stripes.size()));
+  }
+
+  private static String key(String tenantId, Long userId) {
+    return tenantId + ":" + userId;
+  }
+
+  /** Deltas of one user waiting for the window to close. */
+  private static final class Pending {
+    private final String tenantId;
+    private final Long userId;
+    private final UserDataSnapshot delta =
+        new UserDataSnapshot(new LinkedHashMap<>(), new LinkedHashMap<>());
+    private final List<SingleEmitter<Boolean>> waiters = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    private Pending(String tenantId, Long userId) {
+      this.tenantId = tenantId;
+      this.userId = userId;
+    }
+
+    private CTASnapshotRequest toRequest() {
+      return new CTASnapshotRequest(
+          new ArrayList<>(delta.getStateMachines().values()),
+          new ArrayList<>(delta.getBehaviourTags().values()));
+    }
+  }
+
+  /** Pending users owned by one event loop; only accessed from that loop. */
+  private final class Stripe {
+    private final EventLoop loop;
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final Map<String, Completable> inFlight = new HashMap<>();
+    private volatile int size;
+
+    private Stripe(EventLoop loop) {
+      this.loop = loop;
+    }
+
+    private void add(
+        String key,
+        String tenantId,
+        Long userId,
+        CTASnapshotRequest deltaSnapshot,
+        SingleEmitter<Boolean> emitter) {
+      metricsRegistry.increment(DELTAS);
+      Pending entry = pending.get(key);
+      if (entry == null) {
+        entry = new Pending(tenantId, userId);
+        pending.put(key, entry);
+        size = pending.size();
+        entry.timer = loop.schedule(() -> flush(key), windowMs, TimeUnit.MILLISECONDS);
+      }
+      try {
+        StateMachineUtil.coalesceDelta(entry.delta, deltaSnapshot);
+      } catch (RuntimeException e) {
+        emitter.tryOnError(e);
+        return;
+      }
+      entry.waiters.add(emitter);
+      if (entry.waiters.size() >= maxDeltas) {
+        flush(key);
+      }
+    }
+
+    /**
+     * Starts writing the user's pending deltas and returns the write in flight, if any. Errors are
+     * reported to the waiters, never to the returned Completable.
+     */
+    private Completable flush(String key) {
+      Pending entry = pending.remove(key);
+      size = pending.size();
+      if (entry == null) {
+        return inFlight.getOrDefault(key, Completable.complete());
+      }
+      entry.timer.cancel(false);
+      metricsRegistry.increment(WRITES);
+      // Chained behind the user's earlier write, so completing this one means all have landed
+      Completable previous = inFlight.getOrDefault(key, Completable.complete());
+      Completable write =
+          previous
+              .andThen(
+                  Completable.defer(
+                      () ->
+                          stateMachineRepository
+                              .merge(entry.tenantId, entry.userId, entry.toRequest())
+                              .doOnSuccess(
+                                  result ->
+                                      entry.waiters.forEach(waiter -> waiter.onSuccess(result)))
+                              .doOnError(
+                                  error -> {
+                                    log.error("Coalesced write failed for {}", key, error);
+                                    entry.waiters.forEach(waiter -> waiter.tryOnError(error));
+                                  })
+                              .ignoreElement()
+                              .onErrorComplete()))
+              .cache();
+      inFlight.put(key, write);
+      // Repository callbacks may run on another thread; stripe state is only touched here
+      write.subscribe(() -> loop.execute(() -> inFlight.remove(key, write)));
+      return write;
+    }
+
+    private Completable flushAll() {
+      List<Completable> writes = new ArrayList<>();
+      for (String key : new ArrayList<>(pending.keySet())) {
+        writes.add(flush(key));
+      }
+      return Completable.merge(writes);
+    }
+  }
+}
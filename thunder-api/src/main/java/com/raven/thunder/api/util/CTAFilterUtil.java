@@ -1,6 +1,8 @@
 package com.raven.thunder.api.util;
 
 import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.Rollout;
+import com.raven.thunder.core.util.RolloutUtil;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -12,34 +14,21 @@ public final class CTAFilterUtil {
     // Utility class - prevent instantiation
   }
 
-  /**
-   * Filters CTAs by tenant ID.
-   *
-   * @param ctas the map of CTAs to filter
-   * @param tenantId the tenant ID to filter by
-   * @return filtered map of CTAs for the tenant
-   */
-  public static Map<Long, CTA> filterByTenant(Map<Long, CTA> ctas, String tenantId) {
-    return ctas.entrySet().stream()
-        .filter(e -> tenantId.equals(e.getValue().getTenantId()))
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-  }
-
   /**
    * Filters active CTAs that are eligible for a user based on cohort eligibility rules. A CTA is
    * eligible if: - User has at least one cohort in the CTA's include list - User has no cohorts in
-   * the CTA's exclude list
+   * the CTA's exclude list - User is in the CTA's percentage rollout, if it has one
    *
-   * @param tenantId the tenant ID
+   * @param userId the user id, used for rollout buckets
    * @param userCohorts the set of user cohorts
-   * @param activeCTAs the map of active CTAs
+   * @param activeCTAs the map of active CTAs, already scoped to a single tenant
    * @return filtered map of eligible CTAs
    */
   public static Map<Long, CTA> filterEligibleCTAs(
-      String tenantId, Set<String> userCohorts, Map<Long, CTA> activeCTAs) {
+      Long userId, Set<String> userCohorts, Map<Long, CTA> activeCTAs) {
     return activeCTAs.entrySet().stream()
-        .filter(e -> tenantId.equals(e.getValue().getTenantId()))
         .filter(entry -> isEligibleByCohorts(entry.getValue(), userCohorts))
+        .filter(entry -> isInRollout(entry.getValue(), userId))
         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
   }
 
@@ -69,4 +58,20 @@ public final class CTAFilterUtil {
 
     return !hasExcludedCohort;
   }
+
+  /**
+   * Checks if a user is in a CTA's percentage rollout. CTAs without a rollout include everyone.
+   *
+   * @param cta the CTA to check
+   * @param userId the user id
+   * @return true if in the rollout, false otherwise
+   */
+  static boolean isInRollout(CTA cta, Long userId) {
+    Rollout rollout = cta.getRule().getCohortEligibility().getRollout();
+    if (rollout == null) {
+      return true;
+    }
+    return RolloutUtil.isInRollout(
+        userId, RolloutUtil.saltHash(rollout, cta.getId()), RolloutUtil.coveredBuckets(rollout));
+  }
 }
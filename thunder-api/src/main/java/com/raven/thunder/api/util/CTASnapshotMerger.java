@@ -1,6 +1,7 @@
 package com.raven.thunder.api.util;
 
 import com.raven.thunder.api.io.response.CTAResponse;
+import com.raven.thunder.api.io.response.RuleResponse;
 import com.raven.thunder.api.io.response.UserCTAAndStateMachineResponse;
 import com.raven.thunder.api.model.BehaviourExposureRule;
 import com.raven.thunder.api.model.BehaviourTagSnapshot;
@@ -49,7 +50,25 @@ public final class CTASnapshotMerger {
       Map<String, BehaviourTag> behaviourTagMap,
       Map<Long, CTA> activeCTAs,
       com.raven.thunder.api.model.UserDataSnapshot snapshot) {
-    List<UserCTAAndStateMachineResponse> userCTAList = buildUserCTAList(activeCTAs, snapshot);
+    return mergeCTAWithSnapshot(behaviourTagMap, activeCTAs, Collections.emptyMap(), snapshot);
+  }
+
+  /**
+   * Merges active CTAs with user snapshot, embedding rules rendered ahead of time where available.
+   *
+   * @param behaviourTagMap map of behaviour tags
+   * @param activeCTAs map of active CTAs
+   * @param renderedRules pre-rendered rules keyed by CTA id
+   * @param snapshot user data snapshot
+   * @return CTAResponse containing user CTAs and behaviour tag snapshots
+   */
+  public CTAResponse mergeCTAWithSnapshot(
+      Map<String, BehaviourTag> behaviourTagMap,
+      Map<Long, CTA> activeCTAs,
+      Map<Long, RuleResponse> renderedRules,
+      com.raven.thunder.api.model.UserDataSnapshot snapshot) {
+    List<UserCTAAndStateMachineResponse> userCTAList =
+        buildUserCTAList(activeCTAs, renderedRules, snapshot);
     List<BehaviourTagSnapshot> behaviourTagSnapshots =
         buildBehaviourTagSnapshots(behaviourTagMap, snapshot, extractBehaviourTagNames(activeCTAs));
 
@@ -58,15 +77,17 @@ public final class CTASnapshotMerger {
 
   /** Builds the list of user CTA responses from active CTAs and snapshot. */
   private List<UserCTAAndStateMachineResponse> buildUserCTAList(
-      Map<Long, CTA> activeCTAs, com.raven.thunder.api.model.UserDataSnapshot snapshot) {
+      Map<Long, CTA> activeCTAs,
+      Map<Long, RuleResponse> renderedRules,
+      com.raven.thunder.api.model.UserDataSnapshot snapshot) {
     return activeCTAs.values().stream()
-        .map(cta -> createUserCTAResponse(cta, snapshot))
+        .map(cta -> createUserCTAResponse(cta, ruleFor(cta, renderedRules), snapshot))
         .collect(Collectors.toList());
   }
 
   /** Creates a user CTA response for a single CTA. */
   private UserCTAAndStateMachineResponse createUserCTAResponse(
-      CTA cta, com.raven.thunder.api.model.UserDataSnapshot snapshot) {
+      CTA cta, RuleResponse rule, com.raven.thunder.api.model.UserDataSnapshot snapshot) {
     String behaviourTagName = extractFirstBehaviourTag(cta);
     com.raven.thunder.api.model.StateMachineSnapshot stateMachineSnapshot =
         snapshot.getStateMachines() != null ? snapshot.getStateMachines().get(cta.getId()) : null;
@@ -74,7 +95,7 @@ public final class CTASnapshotMerger {
     if (stateMachineSnapshot != null) {
       return new UserCTAAndStateMachineResponse(
           cta.getId().toString(),
-          ruleMapper.apply(cta.getRule()),
+          rule,
           stateMachineSnapshot.getActiveStateMachines(),
           stateMachineSnapshot.getResetAt(),
           stateMachineSnapshot.getActionDoneAt(),
@@ -82,7 +103,7 @@ public final class CTASnapshotMerger {
     } else {
       return new UserCTAAndStateMachineResponse(
           cta.getId().toString(),
-          ruleMapper.apply(cta.getRule()),
+          rule,
           Collections.emptyMap(),
           Collections.emptyList(),
           Collections.emptyList(),
@@ -90,6 +111,12 @@ public final class CTASnapshotMerger {
     }
   }
 
+  /** Returns the pre-rendered rule of the CTA, mapping it now when none was rendered. */
+  private RuleResponse ruleFor(CTA cta, Map<Long, RuleResponse> renderedRules) {
+    RuleResponse rendered = renderedRules.get(cta.getId());
+    return rendered != null ? rendered : ruleMapper.apply(cta.getRule());
+  }
+
   /** Extracts the first behaviour tag from a CTA, or empty string if none. */
   private String extractFirstBehaviourTag(CTA cta) {
     if (cta.getBehaviourTags() != null && !cta.getBehaviourTags().isEmpty()) {
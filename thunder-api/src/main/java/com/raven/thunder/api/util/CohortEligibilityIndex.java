@@ -0,0 +1,165 @@
+package com.raven.thunder.api.util;
+
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CohortEligibility;
+import com.raven.thunder.core.util.RolloutUtil;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cohort eligibility of a tenant's active CTAs, indexed once when the catalog is built. Each cohort
+ * maps to the bitset of CTAs that include it and the bitset of CTAs that exclude it, so a user's
+ * eligible CTAs are the union of their include bitsets minus the union of their exclude bitsets.
+ *
+ * <p>Results are memoized by the user's cohorts that appear in any rule, so users in the same
+ * cohort combination resolve with one lookup. The memo lives and dies with its catalog, so it
+ * never serves results across catalog versions. Percentage rollouts depend on the user rather
+ * than the cohorts, so they are applied to the memoized result with salt hashes computed here.
+ * Eligibility matches {@link CTAFilterUtil#filterEligibleCTAs}.
+ */
+public final class CohortEligibilityIndex {
+
+  static final int MAX_MEMOIZED_COHORT_SETS = 1024;
+
+  public static final CohortEligibilityIndex EMPTY =
+      new CohortEligibilityIndex(Collections.emptyMap());
+
+  private final Long[] ids;
+  private final CTA[] ctas;
+  private final Map<String, BitSet> includes = new HashMap<>();
+  private final Map<String, BitSet> excludes = new HashMap<>();
+  private final BitSet rollouts = new BitSet();
+  private final long[] saltHashes;
+  private final int[] coveredBuckets;
+
+  private final Map<Set<String>, Eligible> memo =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Set<String>, Eligible> eldest) {
+              return size() > MAX_MEMOIZED_COHORT_SETS;
+            }
+          });
+
+  public CohortEligibilityIndex(Map<Long, CTA> activeCTAs) {
+    this.ids = new Long[activeCTAs.size()];
+    this.ctas = new CTA[activeCTAs.size()];
+    this.saltHashes = new long[activeCTAs.size()];
+    this.coveredBuckets = new int[activeCTAs.size()];
+    int position = 0;
+    for (Map.Entry<Long, CTA> entry : activeCTAs.entrySet()) {
+      ids[position] = entry.getKey();
+      ctas[position] = entry.getValue();
+      CTA cta = entry.getValue();
+      if (cta.getRule() != null && cta.getRule().getCohortEligibility() != null) {
+        CohortEligibility eligibility = cta.getRule().getCohortEligibility();
+        index(includes, eligibility.getIncludes(), position);
+        index(excludes, eligibility.getExcludes(), position);
+        if (eligibility.getRollout() != null) {
+          rollouts.set(position);
+          saltHashes[position] = RolloutUtil.saltHash(eligibility.getRollout(), cta.getId());
+          coveredBuckets[position] = RolloutUtil.coveredBuckets(eligibility.getRollout());
+        }
+      }
+      position++;
+    }
+  }
+
+  /**
+   * Returns the CTAs the user is eligible for, keyed by CTA id. The map may be shared between
+   * callers and must not be modified.
+   */
+  public Map<Long, CTA> eligibleCTAs(Long userId, Set<String> userCohorts) {
+    Set<String> relevant = relevantCohorts(userCohorts);
+    if (relevant.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Eligible eligible = memo.get(relevant);
+    if (eligible == null) {
+      eligible = compute(relevant);
+      memo.put(relevant, eligible);
+    }
+    return eligible.forUser(userId);
+  }
+
+  int memoized() {
+    return memo.size();
+  }
+
+  /** Resolves eligibility from the bitsets without consulting the memo. */
+  Eligible compute(Set<String> userCohorts) {
+    BitSet eligible = new BitSet(ctas.length);
+    BitSet excluded = new BitSet(ctas.length);
+    for (String cohort : userCohorts) {
+      BitSet included = includes.get(cohort);
+      if (included != null) {
+        eligible.or(included);
+      }
+      BitSet exclusions = excludes.get(cohort);
+      if (exclusions != null) {
+        excluded.or(exclusions);
+      }
+    }
+    eligible.andNot(excluded);
+    if (eligible.isEmpty()) {
+      return new Eligible(Collections.emptyMap(), new int[0]);
+    }
+
+    Map<Long, CTA> result = new HashMap<>(eligible.cardinality() * 4 / 3 + 1);
+    for (int i = eligible.nextSetBit(0); i >= 0; i = eligible.nextSetBit(i + 1)) {
+      result.put(ids[i], ctas[i]);
+    }
+    eligible.and(rollouts);
+    return new Eligible(Collections.unmodifiableMap(result), eligible.stream().toArray());
+  }
+
+  /** Drops cohorts no rule mentions, so they do not split otherwise equal memo keys. */
+  private Set<String> relevantCohorts(Set<String> userCohorts) {
+    Set<String> relevant = new HashSet<>();
+    for (String cohort : userCohorts) {
+      if (includes.containsKey(cohort) || excludes.containsKey(cohort)) {
+        relevant.add(cohort);
+      }
+    }
+    return relevant;
+  }
+
+  /** CTAs eligible by cohorts, and the positions among them that still need a rollout check. */
+  final class Eligible {
+    private final Map<Long, CTA> ctas;
+    private final int[] rolledOut;
+
+    private Eligible(Map<Long, CTA> ctas, int[] rolledOut) {
+      this.ctas = ctas;
+      this.rolledOut = rolledOut;
+    }
+
+    Map<Long, CTA> forUser(Long userId) {
+      Map<Long, CTA> result = ctas;
+      for (int position : rolledOut) {
+        if (!RolloutUtil.isInRollout(userId, saltHashes[position], coveredBuckets[position])) {
+          if (result == ctas) {
+            result = new HashMap<>(ctas);
+          }
+          result.remove(ids[position]);
+        }
+      }
+      return result;
+    }
+  }
+
+  private static void index(Map<String, BitSet> index, List<String> cohorts, int position) {
+    if (cohorts == null) {
+      return;
+    }
+    for (String cohort : cohorts) {
+      index.computeIfAbsent(cohort, ignored -> new BitSet()).set(position);
+    }
+  }
+}
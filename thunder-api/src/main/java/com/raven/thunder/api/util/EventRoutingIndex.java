@@ -0,0 +1,96 @@
+package com.raven.thunder.api.util;
+
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import com.raven.thunder.core.util.FilterCompiler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import lombok.Getter;
+
+/**
+ * State transitions of a tenant's active CTAs, indexed by event name once when the catalog is
+ * built, so an ingested event only visits the CTAs whose rules mention it. Routes of an event are
+ * ordered by CTA id so events apply in the same order on every node.
+ *
+ * <p>Transition filters are compiled with {@link FilterCompiler} here, so each CTA's filters are
+ * compiled once per catalog version and events only evaluate the compiled predicates.
+ */
+public final class EventRoutingIndex {
+
+  public static final EventRoutingIndex EMPTY = new EventRoutingIndex(Collections.emptyMap());
+
+  private final Map<String, List<Route>> routes = new HashMap<>();
+
+  public EventRoutingIndex(Map<Long, CTA> activeCTAs) {
+    List<CTA> ctas = new ArrayList<>(activeCTAs.values());
+    ctas.sort(Comparator.comparing(CTA::getId));
+    for (CTA cta : ctas) {
+      if (cta.getRule() == null || cta.getRule().getStateTransition() == null) {
+        continue;
+      }
+      for (Map.Entry<String, Map<String, List<StateTransitionCondition>>> event :
+          cta.getRule().getStateTransition().entrySet()) {
+        if (event.getValue() == null || event.getValue().isEmpty()) {
+          continue;
+        }
+        routes
+            .computeIfAbsent(event.getKey(), ignored -> new ArrayList<>())
+            .add(new Route(cta, compile(event.getValue())));
+      }
+    }
+  }
+
+  /** Returns the routes of an event, empty when no active CTA reacts to it. */
+  public List<Route> routes(String eventName) {
+    return routes.getOrDefault(eventName, Collections.emptyList());
+  }
+
+  private static Map<String, List<Transition>> compile(
+      Map<String, List<StateTransitionCondition>> conditionsByState) {
+    Map<String, List<Transition>> transitions = new HashMap<>();
+    for (Map.Entry<String, List<StateTransitionCondition>> state : conditionsByState.entrySet()) {
+      if (state.getValue() == null) {
+        continue;
+      }
+      List<Transition> compiled = new ArrayList<>(state.getValue().size());
+      for (StateTransitionCondition condition : state.getValue()) {
+        if (condition != null && condition.getTransitionTo() != null) {
+          compiled.add(
+              new Transition(
+                  condition.getTransitionTo(), FilterCompiler.compile(condition.getFilters())));
+        }
+      }
+      transitions.put(state.getKey(), Collections.unmodifiableList(compiled));
+    }
+    return Collections.unmodifiableMap(transitions);
+  }
+
+  /** The transitions a single CTA makes on an event, keyed by the state they leave. */
+  @Getter
+  public static final class Route {
+    private final CTA cta;
+    private final Map<String, List<Transition>> transitions;
+
+    Route(CTA cta, Map<String, List<Transition>> transitions) {
+      this.cta = cta;
+      this.transitions = transitions;
+    }
+  }
+
+  /** A condition of a transition, with its filters compiled. */
+  @Getter
+  public static final class Transition {
+    private final String transitionTo;
+    private final Predicate<Map<String, Object>> filter;
+
+    Transition(String transitionTo, Predicate<Map<String, Object>> filter) {
+      this.transitionTo = transitionTo;
+      this.filter = filter;
+    }
+  }
+}
@@ -0,0 +1,477 @@
+package com.raven.thunder.api.util;
+
+import com.raven.thunder.api.model.ExposureCounter;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.model.BehaviourTag;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.Frequency;
+import com.raven.thunder.core.model.rule.LifespanFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side exposure and frequency capping for the appLaunch response.
+ *
+ * <p>Each user snapshot keeps an {@link ExposureCounter} per CTA and per behaviour tag. New
+ * {@code actionDoneAt} entries the client reports are folded into the counters of their CTA and of
+ * the CTA's behaviour tags. Window counts are kept in buckets sized from the {@link
+ * WindowFrequency} unit and value, at most {@value #MAX_BUCKETS} per window, and buckets older
+ * than the window are dropped. A CTA is capped once the lifespan or window limit of its rule or
+ * of one of its behaviour tags is reached. Session limits need the client's session and are still
+ * enforced by the SDK.
+ *
+ * <p>Window counts include the oldest bucket that overlaps the window, so a cap may last up to one
+ * bucket longer than the window but is never lifted early.
+ */
+public final class FrequencyCapUtil {
+
+  /** Upper bound on buckets per window; longer windows get wider buckets. */
+  static final int MAX_BUCKETS = 60;
+
+  /** {@code actionDoneAt} entries are kept at least this long for the SDK's session limits. */
+  static final long MIN_RETENTION_MS = TimeUnit.DAYS.toMillis(1);
+
+  private static final String CTA_PREFIX = "cta:";
+  private static final String TAG_PREFIX = "tag:";
+
+  private FrequencyCapUtil() {
+    // Utility class - prevent instantiation
+  }
+
+  /** Counter key of a CTA. */
+  public static String ctaKey(Long ctaId) {
+    return CTA_PREFIX + ctaId;
+  }
+
+  /** Counter key of a behaviour tag. */
+  public static String tagKey(String tagName) {
+    return TAG_PREFIX + tagName;
+  }
+
+  /**
+   * Folds new {@code actionDoneAt} entries of the given CTAs into their counters, drops buckets
+   * that left their window, and trims {@code actionDoneAt} lists the counters make redundant.
+   *
+   * @param snapshot the user snapshot, updated in place
+   * @param ctas CTAs whose exposures are counted
+   * @param behaviourTags behaviour tags of the catalog keyed by name
+   * @param now current time in milliseconds
+   * @return true if the snapshot changed
+   */
+  public static boolean recordExposures(
+      UserDataSnapshot snapshot,
+      Map<Long, CTA> ctas,
+      Map<String, BehaviourTag> behaviourTags,
+      long now) {
+    if (snapshot.getStateMachines() == null || snapshot.getStateMachines().isEmpty()) {
+      return false;
+    }
+
+    boolean updated = false;
+    for (Map.Entry<Long, StateMachineSnapshot> entry : snapshot.getStateMachines().entrySet()) {
+      CTA cta = ctas.get(entry.getKey());
+      if (cta != null) {
+        updated |= record(snapshot, cta, entry.getValue(), behaviourTags, now);
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Drops counters of CTAs that are neither active nor paused and of behaviour tags none of them
+   * references, the way {@link StateMachineUtil#archiveStaleData} drops their state machines.
+   *
+   * @return true if any counter was removed
+   */
+  public static boolean archiveStaleExposures(
+      UserDataSnapshot snapshot, Map<Long, CTA> activeCTAs, Map<Long, CTA> pausedCTAs) {
+    if (snapshot.getExposures() == null || snapshot.getExposures().isEmpty()) {
+      return false;
+    }
+    Set<String> liveKeys = new HashSet<>();
+    for (Map<Long, CTA> ctas : List.of(activeCTAs, pausedCTAs)) {
+      for (CTA cta : ctas.values()) {
+        liveKeys.add(ctaKey(cta.getId()));
+        for (String tagName : tagsOf(cta)) {
+          liveKeys.add(tagKey(tagName));
+        }
+      }
+    }
+    return snapshot.getExposures().keySet().retainAll(liveKeys);
+  }
+
+  /**
+   * Returns the CTAs the user has not been capped on, or the same map when none is capped.
+   *
+   * @param ctas CTAs eligible for the user
+   * @param behaviourTags behaviour tags of the catalog keyed by name
+   * @param snapshot the user snapshot holding the counters
+   * @param now current time in milliseconds
+   */
+  public static Map<Long, CTA> withoutCapped(
+      Map<Long, CTA> ctas,
+      Map<String, BehaviourTag> behaviourTags,
+      UserDataSnapshot snapshot,
+      long now) {
+    if (snapshot.getExposures() == null || snapshot.getExposures().isEmpty()) {
+      return ctas;
+    }
+    Map<Long, CTA> uncapped = new LinkedHashMap<>();
+    for (Map.Entry<Long, CTA> entry : ctas.entrySet()) {
+      if (!isCapped(entry.getValue(), behaviourTags, snapshot.getExposures(), now)) {
+        uncapped.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return uncapped.size() == ctas.size() ? ctas : Collections.unmodifiableMap(uncapped);
+  }
+
+  /** Whether the lifespan or window limit of the CTA's rule or behaviour tags is reached. */
+  static boolean isCapped(
+      CTA cta,
+      Map<String, BehaviourTag> behaviourTags,
+      Map<String, ExposureCounter> exposures,
+      long now) {
+    Frequency frequency = cta.getRule() == null ? null : cta.getRule().getFrequency();
+    if (frequency != null
+        && isCapped(
+            frequency.getWindow(),
+            frequency.getLifeSpan(),
+            exposures.get(ctaKey(cta.getId())),
+            now)) {
+      return true;
+    }
+    for (String tagName : tagsOf(cta)) {
+      BehaviourTag tag = behaviourTags.get(tagName);
+      if (tag != null
+          && tag.getExposureRule() != null
+          && isCapped(
+              tag.getExposureRule().getWindow(),
+              tag.getExposureRule().getLifespan(),
+              exposures.get(tagKey(tagName)),
+              now)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isCapped(
+      WindowFrequency window, LifespanFrequency lifespan, ExposureCounter counter, long now) {
+    if (counter == null) {
+      return false;
+    }
+    if (lifespan != null
+        && isLimit(lifespan.getLimit())
+        && counter.getTotal() != null
+        && counter.getTotal() >= lifespan.getLimit()) {
+      return true;
+    }
+    return isValid(window) && windowCount(counter, windowMillis(window), now) >= window.getLimit();
+  }
+
+  private static boolean record(
+      UserDataSnapshot snapshot,
+      CTA cta,
+      StateMachineSnapshot ctaSnapshot,
+      Map<String, BehaviourTag> behaviourTags,
+      long now) {
+    Frequency frequency = cta.getRule() == null ? null : cta.getRule().getFrequency();
+    WindowFrequency ctaWindow = frequency == null ? null : frequency.getWindow();
+    List<String> tagNames = new ArrayList<>();
+    List<WindowFrequency> tagWindows = new ArrayList<>();
+    boolean lifespan = frequency != null && hasLimit(frequency.getLifeSpan());
+    for (String tagName : tagsOf(cta)) {
+      BehaviourTag tag = behaviourTags.get(tagName);
+      if (tag != null && tag.getExposureRule() != null) {
+        tagNames.add(tagName);
+        tagWindows.add(tag.getExposureRule().getWindow());
+        lifespan |= hasLimit(tag.getExposureRule().getLifespan());
+      }
+    }
+    if (!lifespan
+        && !isValid(ctaWindow)
+        && tagWindows.stream().noneMatch(FrequencyCapUtil::isValid)) {
+      return false;
+    }
+
+    boolean updated = false;
+    List<Long> actionDoneAt = ctaSnapshot.getActionDoneAt();
+    if (actionDoneAt != null && !actionDoneAt.isEmpty()) {
+      ExposureCounter ctaCounter = counter(snapshot, ctaKey(cta.getId()), ctaWindow);
+      long countedUntil =
+          ctaCounter.getCountedUntil() == null ? Long.MIN_VALUE : ctaCounter.getCountedUntil();
+      long newest = countedUntil;
+      for (Long timestamp : actionDoneAt) {
+        if (timestamp == null || timestamp <= countedUntil) {
+          continue;
+        }
+        add(ctaCounter, timestamp);
+        for (int i = 0; i < tagNames.size(); i++) {
+          add(counter(snapshot, tagKey(tagNames.get(i)), tagWindows.get(i)), timestamp);
+        }
+        newest = Math.max(newest, timestamp);
+        updated = true;
+      }
+      if (newest != countedUntil) {
+        ctaCounter.setCountedUntil(newest);
+      }
+    }
+
+    Map<String, ExposureCounter> exposures = snapshot.getExposures();
+    if (exposures != null) {
+      updated |= prune(exposures.get(ctaKey(cta.getId())), ctaWindow, now);
+      for (int i = 0; i < tagNames.size(); i++) {
+        updated |= prune(exposures.get(tagKey(tagNames.get(i))), tagWindows.get(i), now);
+      }
+    }
+    if (!lifespan) {
+      // Once counted, entries older than every window are no longer looked at by the SDK
+      List<Long> actionDoneAt =
+          trim(
+              ctaSnapshot.getActionDoneAt(),
+              now - retentionMillis(ctaWindow, tagWindows),
+              0,
+              Integer.MAX_VALUE);
+      if (actionDoneAt != null) {
+        ctaSnapshot.setActionDoneAt(actionDoneAt);
+        updated = true;
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Trims the {@code resetAt} and {@code actionDoneAt} lists of a CTA to what its frequency checks
+   * can still look at: entries inside its longest window, kept at least a day for the SDK's session
+   * limits, and the newest entries a lifespan limit counts. Neither list keeps more than {@code
+   * maxEntries}; exposures beyond that are still held by the counters.
+   *
+   * @param ctaSnapshot the CTA's snapshot, or a delta for it
+   * @param cta the CTA, or null if the catalog no longer has it
+   * @param behaviourTags behaviour tags of the catalog keyed by name
+   * @param maxEntries most entries kept per list
+   * @param now current time in milliseconds
+   * @return true if either list was trimmed
+   */
+  public static boolean trimTimestamps(
+      StateMachineSnapshot ctaSnapshot,
+      CTA cta,
+      Map<String, BehaviourTag> behaviourTags,
+      int maxEntries,
+      long now) {
+    long horizon = Long.MIN_VALUE;
+    int lifespanLimit = maxEntries;
+    if (cta != null) {
+      horizon = now - Math.max(MIN_RETENTION_MS, longestWindowMillis(cta, behaviourTags));
+      lifespanLimit = Math.min(maxEntries, longestLifespanLimit(cta, behaviourTags));
+    }
+    List<Long> resetAt = trim(ctaSnapshot.getResetAt(), horizon, lifespanLimit, maxEntries);
+    List<Long> actionDoneAt =
+        trim(ctaSnapshot.getActionDoneAt(), horizon, lifespanLimit, maxEntries);
+    if (resetAt != null) {
+      ctaSnapshot.setResetAt(resetAt);
+    }
+    if (actionDoneAt != null) {
+      ctaSnapshot.setActionDoneAt(actionDoneAt);
+    }
+    return resetAt != null || actionDoneAt != null;
+  }
+
+  /**
+   * Keeps the newest {@code maxEntries} timestamps that are after the horizon or among the newest
+   * {@code keepNewest}; returns null if nothing is dropped.
+   */
+  private static List<Long> trim(
+      List<Long> timestamps, long horizon, int keepNewest, int maxEntries) {
+    if (timestamps == null || timestamps.isEmpty()) {
+      return null;
+    }
+    List<Long> sorted = new ArrayList<>(timestamps.size());
+    for (Long timestamp : timestamps) {
+      if (timestamp != null) {
+        sorted.add(timestamp);
+      }
+    }
+    Collections.sort(sorted);
+    int from = sorted.size() - Math.min(sorted.size(), keepNewest);
+    while (from > 0 && sorted.get(from - 1) > horizon) {
+      from--;
+    }
+    from = Math.max(from, sorted.size() - maxEntries);
+    if (from == 0 && sorted.size() == timestamps.size()) {
+      return null;
+    }
+    return new ArrayList<>(sorted.subList(from, sorted.size()));
+  }
+
+  /** Largest lifespan limit of the CTA's rule and behaviour tags, or 0 without one. */
+  private static int longestLifespanLimit(CTA cta, Map<String, BehaviourTag> behaviourTags) {
+    Frequency frequency = cta.getRule() == null ? null : cta.getRule().getFrequency();
+    int limit =
+        frequency != null && hasLimit(frequency.getLifeSpan())
+            ? frequency.getLifeSpan().getLimit()
+            : 0;
+    for (String tagName : tagsOf(cta)) {
+      BehaviourTag tag = behaviourTags.get(tagName);
+      if (tag != null
+          && tag.getExposureRule() != null
+          && hasLimit(tag.getExposureRule().getLifespan())) {
+        limit = Math.max(limit, tag.getExposureRule().getLifespan().getLimit());
+      }
+    }
+    return limit;
+  }
+
+  /** Returns the counter under the key, re-bucketing it if the window changed since. */
+  private static ExposureCounter counter(
+      UserDataSnapshot snapshot, String key, WindowFrequency window) {
+    long bucketMillis = isValid(window) ? bucketMillis(window) : 0L;
+    if (snapshot.getExposures() == null) {
+      snapshot.setExposures(new HashMap<>());
+    }
+    ExposureCounter counter = snapshot.getExposures().get(key);
+    if (counter == null) {
+      counter =
+          new ExposureCounter(null, 0L, bucketMillis, bucketMillis > 0 ? new HashMap<>() : null);
+      snapshot.getExposures().put(key, counter);
+      return counter;
+    }
+    long current = counter.getBucketMillis() == null ? 0L : counter.getBucketMillis();
+    if (current != bucketMillis) {
+      Map<Long, Integer> buckets = bucketMillis > 0 ? new HashMap<>() : null;
+      if (buckets != null && counter.getBuckets() != null) {
+        for (Map.Entry<Long, Integer> bucket : counter.getBuckets().entrySet()) {
+          long start = bucketStart(bucket.getKey(), bucketMillis);
+          buckets.merge(start, bucket.getValue(), Integer::sum);
+        }
+      }
+      counter.setBucketMillis(bucketMillis);
+      counter.setBuckets(buckets);
+    }
+    return counter;
+  }
+
+  private static void add(ExposureCounter counter, long timestamp) {
+    counter.setTotal(counter.getTotal() == null ? 1L : counter.getTotal() + 1);
+    if (counter.getBucketMillis() != null && counter.getBucketMillis() > 0) {
+      if (counter.getBuckets() == null) {
+        counter.setBuckets(new HashMap<>());
+      }
+      long start = bucketStart(timestamp, counter.getBucketMillis());
+      counter.getBuckets().merge(start, 1, Integer::sum);
+    }
+  }
+
+  /** Drops buckets that no longer overlap the window. */
+  private static boolean prune(ExposureCounter counter, WindowFrequency window, long now) {
+    if (counter == null || counter.getBuckets() == null || !isValid(window)) {
+      return false;
+    }
+    long horizon = now - windowMillis(window);
+    long width = counter.getBucketMillis();
+    return counter.getBuckets().keySet().removeIf(start -> start + width <= horizon);
+  }
+
+  /** Exposures in the buckets overlapping the window ending now. */
+  static long windowCount(ExposureCounter counter, long windowMillis, long now) {
+    if (counter.getBuckets() == null || counter.getBucketMillis() == null) {
+      return 0L;
+    }
+    long horizon = now - windowMillis;
+    long width = counter.getBucketMillis();
+    long count = 0L;
+    for (Map.Entry<Long, Integer> bucket : counter.getBuckets().entrySet()) {
+      if (bucket.getKey() + width > horizon) {
+        count += bucket.getValue();
+      }
+    }
+    return count;
+  }
+
+  private static long retentionMillis(WindowFrequency ctaWindow, List<WindowFrequency> tagWindows) {
+    long retention = MIN_RETENTION_MS;
+    if (isValid(ctaWindow)) {
+      retention = Math.max(retention, windowMillis(ctaWindow));
+    }
+    for (WindowFrequency window : tagWindows) {
+      if (isValid(window)) {
+        retention = Math.max(retention, windowMillis(window));
+      }
+    }
+    return retention;
+  }
+
+  /**
+   * Longest window the CTA is capped over, from its own frequency and its behaviour tags' exposure
+   * rules, or 0 without one.
+   */
+  public static long longestWindowMillis(CTA cta, Map<String, BehaviourTag> behaviourTags) {
+    Frequency frequency = cta.getRule() == null ? null : cta.getRule().getFrequency();
+    WindowFrequency ctaWindow = frequency == null ? null : frequency.getWindow();
+    long longest = isValid(ctaWindow) ? windowMillis(ctaWindow) : 0L;
+    for (String tagName : tagsOf(cta)) {
+      BehaviourTag tag = behaviourTags.get(tagName);
+      WindowFrequency tagWindow =
+          tag == null || tag.getExposureRule() == null ? null : tag.getExposureRule().getWindow();
+      if (isValid(tagWindow)) {
+        longest = Math.max(longest, windowMillis(tagWindow));
+      }
+    }
+    return longest;
+  }
+
+  /** Bucket width for a window: one unit per bucket, widened to keep at most MAX_BUCKETS. */
+  static long bucketMillis(WindowFrequency window) {
+    int buckets = Math.min(window.getValue(), MAX_BUCKETS);
+    long windowMillis = windowMillis(window);
+    return (windowMillis + buckets - 1) / buckets;
+  }
+
+  static long windowMillis(WindowFrequency window) {
+    switch (window.getUnit()) {
+      case days:
+        return TimeUnit.DAYS.toMillis(window.getValue());
+      case hours:
+        return TimeUnit.HOURS.toMillis(window.getValue());
+      case minutes:
+        return TimeUnit.MINUTES.toMillis(window.getValue());
+      case seconds:
+      default:
+        return TimeUnit.SECONDS.toMillis(window.getValue());
+    }
+  }
+
+  private static long bucketStart(long timestamp, long bucketMillis) {
+    return Math.floorDiv(timestamp, bucketMillis) * bucketMillis;
+  }
+
+  /** Non-positive limits are treated as unset and left to the SDK. */
+  private static boolean isLimit(Integer limit) {
+    return limit != null && limit > 0;
+  }
+
+  private static boolean hasLimit(LifespanFrequency lifespan) {
+    return lifespan != null && isLimit(lifespan.getLimit());
+  }
+
+  private static boolean isValid(WindowFrequency window) {
+    return window != null
+        && isLimit(window.getLimit())
+        && window.getUnit() != null
+        && window.getValue() != null
+        && window.getValue() > 0;
+  }
+
+  private static List<String> tagsOf(CTA cta) {
+    return cta.getBehaviourTags() == null ? Collections.emptyList() : cta.getBehaviourTags();
+  }
+}
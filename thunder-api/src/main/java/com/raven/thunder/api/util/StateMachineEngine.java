@@ -0,0 +1,209 @@
+package com.raven.thunder.api.util;
+
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.GroupByConfig;
+import com.raven.thunder.core.model.rule.Rule;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Advances user state machines from events on the server, the way the SDK does on the client.
+ *
+ * <p>A CTA's state machines are keyed by group: the event's values of the rule's {@code
+ * groupByKeys} joined with {@code _}, or {@value #DEFAULT_GROUP} without keys. A group without a
+ * state machine starts in {@value #INITIAL_STATE}, and one older than the rule's {@code
+ * stateMachineTTL} is dropped and starts over. The first condition of the current state whose
+ * filters match the event properties, falling back to the state machine context, wins. Entering a
+ * reset state removes the state machine and records the reset.
+ */
+public final class StateMachineEngine {
+
+  public static final String INITIAL_STATE = "0";
+  public static final String DEFAULT_GROUP = "default";
+
+  private StateMachineEngine() {
+    // Utility class - prevent instantiation
+  }
+
+  /**
+   * Applies an event to the snapshot in place.
+   *
+   * @param snapshot the user snapshot to advance
+   * @param routes the routes of the event from the catalog's {@link EventRoutingIndex}
+   * @param eligibleCTAs CTAs the user is eligible for; routes of other CTAs are skipped
+   * @param properties the event properties
+   * @param now event time in milliseconds
+   * @return true if any state machine changed
+   */
+  public static boolean advance(
+      UserDataSnapshot snapshot,
+      List<EventRoutingIndex.Route> routes,
+      Map<Long, CTA> eligibleCTAs,
+      Map<String, Object> properties,
+      long now) {
+    if (snapshot.getStateMachines() == null) {
+      snapshot.setStateMachines(new HashMap<>());
+    }
+
+    boolean updated = false;
+    for (EventRoutingIndex.Route route : routes) {
+      if (eligibleCTAs.containsKey(route.getCta().getId())) {
+        updated |= advance(snapshot.getStateMachines(), route, properties, now);
+      }
+    }
+    return updated;
+  }
+
+  private static boolean advance(
+      Map<Long, StateMachineSnapshot> stateMachines,
+      EventRoutingIndex.Route route,
+      Map<String, Object> properties,
+      long now) {
+    CTA cta = route.getCta();
+    Rule rule = cta.getRule();
+    String groupId = groupId(rule.getGroupByConfig(), properties);
+    if (groupId == null) {
+      return false;
+    }
+
+    boolean updated = false;
+    StateMachineSnapshot ctaSnapshot = stateMachines.get(cta.getId());
+    StateMachine stateMachine =
+        ctaSnapshot == null || ctaSnapshot.getActiveStateMachines() == null
+            ? null
+            : ctaSnapshot.getActiveStateMachines().get(groupId);
+    if (stateMachine != null && isExpired(stateMachine, rule, now)) {
+      ctaSnapshot.getActiveStateMachines().remove(groupId);
+      stateMachine = null;
+      updated = true;
+    }
+
+    String fromState = stateMachine == null ? INITIAL_STATE : stateMachine.getCurrentState();
+    List<EventRoutingIndex.Transition> transitions = route.getTransitions().get(fromState);
+    if (transitions == null) {
+      return updated;
+    }
+
+    Map<String, Object> scope = scope(stateMachine, properties);
+    for (EventRoutingIndex.Transition transition : transitions) {
+      if (transition.getFilter().test(scope)) {
+        if (ctaSnapshot == null) {
+          ctaSnapshot = newSnapshot(cta.getId());
+          stateMachines.put(cta.getId(), ctaSnapshot);
+        }
+        String toState = transition.getTransitionTo();
+        transition(ctaSnapshot, groupId, stateMachine, rule, toState, properties, now);
+        return true;
+      }
+    }
+    return updated;
+  }
+
+  private static void transition(
+      StateMachineSnapshot ctaSnapshot,
+      String groupId,
+      StateMachine stateMachine,
+      Rule rule,
+      String toState,
+      Map<String, Object> properties,
+      long now) {
+    if (ctaSnapshot.getActiveStateMachines() == null) {
+      ctaSnapshot.setActiveStateMachines(new HashMap<>());
+    }
+    Map<String, StateMachine> active = ctaSnapshot.getActiveStateMachines();
+
+    if (rule.getResetStates() != null && rule.getResetStates().contains(toState)) {
+      active.remove(groupId);
+      List<Long> resetAt =
+          ctaSnapshot.getResetAt() == null
+              ? new ArrayList<>()
+              : new ArrayList<>(ctaSnapshot.getResetAt());
+      resetAt.add(now);
+      ctaSnapshot.setResetAt(resetAt);
+      return;
+    }
+
+    Map<String, Object> context =
+        context(
+            rule.getContextParams(),
+            stateMachine == null ? null : stateMachine.getContext(),
+            properties);
+    if (stateMachine == null) {
+      evictOldestIfFull(active, rule.getGroupByConfig());
+      active.put(groupId, new StateMachine(toState, now, context, now, null));
+      return;
+    }
+    stateMachine.setCurrentState(toState);
+    stateMachine.setLastTransitionAt(now);
+    stateMachine.setContext(context);
+  }
+
+  /** Joins the event's group-by values, or returns null if the event lacks one of them. */
+  static String groupId(GroupByConfig groupByConfig, Map<String, Object> properties) {
+    if (groupByConfig == null
+        || groupByConfig.getGroupByKeys() == null
+        || groupByConfig.getGroupByKeys().isEmpty()) {
+      return DEFAULT_GROUP;
+    }
+    StringJoiner groupId = new StringJoiner("_");
+    for (String key : groupByConfig.getGroupByKeys()) {
+      Object value = properties.get(key);
+      if (value == null) {
+        return null;
+      }
+      groupId.add(String.valueOf(value));
+    }
+    return groupId.toString();
+  }
+
+  private static boolean isExpired(StateMachine stateMachine, Rule rule, long now) {
+    return rule.getStateMachineTTL() != null
+        && stateMachine.getCreatedAt() != null
+        && now - stateMachine.getCreatedAt() > rule.getStateMachineTTL();
+  }
+
+  /** Keeps a new group within the rule's cap by dropping the least recently advanced ones. */
+  private static void evictOldestIfFull(
+      Map<String, StateMachine> active, GroupByConfig groupByConfig) {
+    if (groupByConfig == null || groupByConfig.getMaxActiveStateMachineCount() == null) {
+      return;
+    }
+    StateMachineUtil.evictOldest(
+        active, Math.max(1, groupByConfig.getMaxActiveStateMachineCount()) - 1);
+  }
+
+  private static Map<String, Object> scope(
+      StateMachine stateMachine, Map<String, Object> properties) {
+    if (stateMachine == null || stateMachine.getContext() == null) {
+      return properties;
+    }
+    Map<String, Object> scope = new HashMap<>(stateMachine.getContext());
+    scope.putAll(properties);
+    return scope;
+  }
+
+  /** Carries the existing context forward and records the event's context params. */
+  private static Map<String, Object> context(
+      List<String> contextParams, Map<String, Object> existing, Map<String, Object> properties) {
+    Map<String, Object> context = existing == null ? new HashMap<>() : new HashMap<>(existing);
+    if (contextParams != null) {
+      for (String param : contextParams) {
+        if (properties.get(param) != null) {
+          context.put(param, properties.get(param));
+        }
+      }
+    }
+    return context;
+  }
+
+  private static StateMachineSnapshot newSnapshot(Long ctaId) {
+    return new StateMachineSnapshot(
+        String.valueOf(ctaId), new HashMap<>(), new ArrayList<>(), new ArrayList<>());
+  }
+}
@@ -2,8 +2,11 @@ package com.raven.thunder.api.util;
 
 import com.raven.thunder.api.model.StateMachine;
 import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.core.model.BehaviourTag;
 import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.GroupByConfig;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -129,6 +132,83 @@ public final class StateMachineUtil {
     return !tagsToRemove.isEmpty();
   }
 
+  /**
+   * Keeps a CTA's state machines within the group cap of its rule's {@link GroupByConfig}, evicting
+   * the ones advanced least recently, as {@link StateMachineEngine} does for new groups.
+   *
+   * @param ctaSnapshot the CTA's snapshot, or a delta for it
+   * @param cta the CTA, or null if the catalog no longer has it
+   * @return true if any state machine was evicted
+   */
+  public static boolean enforceGroupCap(StateMachineSnapshot ctaSnapshot, CTA cta) {
+    int max = groupCap(cta);
+    Map<String, StateMachine> active = ctaSnapshot.getActiveStateMachines();
+    if (max == 0 || active == null || active.size() <= max) {
+      return false;
+    }
+    Map<String, StateMachine> retained = new HashMap<>(active);
+    evictOldest(retained, max);
+    ctaSnapshot.setActiveStateMachines(retained);
+    return true;
+  }
+
+  /**
+   * The most state machines the CTA keeps at once, from its rule's {@link GroupByConfig}.
+   *
+   * @param cta the CTA, or null if the catalog no longer has it
+   * @return the cap, at least 1, or 0 if the CTA has none
+   */
+  public static int groupCap(CTA cta) {
+    GroupByConfig groupByConfig =
+        cta == null || cta.getRule() == null ? null : cta.getRule().getGroupByConfig();
+    if (groupByConfig == null || groupByConfig.getMaxActiveStateMachineCount() == null) {
+      return 0;
+    }
+    return Math.max(1, groupByConfig.getMaxActiveStateMachineCount());
+  }
+
+  /**
+   * Caps the groups and trims the timestamp lists of a CTA to what its rules need, for both
+   * client deltas and server-side transitions. Groups and lists are replaced rather than mutated,
+   * since those of a delta may still be shared with the request it came from.
+   *
+   * @param ctaSnapshot the CTA's snapshot, or a delta for it
+   * @param cta the CTA, or null if the catalog no longer has it
+   * @param behaviourTags the tenant's behaviour tags, for the windows of the CTA's tags
+   * @param maxTimestamps the most timestamps kept per list
+   * @param now the current time in milliseconds
+   * @return true if anything was dropped
+   */
+  public static boolean enforceLimits(
+      StateMachineSnapshot ctaSnapshot,
+      CTA cta,
+      Map<String, BehaviourTag> behaviourTags,
+      int maxTimestamps,
+      long now) {
+    boolean updated = enforceGroupCap(ctaSnapshot, cta);
+    updated |= FrequencyCapUtil.trimTimestamps(ctaSnapshot, cta, behaviourTags, maxTimestamps, now);
+    return updated;
+  }
+
+  /** Drops the least recently advanced state machines until at most {@code keep} remain. */
+  static void evictOldest(Map<String, StateMachine> active, int keep) {
+    int excess = active.size() - keep;
+    if (excess <= 0) {
+      return;
+    }
+    // One sort rather than a scan per eviction, since this runs on oversized maps
+    List<Map.Entry<String, StateMachine>> entries = new ArrayList<>(active.entrySet());
+    entries.sort(
+        Comparator.comparingLong(
+            entry -> {
+              Long lastTransitionAt = entry.getValue().getLastTransitionAt();
+              return lastTransitionAt == null ? Long.MIN_VALUE : lastTransitionAt;
+            }));
+    for (int i = 0; i < excess; i++) {
+      active.remove(entries.get(i).getKey());
+    }
+  }
+
   /**
    * Merges a delta snapshot into the existing snapshot, updating state machines and behaviour tags.
    *
@@ -149,6 +229,51 @@ public final class StateMachineUtil {
     }
   }
 
+  /**
+   * Folds a delta into a pending, not yet written delta, so that applying the pending delta once
+   * has the same effect as applying each delta in order with {@link #mergeDeltaSnapshot}. Per
+   * group the state machine with the newest transition is kept, including its reset flag, and
+   * CTA metadata and behaviour tags follow the latest delta.
+   *
+   * @param pending the accumulated delta, keyed like a snapshot
+   * @param deltaSnapshot the delta to fold in
+   */
+  public static void coalesceDelta(
+      com.raven.thunder.api.model.UserDataSnapshot pending,
+      com.raven.thunder.api.io.request.CTASnapshotRequest deltaSnapshot) {
+    initializeSnapshotMaps(pending);
+
+    if (deltaSnapshot.getCtas() != null) {
+      for (StateMachineSnapshot requested : deltaSnapshot.getCtas()) {
+        // The pending delta outlives the request, so it must not share objects with it
+        StateMachineSnapshot ctaDelta = deepCopyOf(requested);
+        Long ctaId = Long.parseLong(ctaDelta.getCtaId());
+        StateMachineSnapshot existing = pending.getStateMachines().get(ctaId);
+
+        if (existing == null) {
+          pending.getStateMachines().put(ctaId, ctaDelta);
+          continue;
+        }
+
+        if (ctaDelta.getActiveStateMachines() != null) {
+          for (Map.Entry<String, StateMachine> smDelta :
+              ctaDelta.getActiveStateMachines().entrySet()) {
+            StateMachine current = existing.getActiveStateMachines().get(smDelta.getKey());
+            if (current == null
+                || current.getLastTransitionAt() <= smDelta.getValue().getLastTransitionAt()) {
+              existing.getActiveStateMachines().put(smDelta.getKey(), smDelta.getValue());
+            }
+          }
+        }
+        updateCTAMetadata(existing, ctaDelta);
+      }
+    }
+
+    if (deltaSnapshot.getBehaviourTags() != null) {
+      mergeBehaviourTagSnapshots(pending, deltaSnapshot.getBehaviourTags());
+    }
+  }
+
   /** Initializes snapshot maps if they are null. */
   private static void initializeSnapshotMaps(
       com.raven.thunder.api.model.UserDataSnapshot snapshot) {
@@ -167,7 +292,8 @@ public final class StateMachineUtil {
       Long ctaId = Long.parseLong(ctaDelta.getCtaId());
 
       if (!snapshot.getStateMachines().containsKey(ctaId)) {
-        snapshot.getStateMachines().put(ctaId, ctaDelta);
+        // Copy so later steps never mutate the caller's delta, which may be re-applied on retry
+        snapshot.getStateMachines().put(ctaId, copyOf(ctaDelta));
         continue;
       }
 
@@ -178,6 +304,41 @@ public final class StateMachineUtil {
     resetStateMachines(snapshot.getStateMachines(), deltaCTAs);
   }
 
+  private static StateMachineSnapshot copyOf(StateMachineSnapshot ctaDelta) {
+    return new StateMachineSnapshot(
+        ctaDelta.getCtaId(),
+        ctaDelta.getActiveStateMachines() != null
+            ? new HashMap<>(ctaDelta.getActiveStateMachines())
+            : new HashMap<>(),
+        ctaDelta.getResetAt(),
+        ctaDelta.getActionDoneAt());
+  }
+
+  /** Copies a delta down to its state machines and timestamp lists. */
+  private static StateMachineSnapshot deepCopyOf(StateMachineSnapshot ctaDelta) {
+    Map<String, StateMachine> active = new HashMap<>();
+    if (ctaDelta.getActiveStateMachines() != null) {
+      ctaDelta.getActiveStateMachines().forEach((groupId, sm) -> active.put(groupId, copyOf(sm)));
+    }
+    return new StateMachineSnapshot(
+        ctaDelta.getCtaId(),
+        active,
+        ctaDelta.getResetAt() != null ? new ArrayList<>(ctaDelta.getResetAt()) : null,
+        ctaDelta.getActionDoneAt() != null ? new ArrayList<>(ctaDelta.getActionDoneAt()) : null);
+  }
+
+  private static StateMachine copyOf(StateMachine stateMachine) {
+    if (stateMachine == null) {
+      return null;
+    }
+    return new StateMachine(
+        stateMachine.getCurrentState(),
+        stateMachine.getLastTransitionAt(),
+        stateMachine.getContext() != null ? new HashMap<>(stateMachine.getContext()) : null,
+        stateMachine.getCreatedAt(),
+        stateMachine.getReset());
+  }
+
   /** Merges individual state machines for a CTA. */
   private static void mergeStateMachinesForCTA(
       StateMachineSnapshot existing, StateMachineSnapshot delta) {
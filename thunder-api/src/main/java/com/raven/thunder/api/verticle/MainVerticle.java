@@ -1,10 +1,20 @@
 package com.raven.thunder.api.verticle;
 
+import com.raven.thunder.api.dao.statemachine.KnownUsersFilter;
+import com.raven.thunder.api.injection.GuiceInjector;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.service.archival.StateMachineSweeper;
+import com.raven.thunder.api.service.cohort.BitmapUserCohortsClient;
+import com.raven.thunder.api.service.sdk.SnapshotWriteCoalescer;
 import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.client.AerospikeClientFactory;
 import com.raven.thunder.core.client.AerospikeClientHolder;
-import com.raven.thunder.core.client.AerospikeClientImpl;
 import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.ArchivalSweepConfig;
+import com.raven.thunder.core.config.CacheConfig;
+import com.raven.thunder.core.config.CohortsConfig;
 import com.raven.thunder.core.config.Config;
+import com.raven.thunder.core.config.KnownUsersConfig;
 import com.raven.thunder.core.config.ServerConfig;
 import com.raven.thunder.core.util.ConfigUtil;
 import com.raven.thunder.core.util.SharedDataUtils;
@@ -20,6 +30,11 @@ public class MainVerticle extends AbstractVerticle {
 
   private Config config;
   private AerospikeClient aerospikeClient;
+  private Long catalogRefreshTimerId;
+  private Long knownUsersRebuildTimerId;
+  private Long cohortsRefreshTimerId;
+  private Long archivalSweepTimerId;
+  private SnapshotWriteCoalescer writeCoalescer;
 
   @Override
   public Completable rxStart() {
@@ -31,18 +46,50 @@ public class MainVerticle extends AbstractVerticle {
               log.info("Configuration loaded successfully");
               return config;
             })
-        .flatMapCompletable(config -> initializeClients(config).andThen(deployRestVerticle(config)))
+        .flatMapCompletable(
+            config ->
+                initializeClients(config)
+                    .andThen(initializeCatalogCache(config))
+                    .andThen(initializeWriteCoalescer())
+                    .andThen(initializeKnownUsersFilter(config))
+                    .andThen(initializeCohorts(config))
+                    .andThen(initializeArchivalSweep(config))
+                    .andThen(deployRestVerticle(config)))
         .doOnComplete(() -> log.info("MainVerticle started successfully"));
   }
 
   @Override
   public Completable rxStop() {
     log.info("Stopping MainVerticle");
+    if (catalogRefreshTimerId != null) {
+      vertx.cancelTimer(catalogRefreshTimerId);
+    }
+    if (knownUsersRebuildTimerId != null) {
+      vertx.cancelTimer(knownUsersRebuildTimerId);
+    }
+    if (cohortsRefreshTimerId != null) {
+      vertx.cancelTimer(cohortsRefreshTimerId);
+    }
+    if (archivalSweepTimerId != null) {
+      vertx.cancelTimer(archivalSweepTimerId);
+    }
+    // REST verticles are undeployed first, so no deltas arrive while pending ones are written
+    Completable flushPendingWrites =
+        writeCoalescer != null
+            ? writeCoalescer
+                .flushAll()
+                .doOnError(error -> log.error("Failed to flush coalesced writes", error))
+                .onErrorComplete()
+            : Completable.complete();
     if (aerospikeClient != null) {
-      AerospikeClientHolder.clear();
-      return aerospikeClient.rxClose();
+      return flushPendingWrites.andThen(
+          Completable.defer(
+              () -> {
+                AerospikeClientHolder.clear();
+                return aerospikeClient.rxClose();
+              }));
     }
-    return Completable.complete();
+    return flushPendingWrites;
   }
 
   private Completable initializeClients(Config config) {
@@ -56,7 +103,7 @@ public class MainVerticle extends AbstractVerticle {
       return Completable.complete();
     }
     try {
-      this.aerospikeClient = new AerospikeClientImpl(aerospikeConfig);
+      this.aerospikeClient = AerospikeClientFactory.create(aerospikeConfig, vertx.getDelegate());
       return aerospikeClient
           .rxConnect()
           .doOnComplete(
@@ -74,6 +121,92 @@ public class MainVerticle extends AbstractVerticle {
     }
   }
 
+  private Completable initializeCatalogCache(Config cfg) {
+    CacheConfig cacheConfig = cfg.getCache() != null ? cfg.getCache() : new CacheConfig();
+    long refreshPeriodMs = cacheConfig.getRefreshPeriodInterval().getMs();
+    StaticDataCache cache = GuiceInjector.getGuiceInjector().getInstance(StaticDataCache.class);
+    return Completable.fromCompletionStage(cache.initiateCache())
+        .doOnError(error -> log.error("Initial catalog load failed, will retry on refresh", error))
+        .onErrorComplete()
+        .doOnComplete(
+            () -> {
+              this.catalogRefreshTimerId =
+                  vertx.setPeriodic(refreshPeriodMs, id -> cache.refresh());
+              log.info("Catalog cache refresh scheduled every {} ms", refreshPeriodMs);
+            });
+  }
+
+  private Completable initializeWriteCoalescer() {
+    return Completable.fromAction(
+        () ->
+            this.writeCoalescer =
+                GuiceInjector.getGuiceInjector().getInstance(SnapshotWriteCoalescer.class));
+  }
+
+  /** Starts the first rebuild in the background; reads are not skipped until it completes. */
+  private Completable initializeKnownUsersFilter(Config cfg) {
+    KnownUsersConfig knownUsersConfig =
+        cfg.getKnownUsers() != null ? cfg.getKnownUsers() : new KnownUsersConfig();
+    if (!knownUsersConfig.isEnabledOrDefault()) {
+      return Completable.complete();
+    }
+    long rebuildPeriodMs = knownUsersConfig.getRebuildPeriodInterval().getMs();
+    KnownUsersFilter filter = GuiceInjector.getGuiceInjector().getInstance(KnownUsersFilter.class);
+    return Completable.fromAction(
+        () -> {
+          filter.rebuild().onErrorComplete().subscribe();
+          this.knownUsersRebuildTimerId =
+              vertx.setPeriodic(
+                  rebuildPeriodMs, id -> filter.rebuild().onErrorComplete().subscribe());
+          log.info("Known users filter rebuild scheduled every {} ms", rebuildPeriodMs);
+        });
+  }
+
+  /** Loads cohorts before serving, so targeted CTAs are not shown to every user meanwhile. */
+  private Completable initializeCohorts(Config cfg) {
+    CohortsConfig cohortsConfig = cfg.getCohorts() != null ? cfg.getCohorts() : new CohortsConfig();
+    if (!cohortsConfig.isEnabledOrDefault()) {
+      return Completable.complete();
+    }
+    long refreshPeriodMs = cohortsConfig.getRefreshPeriodInterval().getMs();
+    BitmapUserCohortsClient cohorts =
+        GuiceInjector.getGuiceInjector().getInstance(BitmapUserCohortsClient.class);
+    return cohorts
+        .refresh()
+        .doOnError(error -> log.error("Initial cohort load failed, will retry on refresh", error))
+        .onErrorComplete()
+        .doOnComplete(
+            () -> {
+              this.cohortsRefreshTimerId =
+                  vertx.setPeriodic(
+                      refreshPeriodMs, id -> cohorts.refresh().onErrorComplete().subscribe());
+              log.info("Cohort refresh scheduled every {} ms", refreshPeriodMs);
+            });
+  }
+
+  /**
+   * Checks every minute, at most, whether a sweep is due, so an interrupted sweep resumes soon
+   * after a restart and the next one starts a sweep period after the last finished.
+   */
+  private Completable initializeArchivalSweep(Config cfg) {
+    ArchivalSweepConfig sweepConfig =
+        cfg.getArchivalSweep() != null ? cfg.getArchivalSweep() : new ArchivalSweepConfig();
+    if (!sweepConfig.isEnabledOrDefault()) {
+      return Completable.complete();
+    }
+    long checkPeriodMs = Math.min(sweepConfig.getSweepPeriodInterval().getMs(), 60000L);
+    StateMachineSweeper sweeper =
+        GuiceInjector.getGuiceInjector().getInstance(StateMachineSweeper.class);
+    return Completable.fromAction(
+        () -> {
+          this.archivalSweepTimerId =
+              vertx.setPeriodic(checkPeriodMs, id -> sweeper.sweep().onErrorComplete().subscribe());
+          log.info(
+              "Archival sweep scheduled every {} ms",
+              sweepConfig.getSweepPeriodInterval().getMs());
+        });
+  }
+
   private Completable deployRestVerticle(Config cfg) {
     ServerConfig server = cfg.getServer();
     if (server == null) {
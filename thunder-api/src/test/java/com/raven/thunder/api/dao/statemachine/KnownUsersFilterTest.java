@@ -0,0 +1,85 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.ScanCallback;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.KnownUsersConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+class KnownUsersFilterTest {
+
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+  @Test
+  void bloomFilter_hasNoFalseNegativesAndStaysNearTargetRate() {
+    KnownUsersFilter.BloomFilter filter = new KnownUsersFilter.BloomFilter(10_000, 0.01);
+    for (int user = 0; user < 10_000; user++) {
+      filter.add(key(user).digest);
+    }
+
+    int falsePositives = 0;
+    for (int user = 0; user < 10_000; user++) {
+      assertThat(filter.mightContain(key(user).digest)).isTrue();
+      if (filter.mightContain(key(100_000 + user).digest)) {
+        falsePositives++;
+      }
+    }
+
+    assertThat(falsePositives).isLessThan(300);
+    assertThat(filter.estimatedFalsePositiveRate()).isBetween(0.005, 0.02);
+  }
+
+  @Test
+  void mightContain_reportsEveryUserUntilFirstRebuild() {
+    KnownUsersFilter filter = filter(mock(AerospikeClient.class));
+
+    assertThat(filter.mightContain(key(1))).isTrue();
+  }
+
+  @Test
+  void rebuild_skipsUsersMissingFromScanButKeepsLaterWrites() {
+    AerospikeClient client = mock(AerospikeClient.class);
+    com.aerospike.client.AerospikeClient nativeClient =
+        mock(com.aerospike.client.AerospikeClient.class);
+    when(client.getClient()).thenReturn(nativeClient);
+    doAnswer(
+            invocation -> {
+              ScanCallback callback = invocation.getArgument(4);
+              callback.scanCallback(key(1), null);
+              return null;
+            })
+        .when(nativeClient)
+        .scanPartitions(any(), any(), eq("thunder"), eq(Schema.SET), any(ScanCallback.class));
+    KnownUsersFilter filter = filter(client);
+
+    filter.rebuild().blockingAwait();
+    filter.add(key(3));
+
+    assertThat(filter.mightContain(key(1))).isTrue();
+    assertThat(filter.mightContain(key(2))).isFalse();
+    assertThat(filter.mightContain(key(3))).isTrue();
+    assertThat(metricsRegistry.count(KnownUsersFilter.SKIPS)).isEqualTo(1);
+  }
+
+  private KnownUsersFilter filter(AerospikeClient client) {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setUserDataNamespace("thunder");
+    KnownUsersConfig knownUsersConfig = new KnownUsersConfig();
+    knownUsersConfig.setEnabled(true);
+    knownUsersConfig.setExpectedUsers(1_000L);
+    return new KnownUsersFilter(config, client, knownUsersConfig, metricsRegistry);
+  }
+
+  private static Key key(long user) {
+    return new Key("thunder", Schema.SET, "tenant:" + user);
+  }
+}
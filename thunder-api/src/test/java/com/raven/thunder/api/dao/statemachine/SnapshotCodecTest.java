@@ -0,0 +1,206 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.raven.thunder.api.model.BehaviourExposureRule;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.CTARelationSnapshot;
+import com.raven.thunder.api.model.CTAReset;
+import com.raven.thunder.api.model.ExposureCounter;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.model.CtaRelationRule;
+import com.raven.thunder.core.model.CtaRelationRuleTypes;
+import com.raven.thunder.core.model.rule.LifespanFrequency;
+import com.raven.thunder.core.model.rule.SessionFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequencyUnit;
+import com.raven.thunder.core.util.ParseUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class SnapshotCodecTest {
+
+  private UserDataSnapshot fullSnapshot() {
+    Map<String, StateMachine> groups = new HashMap<>();
+    groups.put("5", new StateMachine("2", 1_720_166_608_502L, null, 1_720_166_600_000L, null));
+    groups.put(
+        "6",
+        new StateMachine(
+            "2",
+            1_720_166_700_000L,
+            Map.of("source", "home", "count", 3),
+            1_720_166_650_000L,
+            true));
+    groups.put("7", new StateMachine("3", null, null, null, false));
+
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    stateMachines.put(
+        101L,
+        new StateMachineSnapshot(
+            "101", groups, List.of(1_701_603_029_000L, 1_701_603_090_000L), List.of()));
+    stateMachines.put(102L, new StateMachineSnapshot("legacy-id", null, null, null));
+
+    BehaviourExposureRule exposureRule =
+        new BehaviourExposureRule(
+            new SessionFrequency(1),
+            new LifespanFrequency(null),
+            new WindowFrequency(1, WindowFrequencyUnit.days, 7),
+            List.of(new CTAReset("101", 1_701_603_029_000L), new CTAReset("102", null)));
+    CTARelationSnapshot ctaRelation =
+        new CTARelationSnapshot(
+            new CtaRelationRule(CtaRelationRuleTypes.LIST, Set.of("101", "102")),
+            null,
+            List.of("101"));
+
+    Map<String, BehaviourTagSnapshot> behaviourTags = new HashMap<>();
+    behaviourTags.put(
+        "onboarding", new BehaviourTagSnapshot("onboarding", exposureRule, ctaRelation));
+    behaviourTags.put("renamed", new BehaviourTagSnapshot("other", null, null));
+    return new UserDataSnapshot(stateMachines, behaviourTags);
+  }
+
+  /** A user live in 40 CTAs of 3 groups each, with 10 behaviour tags. */
+  private UserDataSnapshot realisticSnapshot() {
+    long now = 1_760_000_000_000L;
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    for (long ctaId = 1_000; ctaId < 1_040; ctaId++) {
+      Map<String, StateMachine> groups = new HashMap<>();
+      for (int group = 0; group < 3; group++) {
+        long createdAt = now - (ctaId * 7_919 + group * 104_729) % 86_400_000L;
+        groups.put(
+            String.valueOf(group),
+            new StateMachine(
+                String.valueOf(group % 4), createdAt + 12_345L, Map.of(), createdAt, null));
+      }
+      List<Long> resetAt = new ArrayList<>();
+      List<Long> actionDoneAt = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        resetAt.add(now - i * 3_600_000L);
+        actionDoneAt.add(now - i * 1_800_000L - ctaId);
+      }
+      stateMachines.put(
+          ctaId, new StateMachineSnapshot(String.valueOf(ctaId), groups, resetAt, actionDoneAt));
+    }
+
+    Map<String, BehaviourTagSnapshot> behaviourTags = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      String name = "behaviour_tag_" + i;
+      BehaviourExposureRule rule =
+          new BehaviourExposureRule(
+              new SessionFrequency(1),
+              null,
+              new WindowFrequency(3, WindowFrequencyUnit.days, 7),
+              null);
+      behaviourTags.put(
+          name,
+          new BehaviourTagSnapshot(
+              name, rule, new CTARelationSnapshot(null, null, List.of("1000", "1001"))));
+    }
+    return new UserDataSnapshot(stateMachines, behaviourTags);
+  }
+
+  @Test
+  void roundTrip_preservesEveryField() throws Exception {
+    UserDataSnapshot snapshot = fullSnapshot();
+
+    byte[] encoded = SnapshotCodec.encode(snapshot);
+
+    assertThat(SnapshotCodec.isEncoded(encoded)).isTrue();
+    assertThat(SnapshotCodec.decode(encoded)).isEqualTo(snapshot);
+  }
+
+  @Test
+  void roundTrip_preservesExposureCounters() throws Exception {
+    UserDataSnapshot snapshot = fullSnapshot();
+    Map<String, ExposureCounter> exposures = new HashMap<>();
+    exposures.put(
+        "cta:101",
+        new ExposureCounter(
+            1_756_099_199_923L,
+            3L,
+            86_400_000L,
+            Map.of(1_756_080_000_000L, 2, 1_755_993_600_000L, 1)));
+    exposures.put("tag:onboarding", new ExposureCounter(null, 7L, 0L, null));
+    snapshot.setExposures(exposures);
+
+    byte[] encoded = SnapshotCodec.encode(snapshot);
+
+    assertThat(encoded[1]).isEqualTo(SnapshotCodec.VERSION);
+    assertThat(SnapshotCodec.decode(encoded)).isEqualTo(snapshot);
+  }
+
+  @Test
+  void encode_writesVersionOneWithoutExposureCounters() throws Exception {
+    byte[] encoded = SnapshotCodec.encode(fullSnapshot());
+
+    assertThat(encoded[1]).isEqualTo(SnapshotCodec.MIN_VERSION);
+    assertThat(SnapshotCodec.decode(encoded).getExposures()).isNull();
+  }
+
+  @Test
+  void roundTrip_preservesNullMaps() throws Exception {
+    UserDataSnapshot snapshot = new UserDataSnapshot(null, new HashMap<>());
+
+    assertThat(SnapshotCodec.decode(SnapshotCodec.encode(snapshot))).isEqualTo(snapshot);
+  }
+
+  @Test
+  void encode_skipsNullTimestamps() throws Exception {
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    stateMachines.put(
+        101L,
+        new StateMachineSnapshot(
+            "101", null, Arrays.asList(10L, null, 20L), Arrays.asList(null, null)));
+    UserDataSnapshot snapshot = new UserDataSnapshot(stateMachines, new HashMap<>());
+
+    StateMachineSnapshot decoded =
+        SnapshotCodec.decode(SnapshotCodec.encode(snapshot)).getStateMachines().get(101L);
+
+    assertThat(decoded.getResetAt()).containsExactly(10L, 20L);
+    assertThat(decoded.getActionDoneAt()).isEmpty();
+  }
+
+  @Test
+  void encode_isSmallerThanJson() throws Exception {
+    UserDataSnapshot snapshot = fullSnapshot();
+
+    int jsonSize = ParseUtil.writeValueAsString(snapshot).getBytes(StandardCharsets.UTF_8).length;
+
+    assertThat(SnapshotCodec.encode(snapshot).length).isLessThan(jsonSize / 2);
+  }
+
+  @Test
+  void encode_keepsARealisticSnapshotExactAndUnderHalfTheJsonSize() throws Exception {
+    UserDataSnapshot snapshot = realisticSnapshot();
+
+    byte[] encoded = SnapshotCodec.encode(snapshot);
+    int jsonSize = ParseUtil.writeValueAsString(snapshot).getBytes(StandardCharsets.UTF_8).length;
+
+    assertThat(SnapshotCodec.decode(encoded)).isEqualTo(snapshot);
+    assertThat(encoded.length).isLessThan(jsonSize / 2);
+  }
+
+  @Test
+  void decode_rejectsUnknownSchemaVersion() throws Exception {
+    byte[] encoded = SnapshotCodec.encode(fullSnapshot());
+    encoded[1] = (byte) (SnapshotCodec.VERSION + 1);
+
+    assertThatThrownBy(() -> SnapshotCodec.decode(encoded))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("schema version");
+  }
+
+  @Test
+  void isEncoded_rejectsJson() {
+    assertThat(SnapshotCodec.isEncoded("{}".getBytes(StandardCharsets.UTF_8))).isFalse();
+  }
+}
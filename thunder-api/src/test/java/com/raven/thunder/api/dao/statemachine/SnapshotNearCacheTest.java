@@ -0,0 +1,108 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aerospike.client.Record;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.config.NearCacheConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class SnapshotNearCacheTest {
+
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+  @Test
+  void put_evictsLeastRecentlyUsedBeyondMaxEntries() {
+    SnapshotNearCache cache = cache(2, false);
+
+    cache.put("t:1", 1, snapshot("S1", 100L));
+    cache.put("t:2", 1, snapshot("S1", 100L));
+    cache.put("t:3", 1, snapshot("S1", 100L));
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.find("t:1", header(1), Maybe.empty()).blockingGet()).isNull();
+    assertThat(metricsRegistry.count(SnapshotNearCache.EVICTIONS)).isEqualTo(1);
+  }
+
+  @Test
+  void find_decodesOffHeapEntryAsIndependentCopy() {
+    SnapshotNearCache cache = cache(10, true);
+    cache.put("t:1", 4, snapshot("S1", 100L));
+
+    UserDataSnapshot first = cache.find("t:1", header(4), Maybe.empty()).blockingGet();
+    first.getStateMachines().clear();
+    UserDataSnapshot second = cache.find("t:1", header(4), Maybe.empty()).blockingGet();
+
+    assertThat(second.getGeneration()).isEqualTo(4);
+    assertThat(second.getStateMachines()).containsKey(1L);
+    assertThat(cache.bytes()).isPositive();
+  }
+
+  @Test
+  void merged_appliesDeltaWhenWriteFollowsCachedGeneration() {
+    SnapshotNearCache cache = cache(10, false);
+    cache.put("t:1", 4, snapshot("S1", 100L));
+    CTASnapshotRequest delta =
+        new CTASnapshotRequest(
+            List.of(snapshot("S2", 200L).getStateMachines().get(1L)), List.of());
+
+    cache.merged("t:1", 5, delta);
+
+    UserDataSnapshot merged = cache.find("t:1", header(5), Maybe.empty()).blockingGet();
+    StateMachine stateMachine =
+        merged.getStateMachines().get(1L).getActiveStateMachines().get("g1");
+    assertThat(stateMachine.getCurrentState()).isEqualTo("S2");
+  }
+
+  @Test
+  void merged_dropsEntryWhenAnotherWriteIntervened() {
+    SnapshotNearCache cache = cache(10, false);
+    cache.put("t:1", 4, snapshot("S1", 100L));
+
+    cache.merged("t:1", 6, new CTASnapshotRequest(List.of(), List.of()));
+
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void gauges_reportHitsAndRevalidationsPerLookup() {
+    SnapshotNearCache cache = cache(10, false);
+    cache.find("t:1", header(4), Maybe.empty()).blockingGet();
+    cache.put("t:1", 4, snapshot("S1", 100L));
+    cache.find("t:1", header(4), Maybe.empty()).blockingGet();
+    cache.find("t:1", header(4), Maybe.empty()).blockingGet();
+    cache.find("t:1", header(5), Maybe.empty()).blockingGet();
+
+    Map<String, Number> metrics = metricsRegistry.snapshot();
+    assertThat(metrics.get(SnapshotNearCache.HIT_RATIO)).isEqualTo(0.5);
+    assertThat(metrics.get(SnapshotNearCache.REVALIDATION_RATIO)).isEqualTo(0.75);
+  }
+
+  private SnapshotNearCache cache(int maxEntries, boolean offHeap) {
+    return new SnapshotNearCache(
+        new NearCacheConfig(true, maxEntries, null, null, offHeap), metricsRegistry);
+  }
+
+  private static Maybe<Record> header(int generation) {
+    return Maybe.just(new Record(null, generation, 0));
+  }
+
+  private static UserDataSnapshot snapshot(String state, long transitionAt) {
+    StateMachine stateMachine = new StateMachine();
+    stateMachine.setCurrentState(state);
+    stateMachine.setCreatedAt(50L);
+    stateMachine.setLastTransitionAt(transitionAt);
+    StateMachineSnapshot cta = new StateMachineSnapshot();
+    cta.setCtaId("1");
+    cta.setActiveStateMachines(new HashMap<>(Map.of("g1", stateMachine)));
+    return new UserDataSnapshot(new HashMap<>(Map.of(1L, cta)), new HashMap<>());
+  }
+}
@@ -0,0 +1,184 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aerospike.client.Operation;
+import com.aerospike.client.Value;
+import com.aerospike.client.cdt.CTX;
+import com.aerospike.client.cdt.MapOperation;
+import com.aerospike.client.cdt.MapOrder;
+import com.aerospike.client.cdt.MapPolicy;
+import com.aerospike.client.cdt.MapReturnType;
+import com.aerospike.client.cdt.MapWriteFlags;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.util.StateMachineUtil;
+import com.raven.thunder.core.util.ParseUtil;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StateMachineOperationsTest {
+
+  private static final MapPolicy CREATE_ONLY =
+      new MapPolicy(MapOrder.UNORDERED, MapWriteFlags.CREATE_ONLY | MapWriteFlags.NO_FAIL);
+  private static final MapPolicy UPSERT = new MapPolicy(MapOrder.UNORDERED, MapWriteFlags.DEFAULT);
+  private static final CTX CTA_CTX = CTX.mapKey(Value.get(7L));
+  private static final CTX GROUPS_CTX = CTX.mapKey(Value.get(Schema.ACTIVE_STATE_MACHINES));
+
+  @Test
+  void merge_seedsTheCTAAndWritesEachGroupConditionally() throws Exception {
+    Map<String, StateMachine> groups = new LinkedHashMap<>();
+    groups.put("g1", stateMachine("S1", 100L, null));
+    groups.put("g2", stateMachine("S2", 200L, null));
+
+    List<Operation> operations =
+        StateMachineOperations.merge(
+            new CTASnapshotRequest(
+                List.of(new StateMachineSnapshot("7", groups, List.of(5L), null)), null));
+
+    assertThat(operations)
+        .extracting(operation -> operation.type)
+        .containsExactly(
+            Operation.Type.MAP_MODIFY,
+            Operation.Type.MAP_MODIFY,
+            Operation.Type.EXP_MODIFY,
+            Operation.Type.MAP_MODIFY,
+            Operation.Type.EXP_MODIFY,
+            Operation.Type.MAP_MODIFY,
+            Operation.Type.MAP_MODIFY);
+    assertThat(operations)
+        .extracting(operation -> operation.binName)
+        .containsOnly(Schema.STATE_MACHINES_BIN);
+    // The CTA is only created when absent, so groups other writers stored there survive
+    assertThat(operations.get(0).value)
+        .isEqualTo(
+            MapOperation.put(
+                    CREATE_ONLY,
+                    Schema.STATE_MACHINES_BIN,
+                    Value.get(7L),
+                    Value.get(Map.of(Schema.ACTIVE_STATE_MACHINES, Map.of())))
+                .value);
+    assertThat(operations.get(1).value).isEqualTo(seed("g1", entry("S1", 100L)).value);
+    assertThat(operations.get(3).value).isEqualTo(seed("g2", entry("S2", 200L)).value);
+    assertThat(operations.get(5).value)
+        .isEqualTo(
+            MapOperation.put(
+                    UPSERT,
+                    Schema.STATE_MACHINES_BIN,
+                    Value.get(Schema.RESET_AT),
+                    Value.get(List.of(5L)),
+                    CTA_CTX)
+                .value);
+    assertThat(operations.get(6).value)
+        .isEqualTo(
+            MapOperation.removeByKey(
+                    Schema.STATE_MACHINES_BIN,
+                    Value.get(Schema.ACTION_DONE_AT),
+                    MapReturnType.NONE,
+                    CTA_CTX)
+                .value);
+  }
+
+  @Test
+  void merge_neverStoresTheResetFlag() throws Exception {
+    List<Operation> reset =
+        StateMachineOperations.merge(delta(Map.of("g1", stateMachine("S1", 100L, true))));
+    List<Operation> advance =
+        StateMachineOperations.merge(delta(Map.of("g1", stateMachine("S1", 100L, null))));
+
+    assertThat(reset.get(1).value).isEqualTo(seed("g1", entry("S1", 100L)).value);
+    assertThat(reset.get(2).value).isNotEqualTo(advance.get(2).value);
+  }
+
+  @Test
+  void merge_putsBehaviourTagsIntoTheirOwnBin() throws Exception {
+    BehaviourTagSnapshot tag = new BehaviourTagSnapshot("bt1", null, null);
+
+    List<Operation> operations =
+        StateMachineOperations.merge(new CTASnapshotRequest(null, List.of(tag)));
+
+    assertThat(operations).hasSize(1);
+    assertThat(operations.get(0).binName).isEqualTo(Schema.BEHAVIOUR_TAGS_BIN);
+    assertThat(operations.get(0).value)
+        .isEqualTo(
+            MapOperation.putItems(
+                    UPSERT,
+                    Schema.BEHAVIOUR_TAGS_BIN,
+                    Map.of(Value.get("bt1"), Value.get(ParseUtil.writeValueAsString(tag))))
+                .value);
+  }
+
+  @Test
+  void merge_isEmptyForAnEmptyDelta() throws Exception {
+    assertThat(StateMachineOperations.merge(new CTASnapshotRequest(null, List.of()))).isEmpty();
+  }
+
+  @Test
+  void mergedResult_keepsTheNewestStateMachineWhateverOrderWritersLand() {
+    CTASnapshotRequest older = delta(Map.of("g1", stateMachine("S1", 100L, null)));
+    CTASnapshotRequest newer = delta(Map.of("g1", stateMachine("S2", 200L, null)));
+
+    UserDataSnapshot inOrder = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    StateMachineUtil.mergeDeltaSnapshot(inOrder, older);
+    StateMachineUtil.mergeDeltaSnapshot(inOrder, newer);
+    UserDataSnapshot reversed = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    StateMachineUtil.mergeDeltaSnapshot(reversed, newer);
+    StateMachineUtil.mergeDeltaSnapshot(reversed, older);
+
+    assertThat(group(inOrder).getCurrentState()).isEqualTo("S2");
+    assertThat(group(reversed).getCurrentState()).isEqualTo("S2");
+  }
+
+  @Test
+  void mergedResult_resetOnlyRemovesAStateMachineItIsNotOlderThan() {
+    UserDataSnapshot snapshot = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    StateMachineUtil.mergeDeltaSnapshot(
+        snapshot, delta(Map.of("g1", stateMachine("S2", 200L, null))));
+
+    StateMachineUtil.mergeDeltaSnapshot(
+        snapshot, delta(Map.of("g1", stateMachine("S1", 100L, true))));
+    assertThat(group(snapshot).getCurrentState()).isEqualTo("S2");
+
+    StateMachineUtil.mergeDeltaSnapshot(
+        snapshot, delta(Map.of("g1", stateMachine("S3", 300L, true))));
+    assertThat(snapshot.getStateMachines().get(7L).getActiveStateMachines()).isEmpty();
+  }
+
+  private static Operation seed(String groupId, Map<String, Object> entry) {
+    return MapOperation.put(
+        CREATE_ONLY,
+        Schema.STATE_MACHINES_BIN,
+        Value.get(groupId),
+        Value.get(entry),
+        CTA_CTX,
+        GROUPS_CTX);
+  }
+
+  private static Map<String, Object> entry(String state, long transitionAt) {
+    Map<String, Object> entry = new HashMap<>();
+    entry.put(Schema.CURRENT_STATE, state);
+    entry.put(Schema.LAST_TRANSITION_AT, transitionAt);
+    entry.put(Schema.CONTEXT, Map.of());
+    entry.put(Schema.CREATED_AT, 50L);
+    return entry;
+  }
+
+  private static CTASnapshotRequest delta(Map<String, StateMachine> groups) {
+    return new CTASnapshotRequest(
+        List.of(new StateMachineSnapshot("7", new HashMap<>(groups), null, null)), null);
+  }
+
+  private static StateMachine group(UserDataSnapshot snapshot) {
+    return snapshot.getStateMachines().get(7L).getActiveStateMachines().get("g1");
+  }
+
+  private static StateMachine stateMachine(String state, long transitionAt, Boolean reset) {
+    return new StateMachine(state, transitionAt, Map.of(), 50L, reset);
+  }
+}
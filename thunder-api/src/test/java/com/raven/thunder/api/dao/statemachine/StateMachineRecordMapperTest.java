@@ -0,0 +1,75 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.raven.thunder.api.model.BehaviourTagSnapshot;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.util.ParseUtil;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StateMachineRecordMapperTest {
+
+  private final StateMachineRecordMapper mapper = new StateMachineRecordMapper();
+
+  private UserDataSnapshot snapshot() {
+    StateMachine stateMachine =
+        new StateMachine("2", 1_720_000_000_500L, null, 1_720_000_000_000L, null);
+    Map<String, StateMachine> groups = new HashMap<>();
+    groups.put("5", stateMachine);
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    stateMachines.put(
+        101L, new StateMachineSnapshot("101", groups, List.of(1_701_603_029_000L), null));
+    Map<String, BehaviourTagSnapshot> tags = new HashMap<>();
+    tags.put("onboarding", new BehaviourTagSnapshot("onboarding", null, null));
+    return new UserDataSnapshot(stateMachines, tags);
+  }
+
+  private Record toRecord(Bin... bins) {
+    Map<String, Object> values = new HashMap<>();
+    for (Bin bin : bins) {
+      values.put(bin.name, bin.value.getObject());
+    }
+    return new Record(values, 1, 0);
+  }
+
+  @Test
+  void apply_readsLegacyJsonSnapshot() throws Exception {
+    UserDataSnapshot snapshot = snapshot();
+    Record record = toRecord(new Bin(Schema.SNAPSHOT_BIN, ParseUtil.writeValueAsString(snapshot)));
+
+    assertThat(mapper.apply(record)).isEqualTo(snapshot);
+  }
+
+  @Test
+  void apply_readsMapLayoutWrittenBySnapshotBins() throws Exception {
+    UserDataSnapshot snapshot = snapshot();
+    Bin[] bins = StateMachineOperations.mapLayoutBins(snapshot);
+
+    assertThat(bins)
+        .anyMatch(bin -> bin.name.equals(Schema.SNAPSHOT_BIN) && bin.value.getObject() == null);
+    Record record = toRecord(bins[0], bins[1]);
+
+    assertThat(mapper.apply(record)).isEqualTo(snapshot);
+  }
+
+  @Test
+  void apply_readsBinaryLayoutWrittenByBinaryLayoutBins() throws Exception {
+    UserDataSnapshot snapshot = snapshot();
+    Bin[] bins = StateMachineOperations.binaryLayoutBins(snapshot);
+
+    assertThat(bins[0].name).isEqualTo(Schema.BLOB_BIN);
+    assertThat(mapper.apply(toRecord(bins[0]))).isEqualTo(snapshot);
+  }
+
+  @Test
+  void apply_returnsNullWhenNoSnapshotBinsPresent() throws Exception {
+    assertThat(mapper.apply(new Record(new HashMap<>(), 1, 0))).isNull();
+  }
+}
@@ -0,0 +1,509 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.raven.thunder.api.dao.SnapshotExpiry;
+import com.raven.thunder.api.dao.SnapshotLimits;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.KnownUsersConfig;
+import com.raven.thunder.core.config.NearCacheConfig;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.exception.ThunderException;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StateMachineRepositoryImplTest {
+
+  private static final String TENANT = "tenant-1";
+  private static final long USER = 42L;
+
+  @Mock private AerospikeClient client;
+  @Mock private SnapshotExpiry expiry;
+  @Mock private SnapshotLimits limits;
+
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+  private StateMachineRepositoryImpl repository;
+
+  @BeforeEach
+  void setUp() {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setUserDataNamespace("thunder");
+    config.setWriteConflictMaxRetries(2);
+    config.setWriteConflictBackoff(0);
+    repository =
+        new StateMachineRepositoryImpl(
+            config,
+            client,
+            new NearCacheConfig(),
+            knownUsers(config),
+            expiry,
+            limits,
+            new SnapshotLimitsConfig(),
+            metricsRegistry);
+  }
+
+  private StateMachineRepositoryImpl cachingRepository() {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setUserDataNamespace("thunder");
+    NearCacheConfig nearCacheConfig = new NearCacheConfig();
+    nearCacheConfig.setEnabled(true);
+    return new StateMachineRepositoryImpl(
+        config,
+        client,
+        nearCacheConfig,
+        knownUsers(config),
+        expiry,
+        limits,
+        new SnapshotLimitsConfig(),
+        metricsRegistry);
+  }
+
+  private StateMachineRepositoryImpl budgetedRepository(int maxRecordBytes) {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setUserDataNamespace("thunder");
+    SnapshotLimitsConfig limitsConfig = new SnapshotLimitsConfig();
+    limitsConfig.setMaxRecordBytes(maxRecordBytes);
+    return new StateMachineRepositoryImpl(
+        config,
+        client,
+        new NearCacheConfig(),
+        knownUsers(config),
+        expiry,
+        limits,
+        limitsConfig,
+        metricsRegistry);
+  }
+
+  private KnownUsersFilter knownUsers(AerospikeConfig config) {
+    return new KnownUsersFilter(config, client, new KnownUsersConfig(), metricsRegistry);
+  }
+
+  /** A repository whose filter was rebuilt from a scan that found no users. */
+  private StateMachineRepositoryImpl emptyFilterRepository() {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setUserDataNamespace("thunder");
+    KnownUsersConfig knownUsersConfig = new KnownUsersConfig();
+    knownUsersConfig.setEnabled(true);
+    knownUsersConfig.setExpectedUsers(1_000L);
+    when(client.getClient()).thenReturn(mock(com.aerospike.client.AerospikeClient.class));
+    KnownUsersFilter knownUsers =
+        new KnownUsersFilter(config, client, knownUsersConfig, metricsRegistry);
+    knownUsers.rebuild().blockingAwait();
+    return new StateMachineRepositoryImpl(
+        config,
+        client,
+        new NearCacheConfig(),
+        knownUsers,
+        expiry,
+        limits,
+        new SnapshotLimitsConfig(),
+        metricsRegistry);
+  }
+
+  private Maybe<Record> storedAt(int generation) {
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.STATE_MACHINES_BIN, new HashMap<>());
+    bins.put(Schema.BEHAVIOUR_TAGS_BIN, new HashMap<>());
+    return Maybe.just(new Record(bins, generation, 0));
+  }
+
+  @Test
+  void update_writesWithReadGeneration() {
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(7));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+
+    repository.update(TENANT, USER, snapshot -> true).blockingGet();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxPut(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().generationPolicy).isEqualTo(GenerationPolicy.EXPECT_GEN_EQUAL);
+    assertThat(policy.getValue().generation).isEqualTo(7);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITES)).isEqualTo(1);
+  }
+
+  @Test
+  void find_skipsUsersTheFilterHasNotSeen() {
+    StateMachineRepositoryImpl filtered = emptyFilterRepository();
+
+    assertThat(filtered.find(TENANT, USER).blockingGet()).isNull();
+    verify(client, never()).rxGet(any(), any(), any(String[].class));
+  }
+
+  @Test
+  void update_readsUsersTheFilterHasNotSeenAndWritesWithTheirGeneration() {
+    StateMachineRepositoryImpl filtered = emptyFilterRepository();
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(7));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+
+    filtered.update(TENANT, USER, snapshot -> true).blockingGet();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxPut(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().generationPolicy).isEqualTo(GenerationPolicy.EXPECT_GEN_EQUAL);
+    assertThat(policy.getValue().generation).isEqualTo(7);
+    assertThat(metricsRegistry.count(KnownUsersFilter.MISSES)).isEqualTo(1);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITE_CONFLICTS)).isZero();
+  }
+
+  @Test
+  void update_skipsWriteWhenMutationReportsNoChange() {
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(3));
+
+    UserDataSnapshot snapshot = repository.update(TENANT, USER, s -> false).blockingGet();
+
+    assertThat(snapshot.getGeneration()).isEqualTo(3);
+    verify(client, never()).rxPut(any(), any(), any(Bin[].class));
+  }
+
+  @Test
+  void update_reReadsAndReappliesMutationOnConflict() {
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(1), storedAt(2));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.error(new AerospikeException(ResultCode.GENERATION_ERROR)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+    AtomicInteger applied = new AtomicInteger();
+
+    UserDataSnapshot snapshot =
+        repository
+            .update(
+                TENANT,
+                USER,
+                s -> {
+                  applied.incrementAndGet();
+                  return true;
+                })
+            .blockingGet();
+
+    assertThat(snapshot.getGeneration()).isEqualTo(2);
+    assertThat(applied).hasValue(2);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITE_CONFLICTS)).isEqualTo(1);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITE_RETRIES)).isEqualTo(1);
+  }
+
+  @Test
+  void update_failsAfterRetriesAreExhausted() {
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(1));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.error(new AerospikeException(ResultCode.GENERATION_ERROR)));
+
+    assertThatThrownBy(() -> repository.update(TENANT, USER, s -> true).blockingGet())
+        .isInstanceOf(ThunderException.class);
+    verify(client, times(3)).rxPut(any(), any(), any(Bin[].class));
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITE_RETRIES_EXHAUSTED))
+        .isEqualTo(1);
+  }
+
+  @Test
+  void update_createsOnlyWhenRecordWasAbsent() {
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(Maybe.empty());
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.error(new AerospikeException(ResultCode.KEY_EXISTS_ERROR)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+
+    repository.update(TENANT, USER, s -> true).blockingGet();
+
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITE_CONFLICTS)).isEqualTo(1);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.WRITES)).isEqualTo(1);
+  }
+
+  @Test
+  void find_servesCachedSnapshotWhileGenerationIsUnchanged() {
+    StateMachineRepositoryImpl caching = cachingRepository();
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(5));
+    when(client.rxGetHeader(any(), any())).thenReturn(storedAt(5));
+
+    caching.find(TENANT, USER).blockingGet();
+    UserDataSnapshot cached = caching.find(TENANT, USER).blockingGet();
+
+    assertThat(cached.getGeneration()).isEqualTo(5);
+    verify(client, times(1)).rxGet(any(), any(), any(String[].class));
+    assertThat(metricsRegistry.count(SnapshotNearCache.HITS)).isEqualTo(1);
+  }
+
+  @Test
+  void find_reloadsWhenGenerationMoved() {
+    StateMachineRepositoryImpl caching = cachingRepository();
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(5), storedAt(6));
+    when(client.rxGetHeader(any(), any())).thenReturn(storedAt(6));
+
+    caching.find(TENANT, USER).blockingGet();
+    UserDataSnapshot reloaded = caching.find(TENANT, USER).blockingGet();
+
+    assertThat(reloaded.getGeneration()).isEqualTo(6);
+    verify(client, times(2)).rxGet(any(), any(), any(String[].class));
+    assertThat(metricsRegistry.count(SnapshotNearCache.STALE)).isEqualTo(1);
+  }
+
+  @Test
+  void update_populatesCacheWithWrittenGeneration() {
+    StateMachineRepositoryImpl caching = cachingRepository();
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(7));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+    when(client.rxGetHeader(any(), any())).thenReturn(storedAt(8));
+
+    caching.update(TENANT, USER, snapshot -> true).blockingGet();
+    UserDataSnapshot cached = caching.find(TENANT, USER).blockingGet();
+
+    assertThat(cached.getGeneration()).isEqualTo(8);
+    verify(client, times(1)).rxGet(any(), any(), any(String[].class));
+  }
+
+  @Test
+  void upsert_expiresRecordAfterTenantTtl() {
+    when(expiry.ttlSeconds(TENANT)).thenReturn(3600);
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+
+    repository
+        .upsert(TENANT, USER, new UserDataSnapshot(new HashMap<>(), new HashMap<>()))
+        .blockingGet();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxPut(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().expiration).isEqualTo(3600);
+  }
+
+  @Test
+  void upsert_evictsLeastRecentlyAdvancedStateMachinesOverByteBudget() {
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+    Map<String, StateMachine> active = new HashMap<>();
+    for (long i = 0; i < 50; i++) {
+      active.put(
+          "g" + i, new StateMachine("S1", i, Map.of("payload", "x".repeat(100)), 0L, null));
+    }
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    stateMachines.put(1L, new StateMachineSnapshot("1", active, null, null));
+    UserDataSnapshot snapshot = new UserDataSnapshot(stateMachines, new HashMap<>());
+
+    assertThat(budgetedRepository(2_000).upsert(TENANT, USER, snapshot).blockingGet()).isTrue();
+
+    assertThat(active).isNotEmpty().hasSizeLessThan(50).containsKey("g49");
+    long evicted = metricsRegistry.count(StateMachineRepositoryImpl.BUDGET_EVICTIONS);
+    assertThat(evicted).isEqualTo(50 - active.size());
+    for (long i = 0; i < evicted; i++) {
+      assertThat(active).doesNotContainKey("g" + i);
+    }
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.BUDGET_EXCEEDED)).isEqualTo(1);
+  }
+
+  @Test
+  void upsert_rejectsSnapshotThatExceedsBudgetWithoutStateMachines() {
+    UserDataSnapshot snapshot = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+
+    assertThatThrownBy(() -> budgetedRepository(10).upsert(TENANT, USER, snapshot).blockingGet())
+        .isInstanceOf(ThunderException.class);
+
+    verify(client, never()).rxPut(any(), any(), any(Bin[].class));
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.BUDGET_REJECTED)).isEqualTo(1);
+  }
+
+  @Test
+  void merge_rewritesWithinLimitsWhenTheMergeLeftTooManyGroups() {
+    when(limits.maxGroups(TENANT, 1L)).thenReturn(2);
+    when(client.rxOperate(any(), any(), any(Operation[].class)))
+        .thenReturn(Single.just(new Record(Map.of("overLimits", true), 4, 0)));
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(4));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.just(new Key("a", "b", 1)));
+
+    assertThat(repository.merge(TENANT, USER, delta()).blockingGet()).isTrue();
+
+    verify(limits).enforce(eq(TENANT), any());
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxPut(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().generation).isEqualTo(4);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.MERGE_OVER_LIMITS)).isEqualTo(1);
+  }
+
+  @Test
+  void merge_staysInPlaceWithinLimits() {
+    when(limits.maxGroups(TENANT, 1L)).thenReturn(2);
+    when(client.rxOperate(any(), any(), any(Operation[].class)))
+        .thenReturn(Single.just(new Record(Map.of("overLimits", false), 4, 0)));
+
+    assertThat(repository.merge(TENANT, USER, delta()).blockingGet()).isTrue();
+
+    verify(limits, never()).enforce(any(), any());
+    verify(client, never()).rxPut(any(), any(), any(Bin[].class));
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.MERGE_OVER_LIMITS)).isZero();
+  }
+
+  private static CTASnapshotRequest delta() {
+    Map<String, StateMachine> groups = new HashMap<>();
+    groups.put("g1", new StateMachine("S1", 100L, Map.of(), 50L, null));
+    return new CTASnapshotRequest(List.of(new StateMachineSnapshot("1", groups, null, null)), null);
+  }
+
+  @Test
+  void findMany_readsUsersInOneBatchAndSkipsMissingOnes() {
+    when(client.rxBatchOperate(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              List<BatchRecord> records = invocation.getArgument(1);
+              records.get(0).record = storedAt(4).blockingGet();
+              records.get(0).resultCode = ResultCode.OK;
+              records.get(1).resultCode = ResultCode.KEY_NOT_FOUND_ERROR;
+              return Single.just(records);
+            });
+
+    Map<Long, UserDataSnapshot> snapshots =
+        repository.findMany(TENANT, List.of(USER, USER + 1)).blockingGet();
+
+    assertThat(snapshots).containsOnlyKeys(USER);
+    assertThat(snapshots.get(USER).getGeneration()).isEqualTo(4);
+    verify(client, times(1)).rxBatchOperate(any(), any());
+  }
+
+  @Test
+  void findMany_failsWhenAKeyFails() {
+    when(client.rxBatchOperate(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              List<BatchRecord> records = invocation.getArgument(1);
+              records.get(0).resultCode = ResultCode.TIMEOUT;
+              return Single.just(records);
+            });
+
+    assertThatThrownBy(() -> repository.findMany(TENANT, List.of(USER)).blockingGet())
+        .isInstanceOf(AerospikeException.class);
+  }
+
+  @Test
+  void update_touchesUnchangedRecordWithoutTtl() {
+    when(expiry.ttlSeconds(TENANT)).thenReturn(3600);
+    when(client.rxGet(any(), any(), any(String[].class))).thenReturn(storedAt(3));
+    when(client.rxOperate(any(), any(), any(Operation[].class)))
+        .thenReturn(Single.just(new Record(new HashMap<>(), 4, 0)));
+
+    repository.update(TENANT, USER, snapshot -> false).blockingGet();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxOperate(policy.capture(), any(), any(Operation[].class));
+    assertThat(policy.getValue().expiration).isEqualTo(3600);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.TOUCHES)).isEqualTo(1);
+  }
+
+  @Test
+  void find_skipsTouchWithinTouchInterval() {
+    when(expiry.ttlSeconds(TENANT)).thenReturn(3600);
+    when(expiry.touchIntervalSeconds()).thenReturn(600);
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.STATE_MACHINES_BIN, new HashMap<>());
+    // Expiration counts seconds from 2010-01-01; this record has 3500 of its 3600 seconds left
+    int expiration = (int) (System.currentTimeMillis() / 1000 - 1262304000L + 3500);
+    when(client.rxGet(any(), any(), any(String[].class)))
+        .thenReturn(Maybe.just(new Record(bins, 3, expiration)));
+
+    repository.find(TENANT, USER).blockingGet();
+
+    verify(client, never()).rxOperate(any(), any(), any(Operation[].class));
+  }
+
+  @Test
+  void sweep_rewritesChangedSnapshotsAndDeletesEmptiedOnes() {
+    com.aerospike.client.AerospikeClient nativeClient =
+        scanning(
+            new Key("thunder", Schema.SET, TENANT + ":1"),
+            new Key("thunder", Schema.SET, TENANT + ":2"));
+
+    repository
+        .sweep(
+            0,
+            64,
+            100,
+            (tenantId, snapshot) -> {
+              assertThat(tenantId).isEqualTo(TENANT);
+              snapshot.setBehaviourTags(new HashMap<>());
+              if (snapshot.getStateMachines().containsKey(2L)) {
+                snapshot.getStateMachines().clear();
+              }
+              return true;
+            })
+        .blockingAwait();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(nativeClient).put(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().generation).isEqualTo(5);
+    assertThat(policy.getValue().expiration).isEqualTo(-2);
+    verify(expiry, never()).ttlSeconds(any());
+    verify(nativeClient).delete(any(), any());
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.SWEEP_REWRITTEN)).isEqualTo(1);
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.SWEEP_DELETED)).isEqualTo(1);
+  }
+
+  @Test
+  void sweep_skipsRecordsStoredWithoutUserKey() {
+    com.aerospike.client.AerospikeClient nativeClient =
+        scanning(new Key("thunder", new byte[20], Schema.SET, null));
+
+    repository.sweep(0, 64, 0, (tenantId, snapshot) -> true).blockingAwait();
+
+    verify(nativeClient, never()).put(any(), any(), any(Bin[].class));
+    assertThat(metricsRegistry.count(StateMachineRepositoryImpl.SWEEP_UNKEYED)).isEqualTo(1);
+  }
+
+  /** Stubs a scan returning records at generation 5 whose CTA id is the key's user id. */
+  private com.aerospike.client.AerospikeClient scanning(Key... keys) {
+    com.aerospike.client.AerospikeClient nativeClient =
+        mock(com.aerospike.client.AerospikeClient.class);
+    when(client.getClient()).thenReturn(nativeClient);
+    doAnswer(
+            invocation -> {
+              ScanCallback callback = invocation.getArgument(4);
+              for (Key key : keys) {
+                Long ctaId =
+                    key.userKey == null
+                        ? 1L
+                        : Long.valueOf(key.userKey.toString().substring(TENANT.length() + 1));
+                Map<String, Object> bins = new HashMap<>();
+                bins.put(Schema.STATE_MACHINES_BIN, Map.of(ctaId, new HashMap<>()));
+                bins.put(Schema.BEHAVIOUR_TAGS_BIN, new HashMap<>());
+                callback.scanCallback(key, new Record(bins, 5, 0));
+              }
+              return null;
+            })
+        .when(nativeClient)
+        .scanPartitions(any(), any(), eq("thunder"), eq(Schema.SET), any(ScanCallback.class));
+    return nativeClient;
+  }
+}
@@ -0,0 +1,104 @@
+package com.raven.thunder.api.dao.statemachine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SweepCheckpointRepositoryImplTest {
+
+  @Mock private AerospikeClient client;
+
+  private SweepCheckpointRepositoryImpl repository;
+
+  @BeforeEach
+  void setUp() {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setUserDataNamespace("thunder");
+    repository = new SweepCheckpointRepositoryImpl(config, client);
+  }
+
+  @Test
+  void acquireLease_createsLeaseWhenNoneExists() {
+    when(client.rxGet(any(), any())).thenReturn(Maybe.empty());
+    when(client.rxPut(any(), any(), any(Bin[].class))).thenReturn(Single.just(leaseKey()));
+
+    assertThat(repository.acquireLease("node-a", now() + 60_000).blockingGet()).isTrue();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxPut(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().recordExistsAction).isEqualTo(RecordExistsAction.CREATE_ONLY);
+  }
+
+  @Test
+  void acquireLease_refusesLeaseHeldByAnotherNode() {
+    when(client.rxGet(any(), any())).thenReturn(Maybe.just(lease("node-b", now() + 60_000, 3)));
+
+    assertThat(repository.acquireLease("node-a", now() + 60_000).blockingGet()).isFalse();
+
+    verify(client, never()).rxPut(any(), any(), any(Bin[].class));
+  }
+
+  @Test
+  void acquireLease_takesOverExpiredLeaseAtItsGeneration() {
+    when(client.rxGet(any(), any())).thenReturn(Maybe.just(lease("node-b", now() - 1, 3)));
+    when(client.rxPut(any(), any(), any(Bin[].class))).thenReturn(Single.just(leaseKey()));
+
+    assertThat(repository.acquireLease("node-a", now() + 60_000).blockingGet()).isTrue();
+
+    ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client).rxPut(policy.capture(), any(), any(Bin[].class));
+    assertThat(policy.getValue().generationPolicy).isEqualTo(GenerationPolicy.EXPECT_GEN_EQUAL);
+    assertThat(policy.getValue().generation).isEqualTo(3);
+  }
+
+  @Test
+  void acquireLease_losesTakeOverRaceToAnotherNode() {
+    when(client.rxGet(any(), any()))
+        .thenReturn(
+            Maybe.just(lease("node-b", now() - 1, 3)),
+            Maybe.just(lease("node-c", now() + 60_000, 4)));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenReturn(Single.error(new AerospikeException(ResultCode.GENERATION_ERROR)));
+
+    assertThat(repository.acquireLease("node-a", now() + 60_000).blockingGet()).isFalse();
+  }
+
+  private static Record lease(String owner, long expiresAt, int generation) {
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.SWEEP_LEASE_OWNER_BIN, owner);
+    bins.put(Schema.SWEEP_LEASE_EXPIRES_AT_BIN, expiresAt);
+    return new Record(bins, generation, 0);
+  }
+
+  private static Key leaseKey() {
+    return new Key("thunder", Schema.SWEEP_SET, Schema.SWEEP_LEASE_KEY);
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+}
@@ -0,0 +1,256 @@
+package com.raven.thunder.api.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.api.dao.statemachine.KnownUsersFilter;
+import com.raven.thunder.api.dao.statemachine.StateMachineRepositoryImpl;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.service.cache.CatalogSnapshot;
+import com.raven.thunder.api.service.cache.CatalogSnapshotExpiry;
+import com.raven.thunder.api.service.cache.CatalogSnapshotLimits;
+import com.raven.thunder.api.service.sdk.AppLaunchResponseMemo;
+import com.raven.thunder.api.service.sdk.SdkServiceImpl;
+import com.raven.thunder.api.service.sdk.SnapshotWriteCoalescer;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.client.AerospikeClientFactory;
+import com.raven.thunder.core.config.AerospikeClientMode;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.config.KnownUsersConfig;
+import com.raven.thunder.core.config.NearCacheConfig;
+import com.raven.thunder.core.config.ResponseMemoConfig;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.config.SnapshotTtlConfig;
+import com.raven.thunder.core.config.WriteCoalescingConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CohortEligibility;
+import com.raven.thunder.core.model.Frequency;
+import com.raven.thunder.core.model.rule.Rule;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Compares appLaunch throughput of the sync and async Aerospike clients when requests are driven
+ * from a single Vert.x event loop, which is how the REST layer calls the SDK service. Disabled by
+ * default; run with {@code mvn -pl thunder-api verify -Dbenchmark=true -Dit.test=AppLaunch*}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AppLaunchClientBenchmarkIT {
+
+  private static final String TENANT = "bench";
+  private static final int USERS = 2_000;
+  private static final int REQUESTS = 20_000;
+  private static final int IN_FLIGHT = 128;
+
+  private static GenericContainer<?> aerospike;
+
+  @BeforeAll
+  static void startAerospike() throws InterruptedException {
+    aerospike =
+        new GenericContainer<>(DockerImageName.parse("aerospike/aerospike-server:6.4.0.3"))
+            .withExposedPorts(3000)
+            .waitingFor(Wait.forListeningPort());
+    aerospike.start();
+    // Same warm-up buffer as Setup: the node needs a moment after the port opens.
+    Thread.sleep(3000);
+  }
+
+  @AfterAll
+  static void stopAerospike() {
+    if (aerospike != null) {
+      aerospike.stop();
+    }
+  }
+
+  @Test
+  void appLaunchThroughput_syncVsAsync() throws Exception {
+    double sync = run(AerospikeClientMode.SYNC);
+    double async = run(AerospikeClientMode.ASYNC);
+
+    log.info(
+        "appLaunch throughput on one event loop ({} requests, {} in flight): sync={} req/s,"
+            + " async={} req/s, speedup={}x",
+        REQUESTS,
+        IN_FLIGHT,
+        String.format("%.0f", sync),
+        String.format("%.0f", async),
+        String.format("%.2f", async / sync));
+    assertThat(sync).isPositive();
+    assertThat(async).isPositive();
+  }
+
+  private double run(AerospikeClientMode mode) throws Exception {
+    Vertx vertx = Vertx.vertx();
+    AerospikeConfig config = new AerospikeConfig();
+    config.setHost(aerospike.getHost());
+    config.setPort(aerospike.getMappedPort(3000));
+    config.setUserDataNamespace("test");
+    config.setAdminDataNamespace("test");
+    config.setSocketTimeout(5000);
+    config.setTotalTimeout(10000);
+    config.setMaxConnections(300);
+    config.setClientMode(mode);
+
+    AerospikeClient client = AerospikeClientFactory.create(config, vertx);
+    client.rxConnect().blockingAwait();
+    try {
+      StateMachineRepositoryImpl repository =
+          new StateMachineRepositoryImpl(
+              config,
+              client,
+              new NearCacheConfig(),
+              new KnownUsersFilter(config, client, new KnownUsersConfig(), new MetricsRegistry()),
+              new CatalogSnapshotExpiry(catalogCache(), new SnapshotTtlConfig()),
+              new CatalogSnapshotLimits(catalogCache(), new SnapshotLimitsConfig()),
+              new SnapshotLimitsConfig(),
+              new MetricsRegistry());
+      SnapshotWriteCoalescer writeCoalescer =
+          new SnapshotWriteCoalescer(
+              vertx, repository, new WriteCoalescingConfig(), new MetricsRegistry());
+      SdkServiceImpl sdkService =
+          new SdkServiceImpl(
+              (tenantId, userId) -> Single.just(Set.of("all")),
+              repository,
+              catalogCache(),
+              null,
+              writeCoalescer,
+              new AppLaunchResponseMemo(new ResponseMemoConfig(), new MetricsRegistry()),
+              new SnapshotLimitsConfig());
+
+      Observable.range(1, USERS)
+          .flatMapSingle(userId -> repository.upsert(TENANT, (long) userId, snapshot()), false, 64)
+          .blockingSubscribe();
+
+      // Warm up connections and JIT before measuring.
+      drive(vertx.getOrCreateContext(), sdkService, REQUESTS / 10);
+      long elapsedNanos = drive(vertx.getOrCreateContext(), sdkService, REQUESTS);
+      return REQUESTS / (elapsedNanos / 1_000_000_000d);
+    } finally {
+      client.rxClose().blockingAwait();
+      vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /** Keeps {@link #IN_FLIGHT} appLaunch calls outstanding from one event loop context. */
+  private long drive(Context context, SdkServiceImpl sdkService, int requests)
+      throws InterruptedException {
+    AtomicInteger issued = new AtomicInteger();
+    AtomicLong failures = new AtomicLong();
+    CountDownLatch done = new CountDownLatch(requests);
+    long start = System.nanoTime();
+    context.runOnContext(
+        ignored -> {
+          for (int i = 0; i < IN_FLIGHT; i++) {
+            issue(context, sdkService, issued, failures, done, requests);
+          }
+        });
+    assertThat(done.await(5, TimeUnit.MINUTES)).isTrue();
+    assertThat(failures.get()).isZero();
+    return System.nanoTime() - start;
+  }
+
+  private void issue(
+      Context context,
+      SdkServiceImpl sdkService,
+      AtomicInteger issued,
+      AtomicLong failures,
+      CountDownLatch done,
+      int requests) {
+    int n = issued.incrementAndGet();
+    if (n > requests) {
+      return;
+    }
+    long userId = 1L + (n % USERS);
+    sdkService
+        .appLaunch(TENANT, userId, null)
+        .toSingle()
+        .toCompletionStage()
+        .whenComplete(
+            (response, error) -> {
+              if (error != null) {
+                failures.incrementAndGet();
+              }
+              done.countDown();
+              // Re-enter the event loop like a new HTTP request would.
+              context.runOnContext(
+                  ignored -> issue(context, sdkService, issued, failures, done, requests));
+            });
+  }
+
+  private static StaticDataCache catalogCache() {
+    Rule rule =
+        new Rule(
+            new CohortEligibility(List.of("all"), List.of()),
+            Map.of("S1", "show"),
+            List.of(),
+            false,
+            List.of(),
+            Map.of(),
+            null,
+            1,
+            null,
+            null,
+            List.of(Map.of()),
+            new Frequency());
+    CTA cta = new CTA();
+    cta.setId(1L);
+    cta.setRule(rule);
+    cta.setTenantId(TENANT);
+    cta.setBehaviourTags(List.of());
+    CatalogSnapshot snapshot =
+        CatalogSnapshot.build(1L, 0L, Map.of(TENANT, 1L), Map.of(1L, cta), Map.of(), Map.of());
+
+    return new StaticDataCache() {
+      @Override
+      public CompletableFuture<?> initiateCache() {
+        return CompletableFuture.completedFuture(null);
+      }
+
+      @Override
+      public CompletableFuture<?> refresh() {
+        return CompletableFuture.completedFuture(null);
+      }
+
+      @Override
+      public CatalogSnapshot getSnapshot() {
+        return snapshot;
+      }
+    };
+  }
+
+  private static UserDataSnapshot snapshot() {
+    StateMachine stateMachine = new StateMachine();
+    stateMachine.setCurrentState("S1");
+    stateMachine.setCreatedAt(System.currentTimeMillis());
+    stateMachine.setLastTransitionAt(System.currentTimeMillis());
+    StateMachineSnapshot stateMachineSnapshot = new StateMachineSnapshot();
+    stateMachineSnapshot.setCtaId("1");
+    stateMachineSnapshot.setActiveStateMachines(new HashMap<>(Map.of("g1", stateMachine)));
+    stateMachineSnapshot.setResetAt(List.of());
+    stateMachineSnapshot.setActionDoneAt(List.of());
+    return new UserDataSnapshot(new HashMap<>(Map.of(1L, stateMachineSnapshot)), new HashMap<>());
+  }
+}
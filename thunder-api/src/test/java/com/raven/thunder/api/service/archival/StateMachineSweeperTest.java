@@ -0,0 +1,169 @@
+package com.raven.thunder.api.service.archival;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.dao.SweepCheckpointRepository;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.SweepCheckpoint;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.service.cache.CatalogSnapshot;
+import com.raven.thunder.core.config.ArchivalSweepConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CTA;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StateMachineSweeperTest {
+
+  private static final String TENANT = "tenant-1";
+
+  @Mock private StateMachineRepository stateMachineRepository;
+  @Mock private SweepCheckpointRepository checkpointRepository;
+  @Mock private StaticDataCache cache;
+
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+  private StateMachineSweeper sweeper;
+
+  @BeforeEach
+  void setUp() {
+    ArchivalSweepConfig config = new ArchivalSweepConfig();
+    config.setEnabled(true);
+    config.setSweepPeriod(60_000);
+    config.setConcurrency(2);
+    sweeper =
+        new StateMachineSweeper(
+            stateMachineRepository, checkpointRepository, cache, config, metricsRegistry);
+  }
+
+  @Test
+  void sweep_resumesFromCheckpointAndRecordsCompletion() {
+    Set<Integer> completed =
+        IntStream.range(0, StateMachineSweeper.BLOCKS - 2)
+            .boxed()
+            .collect(Collectors.toCollection(HashSet::new));
+    when(checkpointRepository.acquireLease(any(), anyLong())).thenReturn(Single.just(true));
+    when(checkpointRepository.find())
+        .thenReturn(Maybe.just(new SweepCheckpoint(1L, null, completed)));
+    when(checkpointRepository.save(any())).thenReturn(Completable.complete());
+    when(stateMachineRepository.sweep(anyInt(), anyInt(), anyInt(), any()))
+        .thenReturn(Completable.complete());
+
+    sweeper.sweep().blockingAwait();
+
+    ArgumentCaptor<Integer> partitionBegin = ArgumentCaptor.forClass(Integer.class);
+    verify(stateMachineRepository, times(2))
+        .sweep(partitionBegin.capture(), anyInt(), anyInt(), any());
+    int lastBlock = StateMachineSweeper.BLOCKS - 1;
+    assertThat(partitionBegin.getAllValues())
+        .containsExactlyInAnyOrder(
+            (lastBlock - 1) * StateMachineSweeper.PARTITIONS_PER_BLOCK,
+            lastBlock * StateMachineSweeper.PARTITIONS_PER_BLOCK);
+
+    ArgumentCaptor<SweepCheckpoint> saved = ArgumentCaptor.forClass(SweepCheckpoint.class);
+    verify(checkpointRepository, times(3)).save(saved.capture());
+    SweepCheckpoint last = saved.getAllValues().get(2);
+    assertThat(last.getCompletedAt()).isNotNull();
+    assertThat(last.getCompletedBlocks()).hasSize(StateMachineSweeper.BLOCKS);
+    assertThat(metricsRegistry.count(StateMachineSweeper.SWEEPS)).isEqualTo(1);
+  }
+
+  @Test
+  void sweep_waitsForSweepPeriodAfterLastSweep() {
+    SweepCheckpoint finished =
+        new SweepCheckpoint(1L, System.currentTimeMillis(), new HashSet<>());
+    when(checkpointRepository.acquireLease(any(), anyLong())).thenReturn(Single.just(true));
+    when(checkpointRepository.find()).thenReturn(Maybe.just(finished));
+
+    sweeper.sweep().blockingAwait();
+
+    verify(stateMachineRepository, never()).sweep(anyInt(), anyInt(), anyInt(), any());
+  }
+
+  @Test
+  void sweep_skipsWhileAnotherNodeHoldsTheLease() {
+    when(checkpointRepository.acquireLease(any(), anyLong())).thenReturn(Single.just(false));
+
+    sweeper.sweep().blockingAwait();
+
+    verify(checkpointRepository, never()).find();
+    verify(stateMachineRepository, never()).sweep(anyInt(), anyInt(), anyInt(), any());
+  }
+
+  @Test
+  void sweep_stopsWhenTheLeaseIsLostBetweenBlocks() {
+    when(checkpointRepository.acquireLease(any(), anyLong()))
+        .thenReturn(Single.just(true), Single.just(false));
+    when(checkpointRepository.find()).thenReturn(Maybe.empty());
+
+    sweeper.sweep().test().assertError(IllegalStateException.class);
+
+    verify(stateMachineRepository, never()).sweep(anyInt(), anyInt(), anyInt(), any());
+    verify(checkpointRepository, never()).save(any());
+  }
+
+  @Test
+  void archive_removesConcludedCTAsAgainstTenantCatalog() {
+    when(cache.getSnapshot()).thenReturn(catalog(cta(1L)));
+    UserDataSnapshot snapshot = snapshotWith(1L, 2L);
+
+    assertThat(sweeper.archive(TENANT, snapshot)).isTrue();
+    assertThat(snapshot.getStateMachines()).containsOnlyKeys(1L);
+  }
+
+  @Test
+  void archive_leavesTenantsMissingFromCatalogAlone() {
+    when(cache.getSnapshot()).thenReturn(catalog(cta(1L)));
+    UserDataSnapshot snapshot = snapshotWith(1L, 2L);
+
+    assertThat(sweeper.archive("tenant-2", snapshot)).isFalse();
+    assertThat(snapshot.getStateMachines()).containsOnlyKeys(1L, 2L);
+  }
+
+  private static CatalogSnapshot catalog(CTA cta) {
+    return CatalogSnapshot.build(1L, 0L, Map.of(), Map.of(cta.getId(), cta), Map.of(), Map.of());
+  }
+
+  private static CTA cta(long id) {
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setTenantId(TENANT);
+    cta.setBehaviourTags(List.of());
+    return cta;
+  }
+
+  private static UserDataSnapshot snapshotWith(Long... ctaIds) {
+    Map<Long, StateMachineSnapshot> stateMachines = new HashMap<>();
+    for (Long ctaId : ctaIds) {
+      stateMachines.put(
+          ctaId,
+          new StateMachineSnapshot(
+              String.valueOf(ctaId), new HashMap<>(), new ArrayList<>(), new ArrayList<>()));
+    }
+    return new UserDataSnapshot(stateMachines, new HashMap<>());
+  }
+}
@@ -0,0 +1,60 @@
+package com.raven.thunder.api.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.core.config.SnapshotTtlConfig;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogSnapshotExpiryTest {
+
+  private static final String TENANT = "tenant-1";
+
+  @Mock private StaticDataCache cache;
+  @Mock private TenantCatalog catalog;
+
+  private SnapshotTtlConfig config;
+
+  @BeforeEach
+  void setUp() {
+    config = new SnapshotTtlConfig();
+    config.setEnabled(true);
+    config.setInactivityTtl(TimeUnit.DAYS.toMillis(30));
+    when(cache.findTenantCatalog(TENANT)).thenReturn(catalog);
+  }
+
+  @Test
+  void ttlSeconds_raisesInactivityTtlToStateRetention() {
+    when(catalog.getStateRetentionMillis()).thenReturn(TimeUnit.DAYS.toMillis(90));
+
+    int ttl = new CatalogSnapshotExpiry(cache, config).ttlSeconds(TENANT);
+
+    assertThat(ttl).isEqualTo(TimeUnit.DAYS.toSeconds(90));
+  }
+
+  @Test
+  void ttlSeconds_isCappedAtMaxTtl() {
+    config.setMaxTtl(TimeUnit.DAYS.toMillis(365));
+    when(catalog.getStateRetentionMillis()).thenReturn(TimeUnit.DAYS.toMillis(365) + 1);
+
+    int ttl = new CatalogSnapshotExpiry(cache, config).ttlSeconds(TENANT);
+
+    assertThat(ttl).isEqualTo(TimeUnit.DAYS.toSeconds(365));
+  }
+
+  @Test
+  void ttlSeconds_defaultsMaxTtlToTenYears() {
+    when(catalog.getStateRetentionMillis()).thenReturn(Long.MAX_VALUE / 2);
+
+    int ttl = new CatalogSnapshotExpiry(cache, config).ttlSeconds(TENANT);
+
+    assertThat(ttl).isEqualTo(TimeUnit.DAYS.toSeconds(3650));
+  }
+}
@@ -1,17 +1,25 @@
 package com.raven.thunder.api.service.cache;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.raven.thunder.core.config.CacheConfig;
 import com.raven.thunder.core.dao.BehaviourTagsRepository;
 import com.raven.thunder.core.dao.CTARepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import com.raven.thunder.core.metrics.MetricsRegistry;
 import com.raven.thunder.core.model.BehaviourTag;
 import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CTAStatus;
 import io.reactivex.rxjava3.core.Single;
 import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -20,37 +28,220 @@ class StaticDataCacheImplTest {
 
   @Mock private CTARepository ctaRepository;
   @Mock private BehaviourTagsRepository behaviourTagsRepository;
+  @Mock private CatalogVersionRepository catalogVersionRepository;
 
-  @InjectMocks private StaticDataCacheImpl cache;
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+  private StaticDataCacheImpl cache;
 
-  @Test
-  void initiateCache_loadsAllDatasets_andFindReturnsCopies() {
-    // active
-    CTA active = new CTA();
-    active.setId(1L);
-    // paused
-    CTA paused = new CTA();
-    paused.setId(2L);
-    // tags
+  @BeforeEach
+  void setUp() {
+    cache =
+        new StaticDataCacheImpl(
+            ctaRepository,
+            behaviourTagsRepository,
+            catalogVersionRepository,
+            new CacheConfig(5000, 900000, 30000),
+            metricsRegistry);
+  }
+
+  private CTA cta(long id, String tenantId) {
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setTenantId(tenantId);
+    return cta;
+  }
+
+  private CTA cta(long id, String tenantId, CTAStatus status) {
+    CTA cta = cta(id, tenantId);
+    cta.setCtaStatus(status);
+    return cta;
+  }
+
+  private BehaviourTag tag(String name, String tenantId) {
     BehaviourTag tag = new BehaviourTag();
-    tag.setName("bt1");
+    tag.setName(name);
+    tag.setTenantId(tenantId);
+    return tag;
+  }
+
+  private void stubFullLoad(Map<Long, CTA> active, Map<Long, CTA> paused) {
+    when(ctaRepository.findAllWithStatusActive()).thenReturn(Single.just(active));
+    when(ctaRepository.findAllWithStatusPaused()).thenReturn(Single.just(paused));
+    when(behaviourTagsRepository.findAll()).thenReturn(Single.just(Map.of()));
+  }
+
+  @Test
+  void initiateCache_publishesSnapshotGroupedByTenant() {
+    when(catalogVersionRepository.findAll()).thenReturn(Single.just(Map.of("t1", 4L)));
+    when(ctaRepository.findAllWithStatusActive())
+        .thenReturn(Single.just(Map.of(1L, cta(1L, "t1"), 3L, cta(3L, "t2"))));
+    when(ctaRepository.findAllWithStatusPaused())
+        .thenReturn(Single.just(Map.of(2L, cta(2L, "t1"))));
+    when(behaviourTagsRepository.findAll())
+        .thenReturn(Single.just(Map.of("t1:bt1", tag("bt1", "t1"), "t2:bt2", tag("bt2", "t2"))));
+
+    assertThat(cache.getSnapshot()).isSameAs(CatalogSnapshot.EMPTY);
+
+    cache.initiateCache().join();
+
+    TenantCatalog t1 = cache.findTenantCatalog("t1");
+    assertThat(t1.getVersion()).isEqualTo(4L);
+    assertThat(t1.getActiveCTAs()).containsOnlyKeys(1L);
+    assertThat(t1.getPausedCTAs()).containsOnlyKeys(2L);
+    assertThat(t1.getBehaviourTags()).containsOnlyKeys("bt1");
+
+    TenantCatalog t2 = cache.findTenantCatalog("t2");
+    assertThat(t2.getVersion()).isZero();
+    assertThat(t2.getActiveCTAs()).containsOnlyKeys(3L);
+    assertThat(t2.getPausedCTAs()).isEmpty();
+    assertThat(t2.getBehaviourTags()).containsOnlyKeys("bt2");
+
+    assertThat(cache.findTenantCatalog("unknown")).isSameAs(TenantCatalog.EMPTY);
+    assertThat(cache.getSnapshot().getVersion()).isEqualTo(1L);
+    assertThat(cache.getStalenessMs()).isGreaterThanOrEqualTo(0L);
+  }
+
+  @Test
+  void findTenantCatalog_returnsSameReadOnlyInstanceWithoutCopying() {
+    when(catalogVersionRepository.findAll()).thenReturn(Single.just(Map.of()));
+    stubFullLoad(Map.of(1L, cta(1L, "t1")), Map.of());
+
+    cache.initiateCache().join();
+
+    TenantCatalog first = cache.findTenantCatalog("t1");
+    assertThat(cache.findTenantCatalog("t1")).isSameAs(first);
+    assertThatThrownBy(() -> first.getActiveCTAs().clear())
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
 
-    when(ctaRepository.findAllWithStatusActive()).thenReturn(Single.just(Map.of(1L, active)));
-    when(ctaRepository.findAllWithStatusPaused()).thenReturn(Single.just(Map.of(2L, paused)));
-    when(behaviourTagsRepository.findAll()).thenReturn(Single.just(Map.of("bt1", tag)));
+  @Test
+  void refresh_skipsDataQueriesWhenVersionsUnchanged() {
+    when(catalogVersionRepository.findAll()).thenReturn(Single.just(Map.of("t1", 1L)));
+    stubFullLoad(Map.of(1L, cta(1L, "t1")), Map.of());
+    cache.initiateCache().join();
+    CatalogSnapshot before = cache.getSnapshot();
 
+    cache.refresh().join();
+
+    assertThat(cache.getSnapshot()).isSameAs(before);
+    verify(ctaRepository, never()).findAllUpdatedSince(anyLong());
+    verify(behaviourTagsRepository, never()).findAllUpdatedSince(anyLong());
+    verify(ctaRepository, times(1)).findAllWithStatusActive();
+    assertThat(metricsRegistry.count(StaticDataCacheImpl.REFRESH_UNCHANGED)).isEqualTo(1L);
+  }
+
+  @Test
+  void refresh_appliesOnlyChangesSinceWatermarkWhenVersionBumped() {
+    when(catalogVersionRepository.findAll())
+        .thenReturn(Single.just(Map.of("t1", 1L, "t2", 1L)))
+        .thenReturn(Single.just(Map.of("t1", 2L, "t2", 1L)));
+    stubFullLoad(Map.of(1L, cta(1L, "t1"), 2L, cta(2L, "t1"), 3L, cta(3L, "t2")), Map.of());
+    cache.initiateCache().join();
+    CatalogSnapshot before = cache.getSnapshot();
+    TenantCatalog untouched = cache.findTenantCatalog("t2");
+
+    when(ctaRepository.findAllUpdatedSince(before.getWatermark()))
+        .thenReturn(
+            Single.just(
+                Map.of(
+                    1L, cta(1L, "t1", CTAStatus.PAUSED),
+                    2L, cta(2L, "t1", CTAStatus.CONCLUDED),
+                    4L, cta(4L, "t1", CTAStatus.LIVE))));
+    when(behaviourTagsRepository.findAllUpdatedSince(before.getWatermark()))
+        .thenReturn(Single.just(Map.of("t1:bt1", tag("bt1", "t1"))));
+    when(ctaRepository.findMany(eq("t1"), any()))
+        .thenReturn(
+            Single.just(
+                Map.of(1L, cta(1L, "t1", CTAStatus.LIVE), 2L, cta(2L, "t1", CTAStatus.LIVE))));
+    when(behaviourTagsRepository.findAll("t1"))
+        .thenReturn(Single.just(Map.of("t1:bt1", tag("bt1", "t1"))));
+
+    cache.refresh().join();
+
+    TenantCatalog t1 = cache.findTenantCatalog("t1");
+    assertThat(t1.getVersion()).isEqualTo(2L);
+    assertThat(t1.getActiveCTAs()).containsOnlyKeys(4L);
+    assertThat(t1.getPausedCTAs()).containsOnlyKeys(1L);
+    assertThat(t1.getBehaviourTags()).containsOnlyKeys("bt1");
+    assertThat(cache.findTenantCatalog("t2")).isSameAs(untouched);
+    assertThat(cache.getSnapshot().getVersion()).isEqualTo(before.getVersion() + 1);
+    assertThat(cache.getSnapshot().getWatermark()).isGreaterThanOrEqualTo(before.getWatermark());
+    verify(ctaRepository, times(1)).findAllWithStatusActive();
+    assertThat(metricsRegistry.count(StaticDataCacheImpl.REFRESH_INCREMENTAL)).isEqualTo(1L);
+  }
+
+  @Test
+  void refresh_dropsDeletedCTAsAndRemovedTagsOfTenantsBehind() {
+    when(catalogVersionRepository.findAll())
+        .thenReturn(Single.just(Map.of("t1", 1L, "t2", 1L)))
+        .thenReturn(Single.just(Map.of("t1", 2L, "t2", 1L)));
+    when(ctaRepository.findAllWithStatusActive())
+        .thenReturn(
+            Single.just(Map.of(1L, cta(1L, "t1"), 2L, cta(2L, "t1"), 3L, cta(3L, "t1"))));
+    when(ctaRepository.findAllWithStatusPaused()).thenReturn(Single.just(Map.of()));
+    when(behaviourTagsRepository.findAll())
+        .thenReturn(
+            Single.just(
+                Map.of(
+                    "t1:bt1", tag("bt1", "t1"),
+                    "t1:bt2", tag("bt2", "t1"),
+                    "t2:bt3", tag("bt3", "t2"))));
     cache.initiateCache().join();
+    CatalogSnapshot before = cache.getSnapshot();
+
+    when(ctaRepository.findAllUpdatedSince(before.getWatermark()))
+        .thenReturn(Single.just(Map.of()));
+    when(behaviourTagsRepository.findAllUpdatedSince(before.getWatermark()))
+        .thenReturn(Single.just(Map.of()));
+    // CTA 2 was deleted and CTA 3 terminated without moving the watermark; bt2 was deleted
+    when(ctaRepository.findMany(eq("t1"), any()))
+        .thenReturn(
+            Single.just(
+                Map.of(
+                    1L, cta(1L, "t1", CTAStatus.LIVE),
+                    3L, cta(3L, "t1", CTAStatus.TERMINATED))));
+    when(behaviourTagsRepository.findAll("t1"))
+        .thenReturn(Single.just(Map.of("t1:bt1", tag("bt1", "t1"))));
+
+    cache.refresh().join();
+
+    TenantCatalog t1 = cache.findTenantCatalog("t1");
+    assertThat(t1.getActiveCTAs()).containsOnlyKeys(1L);
+    assertThat(t1.getBehaviourTags()).containsOnlyKeys("bt1");
+    assertThat(cache.findTenantCatalog("t2").getBehaviourTags()).containsOnlyKeys("bt3");
+    verify(behaviourTagsRepository, never()).findAll("t2");
+  }
+
+  @Test
+  void refresh_keepsServingPreviousSnapshotOnFailure() {
+    when(catalogVersionRepository.findAll())
+        .thenReturn(Single.just(Map.of("t1", 1L)))
+        .thenReturn(Single.error(new RuntimeException("boom")));
+    stubFullLoad(Map.of(1L, cta(1L, "t1")), Map.of());
+    cache.initiateCache().join();
+    CatalogSnapshot before = cache.getSnapshot();
+
+    assertThatThrownBy(() -> cache.refresh().join()).hasRootCauseMessage("boom");
+
+    assertThat(cache.getSnapshot()).isSameAs(before);
+    assertThat(metricsRegistry.count(StaticDataCacheImpl.REFRESH_FAILURES)).isEqualTo(1L);
+    assertThat(metricsRegistry.snapshot())
+        .containsKeys(StaticDataCacheImpl.STALENESS_MS, StaticDataCacheImpl.REFRESH_DURATION_MS);
+  }
+
+  @Test
+  void refresh_performsFullLoadWhenInitialLoadFailed() {
+    when(catalogVersionRepository.findAll())
+        .thenReturn(Single.error(new RuntimeException("not ready")))
+        .thenReturn(Single.just(Map.of()));
+    stubFullLoad(Map.of(1L, cta(1L, "t1")), Map.of());
 
-    Map<Long, CTA> activeOut = cache.findAllActiveCTA();
-    Map<Long, CTA> pausedOut = cache.findAllPausedCTA();
-    Map<String, BehaviourTag> tagsOut = cache.findAllBehaviourTags();
+    assertThatThrownBy(() -> cache.initiateCache().join()).hasRootCauseMessage("not ready");
+    assertThat(cache.getStalenessMs()).isEqualTo(-1L);
 
-    assertThat(activeOut).containsOnlyKeys(1L);
-    assertThat(pausedOut).containsOnlyKeys(2L);
-    assertThat(tagsOut).containsOnlyKeys("bt1");
+    cache.refresh().join();
 
-    // Ensure copies returned (mutation does not affect cache)
-    activeOut.clear();
-    assertThat(cache.findAllActiveCTA()).containsOnlyKeys(1L);
+    assertThat(cache.findTenantCatalog("t1").getActiveCTAs()).containsOnlyKeys(1L);
+    assertThat(metricsRegistry.count(StaticDataCacheImpl.REFRESH_FULL)).isEqualTo(1L);
   }
 }
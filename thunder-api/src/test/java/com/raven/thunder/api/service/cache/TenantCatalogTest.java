@@ -0,0 +1,94 @@
+package com.raven.thunder.api.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.api.io.response.RenderedRuleResponse;
+import com.raven.thunder.api.io.response.RuleResponse;
+import com.raven.thunder.api.io.response.UserCTAAndStateMachineResponse;
+import com.raven.thunder.api.service.sdk.RuleMapper;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CohortEligibility;
+import com.raven.thunder.core.model.Frequency;
+import com.raven.thunder.core.model.rule.Rule;
+import com.raven.thunder.core.model.rule.WindowFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequencyUnit;
+import io.vertx.core.json.Json;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TenantCatalogTest {
+
+  private static final String TENANT = "tenant-1";
+
+  @Test
+  void renderedRules_serializeLikeMappedRules() {
+    CTA cta = cta(1L, rule());
+    TenantCatalog catalog = catalog(cta);
+
+    RuleResponse rendered = catalog.getRenderedRules().get(1L);
+    RuleResponse mapped = new RuleMapper().apply(cta.getRule());
+
+    assertThat(rendered).isInstanceOf(RenderedRuleResponse.class);
+    assertThat(Json.encode(response(rendered))).isEqualTo(Json.encode(response(mapped)));
+  }
+
+  @Test
+  void renderedRules_skipsCTAsWithoutRule() {
+    TenantCatalog catalog = catalog(cta(1L, rule()), cta(2L, null));
+
+    assertThat(catalog.getRenderedRules()).containsOnlyKeys(1L);
+  }
+
+  @Test
+  void stateRetention_coversLongestStateMachineTTLAndWindow() {
+    Rule shortLived = rule();
+    shortLived.setStateMachineTTL(TimeUnit.HOURS.toMillis(1));
+    Rule windowed = rule();
+    windowed.getFrequency().setWindow(new WindowFrequency(3, WindowFrequencyUnit.days, 7));
+
+    TenantCatalog catalog = catalog(cta(1L, shortLived), cta(2L, windowed), cta(3L, null));
+
+    assertThat(catalog.getStateRetentionMillis()).isEqualTo(TimeUnit.DAYS.toMillis(7));
+  }
+
+  private static UserCTAAndStateMachineResponse response(RuleResponse rule) {
+    return new UserCTAAndStateMachineResponse("1", rule, Map.of(), List.of(), List.of(), "tag");
+  }
+
+  private static TenantCatalog catalog(CTA... ctas) {
+    Map<Long, CTA> activeCTAs = new HashMap<>();
+    for (CTA cta : ctas) {
+      activeCTAs.put(cta.getId(), cta);
+    }
+    return CatalogSnapshot.build(1L, 0L, Map.of(TENANT, 1L), activeCTAs, Map.of(), Map.of())
+        .forTenant(TENANT);
+  }
+
+  private static CTA cta(long id, Rule rule) {
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setTenantId(TENANT);
+    cta.setRule(rule);
+    cta.setBehaviourTags(List.of());
+    return cta;
+  }
+
+  private static Rule rule() {
+    return new Rule(
+        new CohortEligibility(List.of("all"), List.of()),
+        Map.of("S1", "show"),
+        List.of("S2"),
+        false,
+        List.of(),
+        Map.of(),
+        null,
+        1,
+        null,
+        null,
+        List.of(Map.of("type", "nudge")),
+        new Frequency());
+  }
+}
@@ -0,0 +1,107 @@
+package com.raven.thunder.api.service.cohort;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.raven.thunder.core.dao.CohortRepository;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CohortManifest;
+import io.reactivex.rxjava3.core.Single;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+@ExtendWith(MockitoExtension.class)
+class BitmapUserCohortsClientTest {
+
+  private static final String TENANT = "tenant-1";
+
+  @Mock private CohortRepository cohortRepository;
+
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+  private BitmapUserCohortsClient client;
+
+  @BeforeEach
+  void setUp() {
+    client = new BitmapUserCohortsClient(cohortRepository, metricsRegistry);
+  }
+
+  @Test
+  void findAllCohorts_returnsAllUntilCohortsAreLoaded() {
+    assertThat(client.findAllCohorts(TENANT, 1L).blockingGet()).containsExactly("all");
+  }
+
+  @Test
+  void findAllCohorts_returnsCohortsContainingUser() {
+    CohortManifest vip = manifest("vip", 1);
+    CohortManifest churned = manifest("churned", 1);
+    when(cohortRepository.findManifests()).thenReturn(Single.just(List.of(vip, churned)));
+    when(cohortRepository.load(vip)).thenReturn(Single.just(users(1L, 5_000_000_000L)));
+    when(cohortRepository.load(churned)).thenReturn(Single.just(users(2L)));
+
+    client.refresh().blockingAwait();
+
+    assertThat(client.findAllCohorts(TENANT, 5_000_000_000L).blockingGet())
+        .containsExactlyInAnyOrder("all", "vip");
+    assertThat(client.findAllCohorts(TENANT, 2L).blockingGet())
+        .containsExactlyInAnyOrder("all", "churned");
+    assertThat(client.findAllCohorts("tenant-2", 1L).blockingGet()).containsExactly("all");
+  }
+
+  @Test
+  void refresh_reloadsOnlyChangedCohorts() {
+    CohortManifest vip = manifest("vip", 1);
+    CohortManifest churned = manifest("churned", 1);
+    CohortManifest churnedV2 = manifest("churned", 2);
+    when(cohortRepository.findManifests())
+        .thenReturn(Single.just(List.of(vip, churned)), Single.just(List.of(vip, churnedV2)));
+    when(cohortRepository.load(vip)).thenReturn(Single.just(users(1L)));
+    when(cohortRepository.load(churned)).thenReturn(Single.just(users(2L)));
+    when(cohortRepository.load(churnedV2)).thenReturn(Single.just(users(3L)));
+
+    client.refresh().blockingAwait();
+    client.refresh().blockingAwait();
+
+    verify(cohortRepository, times(1)).load(vip);
+    assertThat(client.findAllCohorts(TENANT, 2L).blockingGet()).containsExactly("all");
+    assertThat(client.findAllCohorts(TENANT, 3L).blockingGet())
+        .containsExactlyInAnyOrder("all", "churned");
+    assertThat(metricsRegistry.count(BitmapUserCohortsClient.RELOADS)).isEqualTo(3);
+  }
+
+  @Test
+  void refresh_keepsPreviousBitmapWhenReloadFails() {
+    CohortManifest vip = manifest("vip", 1);
+    CohortManifest vipV2 = manifest("vip", 2);
+    when(cohortRepository.findManifests())
+        .thenReturn(Single.just(List.of(vip)), Single.just(List.of(vipV2)));
+    when(cohortRepository.load(vip)).thenReturn(Single.just(users(1L)));
+    when(cohortRepository.load(vipV2))
+        .thenReturn(Single.error(new IllegalStateException("chunk missing")));
+
+    client.refresh().blockingAwait();
+    client.refresh().blockingAwait();
+
+    assertThat(client.findAllCohorts(TENANT, 1L).blockingGet())
+        .containsExactlyInAnyOrder("all", "vip");
+    assertThat(metricsRegistry.count(BitmapUserCohortsClient.RELOAD_FAILURES)).isEqualTo(1);
+  }
+
+  private static CohortManifest manifest(String cohort, long version) {
+    return new CohortManifest(TENANT, cohort, version, "upload-" + version, 1, 1L, 0L);
+  }
+
+  private static Roaring64NavigableMap users(long... userIds) {
+    Roaring64NavigableMap users = new Roaring64NavigableMap();
+    for (long userId : userIds) {
+      users.addLong(userId);
+    }
+    return users;
+  }
+}
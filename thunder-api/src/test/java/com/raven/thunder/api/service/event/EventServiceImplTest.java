@@ -0,0 +1,124 @@
+package com.raven.thunder.api.service.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.io.request.EventRequest;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.StaticDataCache;
+import com.raven.thunder.api.service.UserCohortsClient;
+import com.raven.thunder.api.service.cache.CatalogSnapshot;
+import com.raven.thunder.api.service.sdk.SnapshotWriteCoalescer;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CohortEligibility;
+import com.raven.thunder.core.model.GroupByConfig;
+import com.raven.thunder.core.model.rule.Rule;
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EventServiceImplTest {
+
+  private static final String TENANT = "tenant-1";
+  private static final long USER = 42L;
+
+  @Mock private UserCohortsClient userCohortsClient;
+  @Mock private StateMachineRepository stateMachineRepository;
+  @Mock private StaticDataCache cache;
+  @Mock private SnapshotWriteCoalescer writeCoalescer;
+
+  private EventServiceImpl eventService;
+
+  @BeforeEach
+  void setUp() {
+    SnapshotLimitsConfig limitsConfig = new SnapshotLimitsConfig();
+    limitsConfig.setMaxTimestamps(3);
+    eventService =
+        new EventServiceImpl(
+            userCohortsClient,
+            stateMachineRepository,
+            cache,
+            writeCoalescer,
+            new MetricsRegistry(),
+            limitsConfig);
+  }
+
+  @Test
+  void ingest_trimsResetTimestampsAtServerTimeLikeTheSdkPath() {
+    long now = System.currentTimeMillis();
+    CTA cta = resettableCTA();
+    when(cache.findTenantCatalog(TENANT))
+        .thenReturn(
+            CatalogSnapshot.build(1L, 0L, Map.of(), Map.of(1L, cta), Map.of(), Map.of())
+                .forTenant(TENANT));
+    when(userCohortsClient.findAllCohorts(TENANT, USER)).thenReturn(Single.just(Set.of("all")));
+    when(writeCoalescer.flush(TENANT, USER)).thenReturn(Completable.complete());
+
+    List<Long> resetAt = new ArrayList<>();
+    for (int i = 10; i > 0; i--) {
+      resetAt.add(now - i);
+    }
+    Map<String, StateMachine> active = new HashMap<>();
+    active.put("7", new StateMachine("1", now - 20, new HashMap<>(), now - 20, null));
+    UserDataSnapshot stored = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    stored.getStateMachines().put(1L, new StateMachineSnapshot("1", active, resetAt, null));
+    when(stateMachineRepository.update(eq(TENANT), eq(USER), any()))
+        .thenAnswer(
+            invocation -> {
+              Predicate<UserDataSnapshot> mutation = invocation.getArgument(2);
+              mutation.test(stored);
+              return Single.just(stored);
+            });
+
+    // A skewed client clock must not decide what is trimmed
+    long skewed = now + TimeUnit.DAYS.toMillis(1);
+    boolean advanced =
+        eventService
+            .ingest(TENANT, new EventRequest(USER, "OrderRefunded", Map.of("orderId", 7), skewed))
+            .blockingGet();
+
+    assertThat(advanced).isTrue();
+    StateMachineSnapshot ctaSnapshot = stored.getStateMachines().get(1L);
+    assertThat(ctaSnapshot.getActiveStateMachines()).isEmpty();
+    assertThat(ctaSnapshot.getResetAt()).hasSize(3).startsWith(now - 2, now - 1);
+    assertThat(ctaSnapshot.getResetAt().get(2)).isBetween(now, System.currentTimeMillis());
+  }
+
+  private static CTA resettableCTA() {
+    StateTransitionCondition.Filters filters = new StateTransitionCondition.Filters();
+    filters.setOperator("AND");
+    filters.setFilter(List.of("any"));
+    Rule rule = new Rule();
+    rule.setCohortEligibility(new CohortEligibility(List.of("all"), List.of()));
+    rule.setGroupByConfig(new GroupByConfig(5, List.of("orderId")));
+    rule.setResetStates(List.of("9"));
+    rule.setStateTransition(
+        Map.of("OrderRefunded", Map.of("1", List.of(new StateTransitionCondition("9", filters)))));
+    CTA cta = new CTA();
+    cta.setId(1L);
+    cta.setTenantId(TENANT);
+    cta.setRule(rule);
+    cta.setBehaviourTags(List.of());
+    return cta;
+  }
+}
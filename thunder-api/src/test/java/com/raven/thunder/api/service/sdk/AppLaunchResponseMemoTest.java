@@ -0,0 +1,105 @@
+package com.raven.thunder.api.service.sdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.api.io.response.CTAResponse;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.api.service.cache.CatalogSnapshot;
+import com.raven.thunder.api.service.cache.TenantCatalog;
+import com.raven.thunder.core.config.ResponseMemoConfig;
+import com.raven.thunder.core.io.Response;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import com.raven.thunder.core.model.CTA;
+import io.vertx.core.json.Json;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class AppLaunchResponseMemoTest {
+
+  private static final String TENANT = "tenant-1";
+
+  private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+  private final AppLaunchResponseMemo memo =
+      new AppLaunchResponseMemo(new ResponseMemoConfig(true, 10), metricsRegistry);
+  private final AtomicInteger builds = new AtomicInteger();
+
+  @Test
+  void render_sharesResponseBetweenUsersWithEqualState() {
+    TenantCatalog catalog = catalog();
+
+    CTAResponse first = render(catalog, emptySnapshot());
+    CTAResponse second = render(catalog, emptySnapshot());
+
+    assertThat(second).isSameAs(first);
+    assertThat(builds).hasValue(1);
+    assertThat(metricsRegistry.count(AppLaunchResponseMemo.HITS)).isEqualTo(1);
+  }
+
+  @Test
+  void render_writesSameJsonAsBuiltResponse() {
+    CTAResponse rendered = render(catalog(), emptySnapshot());
+
+    CTAResponse built = new CTAResponse(rendered.getCtas(), rendered.getBehaviourTags());
+    assertThat(Json.encode(Response.successfulResponse(rendered, 200)))
+        .isEqualTo(Json.encode(Response.successfulResponse(built, 200)));
+  }
+
+  @Test
+  void render_buildsSeparatelyForDifferentState() {
+    TenantCatalog catalog = catalog();
+
+    render(catalog, emptySnapshot());
+    render(catalog, snapshotWithState("S1"));
+    render(catalog, snapshotWithState("S2"));
+
+    assertThat(builds).hasValue(3);
+  }
+
+  @Test
+  void render_dropsEntriesWhenCatalogChanges() {
+    render(catalog(), emptySnapshot());
+    render(catalog(), emptySnapshot());
+
+    assertThat(builds).hasValue(2);
+    assertThat(memo.size()).isEqualTo(1);
+  }
+
+  private CTAResponse render(TenantCatalog catalog, UserDataSnapshot snapshot) {
+    return memo.render(
+        TENANT,
+        catalog,
+        catalog.getActiveCTAs(),
+        snapshot,
+        () -> {
+          builds.incrementAndGet();
+          return new CTAResponse(List.of(), List.of());
+        });
+  }
+
+  private static TenantCatalog catalog() {
+    CTA cta = new CTA();
+    cta.setId(1L);
+    cta.setTenantId(TENANT);
+    cta.setBehaviourTags(List.of());
+    return CatalogSnapshot.build(1L, 0L, Map.of(TENANT, 1L), Map.of(1L, cta), Map.of(), Map.of())
+        .forTenant(TENANT);
+  }
+
+  private static UserDataSnapshot emptySnapshot() {
+    return new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+  }
+
+  private static UserDataSnapshot snapshotWithState(String state) {
+    StateMachine stateMachine = new StateMachine();
+    stateMachine.setCurrentState(state);
+    StateMachineSnapshot cta = new StateMachineSnapshot();
+    cta.setCtaId("1");
+    cta.setActiveStateMachines(Map.of("g1", stateMachine));
+    return new UserDataSnapshot(new HashMap<>(Map.of(1L, cta)), new HashMap<>());
+  }
+}
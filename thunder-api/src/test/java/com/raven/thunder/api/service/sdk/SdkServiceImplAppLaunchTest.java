@@ -12,20 +12,33 @@ import com.raven.thunder.api.model.StateMachineSnapshot;
 import com.raven.thunder.api.model.UserDataSnapshot;
 import com.raven.thunder.api.service.StaticDataCache;
 import com.raven.thunder.api.service.UserCohortsClient;
+import com.raven.thunder.api.service.cache.CatalogSnapshot;
+import com.raven.thunder.api.service.cache.TenantCatalog;
+import com.raven.thunder.core.config.ResponseMemoConfig;
+import com.raven.thunder.core.config.SnapshotLimitsConfig;
 import com.raven.thunder.core.dao.NudgePreviewRepository;
+import com.raven.thunder.core.metrics.MetricsRegistry;
 import com.raven.thunder.core.model.CTA;
 import com.raven.thunder.core.model.CohortEligibility;
+import com.raven.thunder.core.model.Frequency;
+import com.raven.thunder.core.model.GroupByConfig;
+import com.raven.thunder.core.model.rule.LifespanFrequency;
 import com.raven.thunder.core.model.rule.Rule;
-import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Single;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,8 +48,21 @@ class SdkServiceImplAppLaunchTest {
   @Mock private StateMachineRepository stateMachineRepository;
   @Mock private StaticDataCache cache;
   @Mock private NudgePreviewRepository nudgePreviewRepository;
+  @Mock private SnapshotWriteCoalescer writeCoalescer;
+
+  @Spy
+  private AppLaunchResponseMemo responseMemo =
+      new AppLaunchResponseMemo(new ResponseMemoConfig(), new MetricsRegistry());
+
+  @Spy private SnapshotLimitsConfig limitsConfig = new SnapshotLimitsConfig();
+
   @InjectMocks private SdkServiceImpl sdkService;
 
+  @BeforeEach
+  void setUp() {
+    lenient().when(writeCoalescer.flush(any(), any())).thenReturn(Completable.complete());
+  }
+
   private CTA buildCTA(long id, String tenantId, Set<String> include, Set<String> exclude) {
     Rule rule =
         new Rule(
@@ -65,32 +91,43 @@ class SdkServiceImplAppLaunchTest {
     String tenantId = "tenant-1";
     long userId = 77L;
 
-    when(userCohortsClient.findAllCohorts(userId)).thenReturn(Single.just(Set.of("includeA")));
+    when(userCohortsClient.findAllCohorts(tenantId, userId))
+        .thenReturn(Single.just(Set.of("includeA")));
     Map<Long, CTA> active = new HashMap<>();
     active.put(99L, buildCTA(99L, tenantId, Set.of("includeA"), Set.of()));
-    when(cache.findAllActiveCTA()).thenReturn(active);
-    when(cache.findAllPausedCTA()).thenReturn(Map.of());
-    when(cache.findAllBehaviourTags()).thenReturn(Map.of());
+    when(cache.findTenantCatalog(tenantId))
+        .thenReturn(
+            CatalogSnapshot.build(1L, 0L, Map.of(), active, Map.of(), Map.of())
+                .forTenant(tenantId));
 
-    when(stateMachineRepository.find(tenantId, userId))
-        .thenReturn(Maybe.just(new UserDataSnapshot(new HashMap<>(), new HashMap<>())));
+    AtomicBoolean written =
+        stubUpdate(tenantId, userId, new UserDataSnapshot(new HashMap<>(), new HashMap<>()));
 
     CTAResponse response = sdkService.appLaunch(tenantId, userId, null).blockingGet();
 
     assertThat(response).isNotNull();
     assertThat(response.getCtas()).hasSize(1);
     assertThat(response.getCtas().get(0).getCtaId()).isEqualTo("99");
-    verify(stateMachineRepository, never()).upsert(eq(tenantId), eq(userId), any());
+    assertThat(written).isFalse();
+  }
+
+  /** Runs the service's mutation against the stored snapshot, as the repository would. */
+  private AtomicBoolean stubUpdate(String tenantId, long userId, UserDataSnapshot stored) {
+    AtomicBoolean written = new AtomicBoolean();
+    when(stateMachineRepository.update(eq(tenantId), eq(userId), any()))
+        .thenAnswer(
+            invocation -> {
+              Predicate<UserDataSnapshot> mutation = invocation.getArgument(2);
+              written.set(mutation.test(stored));
+              return Single.just(stored);
+            });
+    return written;
   }
 
   @Test
-  void merge_mergesDeltaSnapshot_andUpserts() {
+  void merge_delegatesDeltaToRepositoryMerge() {
     String tenantId = "tenant-1";
     long userId = 88L;
-    when(stateMachineRepository.find(tenantId, userId))
-        .thenReturn(Maybe.just(new UserDataSnapshot(new HashMap<>(), new HashMap<>())));
-    when(stateMachineRepository.upsert(eq(tenantId), eq(userId), any()))
-        .thenReturn(Single.just(true));
 
     StateMachine sm = new StateMachine();
     sm.setCurrentState("S1");
@@ -103,8 +140,125 @@ class SdkServiceImplAppLaunchTest {
     CTASnapshotRequest delta = new CTASnapshotRequest();
     delta.setCtas(List.of(sms));
 
+    when(cache.findTenantCatalog(tenantId)).thenReturn(TenantCatalog.EMPTY);
+    when(stateMachineRepository.merge(tenantId, userId, delta)).thenReturn(Single.just(true));
+
     Boolean result = sdkService.merge(tenantId, userId, delta).blockingGet();
     assertThat(result).isTrue();
-    verify(stateMachineRepository, times(1)).upsert(eq(tenantId), eq(userId), any());
+    verify(stateMachineRepository, times(1)).merge(tenantId, userId, delta);
+    verify(stateMachineRepository, never()).upsert(eq(tenantId), eq(userId), any());
+  }
+
+  @Test
+  void merge_failsTheSingleForANonNumericCtaId() {
+    StateMachineSnapshot sms = new StateMachineSnapshot();
+    sms.setCtaId("not-a-number");
+    CTASnapshotRequest delta = new CTASnapshotRequest();
+    delta.setCtas(List.of(sms));
+    when(cache.findTenantCatalog("tenant-1")).thenReturn(TenantCatalog.EMPTY);
+
+    Single<Boolean> result = sdkService.merge("tenant-1", 88L, delta);
+
+    result.test().assertError(NumberFormatException.class);
+    verify(stateMachineRepository, never()).merge(any(), any(), any());
+  }
+
+  @Test
+  void appLaunch_requestsWriteWhenDeltaChangesSnapshot() {
+    String tenantId = "tenant-1";
+    long userId = 99L;
+
+    when(userCohortsClient.findAllCohorts(tenantId, userId))
+        .thenReturn(Single.just(Set.of("includeA")));
+    Map<Long, CTA> active = new HashMap<>();
+    active.put(5L, buildCTA(5L, tenantId, Set.of("includeA"), Set.of()));
+    when(cache.findTenantCatalog(tenantId))
+        .thenReturn(
+            CatalogSnapshot.build(1L, 0L, Map.of(), active, Map.of(), Map.of())
+                .forTenant(tenantId));
+    UserDataSnapshot stored = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    AtomicBoolean written = stubUpdate(tenantId, userId, stored);
+
+    StateMachine sm = new StateMachine("S1", 2L, null, 1L, null);
+    CTASnapshotRequest delta =
+        new CTASnapshotRequest(
+            List.of(new StateMachineSnapshot("5", Map.of("g1", sm), null, null)), null);
+
+    sdkService.appLaunch(tenantId, userId, delta).blockingGet();
+
+    assertThat(written).isTrue();
+    assertThat(stored.getStateMachines().get(5L).getActiveStateMachines()).containsKey("g1");
+  }
+
+  @Test
+  void appLaunch_omitsCTAsAtTheirFrequencyCap() {
+    String tenantId = "tenant-1";
+    long userId = 101L;
+
+    when(userCohortsClient.findAllCohorts(tenantId, userId))
+        .thenReturn(Single.just(Set.of("includeA")));
+    CTA capped = buildCTA(5L, tenantId, Set.of("includeA"), Set.of());
+    capped.getRule().setFrequency(new Frequency(null, null, new LifespanFrequency(1)));
+    Map<Long, CTA> active = new HashMap<>();
+    active.put(5L, capped);
+    active.put(6L, buildCTA(6L, tenantId, Set.of("includeA"), Set.of()));
+    when(cache.findTenantCatalog(tenantId))
+        .thenReturn(
+            CatalogSnapshot.build(1L, 0L, Map.of(), active, Map.of(), Map.of())
+                .forTenant(tenantId));
+    UserDataSnapshot stored = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    stored
+        .getStateMachines()
+        .put(5L, new StateMachineSnapshot("5", new HashMap<>(), null, List.of(1_000L)));
+    AtomicBoolean written = stubUpdate(tenantId, userId, stored);
+
+    CTAResponse response = sdkService.appLaunch(tenantId, userId, null).blockingGet();
+
+    assertThat(written).isTrue();
+    assertThat(response.getCtas()).hasSize(1);
+    assertThat(response.getCtas().get(0).getCtaId()).isEqualTo("6");
+  }
+
+  @Test
+  void appLaunch_holdsMergedDeltaToGroupCapAndTimestampRetention() {
+    String tenantId = "tenant-1";
+    long userId = 102L;
+
+    when(userCohortsClient.findAllCohorts(tenantId, userId))
+        .thenReturn(Single.just(Set.of("includeA")));
+    CTA cta = buildCTA(5L, tenantId, Set.of("includeA"), Set.of());
+    cta.getRule().setGroupByConfig(new GroupByConfig(2, List.of("matchId")));
+    Map<Long, CTA> active = new HashMap<>();
+    active.put(5L, cta);
+    when(cache.findTenantCatalog(tenantId))
+        .thenReturn(
+            CatalogSnapshot.build(1L, 0L, Map.of(), active, Map.of(), Map.of())
+                .forTenant(tenantId));
+    long now = System.currentTimeMillis();
+    Map<String, StateMachine> groups = new HashMap<>();
+    groups.put("m1", new StateMachine("S1", now - 3, null, now - 3, null));
+    groups.put("m2", new StateMachine("S1", now - 2, null, now - 2, null));
+    UserDataSnapshot stored = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    stored.getStateMachines().put(5L, new StateMachineSnapshot("5", groups, null, null));
+    AtomicBoolean written = stubUpdate(tenantId, userId, stored);
+
+    long stale = now - TimeUnit.DAYS.toMillis(2);
+    CTASnapshotRequest delta =
+        new CTASnapshotRequest(
+            List.of(
+                new StateMachineSnapshot(
+                    "5",
+                    Map.of("m3", new StateMachine("S1", now - 1, null, now - 1, null)),
+                    List.of(stale, now - 1),
+                    List.of(stale, now - 1))),
+            null);
+
+    sdkService.appLaunch(tenantId, userId, delta).blockingGet();
+
+    assertThat(written).isTrue();
+    StateMachineSnapshot ctaSnapshot = stored.getStateMachines().get(5L);
+    assertThat(ctaSnapshot.getActiveStateMachines()).containsOnlyKeys("m2", "m3");
+    assertThat(ctaSnapshot.getResetAt()).containsExactly(now - 1);
+    assertThat(ctaSnapshot.getActionDoneAt()).containsExactly(now - 1);
   }
 }
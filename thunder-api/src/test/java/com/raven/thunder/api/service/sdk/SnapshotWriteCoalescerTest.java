@@ -0,0 +1,160 @@
+package com.raven.thunder.api.service.sdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.raven.thunder.api.dao.StateMachineRepository;
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.core.config.WriteCoalescingConfig;
+import com.raven.thunder.core.metrics.MetricsRegistry;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+import io.vertx.core.Vertx;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class SnapshotWriteCoalescerTest {
+
+  private Vertx vertx;
+  private StateMachineRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    vertx = Vertx.vertx();
+    repository = mock(StateMachineRepository.class);
+    when(repository.merge(any(), any(), any())).thenReturn(Single.just(true));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void submit_coalescesDeltasWithinWindowIntoOneMerge() {
+    SnapshotWriteCoalescer coalescer = coalescer(200, 32);
+
+    Single<Boolean> first = coalescer.submit("t1", 1L, delta("g1", "S1", 100L, null)).cache();
+    Single<Boolean> second = coalescer.submit("t1", 1L, delta("g1", "S2", 200L, null)).cache();
+    first.subscribe();
+    second.subscribe();
+
+    assertThat(first.blockingGet()).isTrue();
+    assertThat(second.blockingGet()).isTrue();
+    ArgumentCaptor<CTASnapshotRequest> captor = ArgumentCaptor.forClass(CTASnapshotRequest.class);
+    verify(repository, times(1)).merge(eq("t1"), eq(1L), captor.capture());
+    StateMachine merged = captor.getValue().getCtas().get(0).getActiveStateMachines().get("g1");
+    assertThat(merged.getCurrentState()).isEqualTo("S2");
+  }
+
+  @Test
+  void submit_keepsResetOfNewestDelta() {
+    SnapshotWriteCoalescer coalescer = coalescer(10_000, 2);
+
+    Single<Boolean> first = coalescer.submit("t1", 1L, delta("g1", "S1", 100L, null)).cache();
+    first.subscribe();
+    coalescer.submit("t1", 1L, delta("g1", "S1", 200L, true)).blockingGet();
+
+    ArgumentCaptor<CTASnapshotRequest> captor = ArgumentCaptor.forClass(CTASnapshotRequest.class);
+    verify(repository).merge(eq("t1"), eq(1L), captor.capture());
+    StateMachine merged = captor.getValue().getCtas().get(0).getActiveStateMachines().get("g1");
+    assertThat(merged.getReset()).isTrue();
+  }
+
+  @Test
+  void flush_writesPendingDeltasBeforeWindowEnds() {
+    SnapshotWriteCoalescer coalescer = coalescer(10_000, 32);
+    Single<Boolean> pending = coalescer.submit("t1", 1L, delta("g1", "S1", 100L, null)).cache();
+    pending.subscribe();
+
+    coalescer.flush("t1", 1L).blockingAwait();
+
+    verify(repository).merge(eq("t1"), eq(1L), any());
+    assertThat(pending.blockingGet()).isTrue();
+  }
+
+  @Test
+  void flush_waitsForEarlierWritesOfTheUserStillInFlight() throws Exception {
+    SingleSubject<Boolean> firstWrite = SingleSubject.create();
+    when(repository.merge(any(), any(), any())).thenReturn(firstWrite, Single.just(true));
+    SnapshotWriteCoalescer coalescer = coalescer(10_000, 32);
+    coalescer.submit("t1", 1L, delta("g1", "S1", 100L, null)).subscribe();
+    coalescer.flush("t1", 1L).subscribe();
+    coalescer.submit("t1", 1L, delta("g1", "S2", 200L, null)).subscribe();
+
+    TestObserver<Void> flushed = coalescer.flush("t1", 1L).test();
+
+    verify(repository, timeout(5_000)).merge(eq("t1"), eq(1L), any());
+    assertThat(flushed.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    firstWrite.onSuccess(true);
+    flushed.awaitDone(5, TimeUnit.SECONDS).assertComplete();
+    verify(repository, times(2)).merge(eq("t1"), eq(1L), any());
+  }
+
+  @Test
+  void flush_completesWithoutWriteWhenNothingPending() {
+    coalescer(100, 32).flush("t1", 1L).blockingAwait();
+
+    verify(repository, never()).merge(any(), any(), any());
+  }
+
+  @Test
+  void flush_completesImmediatelyWhenDisabled() {
+    SnapshotWriteCoalescer disabled =
+        new SnapshotWriteCoalescer(
+            vertx, repository, new WriteCoalescingConfig(false, 100, 32), new MetricsRegistry());
+
+    disabled.flush("t1", 1L).test().assertComplete();
+
+    verify(repository, never()).merge(any(), any(), any());
+  }
+
+  @Test
+  void flushAll_writesEveryPendingUser() {
+    SnapshotWriteCoalescer coalescer = coalescer(10_000, 32);
+    coalescer.submit("t1", 1L, delta("g1", "S1", 100L, null)).subscribe();
+    coalescer.submit("t1", 2L, delta("g1", "S1", 100L, null)).subscribe();
+
+    coalescer.flushAll().blockingAwait();
+
+    verify(repository).merge(eq("t1"), eq(1L), any());
+    verify(repository).merge(eq("t1"), eq(2L), any());
+  }
+
+  private SnapshotWriteCoalescer coalescer(int windowMs, int maxDeltas) {
+    return new SnapshotWriteCoalescer(
+        vertx,
+        repository,
+        new WriteCoalescingConfig(true, windowMs, maxDeltas),
+        new MetricsRegistry());
+  }
+
+  private static CTASnapshotRequest delta(
+      String groupId, String state, long transitionAt, Boolean reset) {
+    StateMachine stateMachine = new StateMachine();
+    stateMachine.setCurrentState(state);
+    stateMachine.setCreatedAt(50L);
+    stateMachine.setLastTransitionAt(transitionAt);
+    stateMachine.setReset(reset);
+    StateMachineSnapshot cta = new StateMachineSnapshot();
+    cta.setCtaId("1");
+    cta.setActiveStateMachines(new HashMap<>(Map.of(groupId, stateMachine)));
+    return new CTASnapshotRequest(List.of(cta), List.of());
+  }
+}
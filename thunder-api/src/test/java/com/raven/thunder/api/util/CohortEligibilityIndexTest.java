@@ -0,0 +1,141 @@
+package com.raven.thunder.api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CohortEligibility;
+import com.raven.thunder.core.model.Rollout;
+import com.raven.thunder.core.model.rule.Rule;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class CohortEligibilityIndexTest {
+
+  private static final Long USER_ID = 1001L;
+
+  private final Map<Long, CTA> activeCTAs =
+      Map.of(
+          1L, cta(1L, List.of("all"), List.of()),
+          2L, cta(2L, List.of("all"), List.of("churned")),
+          3L, cta(3L, List.of("vip", "new"), List.of()),
+          4L, new CTA());
+  private final CohortEligibilityIndex index = new CohortEligibilityIndex(activeCTAs);
+
+  @Test
+  void eligibleCTAs_appliesIncludesAndExcludes() {
+    assertThat(index.eligibleCTAs(USER_ID, Set.of("all")).keySet())
+        .containsExactlyInAnyOrder(1L, 2L);
+    assertThat(index.eligibleCTAs(USER_ID, Set.of("all", "churned")).keySet()).containsExactly(1L);
+    assertThat(index.eligibleCTAs(USER_ID, Set.of("vip")).keySet()).containsExactly(3L);
+    assertThat(index.eligibleCTAs(USER_ID, Set.of("unknown"))).isEmpty();
+  }
+
+  @Test
+  void eligibleCTAs_matchesFilterUtil() {
+    for (Set<String> cohorts :
+        List.of(
+            Set.of("all"),
+            Set.of("all", "churned", "vip"),
+            Set.of("new", "churned"),
+            Set.<String>of())) {
+      assertThat(index.eligibleCTAs(USER_ID, cohorts))
+          .isEqualTo(CTAFilterUtil.filterEligibleCTAs(USER_ID, cohorts, activeCTAs));
+    }
+  }
+
+  @Test
+  void eligibleCTAs_matchesFilterUtilOnALargeCatalog() {
+    Random random = new Random(42);
+    Map<Long, CTA> large = new HashMap<>();
+    for (long id = 0; id < 5_000; id++) {
+      List<String> includes = cohorts(random, 1 + random.nextInt(3));
+      List<String> excludes = random.nextInt(4) == 0 ? cohorts(random, 1) : List.of();
+      large.put(id, cta(id, includes, excludes));
+    }
+    CohortEligibilityIndex largeIndex = new CohortEligibilityIndex(large);
+
+    for (int user = 0; user < 256; user++) {
+      Set<String> cohorts = new HashSet<>(cohorts(random, 12));
+      Map<Long, CTA> expected = CTAFilterUtil.filterEligibleCTAs(USER_ID, cohorts, large);
+
+      assertThat(largeIndex.compute(cohorts).forUser(USER_ID)).isEqualTo(expected);
+      assertThat(largeIndex.eligibleCTAs(USER_ID, cohorts)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void eligibleCTAs_sharesResultBetweenEquivalentCohortSets() {
+    Map<Long, CTA> first = index.eligibleCTAs(USER_ID, Set.of("all", "app_user_17"));
+    Map<Long, CTA> second = index.eligibleCTAs(USER_ID, Set.of("all", "app_user_42"));
+
+    assertThat(second).isSameAs(first);
+    assertThat(index.memoized()).isEqualTo(1);
+  }
+
+  @Test
+  void eligibleCTAs_boundsMemo() {
+    Map<Long, CTA> many = new HashMap<>();
+    for (long id = 0; id < CohortEligibilityIndex.MAX_MEMOIZED_COHORT_SETS + 10; id++) {
+      many.put(id, cta(id, List.of("cohort_" + id), List.of()));
+    }
+    CohortEligibilityIndex large = new CohortEligibilityIndex(many);
+
+    for (long id = 0; id < many.size(); id++) {
+      large.eligibleCTAs(USER_ID, Set.of("cohort_" + id));
+    }
+
+    assertThat(large.memoized()).isEqualTo(CohortEligibilityIndex.MAX_MEMOIZED_COHORT_SETS);
+  }
+
+  @Test
+  void eligibleCTAs_appliesRolloutPerUser() {
+    Map<Long, CTA> rolledOut =
+        Map.of(
+            1L, cta(1L, List.of("all"), List.of()),
+            2L, cta(2L, List.of("all"), List.of("churned"), new Rollout(15.0, null)));
+    CohortEligibilityIndex rolledOutIndex = new CohortEligibilityIndex(rolledOut);
+
+    int inRollout = 0;
+    for (long userId = 0; userId < 100_000; userId++) {
+      Map<Long, CTA> eligible = rolledOutIndex.eligibleCTAs(userId, Set.of("all"));
+      assertThat(eligible).containsKey(1L);
+      assertThat(eligible)
+          .isEqualTo(CTAFilterUtil.filterEligibleCTAs(userId, Set.of("all"), rolledOut));
+      if (eligible.containsKey(2L)) {
+        inRollout++;
+        assertThat(rolledOutIndex.eligibleCTAs(userId, Set.of("all", "churned")))
+            .containsOnlyKeys(1L);
+      }
+    }
+
+    assertThat(inRollout).isBetween(14_000, 16_000);
+    assertThat(rolledOutIndex.memoized()).isEqualTo(2);
+  }
+
+  private static List<String> cohorts(Random random, int count) {
+    List<String> cohorts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      cohorts.add("cohort_" + random.nextInt(200));
+    }
+    return cohorts;
+  }
+
+  private static CTA cta(long id, List<String> includes, List<String> excludes) {
+    return cta(id, includes, excludes, null);
+  }
+
+  private static CTA cta(long id, List<String> includes, List<String> excludes, Rollout rollout) {
+    Rule rule = new Rule();
+    rule.setCohortEligibility(new CohortEligibility(includes, excludes, rollout));
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setRule(rule);
+    return cta;
+  }
+}
@@ -0,0 +1,151 @@
+package com.raven.thunder.api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.api.model.ExposureCounter;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.model.BehaviourTag;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.ExposureRule;
+import com.raven.thunder.core.model.Frequency;
+import com.raven.thunder.core.model.rule.LifespanFrequency;
+import com.raven.thunder.core.model.rule.Rule;
+import com.raven.thunder.core.model.rule.WindowFrequency;
+import com.raven.thunder.core.model.rule.WindowFrequencyUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class FrequencyCapUtilTest {
+
+  private static final long HOUR = 3_600_000L;
+  private static final long DAY = 24 * HOUR;
+  private static final long NOW = 1_000 * DAY;
+
+  @Test
+  void bucketMillis_usesOneUnitPerBucketUpToMaxBuckets() {
+    assertThat(FrequencyCapUtil.bucketMillis(window(1, WindowFrequencyUnit.days, 7)))
+        .isEqualTo(DAY);
+    assertThat(FrequencyCapUtil.bucketMillis(window(1, WindowFrequencyUnit.seconds, 3_600)))
+        .isEqualTo(60_000L);
+  }
+
+  @Test
+  void withoutCapped_dropsCTAsAtWindowLimitUntilWindowPasses() {
+    CTA cta = cta(1L, new Frequency(null, window(2, WindowFrequencyUnit.days, 1), null), null);
+    Map<Long, CTA> ctas = Map.of(1L, cta);
+    UserDataSnapshot snapshot = snapshot(1L, List.of(NOW - 2 * HOUR));
+
+    FrequencyCapUtil.recordExposures(snapshot, ctas, Map.of(), NOW);
+    assertThat(FrequencyCapUtil.withoutCapped(ctas, Map.of(), snapshot, NOW)).containsKey(1L);
+
+    snapshot.getStateMachines().get(1L).setActionDoneAt(List.of(NOW - 2 * HOUR, NOW - HOUR));
+    FrequencyCapUtil.recordExposures(snapshot, ctas, Map.of(), NOW);
+    assertThat(FrequencyCapUtil.withoutCapped(ctas, Map.of(), snapshot, NOW)).isEmpty();
+    assertThat(FrequencyCapUtil.withoutCapped(ctas, Map.of(), snapshot, NOW + 2 * DAY))
+        .containsKey(1L);
+  }
+
+  @Test
+  void recordExposures_countsEachActionOnceAndSurvivesReinstall() {
+    CTA cta = cta(1L, new Frequency(null, null, new LifespanFrequency(2)), null);
+    Map<Long, CTA> ctas = Map.of(1L, cta);
+    UserDataSnapshot snapshot = snapshot(1L, List.of(NOW - DAY));
+
+    assertThat(FrequencyCapUtil.recordExposures(snapshot, ctas, Map.of(), NOW)).isTrue();
+    assertThat(FrequencyCapUtil.recordExposures(snapshot, ctas, Map.of(), NOW)).isFalse();
+    snapshot.getStateMachines().get(1L).setActionDoneAt(List.of(NOW - DAY, NOW - HOUR));
+    FrequencyCapUtil.recordExposures(snapshot, ctas, Map.of(), NOW);
+
+    ExposureCounter counter = snapshot.getExposures().get(FrequencyCapUtil.ctaKey(1L));
+    assertThat(counter.getTotal()).isEqualTo(2L);
+    // A reinstalled client reports no history, but the cap holds
+    snapshot.getStateMachines().get(1L).setActionDoneAt(List.of());
+    FrequencyCapUtil.recordExposures(snapshot, ctas, Map.of(), NOW);
+    assertThat(FrequencyCapUtil.withoutCapped(ctas, Map.of(), snapshot, NOW)).isEmpty();
+  }
+
+  @Test
+  void withoutCapped_appliesBehaviourTagLimitsAcrossItsCTAs() {
+    BehaviourTag tag = new BehaviourTag();
+    tag.setName("onboarding");
+    tag.setExposureRule(new ExposureRule(null, window(2, WindowFrequencyUnit.hours, 12), null));
+    Map<String, BehaviourTag> tags = Map.of("onboarding", tag);
+    CTA first = cta(1L, null, List.of("onboarding"));
+    CTA second = cta(2L, null, List.of("onboarding"));
+    Map<Long, CTA> ctas = Map.of(1L, first, 2L, second);
+    UserDataSnapshot snapshot = snapshot(1L, List.of(NOW - HOUR));
+    snapshot.getStateMachines().put(2L, ctaSnapshot(2L, List.of(NOW - 2 * HOUR)));
+
+    FrequencyCapUtil.recordExposures(snapshot, ctas, tags, NOW);
+
+    assertThat(snapshot.getExposures().get(FrequencyCapUtil.tagKey("onboarding")).getTotal())
+        .isEqualTo(2L);
+    assertThat(FrequencyCapUtil.withoutCapped(ctas, tags, snapshot, NOW)).isEmpty();
+  }
+
+  @Test
+  void recordExposures_trimsCountedActionsOlderThanRetention() {
+    CTA cta = cta(1L, new Frequency(null, window(1, WindowFrequencyUnit.days, 2), null), null);
+    UserDataSnapshot snapshot = snapshot(1L, List.of(NOW - 10 * DAY, NOW - HOUR));
+
+    FrequencyCapUtil.recordExposures(snapshot, Map.of(1L, cta), Map.of(), NOW);
+
+    assertThat(snapshot.getStateMachines().get(1L).getActionDoneAt()).containsExactly(NOW - HOUR);
+    ExposureCounter counter = snapshot.getExposures().get(FrequencyCapUtil.ctaKey(1L));
+    assertThat(counter.getTotal()).isEqualTo(2L);
+    assertThat(counter.getBuckets()).hasSize(1);
+  }
+
+  @Test
+  void archiveStaleExposures_dropsCountersOfRemovedCTAs() {
+    CTA cta = cta(1L, new Frequency(null, null, new LifespanFrequency(5)), null);
+    UserDataSnapshot snapshot = snapshot(1L, List.of(NOW));
+    FrequencyCapUtil.recordExposures(snapshot, Map.of(1L, cta), Map.of(), NOW);
+
+    assertThat(FrequencyCapUtil.archiveStaleExposures(snapshot, Map.of(1L, cta), Map.of()))
+        .isFalse();
+    assertThat(FrequencyCapUtil.archiveStaleExposures(snapshot, Map.of(), Map.of())).isTrue();
+    assertThat(snapshot.getExposures()).isEmpty();
+  }
+
+  @Test
+  void trimTimestamps_keepsWindowAndNewestEntriesLifespanCounts() {
+    CTA cta = cta(1L, new Frequency(null, null, new LifespanFrequency(2)), null);
+    StateMachineSnapshot ctaSnapshot =
+        ctaSnapshot(1L, List.of(NOW - 30 * DAY, NOW - 20 * DAY, NOW - 10 * DAY, NOW - HOUR));
+
+    assertThat(FrequencyCapUtil.trimTimestamps(ctaSnapshot, cta, Map.of(), 10, NOW)).isTrue();
+    assertThat(ctaSnapshot.getActionDoneAt()).containsExactly(NOW - 10 * DAY, NOW - HOUR);
+
+    assertThat(FrequencyCapUtil.trimTimestamps(ctaSnapshot, cta, Map.of(), 1, NOW)).isTrue();
+    assertThat(ctaSnapshot.getActionDoneAt()).containsExactly(NOW - HOUR);
+    assertThat(FrequencyCapUtil.trimTimestamps(ctaSnapshot, cta, Map.of(), 1, NOW)).isFalse();
+  }
+
+  private static UserDataSnapshot snapshot(Long ctaId, List<Long> actionDoneAt) {
+    UserDataSnapshot snapshot = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    snapshot.getStateMachines().put(ctaId, ctaSnapshot(ctaId, actionDoneAt));
+    return snapshot;
+  }
+
+  private static StateMachineSnapshot ctaSnapshot(Long ctaId, List<Long> actionDoneAt) {
+    return new StateMachineSnapshot(String.valueOf(ctaId), new HashMap<>(), null, actionDoneAt);
+  }
+
+  private static WindowFrequency window(int limit, WindowFrequencyUnit unit, int value) {
+    return new WindowFrequency(limit, unit, value);
+  }
+
+  private static CTA cta(Long id, Frequency frequency, List<String> behaviourTags) {
+    Rule rule = new Rule();
+    rule.setFrequency(frequency);
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setRule(rule);
+    cta.setBehaviourTags(behaviourTags);
+    return cta;
+  }
+}
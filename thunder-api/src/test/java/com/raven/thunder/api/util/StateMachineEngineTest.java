@@ -0,0 +1,160 @@
+package com.raven.thunder.api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.GroupByConfig;
+import com.raven.thunder.core.model.rule.Rule;
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StateMachineEngineTest {
+
+  private static final long NOW = 1_000_000L;
+
+  private final CTA cta = cta(1L, new GroupByConfig(2, List.of("orderId")), 60_000L);
+  private final Map<Long, CTA> activeCTAs = Map.of(1L, cta);
+  private final EventRoutingIndex index = new EventRoutingIndex(activeCTAs);
+
+  @Test
+  void routes_onlyIncludeCTAsReactingToEvent() {
+    assertThat(index.routes("OrderPaid")).hasSize(1);
+    assertThat(index.routes("OrderPaid").get(0).getCta()).isSameAs(cta);
+    assertThat(index.routes("AppOpened")).isEmpty();
+  }
+
+  @Test
+  void advance_startsGroupInInitialStateAndRecordsContext() {
+    UserDataSnapshot snapshot = emptySnapshot();
+
+    boolean updated = advance(snapshot, "OrderPaid", Map.of("orderId", 7, "amount", 150), NOW);
+
+    assertThat(updated).isTrue();
+    StateMachine stateMachine = stateMachine(snapshot, "7");
+    assertThat(stateMachine.getCurrentState()).isEqualTo("1");
+    assertThat(stateMachine.getCreatedAt()).isEqualTo(NOW);
+    assertThat(stateMachine.getContext()).containsEntry("amount", 150);
+  }
+
+  @Test
+  void advance_followsTransitionsAndIgnoresUnmatchedEvents() {
+    UserDataSnapshot snapshot = emptySnapshot();
+
+    assertThat(advance(snapshot, "OrderPaid", Map.of("orderId", 7, "amount", 50), NOW)).isFalse();
+    assertThat(snapshot.getStateMachines()).isEmpty();
+
+    advance(snapshot, "OrderPaid", Map.of("orderId", 7, "amount", 150), NOW);
+    advance(snapshot, "OrderDelivered", Map.of("orderId", 7), NOW + 10);
+
+    StateMachine stateMachine = stateMachine(snapshot, "7");
+    assertThat(stateMachine.getCurrentState()).isEqualTo("2");
+    assertThat(stateMachine.getLastTransitionAt()).isEqualTo(NOW + 10);
+    assertThat(stateMachine.getCreatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  void advance_skipsEventsWithoutGroupKeyOrForIneligibleCTAs() {
+    UserDataSnapshot snapshot = emptySnapshot();
+
+    assertThat(advance(snapshot, "OrderPaid", Map.of("amount", 150), NOW)).isFalse();
+    assertThat(
+            StateMachineEngine.advance(
+                snapshot,
+                index.routes("OrderPaid"),
+                Map.of(),
+                Map.of("orderId", 7, "amount", 150),
+                NOW))
+        .isFalse();
+    assertThat(snapshot.getStateMachines()).isEmpty();
+  }
+
+  @Test
+  void advance_restartsStateMachinesPastTTL() {
+    UserDataSnapshot snapshot = emptySnapshot();
+    advance(snapshot, "OrderPaid", Map.of("orderId", 7, "amount", 150), NOW);
+
+    advance(snapshot, "OrderPaid", Map.of("orderId", 7, "amount", 150), NOW + 60_001);
+
+    StateMachine stateMachine = stateMachine(snapshot, "7");
+    assertThat(stateMachine.getCurrentState()).isEqualTo("1");
+    assertThat(stateMachine.getCreatedAt()).isEqualTo(NOW + 60_001);
+  }
+
+  @Test
+  void advance_evictsLeastRecentGroupAtCap() {
+    UserDataSnapshot snapshot = emptySnapshot();
+
+    advance(snapshot, "OrderPaid", Map.of("orderId", 1, "amount", 150), NOW);
+    advance(snapshot, "OrderPaid", Map.of("orderId", 2, "amount", 150), NOW + 1);
+    advance(snapshot, "OrderPaid", Map.of("orderId", 3, "amount", 150), NOW + 2);
+
+    assertThat(snapshot.getStateMachines().get(1L).getActiveStateMachines())
+        .containsOnlyKeys("2", "3");
+  }
+
+  @Test
+  void advance_removesStateMachineOnResetState() {
+    UserDataSnapshot snapshot = emptySnapshot();
+    advance(snapshot, "OrderPaid", Map.of("orderId", 7, "amount", 150), NOW);
+
+    advance(snapshot, "OrderRefunded", Map.of("orderId", 7), NOW + 5);
+
+    StateMachineSnapshot ctaSnapshot = snapshot.getStateMachines().get(1L);
+    assertThat(ctaSnapshot.getActiveStateMachines()).isEmpty();
+    assertThat(ctaSnapshot.getResetAt()).containsExactly(NOW + 5);
+  }
+
+  private boolean advance(
+      UserDataSnapshot snapshot, String eventName, Map<String, Object> properties, long now) {
+    return StateMachineEngine.advance(
+        snapshot, index.routes(eventName), activeCTAs, properties, now);
+  }
+
+  private static StateMachine stateMachine(UserDataSnapshot snapshot, String groupId) {
+    return snapshot.getStateMachines().get(1L).getActiveStateMachines().get(groupId);
+  }
+
+  private static UserDataSnapshot emptySnapshot() {
+    return new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+  }
+
+  private static CTA cta(long id, GroupByConfig groupByConfig, Long stateMachineTTL) {
+    Rule rule = new Rule();
+    rule.setGroupByConfig(groupByConfig);
+    rule.setStateMachineTTL(stateMachineTTL);
+    rule.setContextParams(List.of("amount"));
+    rule.setResetStates(List.of("9"));
+    rule.setStateTransition(
+        Map.of(
+            "OrderPaid",
+            Map.of(
+                "0",
+                List.of(
+                    condition(
+                        "1",
+                        Map.of(
+                            "propertyName", "amount",
+                            "propertyType", "number",
+                            "comparisonType", ">=",
+                            "comparisonValue", 100)))),
+            "OrderDelivered", Map.of("1", List.of(condition("2", "any"))),
+            "OrderRefunded", Map.of("1", List.of(condition("9", "any")))));
+    CTA cta = new CTA();
+    cta.setId(id);
+    cta.setRule(rule);
+    return cta;
+  }
+
+  private static StateTransitionCondition condition(String transitionTo, Object filter) {
+    StateTransitionCondition.Filters filters = new StateTransitionCondition.Filters();
+    filters.setOperator("AND");
+    filters.setFilter(List.of(filter));
+    return new StateTransitionCondition(transitionTo, filters);
+  }
+}
@@ -0,0 +1,70 @@
+package com.raven.thunder.api.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.api.io.request.CTASnapshotRequest;
+import com.raven.thunder.api.model.StateMachine;
+import com.raven.thunder.api.model.StateMachineSnapshot;
+import com.raven.thunder.api.model.UserDataSnapshot;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StateMachineUtilTest {
+
+  @Test
+  void evictOldest_keepsMostRecentlyAdvancedStateMachines() {
+    Map<String, StateMachine> active = new HashMap<>();
+    for (long i = 0; i < 1_000; i++) {
+      active.put("group-" + i, stateMachine(i));
+    }
+    active.put("never-advanced", stateMachine(null));
+
+    StateMachineUtil.evictOldest(active, 3);
+
+    assertThat(active).containsOnlyKeys("group-997", "group-998", "group-999");
+  }
+
+  @Test
+  void evictOldest_leavesMapsWithinLimitAlone() {
+    Map<String, StateMachine> active = new HashMap<>(Map.of("a", stateMachine(1L)));
+
+    StateMachineUtil.evictOldest(active, 1);
+
+    assertThat(active).containsOnlyKeys("a");
+  }
+
+  @Test
+  void coalesceDelta_keepsNoReferencesIntoTheRequests() {
+    UserDataSnapshot pending = new UserDataSnapshot(new HashMap<>(), new HashMap<>());
+    StateMachine first = stateMachine(10L);
+    StateMachine second = stateMachine(20L);
+    List<Long> resetAt = new ArrayList<>(List.of(5L));
+
+    StateMachineUtil.coalesceDelta(pending, delta(Map.of("g1", first), resetAt));
+    StateMachineUtil.coalesceDelta(pending, delta(Map.of("g2", second), resetAt));
+    first.setCurrentState("mutated");
+    second.setCurrentState("mutated");
+    second.getContext().put("key", "value");
+    resetAt.add(6L);
+
+    StateMachineSnapshot ctaSnapshot = pending.getStateMachines().get(1L);
+    assertThat(ctaSnapshot.getActiveStateMachines().get("g1")).isNotSameAs(first);
+    assertThat(ctaSnapshot.getActiveStateMachines().get("g1").getCurrentState()).isEqualTo("s1");
+    assertThat(ctaSnapshot.getActiveStateMachines().get("g2")).isNotSameAs(second);
+    assertThat(ctaSnapshot.getActiveStateMachines().get("g2").getCurrentState()).isEqualTo("s1");
+    assertThat(ctaSnapshot.getActiveStateMachines().get("g2").getContext()).isEmpty();
+    assertThat(ctaSnapshot.getResetAt()).containsExactly(5L);
+  }
+
+  private static CTASnapshotRequest delta(Map<String, StateMachine> active, List<Long> resetAt) {
+    return new CTASnapshotRequest(
+        List.of(new StateMachineSnapshot("1", new HashMap<>(active), resetAt, null)), List.of());
+  }
+
+  private static StateMachine stateMachine(Long lastTransitionAt) {
+    return new StateMachine("s1", lastTransitionAt, new HashMap<>(), 0L, null);
+  }
+}
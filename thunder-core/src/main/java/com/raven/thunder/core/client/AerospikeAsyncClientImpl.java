@@ -0,0 +1,294 @@
+package com.raven.thunder.core.client;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.async.EventLoop;
+import com.aerospike.client.async.EventLoops;
+import com.aerospike.client.async.EventPolicy;
+import com.aerospike.client.async.NettyEventLoops;
+import com.aerospike.client.async.NioEventLoops;
+import com.aerospike.client.listener.BatchOperateListListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.RecordSequenceListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.QueryPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.PartitionFilter;
+import com.aerospike.client.query.Statement;
+import com.raven.thunder.core.config.AerospikeConfig;
+import io.netty.channel.EventLoopGroup;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeEmitter;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.core.SingleEmitter;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non-blocking Aerospike client. Commands are issued through the Aerospike async API and listener
+ * callbacks are bridged to Rx types, so callers on a Vert.x event loop never block on a network
+ * round trip.
+ *
+ * <p>When a Netty {@link EventLoopGroup} is supplied (normally Vert.x's own group), Aerospike
+ * shares those event loops and commands issued from an event loop thread stay on that thread.
+ * Otherwise a dedicated NIO event loop group is created and owned by this client.
+ */
+@Slf4j
+public class AerospikeAsyncClientImpl extends AerospikeClientImpl {
+
+  static final int QUERY_PAGE_SIZE = 1_000;
+
+  private final EventLoopGroup sharedEventLoopGroup;
+  private EventLoops eventLoops;
+
+  public AerospikeAsyncClientImpl(AerospikeConfig config, EventLoopGroup sharedEventLoopGroup) {
+    super(config);
+    this.sharedEventLoopGroup = sharedEventLoopGroup;
+  }
+
+  @Override
+  protected ClientPolicy createClientPolicy() {
+    ClientPolicy policy = super.createClientPolicy();
+
+    EventPolicy eventPolicy = new EventPolicy();
+    if (config.getAsyncMaxCommandsInProcess() != null) {
+      eventPolicy.maxCommandsInProcess = config.getAsyncMaxCommandsInProcess();
+    }
+
+    if (sharedEventLoopGroup != null) {
+      eventLoops = new NettyEventLoops(eventPolicy, sharedEventLoopGroup);
+      log.info("Aerospike async client sharing {} Vert.x event loops", eventLoops.getSize());
+    } else {
+      int size =
+          config.getEventLoopSize() != null
+              ? config.getEventLoopSize()
+              : Runtime.getRuntime().availableProcessors();
+      eventLoops = new NioEventLoops(eventPolicy, size);
+      log.info("Aerospike async client using {} dedicated NIO event loops", size);
+    }
+
+    policy.eventLoops = eventLoops;
+    if (config.getMaxConnections() != null) {
+      policy.asyncMaxConnsPerNode = config.getMaxConnections();
+    }
+    return policy;
+  }
+
+  @Override
+  public Completable rxClose() {
+    return super.rxClose()
+        .doOnComplete(
+            () -> {
+              // A shared group belongs to Vert.x and is shut down with it.
+              if (eventLoops != null && sharedEventLoopGroup == null) {
+                eventLoops.close();
+              }
+            });
+  }
+
+  @Override
+  public Maybe<Record> rxGet(Policy policy, Key key) {
+    return Maybe.create(
+        emitter -> getClient().get(nextEventLoop(), recordListener(emitter), policy, key));
+  }
+
+  @Override
+  public Maybe<Record> rxGet(Policy policy, Key key, String... bins) {
+    return Maybe.create(
+        emitter -> getClient().get(nextEventLoop(), recordListener(emitter), policy, key, bins));
+  }
+
+  @Override
+  public Maybe<Record> rxGetHeader(Policy policy, Key key) {
+    return Maybe.create(
+        emitter -> getClient().getHeader(nextEventLoop(), recordListener(emitter), policy, key));
+  }
+
+  @Override
+  public Single<Key> rxPut(WritePolicy writePolicy, Key key, Bin... bins) {
+    return Single.create(
+        emitter ->
+            getClient()
+                .put(
+                    nextEventLoop(),
+                    new WriteListener() {
+                      @Override
+                      public void onSuccess(Key written) {
+                        emitter.onSuccess(written);
+                      }
+
+                      @Override
+                      public void onFailure(AerospikeException exception) {
+                        emitter.tryOnError(exception);
+                      }
+                    },
+                    writePolicy,
+                    key,
+                    bins));
+  }
+
+  @Override
+  public Single<Record> rxOperate(WritePolicy writePolicy, Key key, Operation... operations) {
+    return Single.create(
+        emitter ->
+            getClient()
+                .operate(nextEventLoop(), recordListener(emitter), writePolicy, key, operations));
+  }
+
+  @Override
+  public Flowable<KeyRecord> rxQuery(QueryPolicy queryPolicy, Statement statement) {
+    return Flowable.defer(() -> rxQuery(queryPolicy, statement, PartitionFilter.all()));
+  }
+
+  /**
+   * Pages through the cursor's partitions, querying the next page only once the subscriber has
+   * drained the previous one, so at most two pages are held in memory. Pages are queried on a copy
+   * of the statement, so the caller's one is left as it was.
+   */
+  @Override
+  public Flowable<KeyRecord> rxQuery(
+      QueryPolicy queryPolicy, Statement statement, PartitionFilter cursor) {
+    return Flowable.defer(
+        () -> {
+          if (cursor.isDone()) {
+            return Flowable.empty();
+          }
+          return queryPage(queryPolicy, page(statement), cursor)
+              .repeatUntil(cursor::isDone)
+              .concatMapIterable(page -> page, 1);
+        });
+  }
+
+  /** Copies the statement with its max records set to the page size. */
+  private static Statement page(Statement statement) {
+    Statement page = new Statement();
+    page.setNamespace(statement.getNamespace());
+    page.setSetName(statement.getSetName());
+    page.setIndexName(statement.getIndexName());
+    page.setBinNames(statement.getBinNames());
+    page.setFilter(statement.getFilter());
+    page.setRecordsPerSecond(statement.getRecordsPerSecond());
+    page.setMaxRecords(QUERY_PAGE_SIZE);
+    return page;
+  }
+
+  private Single<List<KeyRecord>> queryPage(
+      QueryPolicy queryPolicy, Statement statement, PartitionFilter cursor) {
+    return Single.create(
+        emitter -> {
+          List<KeyRecord> page = new ArrayList<>();
+          getClient()
+              .queryPartitions(
+                  nextEventLoop(),
+                  new RecordSequenceListener() {
+                    @Override
+                    public void onRecord(Key key, Record record) throws AerospikeException {
+                      if (emitter.isDisposed()) {
+                        // Stops the scan on the server side as well.
+                        throw new AerospikeException.QueryTerminated();
+                      }
+                      page.add(new KeyRecord(key, record));
+                    }
+
+                    @Override
+                    public void onSuccess() {
+                      emitter.onSuccess(page);
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException exception) {
+                      emitter.tryOnError(exception);
+                    }
+                  },
+                  queryPolicy,
+                  statement,
+                  cursor);
+        });
+  }
+
+  @Override
+  public Single<List<BatchRecord>> rxBatchOperate(
+      BatchPolicy batchPolicy, List<BatchRecord> records) {
+    return Single.create(
+        emitter ->
+            getClient()
+                .operate(
+                    nextEventLoop(),
+                    new BatchOperateListListener() {
+                      @Override
+                      public void onSuccess(List<BatchRecord> results, boolean status) {
+                        emitter.onSuccess(results);
+                      }
+
+                      @Override
+                      public void onFailure(AerospikeException exception) {
+                        emitter.tryOnError(exception);
+                      }
+                    },
+                    batchPolicy,
+                    records));
+  }
+
+  /**
+   * Returns the Aerospike event loop backing the calling thread when commands are issued from a
+   * shared event loop, so callbacks resume on the same thread. Falls back to round robin.
+   */
+  private EventLoop nextEventLoop() {
+    for (int i = 0; i < eventLoops.getSize(); i++) {
+      EventLoop eventLoop = eventLoops.get(i);
+      if (eventLoop.inEventLoop()) {
+        return eventLoop;
+      }
+    }
+    return eventLoops.next();
+  }
+
+  /** Bridges a record callback to a Maybe; a missing record completes empty. */
+  private static RecordListener recordListener(MaybeEmitter<Record> emitter) {
+    return new RecordListener() {
+      @Override
+      public void onSuccess(Key key, Record record) {
+        if (record == null) {
+          emitter.onComplete();
+        } else {
+          emitter.onSuccess(record);
+        }
+      }
+
+      @Override
+      public void onFailure(AerospikeException exception) {
+        emitter.tryOnError(exception);
+      }
+    };
+  }
+
+  /** Bridges a record callback to a Single, mirroring the sync client's null handling. */
+  private static RecordListener recordListener(SingleEmitter<Record> emitter) {
+    return new RecordListener() {
+      @Override
+      public void onSuccess(Key key, Record record) {
+        if (record == null) {
+          emitter.tryOnError(new NullPointerException("operate returned no record for " + key));
+        } else {
+          emitter.onSuccess(record);
+        }
+      }
+
+      @Override
+      public void onFailure(AerospikeException exception) {
+        emitter.tryOnError(exception);
+      }
+    };
+  }
+}
@@ -1,15 +1,19 @@
 package com.raven.thunder.core.client;
 
+import com.aerospike.client.BatchRecord;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.policy.BatchPolicy;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.policy.QueryPolicy;
 import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.PartitionFilter;
 import com.aerospike.client.query.Statement;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import java.util.List;
@@ -28,9 +32,28 @@ public interface AerospikeClient {
 
   Maybe<Record> rxGet(Policy policy, Key key, String... bins);
 
+  /** Reads only the record's generation and expiration, without bins. */
+  Maybe<Record> rxGetHeader(Policy policy, Key key);
+
   Single<Key> rxPut(WritePolicy writePolicy, Key key, Bin... bins);
 
   Single<Record> rxOperate(WritePolicy writePolicy, Key key, Operation... operations);
 
-  Single<List<KeyRecord>> rxQuery(QueryPolicy queryPolicy, Statement statement);
+  /**
+   * Streams the records of a query as the subscriber requests them. Cancelling the subscription
+   * terminates the query on the server.
+   */
+  Flowable<KeyRecord> rxQuery(QueryPolicy queryPolicy, Statement statement);
+
+  /**
+   * Streams the records of a query over the partitions of a cursor, which advances as the server
+   * returns records and is done once the query completes.
+   */
+  Flowable<KeyRecord> rxQuery(QueryPolicy queryPolicy, Statement statement, PartitionFilter cursor);
+
+  /**
+   * Runs a batch of reads, writes and deletes in one round trip per node. Each record is returned
+   * in order with its own result code; only a failure of the whole batch errors.
+   */
+  Single<List<BatchRecord>> rxBatchOperate(BatchPolicy batchPolicy, List<BatchRecord> records);
 }
@@ -0,0 +1,28 @@
+package com.raven.thunder.core.client;
+
+import com.raven.thunder.core.config.AerospikeClientMode;
+import com.raven.thunder.core.config.AerospikeConfig;
+import io.vertx.core.Vertx;
+
+/** Creates the {@link AerospikeClient} implementation selected by {@code client-mode}. */
+public final class AerospikeClientFactory {
+
+  private AerospikeClientFactory() {
+    // Utility class - prevent instantiation
+  }
+
+  /**
+   * Creates an unconnected client for the configuration.
+   *
+   * @param config Aerospike configuration
+   * @param vertx Vert.x instance whose event loops the async client shares, may be null
+   * @return sync client by default, async client when {@code client-mode = "async"}
+   */
+  public static AerospikeClient create(AerospikeConfig config, Vertx vertx) {
+    if (config.getClientMode() == AerospikeClientMode.ASYNC) {
+      return new AerospikeAsyncClientImpl(
+          config, vertx != null ? vertx.nettyEventLoopGroup() : null);
+    }
+    return new AerospikeClientImpl(config);
+  }
+}
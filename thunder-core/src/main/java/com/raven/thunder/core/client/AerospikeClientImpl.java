@@ -1,22 +1,25 @@
 package com.raven.thunder.core.client;
 
+import com.aerospike.client.BatchRecord;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.policy.BatchPolicy;
 import com.aerospike.client.policy.ClientPolicy;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.policy.QueryPolicy;
 import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.PartitionFilter;
 import com.aerospike.client.query.RecordSet;
 import com.aerospike.client.query.Statement;
 import com.google.inject.Inject;
 import com.raven.thunder.core.config.AerospikeConfig;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
@@ -27,16 +30,14 @@ import lombok.extern.slf4j.Slf4j;
 public class AerospikeClientImpl implements AerospikeClient {
 
   private com.aerospike.client.AerospikeClient client;
-  private final AerospikeConfig config;
+  protected final AerospikeConfig config;
 
   @Override
   public Completable rxConnect() {
     return Completable.fromAction(
             () -> {
               try {
-                ClientPolicy policy = new ClientPolicy();
-                policy.timeout = config.getTotalTimeout();
-                policy.maxConnsPerNode = config.getMaxConnections();
+                ClientPolicy policy = createClientPolicy();
 
                 String[] hostPorts = config.getHost().split(",");
                 com.aerospike.client.Host[] hosts =
@@ -64,6 +65,14 @@ public class AerospikeClientImpl implements AerospikeClient {
         .doOnComplete(() -> log.info("Aerospike client initialization completed"));
   }
 
+  /** Builds the client policy used on connect. Subclasses extend it with async settings. */
+  protected ClientPolicy createClientPolicy() {
+    ClientPolicy policy = new ClientPolicy();
+    policy.timeout = config.getTotalTimeout();
+    policy.maxConnsPerNode = config.getMaxConnections();
+    return policy;
+  }
+
   @Override
   public Completable rxClose() {
     return Completable.fromAction(
@@ -98,6 +107,11 @@ public class AerospikeClientImpl implements AerospikeClient {
     return Maybe.fromCallable(() -> getClient().get(policy, key, bins));
   }
 
+  @Override
+  public Maybe<Record> rxGetHeader(Policy policy, Key key) {
+    return Maybe.fromCallable(() -> getClient().getHeader(policy, key));
+  }
+
   @Override
   public Single<Key> rxPut(WritePolicy writePolicy, Key key, Bin... bins) {
     return Single.fromCallable(
@@ -113,17 +127,43 @@ public class AerospikeClientImpl implements AerospikeClient {
   }
 
   @Override
-  public Single<List<KeyRecord>> rxQuery(QueryPolicy queryPolicy, Statement statement) {
+  public Flowable<KeyRecord> rxQuery(QueryPolicy queryPolicy, Statement statement) {
+    // The record set's bounded queue stalls the query while the subscriber is not requesting
+    return Flowable.generate(
+        () -> getClient().query(queryPolicy, statement),
+        (recordSet, emitter) -> {
+          if (recordSet.next()) {
+            emitter.onNext(new KeyRecord(recordSet.getKey(), recordSet.getRecord()));
+          } else {
+            emitter.onComplete();
+          }
+        },
+        RecordSet::close);
+  }
+
+  @Override
+  public Flowable<KeyRecord> rxQuery(
+      QueryPolicy queryPolicy, Statement statement, PartitionFilter cursor) {
+    return Flowable.generate(
+        () -> getClient().queryPartitions(queryPolicy, statement, cursor),
+        (recordSet, emitter) -> {
+          if (recordSet.next()) {
+            emitter.onNext(new KeyRecord(recordSet.getKey(), recordSet.getRecord()));
+          } else {
+            emitter.onComplete();
+          }
+        },
+        RecordSet::close);
+  }
+
+  @Override
+  public Single<List<BatchRecord>> rxBatchOperate(
+      BatchPolicy batchPolicy, List<BatchRecord> records) {
     return Single.fromCallable(
         () -> {
-          List<KeyRecord> results = new ArrayList<>();
-          try (RecordSet recordSet = getClient().query(queryPolicy, statement)) {
-            while (recordSet.next()) {
-              KeyRecord keyRecord = new KeyRecord(recordSet.getKey(), recordSet.getRecord());
-              results.add(keyRecord);
-            }
-          }
-          return results;
+          // Per-record failures are left in the records; false only says that one exists
+          getClient().operate(batchPolicy, records);
+          return records;
         });
   }
 }
@@ -0,0 +1,14 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Selects how the Aerospike client issues commands. */
+public enum AerospikeClientMode {
+  /** Blocking client calls wrapped in Rx types. */
+  @JsonProperty("sync")
+  SYNC,
+
+  /** Non-blocking client calls on Aerospike event loops, bridged to Rx types. */
+  @JsonProperty("async")
+  ASYNC
+}
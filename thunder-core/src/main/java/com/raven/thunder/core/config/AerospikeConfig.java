@@ -35,6 +35,33 @@ public class AerospikeConfig {
   @JsonProperty("bulk-read-socket-timeout")
   private Integer bulkReadSocketTimeout;
 
+  @JsonProperty("client-mode")
+  private AerospikeClientMode clientMode;
+
+  /** Event loop count for the async client when it cannot share the Vert.x event loops. */
+  @JsonProperty("event-loop-size")
+  private Integer eventLoopSize;
+
+  /** Max async commands in flight per event loop before queueing; 0 means unbounded. */
+  @JsonProperty("async-max-commands-in-process")
+  private Integer asyncMaxCommandsInProcess;
+
+  /** Storage layout written for user state machine records; defaults to map bins. */
+  @JsonProperty("state-machine-format")
+  private StateMachineFormat stateMachineFormat;
+
+  /** Re-read and re-apply attempts after a concurrent write to the same user snapshot. */
+  @JsonProperty("write-conflict-max-retries")
+  private Integer writeConflictMaxRetries;
+
+  /** Base backoff before a conflict retry, doubled per attempt and jittered. */
+  @JsonProperty("write-conflict-backoff")
+  private Integer writeConflictBackoff;
+
+  /** Partition ranges a bulk read is split into and queried concurrently. */
+  @JsonProperty("query-parallelism")
+  private Integer queryParallelism;
+
   // Helper methods to convert Integer timeouts to Interval (for compatibility with old code)
   public Interval getSocketTimeoutInterval() {
     return new Interval(socketTimeout != null ? socketTimeout.longValue() : 5000L);
@@ -47,4 +74,20 @@ public class AerospikeConfig {
   public Interval getBulkReadSocketTimeoutInterval() {
     return new Interval(bulkReadSocketTimeout != null ? bulkReadSocketTimeout.longValue() : 10000L);
   }
+
+  public int getWriteConflictMaxRetriesOrDefault() {
+    return writeConflictMaxRetries != null ? writeConflictMaxRetries : 3;
+  }
+
+  public Interval getWriteConflictBackoffInterval() {
+    return new Interval(writeConflictBackoff != null ? writeConflictBackoff.longValue() : 10L);
+  }
+
+  public int getQueryParallelismOrDefault() {
+    return queryParallelism != null ? Math.max(1, queryParallelism) : 8;
+  }
+
+  public StateMachineFormat getStateMachineFormatOrDefault() {
+    return stateMachineFormat != null ? stateMachineFormat : StateMachineFormat.MAP;
+  }
 }
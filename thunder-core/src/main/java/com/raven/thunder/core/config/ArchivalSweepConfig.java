@@ -0,0 +1,55 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Background sweep that archives stale state machines of users who no longer launch the app. Every
+ * enabled node competes for a shared lease, so one node sweeps at a time.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivalSweepConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  /** Time between the end of one sweep and the start of the next. */
+  @JsonProperty("sweep-period")
+  private Integer sweepPeriod;
+
+  /** Throttle of the sweep, shared by its partition scans; 0 scans unthrottled. */
+  @JsonProperty("scan-records-per-second")
+  private Integer scanRecordsPerSecond;
+
+  /** Number of partition ranges scanned in parallel. */
+  @JsonProperty("concurrency")
+  private Integer concurrency;
+
+  /** How long the sweep lease lasts unless renewed; it is renewed before each partition block. */
+  @JsonProperty("lease-duration")
+  private Integer leaseDuration;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public Interval getSweepPeriodInterval() {
+    return new Interval(sweepPeriod != null ? sweepPeriod.longValue() : 21600000L);
+  }
+
+  public Interval getLeaseDurationInterval() {
+    return new Interval(leaseDuration != null ? leaseDuration.longValue() : 1800000L);
+  }
+
+  public int getScanRecordsPerSecondOrDefault() {
+    return scanRecordsPerSecond != null ? scanRecordsPerSecond : 5_000;
+  }
+
+  public int getConcurrencyOrDefault() {
+    return concurrency != null ? Math.max(1, concurrency) : 4;
+  }
+}
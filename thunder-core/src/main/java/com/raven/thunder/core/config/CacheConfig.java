@@ -0,0 +1,37 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Catalog cache configuration. Controls how API nodes refresh CTAs and behaviour tags. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheConfig {
+
+  /** How often catalog version records are polled. */
+  @JsonProperty("refresh-period")
+  private Integer refreshPeriod;
+
+  /** How often a full reload is forced regardless of versions; 0 disables it. */
+  @JsonProperty("full-refresh-period")
+  private Integer fullRefreshPeriod;
+
+  /** How far the lastUpdatedAt watermark is rewound to tolerate clock skew and slow writes. */
+  @JsonProperty("watermark-overlap")
+  private Integer watermarkOverlap;
+
+  public Interval getRefreshPeriodInterval() {
+    return new Interval(refreshPeriod != null ? refreshPeriod.longValue() : 5000L);
+  }
+
+  public Interval getFullRefreshPeriodInterval() {
+    return new Interval(fullRefreshPeriod != null ? fullRefreshPeriod.longValue() : 900000L);
+  }
+
+  public Interval getWatermarkOverlapInterval() {
+    return new Interval(watermarkOverlap != null ? watermarkOverlap.longValue() : 30000L);
+  }
+}
@@ -0,0 +1,28 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** In-memory cohort membership bitmaps used for CTA eligibility. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CohortsConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  /** How often cohort manifests are polled; only cohorts with a new upload are reloaded. */
+  @JsonProperty("refresh-period")
+  private Integer refreshPeriod;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public Interval getRefreshPeriodInterval() {
+    return new Interval(refreshPeriod != null ? refreshPeriod.longValue() : 60000L);
+  }
+}
@@ -19,4 +19,31 @@ public class Config {
 
   @JsonProperty("aerospike")
   private AerospikeConfig aerospike;
+
+  @JsonProperty("cache")
+  private CacheConfig cache;
+
+  @JsonProperty("write-coalescing")
+  private WriteCoalescingConfig writeCoalescing;
+
+  @JsonProperty("near-cache")
+  private NearCacheConfig nearCache;
+
+  @JsonProperty("known-users")
+  private KnownUsersConfig knownUsers;
+
+  @JsonProperty("response-memo")
+  private ResponseMemoConfig responseMemo;
+
+  @JsonProperty("cohorts")
+  private CohortsConfig cohorts;
+
+  @JsonProperty("archival-sweep")
+  private ArchivalSweepConfig archivalSweep;
+
+  @JsonProperty("snapshot-ttl")
+  private SnapshotTtlConfig snapshotTtl;
+
+  @JsonProperty("snapshot-limits")
+  private SnapshotLimitsConfig snapshotLimits;
 }
@@ -0,0 +1,52 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Bloom filter of users that have stored state, used to skip reads for first-time users. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KnownUsersConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  /** Number of stored users the filter is sized for. */
+  @JsonProperty("expected-users")
+  private Long expectedUsers;
+
+  /** Target false positive rate at the expected number of users. */
+  @JsonProperty("false-positive-rate")
+  private Double falsePositiveRate;
+
+  /** How often the filter is rebuilt from a scan, which also picks up other nodes' writes. */
+  @JsonProperty("rebuild-period")
+  private Integer rebuildPeriod;
+
+  /** Throttle of the rebuild scan; 0 scans unthrottled. */
+  @JsonProperty("scan-records-per-second")
+  private Integer scanRecordsPerSecond;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public long getExpectedUsersOrDefault() {
+    return expectedUsers != null ? expectedUsers : 10_000_000L;
+  }
+
+  public double getFalsePositiveRateOrDefault() {
+    return falsePositiveRate != null ? falsePositiveRate : 0.01d;
+  }
+
+  public Interval getRebuildPeriodInterval() {
+    return new Interval(rebuildPeriod != null ? rebuildPeriod.longValue() : 300000L);
+  }
+
+  public int getScanRecordsPerSecondOrDefault() {
+    return scanRecordsPerSecond != null ? scanRecordsPerSecond : 20_000;
+  }
+}
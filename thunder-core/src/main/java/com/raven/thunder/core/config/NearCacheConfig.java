@@ -0,0 +1,51 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Near cache of user snapshots on API nodes, revalidated by record generation. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearCacheConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  @JsonProperty("max-entries")
+  private Integer maxEntries;
+
+  /** Upper bound on the encoded size of all cached snapshots. */
+  @JsonProperty("max-bytes")
+  private Long maxBytes;
+
+  /** How long a snapshot stays cached after it was last loaded or written. */
+  @JsonProperty("max-age")
+  private Integer maxAge;
+
+  /** Keeps encoded snapshots in direct buffers instead of on the heap. */
+  @JsonProperty("off-heap")
+  private Boolean offHeap;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public int getMaxEntriesOrDefault() {
+    return maxEntries != null ? maxEntries : 100_000;
+  }
+
+  public long getMaxBytesOrDefault() {
+    return maxBytes != null ? maxBytes : 64L * 1024 * 1024;
+  }
+
+  public Interval getMaxAgeInterval() {
+    return new Interval(maxAge != null ? maxAge.longValue() : 600000L);
+  }
+
+  public boolean isOffHeapOrDefault() {
+    return Boolean.TRUE.equals(offHeap);
+  }
+}
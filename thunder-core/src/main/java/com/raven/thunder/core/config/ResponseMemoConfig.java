@@ -0,0 +1,27 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Memo of serialized appLaunch responses shared by users with identical inputs. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseMemoConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  @JsonProperty("max-entries")
+  private Integer maxEntries;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public int getMaxEntriesOrDefault() {
+    return maxEntries != null ? maxEntries : 10_000;
+  }
+}
@@ -0,0 +1,32 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Bounds on the state kept per user, so snapshot records and their parse cost stop growing with
+ * the time a user stays active.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotLimitsConfig {
+
+  /** Most {@code resetAt} or {@code actionDoneAt} entries kept per CTA. */
+  @JsonProperty("max-timestamps")
+  private Integer maxTimestamps;
+
+  /** Encoded size above which the oldest state machines are evicted; 0 leaves records unbounded. */
+  @JsonProperty("max-record-bytes")
+  private Integer maxRecordBytes;
+
+  public int getMaxTimestampsOrDefault() {
+    return maxTimestamps != null ? Math.max(1, maxTimestamps) : 256;
+  }
+
+  public int getMaxRecordBytesOrDefault() {
+    return maxRecordBytes != null ? Math.max(0, maxRecordBytes) : 131_072;
+  }
+}
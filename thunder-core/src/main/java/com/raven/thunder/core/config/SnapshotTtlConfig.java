@@ -0,0 +1,57 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Expiry of user snapshot records after a period without activity. The TTL of a tenant's records
+ * is its inactivity TTL, raised to the longest state machine TTL or frequency window of its live
+ * CTAs, so state a live CTA can still act on never expires.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotTtlConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  /** Time without reads or writes after which a user's snapshot expires. */
+  @JsonProperty("inactivity-ttl")
+  private Long inactivityTtl;
+
+  /** Inactivity TTL per tenant id, overriding the default one. */
+  @JsonProperty("tenant-inactivity-ttl")
+  private Map<String, Long> tenantInactivityTtl;
+
+  /** Longest TTL ever set, at most the namespace max-ttl, which rejects longer ones. */
+  @JsonProperty("max-ttl")
+  private Long maxTtl;
+
+  /** Minimum time between reads that refresh a record's TTL. */
+  @JsonProperty("touch-interval")
+  private Integer touchInterval;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public Interval getInactivityTtlInterval(String tenantId) {
+    Long ttl = tenantInactivityTtl != null ? tenantInactivityTtl.get(tenantId) : null;
+    if (ttl == null) {
+      ttl = inactivityTtl != null ? inactivityTtl : 2592000000L;
+    }
+    return new Interval(ttl);
+  }
+
+  public Interval getMaxTtlInterval() {
+    return new Interval(maxTtl != null ? maxTtl : 315360000000L);
+  }
+
+  public Interval getTouchIntervalInterval() {
+    return new Interval(touchInterval != null ? touchInterval.longValue() : 86400000L);
+  }
+}
@@ -0,0 +1,14 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Selects how user state machine snapshots are written; every format stays readable. */
+public enum StateMachineFormat {
+  /** Aerospike map bins that support partial, server-side merges. */
+  @JsonProperty("map")
+  MAP,
+
+  /** One compact binary blob; smallest records, but merges read and rewrite the whole blob. */
+  @JsonProperty("binary")
+  BINARY
+}
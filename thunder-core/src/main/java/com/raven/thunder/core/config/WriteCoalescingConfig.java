@@ -0,0 +1,36 @@
+package com.raven.thunder.core.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Coalescing of bursty per-user snapshot merges on API nodes. Disabled unless configured. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WriteCoalescingConfig {
+
+  @JsonProperty("enabled")
+  private Boolean enabled;
+
+  /** How long the first delta for a user waits for more before they are written together. */
+  @JsonProperty("window")
+  private Integer window;
+
+  /** Pending deltas for one user that trigger an early flush before the window ends. */
+  @JsonProperty("max-deltas")
+  private Integer maxDeltas;
+
+  public boolean isEnabledOrDefault() {
+    return Boolean.TRUE.equals(enabled);
+  }
+
+  public Interval getWindowInterval() {
+    return new Interval(window != null ? window.longValue() : 100L);
+  }
+
+  public int getMaxDeltasOrDefault() {
+    return maxDeltas != null ? maxDeltas : 32;
+  }
+}
@@ -1,13 +1,18 @@
 package com.raven.thunder.core.dao;
 
+import com.aerospike.client.BatchRecord;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.policy.BatchDeletePolicy;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.BatchWritePolicy;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.policy.QueryPolicy;
 import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.PartitionFilter;
 import com.aerospike.client.query.Statement;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
@@ -32,6 +37,26 @@ public interface AerospikeOperations {
 
   <T> Maybe<T> find(Key pk, Function<Record, T> recordMapper, String... bins);
 
+  Maybe<Record> findHeader(Key pk);
+
+  /** Streams the records of a query with backpressure, without holding the result set. */
+  Flowable<KeyRecord> stream(QueryPolicy queryPolicy, Statement statement);
+
+  Flowable<KeyRecord> stream(Statement statement);
+
+  Flowable<KeyRecord> stream(QueryPolicy queryPolicy, Statement statement, PartitionFilter cursor);
+
+  /**
+   * Queries each unfinished cursor's partitions concurrently, at most {@code parallelism} at a
+   * time, and merges their records. Finished cursors are skipped, so a long job can keep its
+   * cursors and resume from them.
+   */
+  Flowable<KeyRecord> streamParallel(
+      QueryPolicy queryPolicy, Statement statement, List<PartitionFilter> cursors, int parallelism);
+
+  /** Queries the configured number of partition ranges concurrently. */
+  Flowable<KeyRecord> streamParallel(Statement statement);
+
   Single<List<KeyRecord>> findAll(QueryPolicy queryPolicy, Statement statement);
 
   <K, V> Single<Map<K, V>> findAll(
@@ -41,9 +66,39 @@ public interface AerospikeOperations {
 
   <K, V> Single<Map<K, V>> findAll(Statement statement, Function<KeyRecord, V> keyRecordMapper);
 
+  <K, V> Single<Map<K, V>> findAllParallel(
+      Statement statement, Function<KeyRecord, V> keyRecordMapper);
+
   Single<Key> upsert(WritePolicy writePolicy, Key pk, Bin... bins);
 
   Single<Key> upsert(Key pk, Bin... bins);
 
   Single<Record> operate(WritePolicy writePolicy, Key key, Operation[] operations);
+
+  /** Reads the keys in one batch; results follow the order of the keys. No bins reads all. */
+  Single<List<BatchResult<Record>>> findMany(
+      BatchPolicy batchPolicy, List<Key> keys, String... bins);
+
+  <T> Single<List<BatchResult<T>>> findMany(
+      BatchPolicy batchPolicy, List<Key> keys, Function<Record, T> recordMapper, String... bins);
+
+  Single<List<BatchResult<Record>>> findMany(List<Key> keys, String... bins);
+
+  <T> Single<List<BatchResult<T>>> findMany(
+      List<Key> keys, Function<Record, T> recordMapper, String... bins);
+
+  /** Writes the bins of each key in one batch, in the iteration order of the map. */
+  Single<List<BatchResult<Record>>> upsertMany(
+      BatchWritePolicy writePolicy, Map<Key, Bin[]> records);
+
+  /** Applies the same operations to every key in one batch. */
+  Single<List<BatchResult<Record>>> operateMany(
+      BatchWritePolicy writePolicy, List<Key> keys, Operation... operations);
+
+  /** Deletes the keys in one batch; keys that did not exist report KEY_NOT_FOUND_ERROR. */
+  Single<List<BatchResult<Record>>> deleteMany(BatchDeletePolicy deletePolicy, List<Key> keys);
+
+  /** Runs any mix of batch reads, writes and deletes; results follow the order of the records. */
+  Single<List<BatchResult<Record>>> operateMany(
+      BatchPolicy batchPolicy, List<BatchRecord> records);
 }
@@ -1,17 +1,26 @@
 package com.raven.thunder.core.dao;
 
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchDelete;
+import com.aerospike.client.BatchRead;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchWrite;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
 import com.aerospike.client.policy.*;
 import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.PartitionFilter;
 import com.aerospike.client.query.Statement;
 import com.raven.thunder.core.client.AerospikeClient;
 import com.raven.thunder.core.config.AerospikeConfig;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.functions.Function;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +33,8 @@ public abstract class AerospikeRepository implements AerospikeOperations {
   protected final Policy defaultReadPolicy = new Policy();
   protected final WritePolicy defaultWritePolicy = new WritePolicy();
   protected final QueryPolicy defaultQueryPolicy = new QueryPolicy();
+  protected final BatchPolicy defaultBatchPolicy = new BatchPolicy();
+  protected final BatchPolicy defaultBatchWritePolicy = BatchPolicy.WriteDefault();
 
   protected AerospikeRepository(AerospikeConfig config, AerospikeClient client) {
     this.client = client;
@@ -32,6 +43,8 @@ public abstract class AerospikeRepository implements AerospikeOperations {
     setDefaultReadPolicyParams(defaultReadPolicy, config);
     setDefaultWritePolicyParams(defaultWritePolicy, config);
     setDefaultQueryPolicyParams(defaultQueryPolicy, config);
+    setDefaultBatchPolicyParams(defaultBatchPolicy, config);
+    setDefaultBatchPolicyParams(defaultBatchWritePolicy, config);
   }
 
   protected void setDefaultReadPolicyParams(Policy readPolicy, AerospikeConfig config) {
@@ -51,6 +64,16 @@ public abstract class AerospikeRepository implements AerospikeOperations {
     queryPolicy.totalTimeout = Math.toIntExact(config.getBulkReadSocketTimeoutInterval().getMs());
   }
 
+  protected void setDefaultBatchPolicyParams(BatchPolicy batchPolicy, AerospikeConfig config) {
+    batchPolicy.socketTimeout = Math.toIntExact(config.getSocketTimeoutInterval().getMs());
+    batchPolicy.totalTimeout = Math.toIntExact(config.getTotalTimeoutInterval().getMs());
+    batchPolicy.replica = Replica.SEQUENCE;
+  }
+
+  protected void setDefaultBatchWritePolicyParams(BatchWritePolicy writePolicy) {
+    writePolicy.commitLevel = CommitLevel.COMMIT_MASTER;
+  }
+
   @Override
   public Maybe<Record> find(Policy readPolicy, Key pk) {
     return client.rxGet(readPolicy, pk).filter(record -> record != null);
@@ -95,22 +118,53 @@ public abstract class AerospikeRepository implements AerospikeOperations {
   }
 
   @Override
-  public Single<List<KeyRecord>> findAll(QueryPolicy queryPolicy, Statement statement) {
+  public Maybe<Record> findHeader(Key pk) {
+    return client.rxGetHeader(defaultReadPolicy, pk);
+  }
+
+  @Override
+  public Flowable<KeyRecord> stream(QueryPolicy queryPolicy, Statement statement) {
     return client.rxQuery(queryPolicy, statement);
   }
 
+  @Override
+  public Flowable<KeyRecord> stream(Statement statement) {
+    return stream(defaultQueryPolicy, statement);
+  }
+
+  @Override
+  public Flowable<KeyRecord> stream(
+      QueryPolicy queryPolicy, Statement statement, PartitionFilter cursor) {
+    return client.rxQuery(queryPolicy, statement, cursor);
+  }
+
+  @Override
+  public Flowable<KeyRecord> streamParallel(
+      QueryPolicy queryPolicy,
+      Statement statement,
+      List<PartitionFilter> cursors,
+      int parallelism) {
+    return Flowable.fromIterable(cursors)
+        .filter(cursor -> !cursor.isDone())
+        .flatMap(cursor -> stream(queryPolicy, copy(statement), cursor), false, parallelism);
+  }
+
+  @Override
+  public Flowable<KeyRecord> streamParallel(Statement statement) {
+    int parallelism = config.getQueryParallelismOrDefault();
+    return streamParallel(
+        defaultQueryPolicy, statement, PartitionRanges.split(parallelism), parallelism);
+  }
+
+  @Override
+  public Single<List<KeyRecord>> findAll(QueryPolicy queryPolicy, Statement statement) {
+    return stream(queryPolicy, statement).toList();
+  }
+
   @Override
   public <K, V> Single<Map<K, V>> findAll(
       QueryPolicy queryPolicy, Statement statement, Function<KeyRecord, V> keyRecordMapper) {
-    return findAll(queryPolicy, statement)
-        .map(
-            keyRecords -> {
-              Map<K, V> result = new HashMap<>();
-              for (KeyRecord keyRecord : keyRecords) {
-                result.put((K) keyRecord.key.userKey.toString(), keyRecordMapper.apply(keyRecord));
-              }
-              return result;
-            });
+    return collect(stream(queryPolicy, statement), keyRecordMapper);
   }
 
   @Override
@@ -124,6 +178,32 @@ public abstract class AerospikeRepository implements AerospikeOperations {
     return findAll(defaultQueryPolicy, statement, keyRecordMapper);
   }
 
+  @Override
+  public <K, V> Single<Map<K, V>> findAllParallel(
+      Statement statement, Function<KeyRecord, V> keyRecordMapper) {
+    return collect(streamParallel(statement), keyRecordMapper);
+  }
+
+  private static <K, V> Single<Map<K, V>> collect(
+      Flowable<KeyRecord> keyRecords, Function<KeyRecord, V> keyRecordMapper) {
+    return keyRecords.collect(
+        HashMap::new,
+        (result, keyRecord) ->
+            result.put((K) keyRecord.key.userKey.toString(), keyRecordMapper.apply(keyRecord)));
+  }
+
+  /** Copies a statement, so concurrent partition queries never share one. */
+  private static Statement copy(Statement statement) {
+    Statement copy = new Statement();
+    copy.setNamespace(statement.getNamespace());
+    copy.setSetName(statement.getSetName());
+    copy.setIndexName(statement.getIndexName());
+    copy.setBinNames(statement.getBinNames());
+    copy.setFilter(statement.getFilter());
+    copy.setRecordsPerSecond(statement.getRecordsPerSecond());
+    return copy;
+  }
+
   @Override
   public Single<Key> upsert(WritePolicy writePolicy, Key pk, Bin... bins) {
     return client.rxPut(writePolicy, pk, bins);
@@ -138,4 +218,125 @@ public abstract class AerospikeRepository implements AerospikeOperations {
   public Single<Record> operate(WritePolicy writePolicy, Key key, Operation[] operations) {
     return client.rxOperate(writePolicy, key, operations);
   }
+
+  @Override
+  public Single<List<BatchResult<Record>>> findMany(
+      BatchPolicy batchPolicy, List<Key> keys, String... bins) {
+    return findMany(batchPolicy, keys, record -> record, bins);
+  }
+
+  @Override
+  public <T> Single<List<BatchResult<T>>> findMany(
+      BatchPolicy batchPolicy, List<Key> keys, Function<Record, T> recordMapper, String... bins) {
+    List<BatchRecord> reads = new ArrayList<>(keys.size());
+    for (Key key : keys) {
+      reads.add(bins.length == 0 ? new BatchRead(key, true) : new BatchRead(key, bins));
+    }
+    return batch(batchPolicy, reads, recordMapper);
+  }
+
+  @Override
+  public Single<List<BatchResult<Record>>> findMany(List<Key> keys, String... bins) {
+    return findMany(defaultBatchPolicy, keys, bins);
+  }
+
+  @Override
+  public <T> Single<List<BatchResult<T>>> findMany(
+      List<Key> keys, Function<Record, T> recordMapper, String... bins) {
+    return findMany(defaultBatchPolicy, keys, recordMapper, bins);
+  }
+
+  @Override
+  public Single<List<BatchResult<Record>>> upsertMany(
+      BatchWritePolicy writePolicy, Map<Key, Bin[]> records) {
+    List<BatchRecord> writes = new ArrayList<>(records.size());
+    for (Map.Entry<Key, Bin[]> entry : records.entrySet()) {
+      Operation[] operations = new Operation[entry.getValue().length];
+      for (int i = 0; i < operations.length; i++) {
+        operations[i] = Operation.put(entry.getValue()[i]);
+      }
+      writes.add(new BatchWrite(writePolicy, entry.getKey(), operations));
+    }
+    return operateMany(defaultBatchWritePolicy, writes);
+  }
+
+  @Override
+  public Single<List<BatchResult<Record>>> operateMany(
+      BatchWritePolicy writePolicy, List<Key> keys, Operation... operations) {
+    List<BatchRecord> writes = new ArrayList<>(keys.size());
+    for (Key key : keys) {
+      writes.add(new BatchWrite(writePolicy, key, operations));
+    }
+    return operateMany(defaultBatchWritePolicy, writes);
+  }
+
+  @Override
+  public Single<List<BatchResult<Record>>> deleteMany(
+      BatchDeletePolicy deletePolicy, List<Key> keys) {
+    List<BatchRecord> deletes = new ArrayList<>(keys.size());
+    for (Key key : keys) {
+      deletes.add(new BatchDelete(deletePolicy, key));
+    }
+    return operateMany(defaultBatchWritePolicy, deletes);
+  }
+
+  @Override
+  public Single<List<BatchResult<Record>>> operateMany(
+      BatchPolicy batchPolicy, List<BatchRecord> records) {
+    return batch(batchPolicy, records, record -> record);
+  }
+
+  private <T> Single<List<BatchResult<T>>> batch(
+      BatchPolicy batchPolicy, List<BatchRecord> records, Function<Record, T> recordMapper) {
+    if (records.isEmpty()) {
+      return Single.just(new ArrayList<>());
+    }
+    return client
+        .rxBatchOperate(batchPolicy, records)
+        .map(
+            done -> {
+              List<BatchResult<T>> results = new ArrayList<>(done.size());
+              for (BatchRecord record : done) {
+                // Like find, a record without any of the requested bins maps to no value
+                T value =
+                    record.record == null || record.record.bins == null
+                        ? null
+                        : recordMapper.apply(record.record);
+                results.add(
+                    new BatchResult<>(record.key, value, record.resultCode, record.inDoubt));
+              }
+              return results;
+            });
+  }
+
+  /** Completes if every key of the batch succeeded, else fails with the first key's error. */
+  protected static Completable requireSuccess(List<? extends BatchResult<?>> results) {
+    return requireSuccess(results, false);
+  }
+
+  /**
+   * Completes if every key of the batch succeeded, or was missing when {@code allowNotFound} is
+   * set, else fails with the first failed key's error.
+   */
+  protected static Completable requireSuccess(
+      List<? extends BatchResult<?>> results, boolean allowNotFound) {
+    List<BatchResult<?>> failed = new ArrayList<>();
+    for (BatchResult<?> result : results) {
+      if (!result.isSuccess() && !(allowNotFound && result.isNotFound())) {
+        failed.add(result);
+      }
+    }
+    if (failed.isEmpty()) {
+      return Completable.complete();
+    }
+    BatchResult<?> first = failed.get(0);
+    return Completable.error(
+        new AerospikeException(
+            first.getResultCode(),
+            failed.size()
+                + " of "
+                + results.size()
+                + " batch records failed, first "
+                + first.getKey()));
+  }
 }
@@ -0,0 +1,30 @@
+package com.raven.thunder.core.dao;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of one key of a batch command. A batch succeeds as a whole even when single keys fail,
+ * so each key carries its own result code; the value is null unless the key returned a record.
+ */
+@Data
+@AllArgsConstructor
+public class BatchResult<T> {
+
+  private Key key;
+  private T value;
+  private int resultCode;
+
+  /** Whether a failed write may still have been applied, e.g. after a timeout. */
+  private boolean inDoubt;
+
+  public boolean isSuccess() {
+    return resultCode == ResultCode.OK;
+  }
+
+  public boolean isNotFound() {
+    return resultCode == ResultCode.KEY_NOT_FOUND_ERROR;
+  }
+}
@@ -12,6 +12,12 @@ public interface BehaviourTagsRepository {
   /** Lists all behaviour tags across tenants (for caching). */
   Single<Map<String, BehaviourTag>> findAll();
 
+  /**
+   * Lists behaviour tags across tenants whose last update is at or after the given epoch millis
+   * (for incremental cache refresh).
+   */
+  Single<Map<String, BehaviourTag>> findAllUpdatedSince(long lastUpdatedAt);
+
   /** Lists all behaviour tags for a tenant. */
   Single<Map<String, BehaviourTag>> findAll(String tenantId);
 
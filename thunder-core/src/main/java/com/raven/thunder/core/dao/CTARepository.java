@@ -5,6 +5,7 @@ import com.raven.thunder.core.dao.cta.CTADetails;
 import com.raven.thunder.core.dao.cta.ScheduledCTA;
 import com.raven.thunder.core.io.response.FilterResponse;
 import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CTAListFilter;
 import com.raven.thunder.core.model.CTAStatus;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
@@ -24,18 +25,40 @@ public interface CTARepository {
   /** Finds CTA by id. */
   Maybe<CTA> find(String tenantId, Long id);
 
+  /** Finds the tenant's CTAs among the ids in one batch read; missing ids are left out. */
+  Single<Map<Long, CTA>> findMany(String tenantId, List<Long> ids);
+
   /** Finds CTA with generation id for optimistic concurrency control. */
   Maybe<CTADetails> findWithGeneration(String tenantId, Long id);
 
   /** Lists all CTAs for a tenant. */
   Single<Map<Long, CTA>> findAll(String tenantId);
 
+  /**
+   * Lists the tenant's CTAs matching a filter, ordered by id. The filter runs on the server and
+   * the rule is not read, so listed CTAs carry no rule. A filter status is looked up in the
+   * tenant_status index, so only the CTAs in that status are read.
+   */
+  Single<List<CTA>> findAllForList(String tenantId, CTAListFilter filter);
+
+  /**
+   * Counts the tenant's CTAs matching a filter per status, reading only their status bin. The
+   * filter's own status is ignored, so every status is counted.
+   */
+  Single<Map<CTAStatus, Integer>> countByStatus(String tenantId, CTAListFilter filter);
+
   /** Lists all CTAs with status LIVE across tenants (for caching). */
   Single<Map<Long, CTA>> findAllWithStatusActive();
 
   /** Lists all CTAs with status PAUSED across tenants (for caching). */
   Single<Map<Long, CTA>> findAllWithStatusPaused();
 
+  /**
+   * Lists CTAs of any status across tenants whose last update is at or after the given epoch
+   * millis (for incremental cache refresh).
+   */
+  Single<Map<Long, CTA>> findAllUpdatedSince(long lastUpdatedAt);
+
   /** Lists ids and generations for LIVE CTAs (activation/expiry jobs). */
   Single<Map<Long, ActiveCTA>> findAllIdsWithStatusLive();
 
@@ -60,6 +83,9 @@ public interface CTARepository {
   /** Replaces behaviour tags for a CTA. */
   Completable update(Long id, List<String> behaviourTag);
 
+  /** Replaces behaviour tags for several CTAs in one batch write. */
+  Completable update(List<Long> ids, List<String> behaviourTag);
+
   /** Updates full CTA with generation check. */
   Completable update(CTA cta, int generation);
 
@@ -69,6 +95,12 @@ public interface CTARepository {
   /** Terminates or concludes CTA when only end time is applicable. */
   Completable terminateOrConclude(Long id, CTAStatus status, Long endTime);
 
+  /**
+   * Writes the tenant_status bin of CTAs created before it existed or out of date with their
+   * status; returns how many were written. Safe to rerun and to run alongside admin writes.
+   */
+  Single<Long> backfillTenantStatus();
+
   /** Updates filter metadata (tags, team, names). */
   Completable updateFilters(
       String tenantId, List<String> tags, String team, String name, String createdBy);
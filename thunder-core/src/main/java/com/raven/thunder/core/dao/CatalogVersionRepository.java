@@ -0,0 +1,18 @@
+package com.raven.thunder.core.dao;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.Map;
+
+/**
+ * Repository for per-tenant catalog version records. Versions are bumped on every CTA or
+ * behaviour tag write so API nodes can detect catalog changes without scanning the catalog.
+ */
+public interface CatalogVersionRepository {
+
+  /** Increments the catalog version of a tenant. */
+  Completable bump(String tenantId);
+
+  /** Lists current catalog versions keyed by tenant id. */
+  Single<Map<String, Long>> findAll();
+}
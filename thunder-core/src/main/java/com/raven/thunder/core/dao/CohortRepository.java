@@ -0,0 +1,26 @@
+package com.raven.thunder.core.dao;
+
+import com.raven.thunder.core.model.CohortManifest;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.List;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Repository for cohort membership bitmaps. A bitmap is stored serialized across chunk records,
+ * and a small manifest record per cohort points at the chunks of its latest upload.
+ */
+public interface CohortRepository {
+
+  /** Replaces the members of a cohort, creating the cohort when it does not exist. */
+  Single<CohortManifest> save(String tenantId, String cohort, Roaring64NavigableMap users);
+
+  /** Finds the manifest of a single cohort. */
+  Maybe<CohortManifest> findManifest(String tenantId, String cohort);
+
+  /** Lists the manifests of all cohorts of all tenants. */
+  Single<List<CohortManifest>> findManifests();
+
+  /** Loads the bitmap a manifest points at. */
+  Single<Roaring64NavigableMap> load(CohortManifest manifest);
+}
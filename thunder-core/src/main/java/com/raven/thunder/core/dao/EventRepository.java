@@ -9,6 +9,9 @@ import java.util.List;
 public interface EventRepository {
   Completable upsert(String tenantId, String eventName, EventData eventData);
 
+  /** Upserts the events of a tenant in one batch write, keyed by their event names. */
+  Completable upsertAll(String tenantId, List<EventData> events);
+
   Single<List<EventData>> findAllByTenant(String tenantId);
 
   Maybe<EventData> findByTenantAndEventName(String tenantId, String eventName);
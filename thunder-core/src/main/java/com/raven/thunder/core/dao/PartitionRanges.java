@@ -0,0 +1,27 @@
+package com.raven.thunder.core.dao;
+
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.query.PartitionFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Splits the partitions of a namespace into ranges that are queried or scanned concurrently. */
+public final class PartitionRanges {
+
+  private PartitionRanges() {}
+
+  /**
+   * Returns {@code count} contiguous, near equal partition ranges covering every partition, each
+   * as a fresh cursor.
+   */
+  public static List<PartitionFilter> split(int count) {
+    int ranges = Math.max(1, Math.min(count, Node.PARTITIONS));
+    List<PartitionFilter> cursors = new ArrayList<>(ranges);
+    for (int i = 0; i < ranges; i++) {
+      int begin = i * Node.PARTITIONS / ranges;
+      int end = (i + 1) * Node.PARTITIONS / ranges;
+      cursors.add(PartitionFilter.range(begin, end - begin));
+    }
+    return cursors;
+  }
+}
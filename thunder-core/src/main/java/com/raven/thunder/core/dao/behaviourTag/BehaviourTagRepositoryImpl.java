@@ -13,6 +13,7 @@ import com.raven.thunder.core.client.AerospikeClient;
 import com.raven.thunder.core.config.AerospikeConfig;
 import com.raven.thunder.core.dao.AerospikeRepository;
 import com.raven.thunder.core.dao.BehaviourTagsRepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
 import com.raven.thunder.core.model.BehaviourTag;
 import com.raven.thunder.core.util.ParseUtil;
 import io.reactivex.rxjava3.core.Completable;
@@ -26,15 +27,20 @@ public class BehaviourTagRepositoryImpl extends AerospikeRepository
     implements BehaviourTagsRepository {
 
   private final String namespace;
+  private final CatalogVersionRepository catalogVersionRepository;
   private final BehaviourTagRecordMapper behaviourTagRecordMapper = new BehaviourTagRecordMapper();
   private final WritePolicy createWritePolicy = new WritePolicy();
   private final WritePolicy updateWritePolicy = new WritePolicy();
 
   @Inject
-  public BehaviourTagRepositoryImpl(AerospikeConfig config, AerospikeClient client) {
+  public BehaviourTagRepositoryImpl(
+      AerospikeConfig config,
+      AerospikeClient client,
+      CatalogVersionRepository catalogVersionRepository) {
     super(config, client);
 
     this.namespace = config.getAdminDataNamespace();
+    this.catalogVersionRepository = catalogVersionRepository;
 
     // TODO: add generation flag for update policy
 
@@ -52,6 +58,27 @@ public class BehaviourTagRepositoryImpl extends AerospikeRepository
     Statement query = new Statement();
     query.setSetName(Schema.SET);
     query.setNamespace(this.namespace);
+    query.setBinNames(
+        Schema.NAME_BIN,
+        Schema.DESCRIPTION_BIN,
+        Schema.LINKED_CTAS,
+        Schema.EXPOSURE_RULE_BIN,
+        Schema.CTA_RELATION_BIN,
+        Schema.CREATED_AT_BIN,
+        Schema.CREATED_BY_BIN,
+        Schema.LAST_UPDATED_AT_BIN,
+        Schema.LAST_UPDATED_BY_BIN,
+        Schema.TENANT_BIN);
+    return findAllParallel(query, keyRecord -> behaviourTagRecordMapper.apply(keyRecord.record));
+  }
+
+  @Override
+  public Single<Map<String, BehaviourTag>> findAllUpdatedSince(long lastUpdatedAt) {
+    Statement query = new Statement();
+    query.setSetName(Schema.SET);
+    query.setNamespace(this.namespace);
+    query.setIndexName(Schema.LAST_UPDATED_AT_BIN);
+    query.setFilter(Filter.range(Schema.LAST_UPDATED_AT_BIN, lastUpdatedAt, Long.MAX_VALUE));
     query.setBinNames(
         Schema.NAME_BIN,
         Schema.DESCRIPTION_BIN,
@@ -84,7 +111,7 @@ public class BehaviourTagRepositoryImpl extends AerospikeRepository
         Schema.LAST_UPDATED_AT_BIN,
         Schema.LAST_UPDATED_BY_BIN,
         Schema.TENANT_BIN);
-    return findAll(query, keyRecord -> behaviourTagRecordMapper.apply(keyRecord.record));
+    return findAllParallel(query, keyRecord -> behaviourTagRecordMapper.apply(keyRecord.record));
   }
 
   @Override
@@ -126,6 +153,9 @@ public class BehaviourTagRepositoryImpl extends AerospikeRepository
     Bin linkedCtasBin =
         new Bin(
             Schema.LINKED_CTAS, new Value.ListValue(new ArrayList<>(behaviourTag.getLinkedCtas())));
+    // Stamp creation as the first update so incremental catalog refreshes see new tags.
+    Bin updatedAtRuleBin =
+        new Bin(Schema.LAST_UPDATED_AT_BIN, new Value.LongValue(behaviourTag.getCreatedAt()));
     Bin tenantBin = new Bin(Schema.TENANT_BIN, new Value.StringValue(tenantId));
     return upsert(
             createWritePolicy,
@@ -137,8 +167,10 @@ public class BehaviourTagRepositoryImpl extends AerospikeRepository
             createdByRuleBin,
             createdAtRuleBin,
             linkedCtasBin,
+            updatedAtRuleBin,
             tenantBin)
-        .ignoreElement();
+        .ignoreElement()
+        .andThen(catalogVersionRepository.bump(tenantId));
   }
 
   @Override
@@ -172,6 +204,7 @@ public class BehaviourTagRepositoryImpl extends AerospikeRepository
             udpatedByRuleBin,
             updatedAtRuleBin,
             linkedCtasBin)
-        .ignoreElement();
+        .ignoreElement()
+        .andThen(catalogVersionRepository.bump(tenantId));
   }
 }
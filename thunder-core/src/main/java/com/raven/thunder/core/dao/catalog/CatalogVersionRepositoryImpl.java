@@ -0,0 +1,57 @@
+package com.raven.thunder.core.dao.catalog;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Value;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.client.query.Statement;
+import com.google.inject.Inject;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.dao.AerospikeRepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.Map;
+
+public class CatalogVersionRepositoryImpl extends AerospikeRepository
+    implements CatalogVersionRepository {
+
+  private final String namespace;
+  private final WritePolicy bumpWritePolicy = new WritePolicy();
+
+  @Inject
+  public CatalogVersionRepositoryImpl(AerospikeConfig config, AerospikeClient client) {
+    super(config, client);
+
+    this.namespace = config.getAdminDataNamespace();
+
+    setDefaultWritePolicyParams(bumpWritePolicy, config);
+    bumpWritePolicy.sendKey = true;
+    bumpWritePolicy.recordExistsAction = RecordExistsAction.UPDATE;
+  }
+
+  @Override
+  public Completable bump(String tenantId) {
+    Operation[] operations = new Operation[3];
+    operations[0] = Operation.add(new Bin(Schema.VERSION_BIN, 1));
+    operations[1] =
+        Operation.put(
+            new Bin(Schema.UPDATED_AT_BIN, new Value.LongValue(System.currentTimeMillis())));
+    operations[2] = Operation.put(new Bin(Schema.TENANT_BIN, new Value.StringValue(tenantId)));
+    return operate(bumpWritePolicy, new Key(namespace, Schema.SET, tenantId), operations)
+        .ignoreElement();
+  }
+
+  @Override
+  public Single<Map<String, Long>> findAll() {
+    // One small record per tenant, so a set scan is cheap enough to poll.
+    Statement query = new Statement();
+    query.setNamespace(namespace);
+    query.setSetName(Schema.SET);
+    query.setBinNames(Schema.VERSION_BIN);
+    return findAll(query, keyRecord -> keyRecord.record.getLong(Schema.VERSION_BIN));
+  }
+}
@@ -0,0 +1,8 @@
+package com.raven.thunder.core.dao.catalog;
+
+interface Schema {
+  String SET = "catalog_version";
+  String VERSION_BIN = "version";
+  String UPDATED_AT_BIN = "updated_at";
+  String TENANT_BIN = "tenantId";
+}
@@ -0,0 +1,262 @@
+package com.raven.thunder.core.dao.cohort;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.policy.BatchDeletePolicy;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.client.query.Statement;
+import com.google.inject.Inject;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.dao.AerospikeRepository;
+import com.raven.thunder.core.dao.CohortRepository;
+import com.raven.thunder.core.model.CohortManifest;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Single;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+/**
+ * Stores each cohort bitmap as chunk records plus a manifest. Chunks are keyed by upload, and the
+ * manifest is written last with a generation check, so an upload in progress never touches the
+ * chunks of another and racing uploads cannot both win. Once the manifest flips, the chunks it
+ * superseded are deleted; so are those of an upload that lost the race.
+ */
+@Slf4j
+public class CohortRepositoryImpl extends AerospikeRepository implements CohortRepository {
+
+  private final String namespace;
+  private final WritePolicy chunkWritePolicy = new WritePolicy();
+  private final WritePolicy manifestWritePolicy = new WritePolicy();
+  private final BatchDeletePolicy chunkDeletePolicy = new BatchDeletePolicy();
+
+  @Inject
+  public CohortRepositoryImpl(AerospikeConfig config, AerospikeClient client) {
+    super(config, client);
+
+    this.namespace = config.getAdminDataNamespace();
+
+    setDefaultWritePolicyParams(chunkWritePolicy, config);
+    chunkWritePolicy.recordExistsAction = RecordExistsAction.REPLACE;
+
+    setDefaultWritePolicyParams(manifestWritePolicy, config);
+    manifestWritePolicy.sendKey = true;
+    manifestWritePolicy.recordExistsAction = RecordExistsAction.REPLACE;
+  }
+
+  @Override
+  public Single<CohortManifest> save(String tenantId, String cohort, Roaring64NavigableMap users) {
+    Key manifestKey = manifestKey(tenantId, cohort);
+    return find(defaultReadPolicy, manifestKey)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .flatMap(
+            previous -> {
+              List<byte[]> chunks = split(serialize(users));
+              CohortManifest manifest =
+                  new CohortManifest(
+                      tenantId,
+                      cohort,
+                      previous.map(record -> record.getLong(Schema.VERSION_BIN)).orElse(0L) + 1,
+                      UUID.randomUUID().toString(),
+                      chunks.size(),
+                      users.getLongCardinality(),
+                      System.currentTimeMillis());
+              return Observable.range(0, chunks.size())
+                  .concatMapSingle(
+                      index ->
+                          upsert(
+                              chunkWritePolicy,
+                              chunkKey(manifest, index),
+                              new Bin(Schema.VERSION_BIN, manifest.getVersion()),
+                              new Bin(Schema.UPLOAD_BIN, manifest.getUploadId()),
+                              new Bin(Schema.DATA_BIN, chunks.get(index))))
+                  .ignoreElements()
+                  .onErrorResumeNext(
+                      error -> deleteChunks(manifest).andThen(Completable.error(error)))
+                  .andThen(
+                      upsert(
+                              manifestWritePolicy(previous.orElse(null)),
+                              manifestKey,
+                              manifestBins(manifest))
+                          .onErrorResumeNext(error -> manifestFailed(manifest, error)))
+                  .flatMap(
+                      ignored ->
+                          previous
+                              .map(record -> deleteChunks(manifest(record)))
+                              .orElseGet(Completable::complete)
+                              .toSingleDefault(manifest));
+            });
+  }
+
+  @Override
+  public Maybe<CohortManifest> findManifest(String tenantId, String cohort) {
+    return find(defaultReadPolicy, manifestKey(tenantId, cohort), CohortRepositoryImpl::manifest);
+  }
+
+  @Override
+  public Single<List<CohortManifest>> findManifests() {
+    // One small record per cohort, so a set scan is cheap enough to poll.
+    Statement query = new Statement();
+    query.setNamespace(namespace);
+    query.setSetName(Schema.MANIFEST_SET);
+    return stream(query).map(keyRecord -> manifest(keyRecord.record)).toList();
+  }
+
+  @Override
+  public Single<Roaring64NavigableMap> load(CohortManifest manifest) {
+    return Observable.range(0, manifest.getChunks())
+        .concatMapSingle(
+            index ->
+                find(defaultReadPolicy, chunkKey(manifest, index))
+                    .switchIfEmpty(
+                        Single.error(
+                            () ->
+                                new IllegalStateException(
+                                    "Missing chunk " + index + " of " + describe(manifest))))
+                    .map(record -> chunkData(manifest, index, record)))
+        .collect(ByteArrayOutputStream::new, (out, chunk) -> out.write(chunk, 0, chunk.length))
+        .map(out -> deserialize(out.toByteArray()));
+  }
+
+  /**
+   * Deletes the upload's chunks when its manifest surely was not written. A manifest write that
+   * is in doubt may have landed and point at them, so its chunks are left in place instead.
+   */
+  private <T> Single<T> manifestFailed(CohortManifest manifest, Throwable error) {
+    if (error instanceof AerospikeException && !((AerospikeException) error).getInDoubt()) {
+      return deleteChunks(manifest).andThen(Single.error(error));
+    }
+    log.warn("Manifest write of {} is in doubt; keeping its chunks", describe(manifest), error);
+    return Single.error(error);
+  }
+
+  private WritePolicy manifestWritePolicy(Record previous) {
+    WritePolicy policy = new WritePolicy(manifestWritePolicy);
+    if (previous == null) {
+      policy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+    } else {
+      policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+      policy.generation = previous.generation;
+    }
+    return policy;
+  }
+
+  private Key manifestKey(String tenantId, String cohort) {
+    return new Key(namespace, Schema.MANIFEST_SET, tenantId + ":" + cohort);
+  }
+
+  /** Every upload has its own chunks, so an upload never overwrites chunks another one wrote. */
+  private Key chunkKey(CohortManifest manifest, int index) {
+    return new Key(
+        namespace,
+        Schema.CHUNK_SET,
+        manifest.getTenantId()
+            + ":"
+            + manifest.getCohort()
+            + ":"
+            + manifest.getUploadId()
+            + ":"
+            + index);
+  }
+
+  /**
+   * Deletes the chunks of an upload that is no longer, or never became, the live one. Failures are
+   * ignored, since leftover chunks are never read. A reader still loading a superseded upload
+   * fails and picks up the new manifest on its next refresh.
+   */
+  private Completable deleteChunks(CohortManifest manifest) {
+    List<Key> keys = new ArrayList<>(manifest.getChunks());
+    for (int index = 0; index < manifest.getChunks(); index++) {
+      keys.add(chunkKey(manifest, index));
+    }
+    return deleteMany(chunkDeletePolicy, keys).ignoreElement().onErrorComplete();
+  }
+
+  private static Bin[] manifestBins(CohortManifest manifest) {
+    return new Bin[] {
+      new Bin(Schema.TENANT_BIN, manifest.getTenantId()),
+      new Bin(Schema.COHORT_BIN, manifest.getCohort()),
+      new Bin(Schema.VERSION_BIN, manifest.getVersion()),
+      new Bin(Schema.UPLOAD_BIN, manifest.getUploadId()),
+      new Bin(Schema.CHUNKS_BIN, manifest.getChunks()),
+      new Bin(Schema.USERS_BIN, manifest.getUsers()),
+      new Bin(Schema.UPDATED_AT_BIN, manifest.getUpdatedAt())
+    };
+  }
+
+  private static CohortManifest manifest(Record record) {
+    return new CohortManifest(
+        record.getString(Schema.TENANT_BIN),
+        record.getString(Schema.COHORT_BIN),
+        record.getLong(Schema.VERSION_BIN),
+        record.getString(Schema.UPLOAD_BIN),
+        record.getInt(Schema.CHUNKS_BIN),
+        record.getLong(Schema.USERS_BIN),
+        record.getLong(Schema.UPDATED_AT_BIN));
+  }
+
+  private static byte[] chunkData(CohortManifest manifest, int index, Record record) {
+    if (!manifest.getUploadId().equals(record.getString(Schema.UPLOAD_BIN))) {
+      throw new IllegalStateException(
+          "Chunk " + index + " of " + describe(manifest) + " was overwritten by another upload");
+    }
+    return (byte[]) record.getValue(Schema.DATA_BIN);
+  }
+
+  private static String describe(CohortManifest manifest) {
+    return "cohort "
+        + manifest.getCohort()
+        + " of tenant "
+        + manifest.getTenantId()
+        + " version "
+        + manifest.getVersion();
+  }
+
+  static byte[] serialize(Roaring64NavigableMap users) {
+    users.runOptimize();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataOutputStream data = new DataOutputStream(out)) {
+      users.serialize(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  static Roaring64NavigableMap deserialize(byte[] bytes) {
+    Roaring64NavigableMap users = new Roaring64NavigableMap();
+    try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      users.deserialize(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return users;
+  }
+
+  static List<byte[]> split(byte[] bytes) {
+    List<byte[]> chunks = new ArrayList<>();
+    for (int from = 0; from < bytes.length; from += Schema.CHUNK_BYTES) {
+      int to = Math.min(bytes.length, from + Schema.CHUNK_BYTES);
+      chunks.add(Arrays.copyOfRange(bytes, from, to));
+    }
+    return chunks;
+  }
+}
@@ -0,0 +1,18 @@
+package com.raven.thunder.core.dao.cohort;
+
+interface Schema {
+  String MANIFEST_SET = "cohort_manifest";
+  String CHUNK_SET = "cohort_chunk";
+
+  String TENANT_BIN = "tenantId";
+  String COHORT_BIN = "cohort";
+  String VERSION_BIN = "version";
+  String UPLOAD_BIN = "upload_id";
+  String CHUNKS_BIN = "chunks";
+  String USERS_BIN = "users";
+  String UPDATED_AT_BIN = "updated_at";
+  String DATA_BIN = "data";
+
+  /** Serialized bitmap bytes per chunk record, well below the default 1 MiB write block. */
+  int CHUNK_BYTES = 512 * 1024;
+}
@@ -0,0 +1,77 @@
+package com.raven.thunder.core.dao.cta;
+
+import com.aerospike.client.cdt.ListReturnType;
+import com.aerospike.client.exp.Exp;
+import com.aerospike.client.exp.Expression;
+import com.aerospike.client.exp.ListExp;
+import com.aerospike.client.query.RegexFlag;
+import com.raven.thunder.core.model.CTAListFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Compiles an admin CTA listing filter into an Aerospike filter expression. */
+final class CTAListFilterExp {
+
+  private CTAListFilterExp() {}
+
+  /**
+   * Returns the expression matching the filter, or null when it matches every CTA. The status is
+   * left to the query's index.
+   */
+  static Expression build(CTAListFilter filter) {
+    List<Exp> predicates = new ArrayList<>();
+    if (filter.getName() != null) {
+      predicates.add(Exp.eq(Exp.stringBin(Schema.NAME_BIN), Exp.val(filter.getName())));
+    }
+    if (filter.getSearchName() != null && !filter.getSearchName().isEmpty()) {
+      predicates.add(
+          Exp.regexCompare(
+              escape(filter.getSearchName()), RegexFlag.NONE, Exp.stringBin(Schema.NAME_BIN)));
+    }
+    if (filter.getCreatedBy() != null) {
+      predicates.add(
+          Exp.eq(Exp.stringBin(Schema.CREATED_BY_BIN), Exp.val(filter.getCreatedBy())));
+    }
+    if (filter.getTeams() != null && !filter.getTeams().isEmpty()) {
+      List<Exp> teams = new ArrayList<>();
+      for (String team : filter.getTeams()) {
+        teams.add(Exp.eq(Exp.stringBin(Schema.TEAM_BIN), Exp.val(team)));
+      }
+      predicates.add(any(teams));
+    }
+    if (filter.getTags() != null && !filter.getTags().isEmpty()) {
+      predicates.add(containsAny(Schema.TAGS_BIN, filter.getTags()));
+    }
+    if (filter.getBehaviourTag() != null) {
+      predicates.add(containsAny(Schema.BEHAVIOUR_TAG_BIN, List.of(filter.getBehaviourTag())));
+    }
+    if (predicates.isEmpty()) {
+      return null;
+    }
+    return Exp.build(
+        predicates.size() == 1 ? predicates.get(0) : Exp.and(predicates.toArray(new Exp[0])));
+  }
+
+  /** True if the list bin holds any of the values. */
+  private static Exp containsAny(String bin, List<String> values) {
+    return Exp.gt(
+        ListExp.getByValueList(ListReturnType.COUNT, Exp.val(values), Exp.listBin(bin)),
+        Exp.val(0));
+  }
+
+  private static Exp any(List<Exp> predicates) {
+    return predicates.size() == 1 ? predicates.get(0) : Exp.or(predicates.toArray(new Exp[0]));
+  }
+
+  /** Escapes POSIX extended regex metacharacters, so the text matches as a plain substring. */
+  static String escape(String text) {
+    StringBuilder regex = new StringBuilder(text.length() + 8);
+    for (char c : text.toCharArray()) {
+      if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+        regex.append('\\');
+      }
+      regex.append(c);
+    }
+    return regex.toString();
+  }
+}
@@ -1,40 +1,59 @@
 package com.raven.thunder.core.dao.cta;
 
+import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
 import com.aerospike.client.Value;
 import com.aerospike.client.cdt.ListOperation;
 import com.aerospike.client.cdt.ListOrder;
 import com.aerospike.client.cdt.ListPolicy;
 import com.aerospike.client.cdt.ListWriteFlags;
+import com.aerospike.client.policy.BatchWritePolicy;
 import com.aerospike.client.policy.GenerationPolicy;
 import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.QueryPolicy;
 import com.aerospike.client.policy.RecordExistsAction;
 import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.client.query.Filter;
+import com.aerospike.client.query.KeyRecord;
 import com.aerospike.client.query.Statement;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.inject.Inject;
 import com.raven.thunder.core.client.AerospikeClient;
 import com.raven.thunder.core.config.AerospikeConfig;
 import com.raven.thunder.core.dao.AerospikeRepository;
+import com.raven.thunder.core.dao.BatchResult;
 import com.raven.thunder.core.dao.CTARepository;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import com.raven.thunder.core.dao.PartitionRanges;
 import com.raven.thunder.core.io.response.FilterResponse;
 import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CTAListFilter;
 import com.raven.thunder.core.model.CTAStatus;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import lombok.SneakyThrows;
 
 public class CTARepositoryImpl extends AerospikeRepository implements CTARepository {
 
+  private static final int BACKFILL_CONCURRENCY = 16;
+
   private final String namespace;
+  private final CatalogVersionRepository catalogVersionRepository;
 
   String CTA_COUNTER = "cta_counter";
   String META_RECORD = "meta_record";
@@ -48,13 +67,19 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
   private final WritePolicy createWritePolicy = new WritePolicy();
   private final WritePolicy updateWritePolicy = new WritePolicy();
   private final WritePolicy updateOnlyPolicy = new WritePolicy();
+  private final BatchWritePolicy batchUpdateWritePolicy = new BatchWritePolicy();
+  private final WritePolicy backfillWritePolicy = new WritePolicy();
   private final Policy defaultReadPolicy = new Policy();
 
   @Inject
-  public CTARepositoryImpl(AerospikeConfig config, AerospikeClient client) {
+  public CTARepositoryImpl(
+      AerospikeConfig config,
+      AerospikeClient client,
+      CatalogVersionRepository catalogVersionRepository) {
     super(config, client);
 
     this.namespace = config.getAdminDataNamespace();
+    this.catalogVersionRepository = catalogVersionRepository;
 
     setDefaultWritePolicyParams(createWritePolicy, config);
     createWritePolicy.sendKey = true;
@@ -68,6 +93,15 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
     updateOnlyPolicy.sendKey = true;
     updateOnlyPolicy.recordExistsAction = RecordExistsAction.UPDATE_ONLY;
 
+    setDefaultBatchWritePolicyParams(batchUpdateWritePolicy);
+    batchUpdateWritePolicy.sendKey = true;
+    batchUpdateWritePolicy.recordExistsAction = RecordExistsAction.UPDATE;
+
+    setDefaultWritePolicyParams(backfillWritePolicy, config);
+    backfillWritePolicy.sendKey = true;
+    backfillWritePolicy.recordExistsAction = RecordExistsAction.UPDATE_ONLY;
+    backfillWritePolicy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+
     setDefaultReadPolicyParams(defaultReadPolicy, config);
     defaultReadPolicy.sendKey = true;
   }
@@ -79,7 +113,8 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
             createWritePolicy,
             new Key(namespace, Schema.SET, cta.getId()),
             createCTAHelper.apply(tenantId, cta))
-        .ignoreElement();
+        .ignoreElement()
+        .andThen(catalogVersionRepository.bump(tenantId));
   }
 
   @Override
@@ -123,6 +158,46 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
         .filter(cta -> tenantId.equals(cta.getTenantId()));
   }
 
+  @Override
+  public Single<Map<Long, CTA>> findMany(String tenantId, List<Long> ids) {
+    List<Key> keys = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      keys.add(new Key(namespace, Schema.SET, id));
+    }
+    return findMany(
+            keys,
+            ctaRecordMapper,
+            Schema.RULE_BIN,
+            Schema.ID_BIN,
+            Schema.STATUS_BIN,
+            Schema.NAME_BIN,
+            Schema.DESCRIPTION_BIN,
+            Schema.TAGS_BIN,
+            Schema.TEAM_BIN,
+            Schema.BEHAVIOUR_TAG_BIN,
+            Schema.START_TIME_BIN,
+            Schema.END_TIME_BIN,
+            Schema.CREATED_AT_BIN,
+            Schema.CREATED_BY_BIN,
+            Schema.LAST_UPDATED_AT_BIN,
+            Schema.LAST_UPDATED_BY_BIN,
+            Schema.TENANT_BIN)
+        .flatMap(
+            results ->
+                requireSuccess(results, true)
+                    .toSingle(
+                        () -> {
+                          Map<Long, CTA> ctas = new HashMap<>();
+                          for (BatchResult<CTA> result : results) {
+                            CTA cta = result.getValue();
+                            if (cta != null && tenantId.equals(cta.getTenantId())) {
+                              ctas.put(cta.getId(), cta);
+                            }
+                          }
+                          return ctas;
+                        }));
+  }
+
   @Override
   public Maybe<CTADetails> findWithGeneration(String tenantId, Long id) {
     return find(
@@ -152,7 +227,7 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
     Statement query = new Statement();
     query.setNamespace(namespace);
     query.setSetName(Schema.SET);
-    query.setIndexName(Schema.STATUS_BIN);
+    query.setIndexName(Schema.TENANT_BIN);
     query.setFilter(Filter.equal(Schema.TENANT_BIN, tenantId));
     query.setBinNames(
         Schema.STATUS_BIN,
@@ -170,7 +245,78 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
         Schema.LAST_UPDATED_AT_BIN,
         Schema.LAST_UPDATED_BY_BIN,
         Schema.TENANT_BIN);
-    return findAll(query, keyRecord -> ctaRecordMapper.apply(keyRecord.record));
+    return findAllById(query);
+  }
+
+  @Override
+  public Single<List<CTA>> findAllForList(String tenantId, CTAListFilter filter) {
+    Statement query = new Statement();
+    query.setNamespace(namespace);
+    query.setSetName(Schema.SET);
+    if (filter.getStatus() != null) {
+      query.setIndexName(Schema.TENANT_STATUS_BIN);
+      query.setFilter(
+          Filter.equal(
+              Schema.TENANT_STATUS_BIN, TenantStatusBin.value(tenantId, filter.getStatus())));
+    } else {
+      query.setIndexName(Schema.TENANT_BIN);
+      query.setFilter(Filter.equal(Schema.TENANT_BIN, tenantId));
+    }
+    query.setBinNames(
+        Schema.STATUS_BIN,
+        Schema.ID_BIN,
+        Schema.NAME_BIN,
+        Schema.DESCRIPTION_BIN,
+        Schema.TAGS_BIN,
+        Schema.TEAM_BIN,
+        Schema.BEHAVIOUR_TAG_BIN,
+        Schema.START_TIME_BIN,
+        Schema.END_TIME_BIN,
+        Schema.CREATED_AT_BIN,
+        Schema.CREATED_BY_BIN,
+        Schema.LAST_UPDATED_AT_BIN,
+        Schema.LAST_UPDATED_BY_BIN,
+        Schema.TENANT_BIN);
+    QueryPolicy listPolicy = new QueryPolicy(defaultQueryPolicy);
+    listPolicy.filterExp = CTAListFilterExp.build(filter);
+    int parallelism = config.getQueryParallelismOrDefault();
+    return streamParallel(listPolicy, query, PartitionRanges.split(parallelism), parallelism)
+        .map(keyRecord -> ctaRecordMapper.apply(keyRecord.record))
+        .toSortedList(
+            Comparator.comparing(CTA::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+  }
+
+  @Override
+  public Single<Map<CTAStatus, Integer>> countByStatus(String tenantId, CTAListFilter filter) {
+    Statement query = new Statement();
+    query.setNamespace(namespace);
+    query.setSetName(Schema.SET);
+    query.setIndexName(Schema.TENANT_BIN);
+    query.setFilter(Filter.equal(Schema.TENANT_BIN, tenantId));
+    query.setBinNames(Schema.STATUS_BIN);
+    QueryPolicy countPolicy = new QueryPolicy(defaultQueryPolicy);
+    countPolicy.filterExp = CTAListFilterExp.build(filter);
+    int parallelism = config.getQueryParallelismOrDefault();
+    return streamParallel(countPolicy, query, PartitionRanges.split(parallelism), parallelism)
+        .<Map<CTAStatus, Integer>>collect(
+            () -> new EnumMap<>(CTAStatus.class),
+            (counts, keyRecord) -> {
+              String status = keyRecord.record.getString(Schema.STATUS_BIN);
+              if (status != null) {
+                counts.merge(CTAStatus.valueOf(status), 1, Integer::sum);
+              }
+            });
+  }
+
+  /** Streams the CTAs of a query over parallel partition ranges into a map keyed by id. */
+  private Single<Map<Long, CTA>> findAllById(Statement query) {
+    return streamParallel(query)
+        .collect(
+            HashMap::new,
+            (ctas, keyRecord) ->
+                ctas.put(
+                    Long.parseLong(keyRecord.key.userKey.toString()),
+                    ctaRecordMapper.apply(keyRecord.record)));
   }
 
   @Override
@@ -181,16 +327,7 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
     query.setNamespace(this.namespace);
     query.setFilter(Filter.equal(Schema.STATUS_BIN, CTAStatus.LIVE.name()));
     query.setBinNames(Schema.RULE_BIN, Schema.ID_BIN, Schema.BEHAVIOUR_TAG_BIN, Schema.TENANT_BIN);
-    return findAll(query, keyRecord -> ctaRecordMapper.apply(keyRecord.record))
-        .map(
-            it -> {
-              HashMap<Long, CTA> map = new HashMap<>();
-              it.forEach(
-                  (k, v) -> {
-                    map.put(Long.parseLong(k.toString()), v);
-                  });
-              return map;
-            });
+    return findAllById(query);
   }
 
   @Override
@@ -201,16 +338,24 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
     query.setNamespace(this.namespace);
     query.setFilter(Filter.equal(Schema.STATUS_BIN, CTAStatus.PAUSED.name()));
     query.setBinNames(Schema.RULE_BIN, Schema.BEHAVIOUR_TAG_BIN, Schema.TENANT_BIN);
-    return findAll(query, keyRecord -> ctaRecordMapper.apply(keyRecord.record))
-        .map(
-            it -> {
-              HashMap<Long, CTA> map = new HashMap<>();
-              it.forEach(
-                  (k, v) -> {
-                    map.put(Long.parseLong(k.toString()), v);
-                  });
-              return map;
-            });
+    return findAllById(query);
+  }
+
+  @Override
+  public Single<Map<Long, CTA>> findAllUpdatedSince(long lastUpdatedAt) {
+    Statement query = new Statement();
+    query.setSetName(Schema.SET);
+    query.setIndexName(Schema.LAST_UPDATED_AT_BIN);
+    query.setNamespace(this.namespace);
+    query.setFilter(Filter.range(Schema.LAST_UPDATED_AT_BIN, lastUpdatedAt, Long.MAX_VALUE));
+    query.setBinNames(
+        Schema.RULE_BIN,
+        Schema.ID_BIN,
+        Schema.STATUS_BIN,
+        Schema.BEHAVIOUR_TAG_BIN,
+        Schema.LAST_UPDATED_AT_BIN,
+        Schema.TENANT_BIN);
+    return findAllById(query);
   }
 
   @Override
@@ -261,8 +406,7 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
 
   @Override
   public Completable update(Long id, CTAStatus status) {
-    Bin statusBin = new Bin(Schema.STATUS_BIN, new Value.StringValue(status.name()));
-    return upsert(updateOnlyPolicy, new Key(namespace, Schema.SET, id), statusBin).ignoreElement();
+    return writeStatusAndBumpVersion(updateOnlyPolicy, id, status, lastUpdatedAtBin());
   }
 
   @Override
@@ -273,16 +417,46 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
     updateWithGenerationWritePolicy.recordExistsAction = RecordExistsAction.UPDATE_ONLY;
     updateWithGenerationWritePolicy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
     updateWithGenerationWritePolicy.generation = generation;
-    Bin statusBin = new Bin(Schema.STATUS_BIN, new Value.StringValue(status.name()));
-    return upsert(updateWithGenerationWritePolicy, new Key(namespace, Schema.SET, id), statusBin)
-        .ignoreElement();
+    return writeStatusAndBumpVersion(
+        updateWithGenerationWritePolicy, id, status, lastUpdatedAtBin());
   }
 
   @Override
   public Completable update(Long id, List<String> behaviourTag) {
     Bin behaviourTagBin = new Bin(Schema.BEHAVIOUR_TAG_BIN, new Value.ListValue(behaviourTag));
-    return upsert(updateWritePolicy, new Key(namespace, Schema.SET, id), behaviourTagBin)
-        .ignoreElement();
+    return writeAndBumpVersion(updateWritePolicy, id, behaviourTagBin, lastUpdatedAtBin());
+  }
+
+  @Override
+  public Completable update(List<Long> ids, List<String> behaviourTag) {
+    List<Key> keys = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      keys.add(new Key(namespace, Schema.SET, id));
+    }
+    return operateMany(
+            batchUpdateWritePolicy,
+            keys,
+            Operation.put(new Bin(Schema.BEHAVIOUR_TAG_BIN, new Value.ListValue(behaviourTag))),
+            Operation.put(lastUpdatedAtBin()),
+            Operation.get(Schema.TENANT_BIN))
+        .flatMapCompletable(
+            results -> {
+              // Bump each tenant once, and only for the CTAs that were written
+              Set<String> tenantIds = new HashSet<>();
+              for (BatchResult<Record> result : results) {
+                if (result.isSuccess() && result.getValue() != null) {
+                  String tenantId = result.getValue().getString(Schema.TENANT_BIN);
+                  if (tenantId != null) {
+                    tenantIds.add(tenantId);
+                  }
+                }
+              }
+              List<Completable> bumps = new ArrayList<>();
+              for (String tenantId : tenantIds) {
+                bumps.add(catalogVersionRepository.bump(tenantId));
+              }
+              return Completable.merge(bumps).andThen(requireSuccess(results));
+            });
   }
 
   @Override
@@ -295,11 +469,8 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
     updateWithGenerationWritePolicy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
     updateWithGenerationWritePolicy.generation = generation;
 
-    return upsert(
-            updateWithGenerationWritePolicy,
-            new Key(namespace, Schema.SET, cta.getId()),
-            updateCTAHelper.apply(cta))
-        .ignoreElement();
+    return writeAndBumpVersion(
+        updateWithGenerationWritePolicy, cta.getId(), updateCTAHelper.apply(cta));
   }
 
   @Override
@@ -308,24 +479,104 @@ public class CTARepositoryImpl extends AerospikeRepository implements CTAReposit
   }
 
   private Completable updateStatus(Long id, CTAStatus status, Long startTime, Long endTime) {
-    Bin statusBin = new Bin(Schema.STATUS_BIN, new Value.StringValue(status.name()));
     Bin startTimeBin = new Bin(Schema.START_TIME_BIN, new Value.LongValue(startTime));
     Bin endTimeBin = new Bin(Schema.END_TIME_BIN, new Value.LongValue(endTime));
-    return upsert(
-            updateOnlyPolicy,
-            new Key(namespace, Schema.SET, id),
-            statusBin,
-            startTimeBin,
-            endTimeBin)
-        .ignoreElement();
+    return writeStatusAndBumpVersion(
+        updateOnlyPolicy, id, status, startTimeBin, endTimeBin, lastUpdatedAtBin());
   }
 
   @Override
   public Completable terminateOrConclude(Long id, CTAStatus status, Long endTime) {
-    Bin statusBin = new Bin(Schema.STATUS_BIN, new Value.StringValue(status.name()));
     Bin endTimeBin = new Bin(Schema.END_TIME_BIN, new Value.LongValue(endTime));
-    return upsert(updateOnlyPolicy, new Key(namespace, Schema.SET, id), statusBin, endTimeBin)
-        .ignoreElement();
+    return writeStatusAndBumpVersion(updateOnlyPolicy, id, status, endTimeBin, lastUpdatedAtBin());
+  }
+
+  /**
+   * Writes a status together with its tenant_status bin, plus any other bins, in one operate call.
+   * The tenant id never changes after creation, so it is safe to read it ahead of the write.
+   */
+  private Completable writeStatusAndBumpVersion(
+      WritePolicy writePolicy, Long id, CTAStatus status, Bin... bins) {
+    return find(defaultReadPolicy, new Key(namespace, Schema.SET, id), Schema.TENANT_BIN)
+        .map(record -> Optional.ofNullable(record.getString(Schema.TENANT_BIN)))
+        .defaultIfEmpty(Optional.empty())
+        .flatMapCompletable(
+            tenantId -> {
+              List<Bin> statusBins = new ArrayList<>(bins.length + 2);
+              statusBins.add(new Bin(Schema.STATUS_BIN, new Value.StringValue(status.name())));
+              tenantId.ifPresent(tenant -> statusBins.add(TenantStatusBin.of(tenant, status)));
+              statusBins.addAll(Arrays.asList(bins));
+              return writeAndBumpVersion(writePolicy, id, statusBins.toArray(new Bin[0]));
+            });
+  }
+
+  /**
+   * Writes bins to a CTA record and bumps the catalog version of the owning tenant. The tenant id
+   * is read back in the same operate call since most update paths only carry the CTA id.
+   */
+  private Completable writeAndBumpVersion(WritePolicy writePolicy, Long id, Bin... bins) {
+    Operation[] operations = new Operation[bins.length + 1];
+    for (int i = 0; i < bins.length; i++) {
+      operations[i] = Operation.put(bins[i]);
+    }
+    operations[bins.length] = Operation.get(Schema.TENANT_BIN);
+    return operate(writePolicy, new Key(namespace, Schema.SET, id), operations)
+        .flatMapCompletable(
+            record -> {
+              String tenantId = record.getString(Schema.TENANT_BIN);
+              return tenantId != null
+                  ? catalogVersionRepository.bump(tenantId)
+                  : Completable.complete();
+            });
+  }
+
+  @Override
+  public Single<Long> backfillTenantStatus() {
+    Statement query = new Statement();
+    query.setNamespace(namespace);
+    query.setSetName(Schema.SET);
+    query.setBinNames(Schema.TENANT_BIN, Schema.STATUS_BIN, Schema.TENANT_STATUS_BIN);
+    return streamParallel(query)
+        .filter(keyRecord -> tenantStatus(keyRecord.record) != null)
+        .flatMapSingle(this::backfillTenantStatus, false, BACKFILL_CONCURRENCY)
+        .filter(written -> written)
+        .count();
+  }
+
+  /**
+   * Writes only the derived bin, at the generation that was read, so a CTA updated meanwhile is
+   * skipped; that update wrote the bin itself. No catalog version bump, as readers see no change.
+   */
+  private Single<Boolean> backfillTenantStatus(KeyRecord keyRecord) {
+    WritePolicy writePolicy = new WritePolicy(backfillWritePolicy);
+    writePolicy.generation = keyRecord.record.generation;
+    Bin tenantStatusBin =
+        new Bin(Schema.TENANT_STATUS_BIN, new Value.StringValue(tenantStatus(keyRecord.record)));
+    return upsert(writePolicy, keyRecord.key, tenantStatusBin)
+        .map(key -> true)
+        .onErrorResumeNext(e -> isConflict(e) ? Single.just(false) : Single.error(e));
+  }
+
+  /** Returns the tenant_status value a record is missing, or null if it is up to date. */
+  private static String tenantStatus(Record record) {
+    String tenantId = record.getString(Schema.TENANT_BIN);
+    String status = record.getString(Schema.STATUS_BIN);
+    if (tenantId == null || status == null) {
+      return null;
+    }
+    String value = TenantStatusBin.value(tenantId, status);
+    return value.equals(record.getString(Schema.TENANT_STATUS_BIN)) ? null : value;
+  }
+
+  private static boolean isConflict(Throwable e) {
+    return e instanceof AerospikeException
+        && (((AerospikeException) e).getResultCode() == ResultCode.GENERATION_ERROR
+            || ((AerospikeException) e).getResultCode() == ResultCode.KEY_NOT_FOUND_ERROR);
+  }
+
+  /** Stamps status-only writes so incremental catalog refreshes can pick them up. */
+  private Bin lastUpdatedAtBin() {
+    return new Bin(Schema.LAST_UPDATED_AT_BIN, new Value.LongValue(System.currentTimeMillis()));
   }
 
   @Override
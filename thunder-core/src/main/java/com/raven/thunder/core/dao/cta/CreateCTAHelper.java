@@ -34,6 +34,7 @@ public class CreateCTAHelper {
     binList.add(new Bin(Schema.LAST_UPDATED_AT_BIN, new Value.LongValue(cta.getLastUpdatedAt())));
     binList.add(new Bin(Schema.LAST_UPDATED_BY_BIN, new Value.StringValue(cta.getLastUpdatedBy())));
     binList.add(new Bin(Schema.TENANT_BIN, new Value.StringValue(tenantId))); // tenantID
+    binList.add(TenantStatusBin.of(tenantId, cta.getCtaStatus()));
     return binList.toArray(new Bin[0]);
   }
 }
@@ -19,6 +19,7 @@ public interface Schema {
 
   String COUNTER_BIN = "counter_time";
   String TENANT_BIN = "tenantId";
+  String TENANT_STATUS_BIN = "tenant_status";
 
   /** ** Meta info */
   String META_SET = "meta_set";
@@ -0,0 +1,26 @@
+package com.raven.thunder.core.dao.cta;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Value;
+import com.raven.thunder.core.model.CTAStatus;
+
+/**
+ * Derived bin holding a CTA's tenant and status together, so a single secondary index answers
+ * "tenant X, status Y" without touching other tenants' CTAs or other statuses.
+ */
+final class TenantStatusBin {
+
+  private TenantStatusBin() {}
+
+  static String value(String tenantId, String status) {
+    return tenantId + ":" + status;
+  }
+
+  static String value(String tenantId, CTAStatus status) {
+    return value(tenantId, status.name());
+  }
+
+  static Bin of(String tenantId, CTAStatus status) {
+    return new Bin(Schema.TENANT_STATUS_BIN, new Value.StringValue(value(tenantId, status)));
+  }
+}
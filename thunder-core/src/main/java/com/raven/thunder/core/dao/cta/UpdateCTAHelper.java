@@ -20,6 +20,9 @@ public class UpdateCTAHelper implements Function<CTA, Bin[]> {
             Schema.RULE_BIN, new Value.StringValue(ParseUtil.writeValueAsString(cta.getRule()))));
     binList.add(new Bin(Schema.ID_BIN, new Value.LongValue(cta.getId())));
     binList.add(new Bin(Schema.STATUS_BIN, new Value.StringValue(cta.getCtaStatus().name())));
+    if (cta.getTenantId() != null) {
+      binList.add(TenantStatusBin.of(cta.getTenantId(), cta.getCtaStatus()));
+    }
     binList.add(new Bin(Schema.NAME_BIN, new Value.StringValue(cta.getName())));
     binList.add(new Bin(Schema.DESCRIPTION_BIN, new Value.StringValue(cta.getDescription())));
     binList.add(new Bin(Schema.TAGS_BIN, new Value.ListValue(cta.getTags())));
@@ -3,6 +3,7 @@ package com.raven.thunder.core.dao.event;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
 import com.aerospike.client.Value;
+import com.aerospike.client.policy.BatchWritePolicy;
 import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.client.query.Filter;
 import com.aerospike.client.query.Statement;
@@ -17,9 +18,10 @@ import com.raven.thunder.core.util.ParseUtil;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,6 +31,7 @@ public class EventRepositoryImpl extends AerospikeRepository implements EventRep
   private final String namespace;
   private final WritePolicy writePolicy = new WritePolicy();
   private final WritePolicy deletePolicy = new WritePolicy();
+  private final BatchWritePolicy batchWritePolicy = new BatchWritePolicy();
   private final EventRecordMapper eventRecordMapper = new EventRecordMapper();
 
   @Inject
@@ -40,6 +43,9 @@ public class EventRepositoryImpl extends AerospikeRepository implements EventRep
     writePolicy.sendKey = true;
 
     setDefaultWritePolicyParams(deletePolicy, config);
+
+    setDefaultBatchWritePolicyParams(batchWritePolicy);
+    batchWritePolicy.sendKey = true;
   }
 
   @Override
@@ -47,14 +53,35 @@ public class EventRepositoryImpl extends AerospikeRepository implements EventRep
   public Completable upsert(String tenantId, String eventName, EventData eventData) {
     String primaryKey = tenantId + ":" + eventName;
     Key key = new Key(namespace, Schema.SET, primaryKey);
+    return upsert(writePolicy, key, bins(tenantId, eventName, eventData)).ignoreElement();
+  }
 
-    Bin tenantBin = new Bin(Schema.TENANT_BIN, tenantId);
-    Bin eventNameBin = new Bin(Schema.EVENT_NAME_BIN, eventName);
-    Bin eventDataBin =
-        new Bin(
-            Schema.EVENT_DATA_BIN, new Value.StringValue(ParseUtil.writeValueAsString(eventData)));
+  @Override
+  @SneakyThrows(JsonProcessingException.class)
+  public Completable upsertAll(String tenantId, List<EventData> events) {
+    Map<Key, Bin[]> records = new LinkedHashMap<>();
+    for (EventData eventData : events) {
+      String primaryKey = tenantId + ":" + eventData.getEventName();
+      records.put(
+          new Key(namespace, Schema.SET, primaryKey),
+          bins(tenantId, eventData.getEventName(), eventData));
+    }
+    return upsertMany(batchWritePolicy, records)
+        .flatMapCompletable(results -> requireSuccess(results))
+        .doOnError(
+            error ->
+                log.error(
+                    "Error upserting {} events for tenant: {}", events.size(), tenantId, error));
+  }
 
-    return upsert(writePolicy, key, tenantBin, eventNameBin, eventDataBin).ignoreElement();
+  private static Bin[] bins(String tenantId, String eventName, EventData eventData)
+      throws JsonProcessingException {
+    return new Bin[] {
+      new Bin(Schema.TENANT_BIN, tenantId),
+      new Bin(Schema.EVENT_NAME_BIN, eventName),
+      new Bin(
+          Schema.EVENT_DATA_BIN, new Value.StringValue(ParseUtil.writeValueAsString(eventData)))
+    };
   }
 
   @Override
@@ -67,21 +94,17 @@ public class EventRepositoryImpl extends AerospikeRepository implements EventRep
     query.setBinNames(Schema.EVENT_DATA_BIN, Schema.TENANT_BIN, Schema.EVENT_NAME_BIN);
 
     log.info("Fetching all events for tenant: {}", tenantId);
-    return findAll(query)
-        .map(
-            keyRecords ->
-                keyRecords.stream()
-                    .map(
-                        keyRecord -> {
-                          try {
-                            return eventRecordMapper.apply(keyRecord.record);
-                          } catch (Exception e) {
-                            log.error("Error mapping event record for tenant: {}", tenantId, e);
-                            return null;
-                          }
-                        })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList()))
+    return streamParallel(query)
+        .mapOptional(
+            keyRecord -> {
+              try {
+                return Optional.ofNullable(eventRecordMapper.apply(keyRecord.record));
+              } catch (Exception e) {
+                log.error("Error mapping event record for tenant: {}", tenantId, e);
+                return Optional.<EventData>empty();
+              }
+            })
+        .toList()
         .doOnSuccess(events -> log.info("Found {} events for tenant: {}", events.size(), tenantId))
         .doOnError(error -> log.error("Error fetching events for tenant: {}", tenantId, error));
   }
@@ -107,17 +130,12 @@ public class EventRepositoryImpl extends AerospikeRepository implements EventRep
     query.setBinNames(Schema.EVENT_NAME_BIN); // Only fetch event_name bin for efficiency
 
     log.info("Fetching all event names for tenant: {}", tenantId);
-    return findAll(query)
-        .map(
-            keyRecords ->
-                keyRecords.stream()
-                    .map(
-                        keyRecord -> {
-                          Object eventName = keyRecord.record.bins.get(Schema.EVENT_NAME_BIN);
-                          return eventName != null ? eventName.toString() : null;
-                        })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList()))
+    return stream(query)
+        .mapOptional(
+            keyRecord ->
+                Optional.ofNullable(keyRecord.record.bins.get(Schema.EVENT_NAME_BIN))
+                    .map(Object::toString))
+        .toList()
         .doOnSuccess(
             eventNames ->
                 log.info("Found {} event names for tenant: {}", eventNames.size(), tenantId))
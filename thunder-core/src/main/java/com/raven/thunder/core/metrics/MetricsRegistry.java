@@ -0,0 +1,48 @@
+package com.raven.thunder.core.metrics;
+
+import com.google.inject.Singleton;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Minimal in-process metrics registry holding named counters and gauges. Values are read through
+ * {@link #snapshot()} and exposed by the service's metrics endpoint.
+ */
+@Singleton
+public class MetricsRegistry {
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+  /** Increments a counter by one. */
+  public void increment(String name) {
+    increment(name, 1L);
+  }
+
+  /** Increments a counter by the given delta. */
+  public void increment(String name, long delta) {
+    counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+  }
+
+  /** Returns the current value of a counter, 0 when it was never incremented. */
+  public long count(String name) {
+    LongAdder counter = counters.get(name);
+    return counter != null ? counter.sum() : 0L;
+  }
+
+  /** Registers (or replaces) a gauge evaluated lazily on every snapshot. */
+  public void gauge(String name, Supplier<? extends Number> supplier) {
+    gauges.put(name, supplier);
+  }
+
+  /** Returns all counters and gauges keyed by name, sorted for stable output. */
+  public Map<String, Number> snapshot() {
+    Map<String, Number> values = new TreeMap<>();
+    counters.forEach((name, counter) -> values.put(name, counter.sum()));
+    gauges.forEach((name, supplier) -> values.put(name, supplier.get()));
+    return values;
+  }
+}
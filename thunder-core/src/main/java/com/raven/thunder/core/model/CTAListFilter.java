@@ -0,0 +1,32 @@
+package com.raven.thunder.core.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Criteria of an admin CTA listing; unset criteria match every CTA. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CTAListFilter {
+  /** Exact name. */
+  private String name;
+
+  /** Substring of the name. */
+  private String searchName;
+
+  private String createdBy;
+
+  /** CTAs of any of these teams. */
+  private List<String> teams;
+
+  /** CTAs carrying any of these tags. */
+  private List<String> tags;
+
+  /** CTAs linked to this behaviour tag. */
+  private String behaviourTag;
+
+  /** CTAs in this status, read off the tenant and status index rather than filtered. */
+  private CTAStatus status;
+}
@@ -10,28 +10,33 @@ import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
 @Schema(
     description =
-        "Cohort eligibility configuration for CTAs. "
-            + "IMPORTANT: User-cohorts system is not currently supported. "
-            + "Always use includes: [\"all\"] (single cohort) or includes: [\"all\"] (list), "
-            + "and keep excludes: [] empty.")
+        "Cohort eligibility configuration for CTAs. Every user is in the \"all\" cohort. "
+            + "Other cohorts are uploaded through the admin cohorts API and only take effect "
+            + "on API nodes with cohorts enabled.")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class CohortEligibility {
 
   @Schema(
-      description =
-          "List of cohort names to include. "
-              + "Must be [\"all\"] since user-cohorts system is not currently supported.",
+      description = "List of cohort names to include; a user in any of them is eligible.",
       required = true)
   @NotEmpty
   private List<String> includes;
 
   @Schema(
-      description =
-          "List of cohort names to exclude. "
-              + "Must always be empty [] since user-cohorts system is not currently supported.",
+      description = "List of cohort names to exclude; a user in any of them is not eligible.",
       required = true)
   @NotNull
   private List<String> excludes;
+
+  @Schema(
+      description =
+          "Optional percentage rollout, applied on top of includes and excludes: an included, "
+              + "not excluded user is only eligible when in the rollout.")
+  private Rollout rollout;
+
+  public CohortEligibility(List<String> includes, List<String> excludes) {
+    this(includes, excludes, null);
+  }
 }
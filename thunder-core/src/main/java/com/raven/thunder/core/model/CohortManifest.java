@@ -0,0 +1,28 @@
+package com.raven.thunder.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Describes the latest upload of a cohort's membership bitmap and where its chunks live. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CohortManifest {
+  private String tenantId;
+
+  private String cohort;
+
+  /** Incremented on every upload; readers reload the bitmap when it changes. */
+  private long version;
+
+  /** Identifies the upload that wrote the chunks, so chunks of a racing upload are detected. */
+  private String uploadId;
+
+  private int chunks;
+
+  /** Number of users in the cohort. */
+  private long users;
+
+  private long updatedAt;
+}
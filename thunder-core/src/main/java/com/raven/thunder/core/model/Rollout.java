@@ -0,0 +1,30 @@
+package com.raven.thunder.core.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@Schema(
+    description =
+        "Percentage rollout. Users are assigned to buckets by hashing their user ID with a salt, "
+            + "so the same users stay in the rollout as the percentage grows and no cohort has "
+            + "to be uploaded.")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Rollout {
+
+  @Schema(
+      description = "Share of users in the rollout, from 0 to 100 in steps of 0.01.",
+      required = true,
+      example = "15")
+  private Double percentage;
+
+  @Schema(
+      description =
+          "Salt mixed into the user hash. Defaults to the CTA ID; CTAs sharing a salt roll out "
+              + "to the same users.",
+      example = "checkout-redesign")
+  private String salt;
+}
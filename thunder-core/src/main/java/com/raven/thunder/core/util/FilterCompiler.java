@@ -0,0 +1,270 @@
+package com.raven.thunder.core.util;
+
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Compiles {@link StateTransitionCondition.Filters} into predicate trees with the semantics of
+ * {@link FilterEvaluator}. Operators, property types and comparison values are resolved once at
+ * compile time: numbers are parsed up front, {@code in} lists become hash sets and AND/OR groups
+ * short-circuit over arrays, so evaluating an event only reads its properties. Compile once per
+ * rule and reuse the predicate; it is immutable and thread-safe.
+ */
+public final class FilterCompiler {
+
+  private static final Predicate<Map<String, Object>> ALWAYS = properties -> true;
+  private static final Predicate<Map<String, Object>> NEVER = properties -> false;
+
+  private FilterCompiler() {
+    // Utility class - prevent instantiation
+  }
+
+  /** Compiles filters into a predicate over event properties; null filters always match. */
+  public static Predicate<Map<String, Object>> compile(StateTransitionCondition.Filters filters) {
+    if (filters == null) {
+      return ALWAYS;
+    }
+    return compileGroup(filters.getOperator(), filters.getFilter());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Predicate<Map<String, Object>> compileGroup(String operator, List<Object> filter) {
+    if (filter == null || filter.isEmpty()) {
+      return ALWAYS;
+    }
+    boolean and = operator == null || "AND".equalsIgnoreCase(operator);
+    if (!and && !"OR".equalsIgnoreCase(operator)) {
+      return NEVER;
+    }
+
+    Predicate<Map<String, Object>>[] parts = new Predicate[filter.size()];
+    for (int i = 0; i < parts.length; i++) {
+      parts[i] = compileEntry(filter.get(i));
+    }
+    if (parts.length == 1) {
+      return parts[0];
+    }
+    if (and) {
+      return properties -> {
+        for (Predicate<Map<String, Object>> part : parts) {
+          if (!part.test(properties)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+    return properties -> {
+      for (Predicate<Map<String, Object>> part : parts) {
+        if (part.test(properties)) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Predicate<Map<String, Object>> compileEntry(Object entry) {
+    if (entry instanceof String) {
+      return FilterEvaluator.ANY.equalsIgnoreCase((String) entry) ? ALWAYS : NEVER;
+    }
+    if (entry instanceof StateTransitionCondition.Filters) {
+      return compile((StateTransitionCondition.Filters) entry);
+    }
+    if (entry instanceof StateTransitionCondition.Filter) {
+      StateTransitionCondition.Filter filter = (StateTransitionCondition.Filter) entry;
+      return compileProperty(
+          filter.getPropertyName(),
+          filter.getPropertyType(),
+          filter.getComparisonType(),
+          filter.getComparisonValue());
+    }
+    if (entry instanceof StateTransitionCondition.FunctionFilter) {
+      StateTransitionCondition.FunctionFilter filter =
+          (StateTransitionCondition.FunctionFilter) entry;
+      return compileFunction(
+          filter.getFunProp1(),
+          filter.getFunProp2(),
+          filter.getFunctionOperator(),
+          filter.getComparisonType(),
+          filter.getComparisonValue());
+    }
+    if (!(entry instanceof Map)) {
+      return NEVER;
+    }
+
+    Map<String, Object> map = (Map<String, Object>) entry;
+    if (map.get("filter") instanceof List) {
+      return compileGroup(
+          FilterEvaluator.string(map, "operator"), (List<Object>) map.get("filter"));
+    }
+    if (map.containsKey("funProp1")) {
+      return compileFunction(
+          FilterEvaluator.string(map, "funProp1"),
+          FilterEvaluator.string(map, "funProp2"),
+          FilterEvaluator.string(map, "functionOperator"),
+          FilterEvaluator.string(map, "comparisonType"),
+          map.get("comparisonValue"));
+    }
+    return compileProperty(
+        FilterEvaluator.string(map, "propertyName"),
+        FilterEvaluator.string(map, "propertyType"),
+        FilterEvaluator.string(map, "comparisonType"),
+        map.get("comparisonValue"));
+  }
+
+  private static Predicate<Map<String, Object>> compileProperty(
+      String propertyName, String propertyType, String comparisonType, Object expected) {
+    if (propertyName == null || comparisonType == null) {
+      return NEVER;
+    }
+    Predicate<Object> comparison = compileComparison(propertyType, comparisonType, expected);
+    return properties -> {
+      Object actual = properties.get(propertyName);
+      return actual != null && comparison.test(actual);
+    };
+  }
+
+  private static Predicate<Map<String, Object>> compileFunction(
+      String funProp1,
+      String funProp2,
+      String functionOperator,
+      String comparisonType,
+      Object expected) {
+    DoubleBinaryOperator function = function(functionOperator);
+    if (funProp1 == null || funProp2 == null || function == null || comparisonType == null) {
+      return NEVER;
+    }
+    boolean division = "/".equals(functionOperator);
+    Predicate<Object> comparison = compileComparison("number", comparisonType, expected);
+    return properties -> {
+      Double left = FilterEvaluator.toNumber(properties.get(funProp1));
+      Double right = FilterEvaluator.toNumber(properties.get(funProp2));
+      if (left == null || right == null || (division && right == 0)) {
+        return false;
+      }
+      return comparison.test(function.applyAsDouble(left, right));
+    };
+  }
+
+  private static DoubleBinaryOperator function(String functionOperator) {
+    if (functionOperator == null) {
+      return null;
+    }
+    switch (functionOperator) {
+      case "+":
+        return Double::sum;
+      case "-":
+        return (left, right) -> left - right;
+      case "*":
+        return (left, right) -> left * right;
+      case "/":
+        return (left, right) -> left / right;
+      default:
+        return null;
+    }
+  }
+
+  /** Compiles a comparison of a non-null property value against the comparison value. */
+  private static Predicate<Object> compileComparison(
+      String propertyType, String comparisonType, Object expected) {
+    String type = FilterEvaluator.normalize(comparisonType);
+    switch (type) {
+      case "in":
+        return compileIn(propertyType, expected);
+      case "not_in":
+        return compileIn(propertyType, expected).negate();
+      case "contains":
+        if (expected == null) {
+          return actual -> false;
+        }
+        String part = String.valueOf(expected);
+        return actual -> String.valueOf(actual).contains(part);
+      default:
+        break;
+    }
+
+    IntPredicate order = order(type);
+    if (order == null || expected == null) {
+      return actual -> false;
+    }
+    if (FilterEvaluator.isNumeric(propertyType)) {
+      Double number = FilterEvaluator.toNumber(expected);
+      if (number == null) {
+        return actual -> false;
+      }
+      double value = number;
+      return actual -> {
+        Double left = FilterEvaluator.toNumber(actual);
+        return left != null && order.test(Double.compare(left, value));
+      };
+    }
+    if (FilterEvaluator.isBoolean(propertyType)) {
+      boolean value = Boolean.parseBoolean(String.valueOf(expected));
+      return actual ->
+          order.test(Boolean.compare(Boolean.parseBoolean(String.valueOf(actual)), value));
+    }
+    String value = Objects.toString(expected);
+    return actual -> order.test(Objects.toString(actual).compareTo(value));
+  }
+
+  private static Predicate<Object> compileIn(String propertyType, Object expected) {
+    Collection<?> values =
+        expected instanceof Collection
+            ? (Collection<?>) expected
+            : FormatUtil.extractList(expected == null ? null : String.valueOf(expected));
+    Set<Object> keys = new HashSet<>();
+    for (Object value : values) {
+      Object key = key(propertyType, value instanceof String ? ((String) value).trim() : value);
+      if (key != null) {
+        keys.add(key);
+      }
+    }
+    return actual -> {
+      Object key = key(propertyType, actual);
+      return key != null && keys.contains(key);
+    };
+  }
+
+  /** The value as compared for the property type, or null if it cannot be compared. */
+  private static Object key(String propertyType, Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (FilterEvaluator.isNumeric(propertyType)) {
+      return FilterEvaluator.toNumber(value);
+    }
+    if (FilterEvaluator.isBoolean(propertyType)) {
+      return Boolean.parseBoolean(String.valueOf(value));
+    }
+    return Objects.toString(value);
+  }
+
+  private static IntPredicate order(String comparisonType) {
+    switch (comparisonType) {
+      case "=":
+        return order -> order == 0;
+      case "!=":
+        return order -> order != 0;
+      case ">":
+        return order -> order > 0;
+      case ">=":
+        return order -> order >= 0;
+      case "<":
+        return order -> order < 0;
+      case "<=":
+        return order -> order <= 0;
+      default:
+        return null;
+    }
+  }
+}
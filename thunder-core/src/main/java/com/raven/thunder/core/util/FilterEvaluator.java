@@ -0,0 +1,286 @@
+package com.raven.thunder.core.util;
+
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Evaluates the filters of a {@link StateTransitionCondition} against event properties. Filter
+ * entries are either the string {@code "any"}, a property filter, a function filter combining two
+ * numeric properties, or a nested filter group with its own operator. Entries arrive as maps when
+ * the rule was read from JSON and as model objects when built in code; both are accepted.
+ *
+ * <p>A filter on a missing or unparsable property does not match. Unknown operators or
+ * comparison types never match, so a rule the server does not understand cannot advance state.
+ */
+public final class FilterEvaluator {
+
+  public static final String ANY = "any";
+
+  private FilterEvaluator() {
+    // Utility class - prevent instantiation
+  }
+
+  /** Whether the event properties satisfy the filters; null or empty filters always match. */
+  public static boolean matches(
+      StateTransitionCondition.Filters filters, Map<String, Object> properties) {
+    if (filters == null) {
+      return true;
+    }
+    return matches(filters.getOperator(), filters.getFilter(), properties);
+  }
+
+  private static boolean matches(
+      String operator, List<Object> filter, Map<String, Object> properties) {
+    if (filter == null || filter.isEmpty()) {
+      return true;
+    }
+    if (operator == null || "AND".equalsIgnoreCase(operator)) {
+      for (Object entry : filter) {
+        if (!matchesEntry(entry, properties)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if ("OR".equalsIgnoreCase(operator)) {
+      for (Object entry : filter) {
+        if (matchesEntry(entry, properties)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean matchesEntry(Object entry, Map<String, Object> properties) {
+    if (entry instanceof String) {
+      return ANY.equalsIgnoreCase((String) entry);
+    }
+    if (entry instanceof StateTransitionCondition.Filters) {
+      return matches((StateTransitionCondition.Filters) entry, properties);
+    }
+    if (entry instanceof StateTransitionCondition.Filter) {
+      StateTransitionCondition.Filter filter = (StateTransitionCondition.Filter) entry;
+      return compare(
+          filter.getPropertyType(),
+          filter.getComparisonType(),
+          property(properties, filter.getPropertyName()),
+          filter.getComparisonValue());
+    }
+    if (entry instanceof StateTransitionCondition.FunctionFilter) {
+      StateTransitionCondition.FunctionFilter filter =
+          (StateTransitionCondition.FunctionFilter) entry;
+      return compareFunction(
+          filter.getFunProp1(),
+          filter.getFunProp2(),
+          filter.getFunctionOperator(),
+          filter.getComparisonType(),
+          filter.getComparisonValue(),
+          properties);
+    }
+    if (!(entry instanceof Map)) {
+      return false;
+    }
+
+    Map<String, Object> map = (Map<String, Object>) entry;
+    if (map.get("filter") instanceof List) {
+      return matches(string(map, "operator"), (List<Object>) map.get("filter"), properties);
+    }
+    if (map.containsKey("funProp1")) {
+      return compareFunction(
+          string(map, "funProp1"),
+          string(map, "funProp2"),
+          string(map, "functionOperator"),
+          string(map, "comparisonType"),
+          map.get("comparisonValue"),
+          properties);
+    }
+    return compare(
+        string(map, "propertyType"),
+        string(map, "comparisonType"),
+        property(properties, string(map, "propertyName")),
+        map.get("comparisonValue"));
+  }
+
+  /** Applies the function operator to two numeric properties and compares the result. */
+  private static boolean compareFunction(
+      String funProp1,
+      String funProp2,
+      String functionOperator,
+      String comparisonType,
+      Object comparisonValue,
+      Map<String, Object> properties) {
+    Double left = toNumber(property(properties, funProp1));
+    Double right = toNumber(property(properties, funProp2));
+    if (left == null || right == null || functionOperator == null) {
+      return false;
+    }
+    double result;
+    switch (functionOperator) {
+      case "+":
+        result = left + right;
+        break;
+      case "-":
+        result = left - right;
+        break;
+      case "*":
+        result = left * right;
+        break;
+      case "/":
+        if (right == 0) {
+          return false;
+        }
+        result = left / right;
+        break;
+      default:
+        return false;
+    }
+    return compare("number", comparisonType, result, comparisonValue);
+  }
+
+  static boolean compare(
+      String propertyType, String comparisonType, Object actual, Object expected) {
+    if (actual == null || comparisonType == null) {
+      return false;
+    }
+    String type = normalize(comparisonType);
+    switch (type) {
+      case "in":
+        return contains(propertyType, expected, actual);
+      case "not_in":
+        return !contains(propertyType, expected, actual);
+      case "contains":
+        return expected != null && String.valueOf(actual).contains(String.valueOf(expected));
+      default:
+        break;
+    }
+
+    Integer order = compareTo(propertyType, actual, expected);
+    if (order == null) {
+      return false;
+    }
+    switch (type) {
+      case "=":
+        return order == 0;
+      case "!=":
+        return order != 0;
+      case ">":
+        return order > 0;
+      case ">=":
+        return order >= 0;
+      case "<":
+        return order < 0;
+      case "<=":
+        return order <= 0;
+      default:
+        return false;
+    }
+  }
+
+  static String normalize(String comparisonType) {
+    switch (comparisonType.trim().toLowerCase()) {
+      case "==":
+      case "eq":
+      case "equals":
+        return "=";
+      case "neq":
+      case "not_equals":
+        return "!=";
+      case "gt":
+        return ">";
+      case "gte":
+        return ">=";
+      case "lt":
+        return "<";
+      case "lte":
+        return "<=";
+      case "not in":
+      case "nin":
+        return "not_in";
+      default:
+        return comparisonType.trim().toLowerCase();
+    }
+  }
+
+  private static boolean contains(String propertyType, Object expected, Object actual) {
+    Collection<?> values =
+        expected instanceof Collection
+            ? (Collection<?>) expected
+            : FormatUtil.extractList(expected == null ? null : String.valueOf(expected));
+    for (Object value : values) {
+      Object candidate = value instanceof String ? ((String) value).trim() : value;
+      Integer order = compareTo(propertyType, actual, candidate);
+      if (order != null && order == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Orders the property against the comparison value by type, or null if not comparable. */
+  private static Integer compareTo(String propertyType, Object actual, Object expected) {
+    if (expected == null) {
+      return null;
+    }
+    if (isNumeric(propertyType)) {
+      Double left = toNumber(actual);
+      Double right = toNumber(expected);
+      return left == null || right == null ? null : Double.compare(left, right);
+    }
+    if (isBoolean(propertyType)) {
+      return Boolean.compare(
+          Boolean.parseBoolean(String.valueOf(actual)),
+          Boolean.parseBoolean(String.valueOf(expected)));
+    }
+    return Objects.toString(actual).compareTo(Objects.toString(expected));
+  }
+
+  static boolean isNumeric(String propertyType) {
+    if (propertyType == null) {
+      return false;
+    }
+    switch (propertyType.toLowerCase()) {
+      case "number":
+      case "numeric":
+      case "int":
+      case "integer":
+      case "long":
+      case "double":
+      case "float":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  static boolean isBoolean(String propertyType) {
+    return "boolean".equalsIgnoreCase(propertyType) || "bool".equalsIgnoreCase(propertyType);
+  }
+
+  private static Object property(Map<String, Object> properties, String name) {
+    return name == null ? null : properties.get(name);
+  }
+
+  static String string(Map<String, Object> map, String key) {
+    return Objects.toString(map.get(key), null);
+  }
+
+  static Double toNumber(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Double.parseDouble(String.valueOf(value).trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.raven.thunder.core.util;
+
+import com.raven.thunder.core.model.Rollout;
+
+/**
+ * Deterministic percentage rollouts. A user's bucket is a 64-bit mix of the user ID and a salt
+ * hash, so it is stable across nodes and restarts and needs no storage or I/O.
+ */
+public final class RolloutUtil {
+
+  /** Buckets per rollout, giving a granularity of 0.01%. */
+  public static final int BUCKETS = 10_000;
+
+  private RolloutUtil() {
+    // Utility class - prevent instantiation
+  }
+
+  /** Whether a rollout is well-formed: a percentage between 0 and 100 in steps of 0.01. */
+  public static boolean isValid(Rollout rollout) {
+    if (rollout.getPercentage() == null) {
+      return false;
+    }
+    double percentage = rollout.getPercentage();
+    double buckets = percentage * BUCKETS / 100;
+    return percentage >= 0 && percentage <= 100 && Math.abs(buckets - Math.rint(buckets)) < 1e-6;
+  }
+
+  /** Hash of the rollout's salt, falling back to the CTA ID; compute once per CTA. */
+  public static long saltHash(Rollout rollout, Long ctaId) {
+    String salt = rollout.getSalt();
+    if (salt == null || salt.isEmpty()) {
+      salt = String.valueOf(ctaId);
+    }
+    // FNV-1a
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < salt.length(); i++) {
+      hash ^= salt.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /** Number of buckets a rollout covers. */
+  public static int coveredBuckets(Rollout rollout) {
+    return (int) Math.round(rollout.getPercentage() * BUCKETS / 100);
+  }
+
+  /** The user's bucket in [0, {@link #BUCKETS}). */
+  public static int bucket(long userId, long saltHash) {
+    return (int) Long.remainderUnsigned(mix(userId ^ mix(saltHash)), BUCKETS);
+  }
+
+  public static boolean isInRollout(Long userId, long saltHash, int coveredBuckets) {
+    if (coveredBuckets >= BUCKETS) {
+      return true;
+    }
+    return userId != null && bucket(userId, saltHash) < coveredBuckets;
+  }
+
+  /** Finalizer of MurmurHash3, spreading every input bit over the whole word. */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
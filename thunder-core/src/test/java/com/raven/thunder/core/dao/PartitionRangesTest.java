@@ -0,0 +1,31 @@
+package com.raven.thunder.core.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.query.PartitionFilter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PartitionRangesTest {
+
+  @Test
+  void split_coversEveryPartitionOnceInContiguousRanges() {
+    List<PartitionFilter> ranges = PartitionRanges.split(7);
+
+    assertThat(ranges).hasSize(7);
+    int next = 0;
+    for (PartitionFilter range : ranges) {
+      assertThat(range.getBegin()).isEqualTo(next);
+      assertThat(range.getCount()).isBetween(Node.PARTITIONS / 7, Node.PARTITIONS / 7 + 1);
+      next += range.getCount();
+    }
+    assertThat(next).isEqualTo(Node.PARTITIONS);
+  }
+
+  @Test
+  void split_clampsRangeCountToPartitions() {
+    assertThat(PartitionRanges.split(0)).hasSize(1);
+    assertThat(PartitionRanges.split(Node.PARTITIONS * 2)).hasSize(Node.PARTITIONS);
+  }
+}
@@ -0,0 +1,154 @@
+package com.raven.thunder.core.dao.cohort;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.model.CohortManifest;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+@ExtendWith(MockitoExtension.class)
+class CohortRepositoryImplTest {
+
+  private static final String TENANT = "tenant-1";
+  private static final String COHORT = "payers";
+
+  @Mock private AerospikeClient client;
+
+  private CohortRepositoryImpl repository;
+
+  @BeforeEach
+  void setUp() {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setAdminDataNamespace("thunder");
+    repository = new CohortRepositoryImpl(config, client);
+  }
+
+  @Test
+  void splitAndSerialize_roundTripLargeBitmap() {
+    Roaring64NavigableMap users = new Roaring64NavigableMap();
+    for (long userId = 0; userId < 3_000_000; userId += 7) {
+      users.addLong(userId * 31);
+    }
+    users.addLong(5_000_000_000L);
+
+    List<byte[]> chunks = CohortRepositoryImpl.split(CohortRepositoryImpl.serialize(users));
+    ByteArrayOutputStream joined = new ByteArrayOutputStream();
+    chunks.forEach(chunk -> joined.write(chunk, 0, chunk.length));
+
+    assertThat(chunks).hasSizeGreaterThan(1);
+    assertThat(chunks)
+        .allSatisfy(chunk -> assertThat(chunk.length).isLessThanOrEqualTo(Schema.CHUNK_BYTES));
+    assertThat(CohortRepositoryImpl.deserialize(joined.toByteArray())).isEqualTo(users);
+  }
+
+  @Test
+  void save_keysChunksByUploadAndDeletesSupersededOnes() {
+    when(client.rxGet(any(), any())).thenReturn(Maybe.just(previousManifest()));
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenAnswer(invocation -> Single.just(invocation.getArgument(1)));
+    when(client.rxBatchOperate(any(), any()))
+        .thenAnswer(invocation -> Single.just(invocation.getArgument(1)));
+
+    CohortManifest manifest = repository.save(TENANT, COHORT, users()).blockingGet();
+
+    assertThat(manifest.getVersion()).isEqualTo(2L);
+    ArgumentCaptor<Key> written = ArgumentCaptor.forClass(Key.class);
+    verify(client, times(2)).rxPut(any(), written.capture(), any(Bin[].class));
+    assertThat(written.getAllValues().get(0).userKey.toString())
+        .isEqualTo(TENANT + ":" + COHORT + ":" + manifest.getUploadId() + ":0");
+    assertThat(deletedKeys())
+        .containsExactly(
+            TENANT + ":" + COHORT + ":old-upload:0", TENANT + ":" + COHORT + ":old-upload:1");
+  }
+
+  @Test
+  void save_deletesOwnChunksWhenAnotherUploadWins() {
+    when(client.rxGet(any(), any())).thenReturn(Maybe.empty());
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenAnswer(
+            invocation -> {
+              Key key = invocation.getArgument(1);
+              return Schema.MANIFEST_SET.equals(key.setName)
+                  ? Single.error(new AerospikeException(ResultCode.KEY_EXISTS_ERROR))
+                  : Single.just(key);
+            });
+    when(client.rxBatchOperate(any(), any()))
+        .thenAnswer(invocation -> Single.just(invocation.getArgument(1)));
+
+    repository.save(TENANT, COHORT, users()).test().assertError(AerospikeException.class);
+
+    ArgumentCaptor<Key> written = ArgumentCaptor.forClass(Key.class);
+    verify(client, times(2)).rxPut(any(), written.capture(), any(Bin[].class));
+    assertThat(deletedKeys()).containsExactly(written.getAllValues().get(0).userKey.toString());
+  }
+
+  @Test
+  void save_keepsOwnChunksWhenTheManifestWriteIsInDoubt() {
+    AerospikeException timeout = new AerospikeException(ResultCode.TIMEOUT);
+    timeout.setInDoubt(true);
+    when(client.rxGet(any(), any())).thenReturn(Maybe.empty());
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenAnswer(
+            invocation -> {
+              Key key = invocation.getArgument(1);
+              return Schema.MANIFEST_SET.equals(key.setName)
+                  ? Single.error(timeout)
+                  : Single.just(key);
+            });
+
+    repository.save(TENANT, COHORT, users()).test().assertError(timeout);
+
+    verify(client, never()).rxBatchOperate(any(), any());
+  }
+
+  private List<String> deletedKeys() {
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<BatchRecord>> deletes = ArgumentCaptor.forClass(List.class);
+    verify(client).rxBatchOperate(any(BatchPolicy.class), deletes.capture());
+    return deletes.getValue().stream()
+        .map(record -> record.key.userKey.toString())
+        .collect(Collectors.toList());
+  }
+
+  private static Roaring64NavigableMap users() {
+    return Roaring64NavigableMap.bitmapOf(1L, 2L, 3L);
+  }
+
+  private static Record previousManifest() {
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.TENANT_BIN, TENANT);
+    bins.put(Schema.COHORT_BIN, COHORT);
+    bins.put(Schema.VERSION_BIN, 1L);
+    bins.put(Schema.UPLOAD_BIN, "old-upload");
+    bins.put(Schema.CHUNKS_BIN, 2L);
+    bins.put(Schema.USERS_BIN, 10L);
+    bins.put(Schema.UPDATED_AT_BIN, 1L);
+    return new Record(bins, 4, 0);
+  }
+}
@@ -0,0 +1,32 @@
+package com.raven.thunder.core.dao.cta;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.core.model.CTAListFilter;
+import com.raven.thunder.core.model.CTAStatus;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CTAListFilterExpTest {
+
+  @Test
+  void build_returnsNullWhenNoCriteriaIsSet() {
+    assertThat(CTAListFilterExp.build(new CTAListFilter())).isNull();
+    CTAListFilter emptyLists = new CTAListFilter(null, "", null, List.of(), List.of(), null, null);
+    assertThat(CTAListFilterExp.build(emptyLists)).isNull();
+  }
+
+  @Test
+  void build_combinesEveryCriteria() {
+    CTAListFilter filter =
+        new CTAListFilter("a", "b", "c", List.of("t1", "t2"), List.of("x"), "bt", CTAStatus.LIVE);
+
+    assertThat(CTAListFilterExp.build(filter).getBytes()).isNotEmpty();
+  }
+
+  @Test
+  void escape_matchesSearchTextLiterally() {
+    assertThat(CTAListFilterExp.escape("50% off (new)")).isEqualTo("50% off \\(new\\)");
+    assertThat(CTAListFilterExp.escape("a.b*c")).isEqualTo("a\\.b\\*c");
+  }
+}
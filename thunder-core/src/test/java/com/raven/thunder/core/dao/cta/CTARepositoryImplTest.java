@@ -0,0 +1,194 @@
+package com.raven.thunder.core.dao.cta;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.Statement;
+import com.raven.thunder.core.client.AerospikeClient;
+import com.raven.thunder.core.config.AerospikeConfig;
+import com.raven.thunder.core.dao.CatalogVersionRepository;
+import com.raven.thunder.core.model.CTA;
+import com.raven.thunder.core.model.CTAListFilter;
+import com.raven.thunder.core.model.CTAStatus;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CTARepositoryImplTest {
+
+  private static final String TENANT = "tenant-1";
+
+  @Mock private AerospikeClient client;
+  @Mock private CatalogVersionRepository catalogVersionRepository;
+
+  private CTARepositoryImpl repository;
+
+  @BeforeEach
+  void setUp() {
+    AerospikeConfig config = new AerospikeConfig();
+    config.setAdminDataNamespace("thunder");
+    repository = new CTARepositoryImpl(config, client, catalogVersionRepository);
+  }
+
+  @Test
+  void findAll_mergesPartitionRangesByCTAId() {
+    when(client.rxQuery(any(), any(), any()))
+        .thenReturn(Flowable.just(keyRecord(1L)), Flowable.just(keyRecord(2L)), Flowable.empty());
+
+    Map<Long, CTA> ctas = repository.findAll(TENANT).blockingGet();
+
+    assertThat(ctas).containsOnlyKeys(1L, 2L);
+    assertThat(ctas.get(2L).getTenantId()).isEqualTo(TENANT);
+    ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+    verify(client, times(8)).rxQuery(any(), statements.capture(), any());
+    assertThat(statements.getAllValues()).doesNotHaveDuplicates();
+    assertThat(statements.getAllValues())
+        .allSatisfy(statement -> assertThat(statement.getSetName()).isEqualTo(Schema.SET));
+  }
+
+  @Test
+  void findAllForList_readsAStatusOffTheTenantStatusIndex() {
+    when(client.rxQuery(any(), any(), any()))
+        .thenReturn(Flowable.just(keyRecord(1L)), Flowable.empty());
+    CTAListFilter filter = new CTAListFilter();
+    filter.setStatus(CTAStatus.LIVE);
+
+    List<CTA> ctas = repository.findAllForList(TENANT, filter).blockingGet();
+
+    assertThat(ctas).extracting(CTA::getId).containsExactly(1L);
+    ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+    verify(client, times(8)).rxQuery(any(), statements.capture(), any());
+    assertThat(statements.getAllValues())
+        .allSatisfy(
+            statement -> {
+              assertThat(statement.getFilter().getName()).isEqualTo(Schema.TENANT_STATUS_BIN);
+              assertThat(statement.getFilter().getBegin().toString())
+                  .isEqualTo(TENANT + ":LIVE");
+            });
+  }
+
+  @Test
+  void countByStatus_readsOnlyTheStatusOfTheTenantsCTAs() {
+    when(client.rxQuery(any(), any(), any()))
+        .thenReturn(
+            Flowable.just(statusRecord(1L, "LIVE"), statusRecord(2L, "LIVE")),
+            Flowable.just(statusRecord(3L, "DRAFT")),
+            Flowable.empty());
+
+    Map<CTAStatus, Integer> counts =
+        repository.countByStatus(TENANT, new CTAListFilter()).blockingGet();
+
+    assertThat(counts).containsOnly(Map.entry(CTAStatus.LIVE, 2), Map.entry(CTAStatus.DRAFT, 1));
+    ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+    verify(client, times(8)).rxQuery(any(), statements.capture(), any());
+    assertThat(statements.getAllValues())
+        .allSatisfy(
+            statement -> {
+              assertThat(statement.getFilter().getName()).isEqualTo(Schema.TENANT_BIN);
+              assertThat(statement.getBinNames()).containsExactly(Schema.STATUS_BIN);
+            });
+  }
+
+  @Test
+  void update_writesTenantStatusWithStatus() {
+    Map<String, Object> tenant = new HashMap<>();
+    tenant.put(Schema.TENANT_BIN, TENANT);
+    when(client.rxGet(any(), any(), any(String[].class)))
+        .thenReturn(Maybe.just(new Record(tenant, 1, 0)));
+    when(client.rxOperate(any(), any(), any(Operation[].class)))
+        .thenReturn(Single.just(new Record(tenant, 2, 0)));
+    when(catalogVersionRepository.bump(TENANT)).thenReturn(Completable.complete());
+
+    repository.update(1L, CTAStatus.PAUSED).blockingAwait();
+
+    ArgumentCaptor<Operation[]> operations = ArgumentCaptor.forClass(Operation[].class);
+    verify(client).rxOperate(any(), any(), operations.capture());
+    Map<String, Object> written = new HashMap<>();
+    for (Operation operation : operations.getValue()) {
+      if (operation.type == Operation.Type.WRITE) {
+        written.put(operation.binName, operation.value.getObject());
+      }
+    }
+    assertThat(written)
+        .containsEntry(Schema.STATUS_BIN, "PAUSED")
+        .containsEntry(Schema.TENANT_STATUS_BIN, TENANT + ":PAUSED");
+  }
+
+  @Test
+  void backfillTenantStatus_writesStaleRecordsAtTheirGeneration() {
+    when(client.rxQuery(any(), any(), any()))
+        .thenReturn(
+            Flowable.just(
+                statusRecord(1L, TENANT + ":LIVE", 3),
+                statusRecord(2L, null, 4),
+                statusRecord(3L, TENANT + ":DRAFT", 5)),
+            Flowable.empty());
+    when(client.rxPut(any(), any(), any(Bin[].class)))
+        .thenAnswer(
+            invocation -> {
+              WritePolicy writePolicy = invocation.getArgument(0);
+              return writePolicy.generation == 5
+                  ? Single.error(new AerospikeException(ResultCode.GENERATION_ERROR))
+                  : Single.just(invocation.getArgument(1));
+            });
+
+    assertThat(repository.backfillTenantStatus().blockingGet()).isEqualTo(1L);
+
+    ArgumentCaptor<WritePolicy> policies = ArgumentCaptor.forClass(WritePolicy.class);
+    verify(client, times(2)).rxPut(policies.capture(), any(), any(Bin[].class));
+    assertThat(policies.getAllValues())
+        .extracting(writePolicy -> writePolicy.generation)
+        .containsExactlyInAnyOrder(4, 5);
+    assertThat(policies.getAllValues())
+        .allSatisfy(
+            writePolicy ->
+                assertThat(writePolicy.generationPolicy)
+                    .isEqualTo(GenerationPolicy.EXPECT_GEN_EQUAL));
+    verifyNoInteractions(catalogVersionRepository);
+  }
+
+  private static KeyRecord statusRecord(long id, String tenantStatus, int generation) {
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.TENANT_BIN, TENANT);
+    bins.put(Schema.STATUS_BIN, "LIVE");
+    bins.put(Schema.TENANT_STATUS_BIN, tenantStatus);
+    return new KeyRecord(new Key("thunder", Schema.SET, id), new Record(bins, generation, 0));
+  }
+
+  private static KeyRecord statusRecord(long id, String status) {
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.STATUS_BIN, status);
+    return new KeyRecord(new Key("thunder", Schema.SET, id), new Record(bins, 1, 0));
+  }
+
+  private static KeyRecord keyRecord(long id) {
+    Map<String, Object> bins = new HashMap<>();
+    bins.put(Schema.ID_BIN, id);
+    bins.put(Schema.TENANT_BIN, TENANT);
+    return new KeyRecord(new Key("thunder", Schema.SET, id), new Record(bins, 1, 0));
+  }
+}
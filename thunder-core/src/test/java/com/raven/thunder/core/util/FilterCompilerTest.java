@@ -0,0 +1,138 @@
+package com.raven.thunder.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+class FilterCompilerTest {
+
+  private static final List<Map<String, Object>> EVENTS =
+      List.of(
+          Map.of(),
+          Map.of("mode", "normal", "amount", 100, "first", true, "tier", "gold"),
+          Map.of("mode", "mega", "amount", "75.5", "first", "false", "tier", "silver"),
+          Map.of("amount", "abc", "price", 30, "quantity", 4),
+          Map.of("price", 30, "quantity", 0, "tier", "bronze"));
+
+  @Test
+  void compile_matchesInterpretedEvaluation() {
+    List<Object> filters =
+        List.of(
+            filter("mode", "string", "=", "normal"),
+            filter("mode", "string", "!=", "normal"),
+            filter("mode", "string", "contains", "eg"),
+            filter("amount", "number", ">=", "100"),
+            filter("amount", "number", "<", 80),
+            filter("amount", "number", "==", "abc"),
+            filter("first", "boolean", "eq", true),
+            filter("tier", "string", "in", "[gold, silver]"),
+            filter("tier", "string", "not in", List.of("gold")),
+            filter("amount", "number", "in", List.of(100, "75.5")),
+            filter("mode", "string", "like", "n"),
+            function("*", ">", 100),
+            function("/", ">=", 7.5),
+            function("%", "=", 0),
+            "any",
+            "none");
+
+    for (Object filter : filters) {
+      for (String operator : List.of("AND", "OR", "XOR")) {
+        assertEquivalent(filters(operator, List.of(filter)));
+        assertEquivalent(filters(operator, List.of(filter, filters.get(0))));
+        assertEquivalent(
+            filters(
+                operator,
+                List.of(Map.of("operator", "OR", "filter", List.of(filter, filters.get(3))))));
+      }
+    }
+    assertEquivalent(filters("AND", List.of()));
+    assertEquivalent(null);
+  }
+
+  @Test
+  void compile_matchesInterpretedEvaluationOfANestedFilterOverManyEvents() {
+    StateTransitionCondition.Filters filters =
+        filters(
+            "AND",
+            List.of(
+                filter("mode", "string", "in", "[normal,mega,head_to_head,private]"),
+                filter("amount", "number", ">=", "100"),
+                filter("first", "boolean", "=", "false"),
+                Map.of(
+                    "operator",
+                    "OR",
+                    "filter",
+                    List.of(
+                        filter("tier", "string", "=", "gold"),
+                        filter("roundId", "number", "<", 10)))));
+    List<Map<String, Object>> events = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      events.add(
+          Map.of(
+              "mode", i % 3 == 0 ? "mega" : "normal",
+              "amount", 50 + i * 5,
+              "first", i % 5 == 0,
+              "tier", i % 2 == 0 ? "gold" : "silver",
+              "roundId", i % 16));
+    }
+    Predicate<Map<String, Object>> compiled = FilterCompiler.compile(filters);
+
+    for (Map<String, Object> event : events) {
+      assertThat(compiled.test(event))
+          .as("%s", event)
+          .isEqualTo(FilterEvaluator.matches(filters, event));
+    }
+    assertThat(events).filteredOn(compiled).isNotEmpty().hasSizeLessThan(events.size());
+  }
+
+  @Test
+  void compile_shortCircuitsGroups() {
+    Map<String, Object> isNormal = filter("mode", "string", "=", "normal");
+    Map<String, Object> isLarge = filter("amount", "number", ">", 100);
+    Map<String, Object> event = Map.of("mode", "normal", "amount", 10);
+
+    assertThat(FilterCompiler.compile(filters("AND", List.of(isNormal, isLarge))).test(event))
+        .isFalse();
+    assertThat(FilterCompiler.compile(filters("OR", List.of(isLarge, isNormal))).test(event))
+        .isTrue();
+  }
+
+  private static void assertEquivalent(StateTransitionCondition.Filters filters) {
+    for (Map<String, Object> event : EVENTS) {
+      assertThat(FilterCompiler.compile(filters).test(event))
+          .as("%s on %s", filters, event)
+          .isEqualTo(FilterEvaluator.matches(filters, event));
+    }
+  }
+
+  private static StateTransitionCondition.Filters filters(String operator, List<Object> filter) {
+    StateTransitionCondition.Filters filters = new StateTransitionCondition.Filters();
+    filters.setOperator(operator);
+    filters.setFilter(filter);
+    return filters;
+  }
+
+  private static Map<String, Object> function(
+      String functionOperator, String comparisonType, Object comparisonValue) {
+    return Map.of(
+        "funProp1", "price",
+        "funProp2", "quantity",
+        "functionOperator", functionOperator,
+        "comparisonType", comparisonType,
+        "comparisonValue", comparisonValue);
+  }
+
+  private static Map<String, Object> filter(
+      String propertyName, String propertyType, String comparisonType, Object comparisonValue) {
+    return Map.of(
+        "propertyName", propertyName,
+        "propertyType", propertyType,
+        "comparisonType", comparisonType,
+        "comparisonValue", comparisonValue);
+  }
+}
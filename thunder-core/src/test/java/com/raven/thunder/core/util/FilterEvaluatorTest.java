@@ -0,0 +1,85 @@
+package com.raven.thunder.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.core.model.rule.StateTransitionCondition;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class FilterEvaluatorTest {
+
+  @Test
+  void matches_comparesPropertiesByType() {
+    assertThat(matches("AND", filter("mode", "string", "=", "normal"), Map.of("mode", "normal")))
+        .isTrue();
+    assertThat(matches("AND", filter("amount", "number", ">=", "100"), Map.of("amount", 100)))
+        .isTrue();
+    assertThat(matches("AND", filter("amount", "number", "<", 50), Map.of("amount", "75.5")))
+        .isFalse();
+    assertThat(matches("AND", filter("first", "boolean", "=", true), Map.of("first", "true")))
+        .isTrue();
+    Map<String, Object> gold = Map.of("tier", "gold");
+    assertThat(matches("AND", filter("tier", "string", "in", "[gold,silver]"), gold)).isTrue();
+    assertThat(matches("AND", filter("tier", "string", "not_in", List.of("gold")), gold)).isFalse();
+  }
+
+  @Test
+  void matches_doesNotMatchMissingOrUnknown() {
+    assertThat(matches("AND", filter("mode", "string", "=", "normal"), Map.of())).isFalse();
+    assertThat(matches("AND", filter("amount", "number", "=", 1), Map.of("amount", "abc")))
+        .isFalse();
+    assertThat(matches("AND", filter("mode", "string", "like", "n"), Map.of("mode", "n")))
+        .isFalse();
+    assertThat(matches("XOR", filter("mode", "string", "=", "n"), Map.of("mode", "n"))).isFalse();
+  }
+
+  @Test
+  void matches_combinesOperatorsAndNestedGroups() {
+    Map<String, Object> properties = Map.of("mode", "normal", "amount", 10);
+    Object isNormal = filter("mode", "string", "=", "normal");
+    Object isLarge = filter("amount", "number", ">", 100);
+
+    assertThat(matches("AND", List.of(isNormal, isLarge), properties)).isFalse();
+    assertThat(matches("OR", List.of(isNormal, isLarge), properties)).isTrue();
+    assertThat(
+            matches(
+                "AND",
+                List.of(isNormal, Map.of("operator", "OR", "filter", List.of(isLarge, "any"))),
+                properties))
+        .isTrue();
+    assertThat(matches("AND", List.of(), properties)).isTrue();
+  }
+
+  @Test
+  void matches_evaluatesFunctionFilters() {
+    Object spent =
+        Map.of(
+            "funProp1", "price",
+            "funProp2", "quantity",
+            "functionOperator", "*",
+            "comparisonType", ">",
+            "comparisonValue", 100);
+
+    assertThat(matches("AND", List.of(spent), Map.of("price", 30, "quantity", 4))).isTrue();
+    assertThat(matches("AND", List.of(spent), Map.of("price", 30, "quantity", 3))).isFalse();
+    assertThat(matches("AND", List.of(spent), Map.of("price", 30))).isFalse();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static boolean matches(String operator, Object filter, Map<String, Object> properties) {
+    StateTransitionCondition.Filters filters = new StateTransitionCondition.Filters();
+    filters.setOperator(operator);
+    filters.setFilter(filter instanceof List ? (List<Object>) filter : List.of(filter));
+    return FilterEvaluator.matches(filters, properties);
+  }
+
+  private static Map<String, Object> filter(
+      String propertyName, String propertyType, String comparisonType, Object comparisonValue) {
+    return Map.of(
+        "propertyName", propertyName,
+        "propertyType", propertyType,
+        "comparisonType", comparisonType,
+        "comparisonValue", comparisonValue);
+  }
+}
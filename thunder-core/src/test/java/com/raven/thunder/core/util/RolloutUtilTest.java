@@ -0,0 +1,57 @@
+package com.raven.thunder.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.raven.thunder.core.model.Rollout;
+import org.junit.jupiter.api.Test;
+
+class RolloutUtilTest {
+
+  @Test
+  void isValid_acceptsHundredthsBetweenZeroAndHundred() {
+    assertThat(RolloutUtil.isValid(new Rollout(0.0, null))).isTrue();
+    assertThat(RolloutUtil.isValid(new Rollout(15.0, null))).isTrue();
+    assertThat(RolloutUtil.isValid(new Rollout(0.01, "salt"))).isTrue();
+    assertThat(RolloutUtil.isValid(new Rollout(100.0, null))).isTrue();
+    assertThat(RolloutUtil.isValid(new Rollout(null, null))).isFalse();
+    assertThat(RolloutUtil.isValid(new Rollout(-1.0, null))).isFalse();
+    assertThat(RolloutUtil.isValid(new Rollout(100.5, null))).isFalse();
+    assertThat(RolloutUtil.isValid(new Rollout(12.345, null))).isFalse();
+  }
+
+  @Test
+  void isInRollout_isDeterministicAndGrowsWithPercentage() {
+    long saltHash = RolloutUtil.saltHash(new Rollout(10.0, null), 42L);
+    int tenPercent = RolloutUtil.coveredBuckets(new Rollout(10.0, null));
+    int twentyPercent = RolloutUtil.coveredBuckets(new Rollout(20.0, null));
+
+    int inTen = 0;
+    for (long userId = 0; userId < 100_000; userId++) {
+      boolean in = RolloutUtil.isInRollout(userId, saltHash, tenPercent);
+      assertThat(RolloutUtil.isInRollout(userId, saltHash, tenPercent)).isEqualTo(in);
+      if (in) {
+        inTen++;
+        assertThat(RolloutUtil.isInRollout(userId, saltHash, twentyPercent)).isTrue();
+      }
+    }
+
+    assertThat(inTen).isBetween(9_000, 11_000);
+  }
+
+  @Test
+  void saltHash_defaultsToCtaIdAndSeparatesSalts() {
+    assertThat(RolloutUtil.saltHash(new Rollout(10.0, null), 42L))
+        .isEqualTo(RolloutUtil.saltHash(new Rollout(10.0, "42"), 7L));
+    assertThat(RolloutUtil.saltHash(new Rollout(10.0, null), 42L))
+        .isNotEqualTo(RolloutUtil.saltHash(new Rollout(10.0, null), 43L));
+  }
+
+  @Test
+  void isInRollout_coversEveryoneAtHundredPercent() {
+    int all = RolloutUtil.coveredBuckets(new Rollout(100.0, null));
+
+    assertThat(RolloutUtil.isInRollout(null, 0L, all)).isTrue();
+    assertThat(RolloutUtil.isInRollout(null, 0L, all - 1)).isFalse();
+    assertThat(RolloutUtil.isInRollout(5L, 0L, 0)).isFalse();
+  }
+}